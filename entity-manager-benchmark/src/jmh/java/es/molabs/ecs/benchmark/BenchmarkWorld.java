@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.benchmark;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.base.AbstractComponent;
+import es.molabs.ecs.base.AbstractEntity;
+import es.molabs.ecs.base.AbstractSystem;
+import es.molabs.ecs.base.AbstractTaskSystem;
+import es.molabs.task.Task;
+
+/**
+ * Entities, components and systems shared by the benchmarks.
+ * <p>
+ * With the <b>uniform</b> mix every entity has a position and a velocity. With the <b>mixed</b> mix every entity 
+ * has a position and the velocity, health and marker components are spread between them.
+ */
+public class BenchmarkWorld 
+{
+	public final static String UNIFORM = "uniform";
+	public final static String MIXED = "mixed";
+	
+	private BenchmarkWorld()
+	{
+	}
+	
+	public static int[] populate(EntityManager entityManager, int worldSize, String mix)
+	{
+		int[] entityIds = new int[worldSize];
+		
+		for (int i=0; i<worldSize; i++)
+		{
+			entityIds[i] = registerEntity(entityManager, i, mix);
+		}
+		
+		return entityIds;
+	}
+	
+	public static int registerEntity(EntityManager entityManager, int index, String mix)
+	{
+		int entityId = entityManager.registerEntity(new BenchmarkEntity()).getId();
+		
+		entityManager.registerComponent(entityId, new PositionComponent());
+		
+		if (UNIFORM.equals(mix))
+		{
+			entityManager.registerComponent(entityId, new VelocityComponent());
+		}
+		else
+		{
+			if (index % 2 == 0) entityManager.registerComponent(entityId, new VelocityComponent());
+			if (index % 3 == 0) entityManager.registerComponent(entityId, new HealthComponent(0, 100));
+			if (index % 5 == 0) entityManager.registerComponent(entityId, new MarkerComponent());
+		}
+		
+		return entityId;
+	}
+	
+	public static class BenchmarkEntity extends AbstractEntity
+	{
+	}
+	
+	public static class PositionComponent extends AbstractComponent
+	{
+		public float x;
+		public float y;
+	}
+	
+	public static class VelocityComponent extends AbstractComponent
+	{
+		public float x;
+		public float y;
+	}
+	
+	public static class HealthComponent extends AbstractComponent
+	{
+		public int current;
+		public int max;
+		
+		public HealthComponent(int current, int max)
+		{
+			this.current = current;
+			this.max = max;
+		}
+	}
+	
+	public static class MarkerComponent extends AbstractComponent
+	{
+	}
+	
+	/**
+	 * System that does nothing, used to measure the cost of dispatching updates.
+	 */
+	public static class EmptySystem extends AbstractSystem
+	{
+		public EmptySystem()
+		{
+			super(false);
+		}
+	}
+	
+	/**
+	 * System that runs a task per health component incrementing its current value until the maximum.
+	 */
+	public static class HealthTaskSystem extends AbstractTaskSystem
+	{
+		public HealthTaskSystem()
+		{
+			super(false);
+		}
+		
+		protected Task onComponentAdded(Component component)
+		{
+			Task task = null;
+			
+			if (component instanceof HealthComponent)
+			{
+				task = new HealthTask((HealthComponent) component);
+			}
+			
+			return task;
+		}
+	}
+	
+	private static class HealthTask implements Task
+	{
+		private final HealthComponent component;
+		
+		private HealthTask(HealthComponent component)
+		{
+			this.component = component;
+		}
+		
+		public void execute(float delta)
+		{
+			if (component.current < component.max)
+			{
+				component.current++;
+			}
+		}
+		
+		public void added()
+		{
+		}
+		
+		public void removed()
+		{
+		}
+		
+		public boolean isFinished()
+		{
+			return false;
+		}
+		
+		public void reset()
+		{
+			component.current = 0;
+		}
+		
+		public Task getNext()
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.benchmark;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.data.ColumnOperations;
+import es.molabs.ecs.data.DataSchema;
+import es.molabs.ecs.data.DataStore;
+import es.molabs.ecs.data.DataType;
+import es.molabs.ecs.query.Query;
+
+/**
+ * Measures the same health regeneration of {@link TaskSystemBenchmark} applied in bulk over the columns of a 
+ * {@link DataStore}, for all its entities or for the entities of a query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColumnOperationsBenchmark 
+{
+	@Param({"1000", "100000"})
+	private int worldSize;
+	
+	private EntityManager entityManager = null;
+	private DataStore store = null;
+	private BitSet entities = null;
+	private int current;
+	private int max;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		entityManager = new EntityManager();
+		entityManager.init();
+		
+		DataSchema schema = new DataSchema("health").add("current", DataType.FLOAT).add("max", DataType.FLOAT);
+		current = schema.getField("current");
+		max = schema.getField("max");
+		
+		store = new DataStore(schema, worldSize);
+		entityManager.registerDataStore(store);
+		
+		int[] entityIds = BenchmarkWorld.populate(entityManager, worldSize, BenchmarkWorld.MIXED);
+		for (int i=0; i<entityIds.length; i++)
+		{
+			int slot = store.add(entityIds[i]);
+			
+			store.setFloat(slot, max, Float.MAX_VALUE);
+		}
+		
+		entities = entityManager.query(new Query().include(BenchmarkWorld.HealthComponent.class));
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		entityManager.destroy();
+		entityManager = null;
+		store = null;
+	}
+	
+	@Benchmark
+	public void addCappedAll()
+	{
+		ColumnOperations.addCapped(store, null, current, max, 1);
+	}
+	
+	@Benchmark
+	public void addCappedQuery()
+	{
+		ColumnOperations.addCapped(store, entities, current, max, 1);
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.benchmark;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import es.molabs.ecs.ComponentMapper;
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.benchmark.BenchmarkWorld.HealthComponent;
+import es.molabs.ecs.benchmark.BenchmarkWorld.PositionComponent;
+import es.molabs.ecs.benchmark.BenchmarkWorld.VelocityComponent;
+
+/**
+ * Measures looking up components by entity and by class in a populated world, through the manager or through mappers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupBenchmark 
+{
+	private final static int LOOKUPS = 1024;
+	
+	@Param({"1000", "100000"})
+	private int worldSize;
+	
+	@Param({BenchmarkWorld.UNIFORM, BenchmarkWorld.MIXED})
+	private String mix;
+	
+	private EntityManager entityManager = null;
+	private int[] lookupIds = null;
+	private ComponentMapper<VelocityComponent> velocityMapper = null;
+	private ComponentMapper<HealthComponent> healthMapper = null;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		entityManager = new EntityManager();
+		entityManager.init();
+		
+		int[] entityIds = BenchmarkWorld.populate(entityManager, worldSize, mix);
+		
+		velocityMapper = entityManager.getMapper(VelocityComponent.class);
+		healthMapper = entityManager.getMapper(HealthComponent.class);
+		
+		// Random access pattern, fixed between runs
+		Random random = new Random(42);
+		lookupIds = new int[LOOKUPS];
+		for (int i=0; i<LOOKUPS; i++)
+		{
+			lookupIds[i] = entityIds[random.nextInt(entityIds.length)];
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		entityManager.destroy();
+		entityManager = null;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void getComponent(Blackhole blackhole)
+	{
+		for (int i=0; i<lookupIds.length; i++)
+		{
+			blackhole.consume(entityManager.getComponent(lookupIds[i], VelocityComponent.class));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void hasComponent(Blackhole blackhole)
+	{
+		for (int i=0; i<lookupIds.length; i++)
+		{
+			blackhole.consume(entityManager.hasComponent(lookupIds[i], HealthComponent.class));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void getComponentWithMapper(Blackhole blackhole)
+	{
+		for (int i=0; i<lookupIds.length; i++)
+		{
+			blackhole.consume(velocityMapper.get(lookupIds[i]));
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void hasComponentWithMapper(Blackhole blackhole)
+	{
+		for (int i=0; i<lookupIds.length; i++)
+		{
+			blackhole.consume(healthMapper.has(lookupIds[i]));
+		}
+	}
+	
+	@Benchmark
+	public Collection<PositionComponent> getComponentCollectionByClass()
+	{
+		return entityManager.getComponentCollectionByClass(PositionComponent.class);
+	}
+}
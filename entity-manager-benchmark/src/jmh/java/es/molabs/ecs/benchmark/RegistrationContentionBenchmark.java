@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import es.molabs.ecs.Entity;
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.benchmark.BenchmarkWorld.BenchmarkEntity;
+import es.molabs.ecs.benchmark.BenchmarkWorld.PositionComponent;
+import es.molabs.ecs.benchmark.BenchmarkWorld.VelocityComponent;
+
+/**
+ * Registers the same number of entities, with two components each, split between a variable number of producer threads.
+ * <p>
+ * <b>threadSafe</b> uses the thread safe mode of the manager, <b>locked</b> guards a default manager with a single lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegistrationContentionBenchmark 
+{
+	private final static int ENTITIES = 32768;
+	
+	@Param({"1", "2", "4", "8", "16", "32"})
+	private int producers;
+	
+	@Param({"threadSafe", "locked"})
+	private String mode;
+	
+	private ExecutorService executor = null;
+	private EntityManager entityManager = null;
+	
+	@Setup(Level.Trial)
+	public void setUpTrial()
+	{
+		executor = Executors.newFixedThreadPool(producers);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDownTrial()
+	{
+		executor.shutdownNow();
+		executor = null;
+	}
+	
+	@Setup(Level.Invocation)
+	public void setUp()
+	{
+		entityManager = new EntityManager();
+		entityManager.setThreadSafe("threadSafe".equals(mode));
+		entityManager.init();
+	}
+	
+	@TearDown(Level.Invocation)
+	public void tearDown()
+	{
+		entityManager.destroy();
+		entityManager = null;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(ENTITIES)
+	public int register() throws InterruptedException
+	{
+		final boolean locked = !entityManager.isThreadSafe();
+		final int entitiesPerProducer = ENTITIES / producers;
+		final CountDownLatch latch = new CountDownLatch(producers);
+		
+		for (int i=0; i<producers; i++)
+		{
+			executor.execute(new Runnable()
+			{
+				public void run()
+				{
+					for (int j=0; j<entitiesPerProducer; j++)
+					{
+						if (locked)
+						{
+							synchronized (entityManager)
+							{
+								registerEntity();
+							}
+						}
+						else
+						{
+							registerEntity();
+						}
+					}
+					
+					latch.countDown();
+				}
+			});
+		}
+		
+		latch.await();
+		
+		return entityManager.getEntityCount();
+	}
+	
+	private void registerEntity()
+	{
+		Entity entity = entityManager.registerEntity(new BenchmarkEntity());
+		
+		entityManager.registerComponent(entity.getId(), new PositionComponent());
+		entityManager.registerComponent(entity.getId(), new VelocityComponent());
+	}
+}
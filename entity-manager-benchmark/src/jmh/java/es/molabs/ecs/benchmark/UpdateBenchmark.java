@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.benchmark.BenchmarkWorld.EmptySystem;
+
+/**
+ * Measures the cost of dispatching an update to many systems that do nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UpdateBenchmark 
+{
+	private final static float DELTA = 0.016f;
+	
+	@Param({"1000", "100000"})
+	private int worldSize;
+	
+	@Param({BenchmarkWorld.UNIFORM, BenchmarkWorld.MIXED})
+	private String mix;
+	
+	@Param({"1", "10", "100"})
+	private int systems;
+	
+	private EntityManager entityManager = null;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		entityManager = new EntityManager();
+		entityManager.init();
+		
+		BenchmarkWorld.populate(entityManager, worldSize, mix);
+		
+		for (int i=0; i<systems; i++)
+		{
+			entityManager.registerSystem(new EmptySystem());
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		entityManager.destroy();
+		entityManager = null;
+	}
+	
+	@Benchmark
+	public void update()
+	{
+		entityManager.update(DELTA);
+	}
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.jfr.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("es.molabs.ecs.Frame")
+@Label("Frame")
+@Category("Entity Manager")
+@Description("Update of an entity manager.")
+class FrameEvent extends Event
+{
+	@Label("Delta")
+	float delta;
+	
+	@Label("Systems")
+	int systemCount;
+	
+	@Label("Entities")
+	int entityCount;
+	
+	@Label("Components")
+	int componentCount;
+}
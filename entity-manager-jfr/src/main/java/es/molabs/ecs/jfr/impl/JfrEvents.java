@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.jfr.impl;
+
+import es.molabs.ecs.System;
+import es.molabs.ecs.jfr.FlightRecorderEvents;
+
+/**
+ * Emits the events using Java Flight Recorder. Only loaded by {@link FlightRecorderEvents} when the JVM supports it.
+ */
+public class JfrEvents extends FlightRecorderEvents
+{
+	// Used to check if each event is enabled without allocating a new one
+	private final FrameEvent frameProbe;
+	private final SystemUpdateEvent systemUpdateProbe;
+	private final StructuralChangeEvent structuralChangeProbe;
+	
+	public JfrEvents()
+	{
+		frameProbe = new FrameEvent();
+		systemUpdateProbe = new SystemUpdateEvent();
+		structuralChangeProbe = new StructuralChangeEvent();
+	}
+	
+	public boolean isSupported()
+	{
+		return true;
+	}
+	
+	public Object beginFrame()
+	{
+		FrameEvent event = null;
+		
+		if (frameProbe.isEnabled())
+		{
+			event = new FrameEvent();
+			event.begin();
+		}
+		
+		return event;
+	}
+	
+	public void commitFrame(Object event, float delta, int systemCount, int entityCount, int componentCount)
+	{
+		if (event != null)
+		{
+			FrameEvent frameEvent = (FrameEvent) event;
+			frameEvent.end();
+			
+			if (frameEvent.shouldCommit())
+			{
+				frameEvent.delta = delta;
+				frameEvent.systemCount = systemCount;
+				frameEvent.entityCount = entityCount;
+				frameEvent.componentCount = componentCount;
+				frameEvent.commit();
+			}
+		}
+	}
+	
+	public Object beginSystemUpdate(System system)
+	{
+		SystemUpdateEvent event = null;
+		
+		if (systemUpdateProbe.isEnabled())
+		{
+			event = new SystemUpdateEvent();
+			event.systemId = system.getId();
+			event.systemClass = system.getClass();
+			event.begin();
+		}
+		
+		return event;
+	}
+	
+	public void commitSystemUpdate(Object event)
+	{
+		if (event != null)
+		{
+			SystemUpdateEvent systemUpdateEvent = (SystemUpdateEvent) event;
+			systemUpdateEvent.commit();
+		}
+	}
+	
+	public Object beginStructuralChange()
+	{
+		StructuralChangeEvent event = null;
+		
+		if (structuralChangeProbe.isEnabled())
+		{
+			event = new StructuralChangeEvent();
+			event.begin();
+		}
+		
+		return event;
+	}
+	
+	public void commitStructuralChange(Object event, String operation, int entityCount, int componentCount)
+	{
+		if (event != null)
+		{
+			StructuralChangeEvent structuralChangeEvent = (StructuralChangeEvent) event;
+			structuralChangeEvent.end();
+			
+			if (structuralChangeEvent.shouldCommit())
+			{
+				structuralChangeEvent.operation = operation;
+				structuralChangeEvent.entityCount = entityCount;
+				structuralChangeEvent.componentCount = componentCount;
+				structuralChangeEvent.commit();
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.jfr.impl.test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.jfr.FlightRecorderEvents;
+import es.molabs.ecs.test.entity.TestAssemblage;
+import es.molabs.ecs.test.entity.TestSystem;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FlightRecorderEventsTest 
+{
+	private final static float DELTA = 0.16f;
+	
+	@Test
+	public void testEvents() throws Throwable
+	{
+		// Checks that the events of this library have been loaded by the entity manager
+		Assert.assertTrue(FlightRecorderEvents.getInstance().isSupported());
+		
+		File file = File.createTempFile("entity-manager", ".jfr");
+		
+		// Starts a recording with the events of the entity manager
+		Recording recording = new Recording();
+		recording.enable("es.molabs.ecs.Frame");
+		recording.enable("es.molabs.ecs.SystemUpdate");
+		recording.enable("es.molabs.ecs.StructuralChange");
+		recording.start();
+		
+		// Creates the manager with a system and an entity
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		entityManager.registerSystem(new TestSystem(false));
+		int entityId = entityManager.registerEntity(new TestAssemblage(1, 5)).getId();
+		
+		// Calls update twice
+		entityManager.update(DELTA);
+		entityManager.update(DELTA);
+		
+		// Unregisters the entity and destroys the manager
+		entityManager.unregisterEntity(entityId);
+		entityManager.destroy();
+		
+		// Stops the recording
+		recording.stop();
+		recording.dump(file.toPath());
+		recording.close();
+		
+		// Counts the events by name
+		Map<String, Integer> countMap = new HashMap<String, Integer>();
+		List<RecordedEvent> eventList = RecordingFile.readAllEvents(file.toPath());
+		for (int i=0; i<eventList.size(); i++)
+		{
+			String name = eventList.get(i).getEventType().getName();
+			
+			countMap.put(name, (countMap.containsKey(name) ? countMap.get(name) : 0) + 1);
+		}
+		
+		file.delete();
+		
+		// Checks that the events have been emitted
+		Assert.assertEquals(Integer.valueOf(2), countMap.get("es.molabs.ecs.Frame"));
+		Assert.assertEquals(Integer.valueOf(2), countMap.get("es.molabs.ecs.SystemUpdate"));
+		Assert.assertEquals(Integer.valueOf(3), countMap.get("es.molabs.ecs.StructuralChange"));
+	}
+}
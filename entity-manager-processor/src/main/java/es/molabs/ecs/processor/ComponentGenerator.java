@@ -0,0 +1,312 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+
+/**
+ * Writes the sources of the classes generated for a component.
+ */
+class ComponentGenerator 
+{
+	static final String POOL = "Pool";
+	static final String MAPPER = "Mapper";
+	static final String COPIER = "Copier";
+	static final String SERIALIZER = "Serializer";
+	
+	private final Filer filer;
+	
+	ComponentGenerator(Filer filer)
+	{
+		this.filer = filer;
+	}
+	
+	void generate(ComponentModel model, Element element) throws IOException
+	{
+		write(model, POOL, createPool(model), element);
+		write(model, MAPPER, createMapper(model), element);
+		write(model, COPIER, createCopier(model), element);
+		
+		if (model.isSerializer())
+		{
+			write(model, SERIALIZER, createSerializer(model), element);
+		}
+	}
+	
+	private String createPool(ComponentModel model)
+	{
+		String type = model.getTypeName();
+		String name = model.getName(POOL);
+		String copier = model.getName(COPIER);
+		
+		StringBuilder source = createHeader(model);
+		source.append("/**\n");
+		source.append(" * Pool of reusable instances of {@link ").append(type).append("}, reset when they are freed.\n");
+		source.append(" */\n");
+		source.append("public final class ").append(name).append("\n");
+		source.append("{\n");
+		source.append("\tprivate ").append(type).append("[] free;\n");
+		source.append("\tprivate int size;\n");
+		source.append("\t\n");
+		source.append("\tpublic ").append(name).append("()\n");
+		source.append("\t{\n");
+		source.append("\t\tthis(16);\n");
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic ").append(name).append("(int capacity)\n");
+		source.append("\t{\n");
+		source.append("\t\tfree = new ").append(type).append("[Math.max(1, capacity)];\n");
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic ").append(type).append(" obtain()\n");
+		source.append("\t{\n");
+		source.append("\t\tif (size == 0)\n");
+		source.append("\t\t{\n");
+		source.append("\t\t\treturn new ").append(type).append("();\n");
+		source.append("\t\t}\n");
+		source.append("\t\t\n");
+		source.append("\t\t").append(type).append(" component = free[--size];\n");
+		source.append("\t\tfree[size] = null;\n");
+		source.append("\t\t\n");
+		source.append("\t\treturn component;\n");
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic void free(").append(type).append(" component)\n");
+		source.append("\t{\n");
+		source.append("\t\t").append(copier).append(".reset(component);\n");
+		source.append("\t\t\n");
+		source.append("\t\tif (size == free.length)\n");
+		source.append("\t\t{\n");
+		source.append("\t\t\tfree = java.util.Arrays.copyOf(free, size * 2);\n");
+		source.append("\t\t}\n");
+		source.append("\t\t\n");
+		source.append("\t\tfree[size++] = component;\n");
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic int size()\n");
+		source.append("\t{\n");
+		source.append("\t\treturn size;\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		
+		return source.toString();
+	}
+	
+	private String createMapper(ComponentModel model)
+	{
+		String type = model.getTypeName();
+		String name = model.getName(MAPPER);
+		
+		StringBuilder source = createHeader(model);
+		source.append("/**\n");
+		source.append(" * Finds the {@link ").append(type).append("} of an entity with a single array access, \n");
+		source.append(" * backed by the {@link es.molabs.ecs.ComponentMapper} of the manager.\n");
+		source.append(" */\n");
+		source.append("public final class ").append(name).append("\n");
+		source.append("{\n");
+		source.append("\tprivate final es.molabs.ecs.ComponentMapper<").append(type).append("> mapper;\n");
+		source.append("\t\n");
+		source.append("\tpublic ").append(name).append("(es.molabs.ecs.EntityManager entityManager)\n");
+		source.append("\t{\n");
+		source.append("\t\tmapper = entityManager.getMapper(").append(type).append(".class);\n");
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic ").append(type).append(" get(int entityId)\n");
+		source.append("\t{\n");
+		source.append("\t\treturn mapper.get(entityId);\n");
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic boolean has(int entityId)\n");
+		source.append("\t{\n");
+		source.append("\t\treturn mapper.has(entityId);\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		
+		return source.toString();
+	}
+	
+	private String createCopier(ComponentModel model)
+	{
+		String type = model.getTypeName();
+		String name = model.getName(COPIER);
+		List<FieldModel> fieldList = model.getFieldList();
+		
+		StringBuilder source = createHeader(model);
+		source.append("/**\n");
+		source.append(" * Copies the fields of {@link ").append(type).append("}, to reset pooled instances and clone prototypes.\n");
+		source.append(" */\n");
+		source.append("public final class ").append(name).append("\n");
+		source.append("{\n");
+		source.append("\tprivate static final ").append(type).append(" DEFAULTS = new ").append(type).append("();\n");
+		source.append("\t\n");
+		source.append("\tprivate ").append(name).append("()\n");
+		source.append("\t{\n");
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic static void copy(").append(type).append(" from, ").append(type).append(" to)\n");
+		source.append("\t{\n");
+		for (int i=0; i<fieldList.size(); i++)
+		{
+			FieldModel field = fieldList.get(i);
+			
+			source.append("\t\t").append(field.write("to", field.read("from"))).append("\n");
+		}
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic static void reset(").append(type).append(" component)\n");
+		source.append("\t{\n");
+		source.append("\t\tcopy(DEFAULTS, component);\n");
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic static ").append(type).append(" clone(").append(type).append(" prototype)\n");
+		source.append("\t{\n");
+		source.append("\t\t").append(type).append(" component = new ").append(type).append("();\n");
+		source.append("\t\tcopy(prototype, component);\n");
+		source.append("\t\t\n");
+		source.append("\t\treturn component;\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		
+		return source.toString();
+	}
+	
+	private String createSerializer(ComponentModel model)
+	{
+		String type = model.getTypeName();
+		String name = model.getName(SERIALIZER);
+		List<FieldModel> fieldList = model.getFieldList();
+		
+		StringBuilder source = createHeader(model);
+		source.append("/**\n");
+		source.append(" * Writes and reads the fields of {@link ").append(type).append("}, in the order they are declared.\n");
+		source.append(" */\n");
+		source.append("public final class ").append(name).append("\n");
+		source.append("{\n");
+		source.append("\tprivate ").append(name).append("()\n");
+		source.append("\t{\n");
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic static void write(").append(type).append(" component, java.io.DataOutput output) throws java.io.IOException\n");
+		source.append("\t{\n");
+		for (int i=0; i<fieldList.size(); i++)
+		{
+			FieldModel field = fieldList.get(i);
+			String value = field.read("component");
+			
+			switch (field.getKind())
+			{
+				case STRING:
+				{
+					source.append("\t\toutput.writeBoolean(").append(value).append(" != null);\n");
+					source.append("\t\tif (").append(value).append(" != null) output.writeUTF(").append(value).append(");\n");
+					break;
+				}
+				
+				case ENUM:
+				{
+					source.append("\t\toutput.writeBoolean(").append(value).append(" != null);\n");
+					source.append("\t\tif (").append(value).append(" != null) output.writeUTF(").append(value).append(".name());\n");
+					break;
+				}
+				
+				default:
+				{
+					source.append("\t\toutput.write").append(field.getKind().getMethod()).append("(").append(value).append(");\n");
+					break;
+				}
+			}
+		}
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic static void read(java.io.DataInput input, ").append(type).append(" component) throws java.io.IOException\n");
+		source.append("\t{\n");
+		for (int i=0; i<fieldList.size(); i++)
+		{
+			FieldModel field = fieldList.get(i);
+			String value = null;
+			
+			switch (field.getKind())
+			{
+				case STRING:
+				{
+					value = "(input.readBoolean() ? input.readUTF() : null)";
+					break;
+				}
+				
+				case ENUM:
+				{
+					value = "(input.readBoolean() ? " + field.getType() + ".valueOf(input.readUTF()) : null)";
+					break;
+				}
+				
+				default:
+				{
+					value = "input.read" + field.getKind().getMethod() + "()";
+					break;
+				}
+			}
+			
+			source.append("\t\t").append(field.write("component", value)).append("\n");
+		}
+		source.append("\t}\n");
+		source.append("\t\n");
+		source.append("\tpublic static ").append(type).append(" read(java.io.DataInput input) throws java.io.IOException\n");
+		source.append("\t{\n");
+		source.append("\t\t").append(type).append(" component = new ").append(type).append("();\n");
+		source.append("\t\tread(input, component);\n");
+		source.append("\t\t\n");
+		source.append("\t\treturn component;\n");
+		source.append("\t}\n");
+		source.append("}\n");
+		
+		return source.toString();
+	}
+	
+	private StringBuilder createHeader(ComponentModel model)
+	{
+		StringBuilder source = new StringBuilder();
+		
+		if (!model.getPackageName().isEmpty())
+		{
+			source.append("package ").append(model.getPackageName()).append(";\n");
+			source.append("\n");
+		}
+		
+		source.append("// Generated by ").append(ComponentProcessor.class.getName()).append(", do not edit.\n");
+		source.append("\n");
+		
+		return source;
+	}
+	
+	private void write(ComponentModel model, String suffix, String source, Element element) throws IOException
+	{
+		Writer writer = filer.createSourceFile(model.getQualifiedName(suffix), element).openWriter();
+		
+		try
+		{
+			writer.write(source);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+}
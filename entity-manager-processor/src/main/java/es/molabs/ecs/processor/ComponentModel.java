@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.processor;
+
+import java.util.List;
+
+/**
+ * Component annotated to generate its classes.
+ */
+class ComponentModel 
+{
+	private final String packageName;
+	private final String typeName;
+	private final String prefix;
+	private final List<FieldModel> fieldList;
+	private final boolean serializer;
+	
+	/**
+	 * @param packageName package of the component, empty for the default package.
+	 * @param typeName canonical name of the component.
+	 * @param prefix of the simple names of the generated classes.
+	 * @param fieldList fields of the component.
+	 * @param serializer if the serializer is generated.
+	 */
+	ComponentModel(String packageName, String typeName, String prefix, List<FieldModel> fieldList, boolean serializer)
+	{
+		this.packageName = packageName;
+		this.typeName = typeName;
+		this.prefix = prefix;
+		this.fieldList = fieldList;
+		this.serializer = serializer;
+	}
+	
+	String getPackageName()
+	{
+		return packageName;
+	}
+	
+	String getTypeName()
+	{
+		return typeName;
+	}
+	
+	List<FieldModel> getFieldList()
+	{
+		return fieldList;
+	}
+	
+	boolean isSerializer()
+	{
+		return serializer;
+	}
+	
+	/**
+	 * Returns the simple name of a generated class.
+	 * 
+	 * @param suffix of the class.
+	 * 
+	 * @return the simple name.
+	 */
+	String getName(String suffix)
+	{
+		return prefix + suffix;
+	}
+	
+	/**
+	 * Returns the qualified name of a generated class.
+	 * 
+	 * @param suffix of the class.
+	 * 
+	 * @return the qualified name.
+	 */
+	String getQualifiedName(String suffix)
+	{
+		return (packageName.isEmpty() ? getName(suffix) : packageName + "." + getName(suffix));
+	}
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.processor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the pool, mapper, copier and serializer of the components annotated with 
+ * <code>es.molabs.ecs.annotation.GenerateAccessors</code>, so they can be used without reflection or map lookups.
+ */
+@SupportedAnnotationTypes(ComponentProcessor.ANNOTATION)
+public class ComponentProcessor extends AbstractProcessor
+{
+	static final String ANNOTATION = "es.molabs.ecs.annotation.GenerateAccessors";
+	
+	private static final String COMPONENT = "es.molabs.ecs.Component";
+	
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+	
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment)
+	{
+		TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+		
+		// If the library is not in the classpath there is nothing to do
+		if (annotation != null)
+		{
+			ComponentGenerator generator = new ComponentGenerator(processingEnv.getFiler());
+			
+			Iterator<? extends Element> iterator = roundEnvironment.getElementsAnnotatedWith(annotation).iterator();
+			while (iterator.hasNext())
+			{
+				Element element = iterator.next();
+				ComponentModel model = createModel(element);
+				
+				if (model != null)
+				{
+					try
+					{
+						generator.generate(model, element);
+					}
+					catch (IOException ioe)
+					{
+						error(element, "Could not generate the classes of the component: " + ioe.getMessage());
+					}
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	private ComponentModel createModel(Element element)
+	{
+		Elements elements = processingEnv.getElementUtils();
+		Types types = processingEnv.getTypeUtils();
+		
+		if (element.getKind() != ElementKind.CLASS)
+		{
+			return error(element, "Only classes can generate accessors.");
+		}
+		
+		TypeElement type = (TypeElement) element;
+		
+		if (type.getModifiers().contains(Modifier.ABSTRACT) || type.getModifiers().contains(Modifier.PRIVATE))
+		{
+			return error(element, "Component cannot be abstract or private.");
+		}
+		
+		if (!type.getTypeParameters().isEmpty())
+		{
+			return error(element, "Component cannot be generic.");
+		}
+		
+		if (type.getEnclosingElement().getKind() != ElementKind.PACKAGE && !type.getModifiers().contains(Modifier.STATIC))
+		{
+			return error(element, "Nested component must be static.");
+		}
+		
+		TypeElement component = elements.getTypeElement(COMPONENT);
+		
+		if (component == null || !types.isAssignable(type.asType(), component.asType()))
+		{
+			return error(element, "Class does not implement " + COMPONENT + ".");
+		}
+		
+		if (!hasDefaultConstructor(type))
+		{
+			return error(element, "Component needs a constructor without arguments that is not private.");
+		}
+		
+		boolean serializer = isSerializer(element);
+		List<FieldModel> fieldList = new ArrayList<FieldModel>();
+		
+		Iterator<VariableElement> iterator = ElementFilter.fieldsIn(type.getEnclosedElements()).iterator();
+		while (iterator.hasNext())
+		{
+			VariableElement field = iterator.next();
+			Set<Modifier> modifiers = field.getModifiers();
+			
+			// Ignores the fields that are not part of the state of the instance
+			if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT) || modifiers.contains(Modifier.FINAL))
+			{
+				continue;
+			}
+			
+			String name = field.getSimpleName().toString();
+			String getter = null;
+			String setter = null;
+			
+			if (modifiers.contains(Modifier.PRIVATE))
+			{
+				String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+				
+				getter = findMethod(type, (field.asType().getKind() == TypeKind.BOOLEAN ? "is" : "get") + suffix, null);
+				setter = findMethod(type, "set" + suffix, field.asType());
+				
+				if (getter == null || setter == null)
+				{
+					return error(field, "Private field needs a getter and a setter that are not private.");
+				}
+			}
+			
+			FieldKind kind = getKind(field.asType());
+			
+			if (serializer && kind == null)
+			{
+				return error(field, "Field cannot be serialized, only primitives, strings and enums are supported.");
+			}
+			
+			fieldList.add(new FieldModel(name, types.erasure(field.asType()).toString(), kind, getter, setter));
+		}
+		
+		return new ComponentModel(elements.getPackageOf(type).getQualifiedName().toString(), type.getQualifiedName().toString(), getPrefix(type), fieldList, serializer);
+	}
+	
+	private boolean hasDefaultConstructor(TypeElement type)
+	{
+		Iterator<ExecutableElement> iterator = ElementFilter.constructorsIn(type.getEnclosedElements()).iterator();
+		while (iterator.hasNext())
+		{
+			ExecutableElement constructor = iterator.next();
+			
+			if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private boolean isSerializer(Element element)
+	{
+		Iterator<? extends AnnotationMirror> iterator = element.getAnnotationMirrors().iterator();
+		while (iterator.hasNext())
+		{
+			AnnotationMirror mirror = iterator.next();
+			
+			if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION))
+			{
+				Iterator<? extends Map.Entry<? extends ExecutableElement, ? extends AnnotationValue>> valueIterator = processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet().iterator();
+				while (valueIterator.hasNext())
+				{
+					Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry = valueIterator.next();
+					
+					if (entry.getKey().getSimpleName().contentEquals("serializer"))
+					{
+						return (Boolean) entry.getValue().getValue();
+					}
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the name of a method of the type that is not private nor static.
+	 * 
+	 * @param type that declares the method.
+	 * @param name of the method.
+	 * @param parameter type of the only parameter, or null if it has no parameters.
+	 * 
+	 * @return the name or null if it does not exist.
+	 */
+	private String findMethod(TypeElement type, String name, TypeMirror parameter)
+	{
+		Types types = processingEnv.getTypeUtils();
+		
+		Iterator<ExecutableElement> iterator = ElementFilter.methodsIn(type.getEnclosedElements()).iterator();
+		while (iterator.hasNext())
+		{
+			ExecutableElement method = iterator.next();
+			
+			if (method.getSimpleName().contentEquals(name) && !method.getModifiers().contains(Modifier.PRIVATE) && !method.getModifiers().contains(Modifier.STATIC))
+			{
+				if (parameter == null ? method.getParameters().isEmpty() : method.getParameters().size() == 1 && types.isSameType(method.getParameters().get(0).asType(), parameter))
+				{
+					return name;
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	private FieldKind getKind(TypeMirror type)
+	{
+		FieldKind kind = null;
+		
+		switch (type.getKind())
+		{
+			case BOOLEAN: kind = FieldKind.BOOLEAN; break;
+			case BYTE: kind = FieldKind.BYTE; break;
+			case SHORT: kind = FieldKind.SHORT; break;
+			case CHAR: kind = FieldKind.CHAR; break;
+			case INT: kind = FieldKind.INT; break;
+			case LONG: kind = FieldKind.LONG; break;
+			case FLOAT: kind = FieldKind.FLOAT; break;
+			case DOUBLE: kind = FieldKind.DOUBLE; break;
+			
+			case DECLARED:
+			{
+				Element element = ((DeclaredType) type).asElement();
+				
+				if (element.getKind() == ElementKind.ENUM)
+				{
+					kind = FieldKind.ENUM;
+				}
+				else if (((TypeElement) element).getQualifiedName().contentEquals(String.class.getName()))
+				{
+					kind = FieldKind.STRING;
+				}
+				
+				break;
+			}
+			
+			default: break;
+		}
+		
+		return kind;
+	}
+	
+	/**
+	 * Returns the prefix of the generated classes, the simple names of the enclosing classes and the component joined by '_'.
+	 */
+	private String getPrefix(TypeElement type)
+	{
+		String prefix = type.getSimpleName().toString();
+		Element enclosing = type.getEnclosingElement();
+		
+		while (enclosing.getKind() != ElementKind.PACKAGE)
+		{
+			prefix = enclosing.getSimpleName() + "_" + prefix;
+			enclosing = enclosing.getEnclosingElement();
+		}
+		
+		return prefix;
+	}
+	
+	private ComponentModel error(Element element, String message)
+	{
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+		
+		return null;
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.processor;
+
+/**
+ * How a field is written and read by the generated serializer.
+ */
+enum FieldKind 
+{
+	BOOLEAN("Boolean"),
+	BYTE("Byte"),
+	SHORT("Short"),
+	CHAR("Char"),
+	INT("Int"),
+	LONG("Long"),
+	FLOAT("Float"),
+	DOUBLE("Double"),
+	STRING(null),
+	ENUM(null);
+	
+	private final String method;
+	
+	private FieldKind(String method)
+	{
+		this.method = method;
+	}
+	
+	/**
+	 * Returns the suffix of the methods of DataInput and DataOutput for primitives.
+	 * 
+	 * @return the suffix or null if it is not a primitive.
+	 */
+	String getMethod()
+	{
+		return method;
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.processor;
+
+/**
+ * Field of a component handled by the generated classes.
+ */
+class FieldModel 
+{
+	private final String name;
+	private final String type;
+	private final FieldKind kind;
+	private final String getter;
+	private final String setter;
+	
+	/**
+	 * @param name of the field.
+	 * @param type canonical name of the type of the field.
+	 * @param kind of the field for serialization, or null if it cannot be serialized.
+	 * @param getter name of the getter or null if the field is accessed directly.
+	 * @param setter name of the setter or null if the field is accessed directly.
+	 */
+	FieldModel(String name, String type, FieldKind kind, String getter, String setter)
+	{
+		this.name = name;
+		this.type = type;
+		this.kind = kind;
+		this.getter = getter;
+		this.setter = setter;
+	}
+	
+	String getName()
+	{
+		return name;
+	}
+	
+	String getType()
+	{
+		return type;
+	}
+	
+	FieldKind getKind()
+	{
+		return kind;
+	}
+	
+	/**
+	 * Returns the expression that reads the field.
+	 * 
+	 * @param instance name of the variable with the component.
+	 * 
+	 * @return the expression.
+	 */
+	String read(String instance)
+	{
+		return (getter != null ? instance + "." + getter + "()" : instance + "." + name);
+	}
+	
+	/**
+	 * Returns the statement that writes the field.
+	 * 
+	 * @param instance name of the variable with the component.
+	 * @param value expression with the value.
+	 * 
+	 * @return the statement.
+	 */
+	String write(String instance, String value)
+	{
+		return (setter != null ? instance + "." + setter + "(" + value + ");" : instance + "." + name + " = " + value + ";");
+	}
+}
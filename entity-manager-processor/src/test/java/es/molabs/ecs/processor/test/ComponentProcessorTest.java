@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.processor.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.base.AbstractEntity;
+import es.molabs.ecs.processor.ComponentProcessor;
+
+public class ComponentProcessorTest 
+{
+	private final static String COMPONENT = 
+		"package sample;\n" +
+		"\n" +
+		"@es.molabs.ecs.annotation.GenerateAccessors\n" +
+		"public class HealthComponent extends es.molabs.ecs.base.AbstractComponent\n" +
+		"{\n" +
+		"	public enum State { ALIVE, DEAD }\n" +
+		"	\n" +
+		"	public static int COUNT;\n" +
+		"	public transient int cache;\n" +
+		"	\n" +
+		"	public int current = 10;\n" +
+		"	public float regeneration;\n" +
+		"	public String name;\n" +
+		"	public State state = State.ALIVE;\n" +
+		"	private boolean visible = true;\n" +
+		"	\n" +
+		"	public boolean isVisible() { return visible; }\n" +
+		"	public void setVisible(boolean visible) { this.visible = visible; }\n" +
+		"}\n";
+	
+	private File outputDirectory = null;
+	private DiagnosticCollector<JavaFileObject> diagnostics = null;
+	
+	@Before
+	public void setUp() throws Throwable
+	{
+		outputDirectory = Files.createTempDirectory("processor").toFile();
+		diagnostics = new DiagnosticCollector<JavaFileObject>();
+	}
+	
+	@After
+	public void tearDown() throws Throwable
+	{
+		delete(outputDirectory);
+	}
+	
+	@Test
+	public void testGeneratedClasses() throws Throwable
+	{
+		Assert.assertTrue(diagnostics.getDiagnostics().toString(), compile("sample.HealthComponent", COMPONENT));
+		
+		URLClassLoader classLoader = new URLClassLoader(new URL[] {outputDirectory.toURI().toURL()}, getClass().getClassLoader());
+		
+		try
+		{
+			Class<?> componentClass = classLoader.loadClass("sample.HealthComponent");
+			Class<?> poolClass = classLoader.loadClass("sample.HealthComponentPool");
+			Class<?> mapperClass = classLoader.loadClass("sample.HealthComponentMapper");
+			Class<?> copierClass = classLoader.loadClass("sample.HealthComponentCopier");
+			Class<?> serializerClass = classLoader.loadClass("sample.HealthComponentSerializer");
+			
+			// Changes every field
+			Object component = componentClass.getDeclaredConstructor().newInstance();
+			componentClass.getField("current").setInt(component, 3);
+			componentClass.getField("regeneration").setFloat(component, 0.5f);
+			componentClass.getField("name").set(component, "orc");
+			componentClass.getField("state").set(component, componentClass.getField("state").getType().getEnumConstants()[1]);
+			componentClass.getMethod("setVisible", boolean.class).invoke(component, false);
+			componentClass.getField("cache").setInt(component, 7);
+			
+			// Clones it and checks that the transient field is not copied
+			Object clone = copierClass.getMethod("clone", componentClass).invoke(null, component);
+			assertFields(componentClass, clone, 3, 0.5f, "orc", 1, false);
+			Assert.assertEquals(0, componentClass.getField("cache").getInt(clone));
+			
+			// Writes and reads it
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			serializerClass.getMethod("write", componentClass, DataOutput.class).invoke(null, component, new DataOutputStream(bytes));
+			Object read = serializerClass.getMethod("read", DataInput.class).invoke(null, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+			assertFields(componentClass, read, 3, 0.5f, "orc", 1, false);
+			
+			// Frees it to the pool and checks that it is reset and reused
+			Object pool = poolClass.getDeclaredConstructor().newInstance();
+			poolClass.getMethod("free", componentClass).invoke(pool, component);
+			Assert.assertEquals(1, poolClass.getMethod("size").invoke(pool));
+			Assert.assertSame(component, poolClass.getMethod("obtain").invoke(pool));
+			assertFields(componentClass, component, 10, 0f, null, 0, true);
+			
+			// Creates the mapper after the component and checks that it follows the components
+			EntityManager entityManager = new EntityManager();
+			entityManager.init();
+			
+			int entityId = entityManager.registerEntity(new SampleEntity()).getId();
+			entityManager.registerComponent(entityId, (Component) component);
+			
+			Object mapper = mapperClass.getConstructor(EntityManager.class).newInstance(entityManager);
+			Assert.assertSame(component, mapperClass.getMethod("get", int.class).invoke(mapper, entityId));
+			
+			entityManager.unregisterEntity(entityId);
+			Assert.assertEquals(false, mapperClass.getMethod("has", int.class).invoke(mapper, entityId));
+			
+			entityManager.destroy();
+		}
+		finally
+		{
+			classLoader.close();
+		}
+	}
+	
+	@Test
+	public void testSerializerDisabled() throws Throwable
+	{
+		String source = 
+			"package sample;\n" +
+			"\n" +
+			"@es.molabs.ecs.annotation.GenerateAccessors(serializer=false)\n" +
+			"public class ListComponent extends es.molabs.ecs.base.AbstractComponent\n" +
+			"{\n" +
+			"	public java.util.List<String> values;\n" +
+			"}\n";
+		
+		Assert.assertTrue(diagnostics.getDiagnostics().toString(), compile("sample.ListComponent", source));
+		Assert.assertTrue(new File(outputDirectory, "sample/ListComponentCopier.class").exists());
+		Assert.assertFalse(new File(outputDirectory, "sample/ListComponentSerializer.class").exists());
+	}
+	
+	@Test
+	public void testErrors() throws Throwable
+	{
+		String source = 
+			"package sample;\n" +
+			"\n" +
+			"@es.molabs.ecs.annotation.GenerateAccessors\n" +
+			"public class BrokenComponent extends es.molabs.ecs.base.AbstractComponent\n" +
+			"{\n" +
+			"	public BrokenComponent(int value) {}\n" +
+			"}\n";
+		
+		Assert.assertFalse(compile("sample.BrokenComponent", source));
+		assertError("constructor without arguments");
+		
+		source = 
+			"package sample;\n" +
+			"\n" +
+			"@es.molabs.ecs.annotation.GenerateAccessors\n" +
+			"public class HiddenComponent extends es.molabs.ecs.base.AbstractComponent\n" +
+			"{\n" +
+			"	private int value;\n" +
+			"}\n";
+		
+		Assert.assertFalse(compile("sample.HiddenComponent", source));
+		assertError("getter and a setter");
+		
+		source = 
+			"package sample;\n" +
+			"\n" +
+			"@es.molabs.ecs.annotation.GenerateAccessors\n" +
+			"public class ListComponent extends es.molabs.ecs.base.AbstractComponent\n" +
+			"{\n" +
+			"	public java.util.List<String> values;\n" +
+			"}\n";
+		
+		Assert.assertFalse(compile("sample.ListComponent", source));
+		assertError("cannot be serialized");
+	}
+	
+	private boolean compile(String className, final String source) throws Throwable
+	{
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		
+		JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE)
+		{
+			public CharSequence getCharContent(boolean ignoreEncodingErrors)
+			{
+				return source;
+			}
+		};
+		
+		JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, Arrays.asList("-d", outputDirectory.getPath(), "-classpath", java.lang.System.getProperty("java.class.path")), null, Collections.singletonList(file));
+		task.setProcessors(Collections.singletonList(new ComponentProcessor()));
+		
+		return task.call();
+	}
+	
+	private void assertError(String message)
+	{
+		boolean found = false;
+		
+		for (int i=0; i<diagnostics.getDiagnostics().size(); i++)
+		{
+			Diagnostic<? extends JavaFileObject> diagnostic = diagnostics.getDiagnostics().get(i);
+			
+			if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getMessage(null).contains(message))
+			{
+				found = true;
+			}
+		}
+		
+		Assert.assertTrue(diagnostics.getDiagnostics().toString(), found);
+	}
+	
+	private void assertFields(Class<?> componentClass, Object component, int current, float regeneration, String name, int state, boolean visible) throws Throwable
+	{
+		Assert.assertEquals(current, componentClass.getField("current").getInt(component));
+		Assert.assertEquals(regeneration, componentClass.getField("regeneration").getFloat(component), 0.0001f);
+		Assert.assertEquals(name, componentClass.getField("name").get(component));
+		Assert.assertEquals(state, ((Enum<?>) componentClass.getField("state").get(component)).ordinal());
+		Assert.assertEquals(visible, componentClass.getMethod("isVisible").invoke(component));
+	}
+	
+	private void delete(File file)
+	{
+		File[] files = file.listFiles();
+		
+		if (files != null)
+		{
+			for (int i=0; i<files.length; i++)
+			{
+				delete(files[i]);
+			}
+		}
+		
+		file.delete();
+	}
+	
+	public static class SampleEntity extends AbstractEntity
+	{
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs;
+
+/**
+ * System that limits the time it spends on each update.
+ * 
+ * @see EntityManager#getBudgetOverrun()
+ */
+public interface BudgetedSystem extends System
+{
+	/**
+	 * Returns the time in nanoseconds that this system is allowed to spend on each update.
+	 * 
+	 * @return the time in nanoseconds that this system is allowed to spend on each update.
+	 */
+	public long getBudget();
+	
+	/**
+	 * Returns the time in nanoseconds that the last update exceeded the budget.
+	 * 
+	 * @return the time in nanoseconds that the last update exceeded the budget, or 0 if it did not.
+	 */
+	public long getLastOverrun();
+	
+	/**
+	 * Returns the number of entities pending to be processed in the current pass.
+	 * 
+	 * @return the number of entities pending to be processed in the current pass.
+	 */
+	public int getLag();
+}
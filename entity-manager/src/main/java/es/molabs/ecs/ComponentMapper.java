@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Typed access to the components of a class, indexed by entity id.
+ * <p>
+ * Systems can obtain the mapper once from {@link EntityManager#getMapper(Class)} and then find the component of 
+ * an entity with a single array access, without boxing the id nor looking up any map. The mapper is kept up to 
+ * date by the manager while it is initialized. Only components of exactly that class are mapped.
+ *
+ * @param <C> type of the component.
+ */
+public final class ComponentMapper<C extends Component> 
+{
+	private final static int INITIAL_CAPACITY = 64;
+	
+	private final Class<C> componentClass;
+	
+	private volatile Component[] components;
+	private int size;
+	
+	ComponentMapper(Class<C> componentClass)
+	{
+		this.componentClass = componentClass;
+		
+		components = new Component[INITIAL_CAPACITY];
+	}
+	
+	public Class<C> getComponentClass()
+	{
+		return componentClass;
+	}
+	
+	/**
+	 * Returns the component of an entity.
+	 * 
+	 * @param entityId id of the entity.
+	 * 
+	 * @return the component or null if the entity does not have one.
+	 */
+	@SuppressWarnings("unchecked")
+	public C get(int entityId)
+	{
+		Component[] current = components;
+		
+		return (entityId >= 0 && entityId < current.length ? (C) current[entityId] : null);
+	}
+	
+	public boolean has(int entityId)
+	{
+		return get(entityId) != null;
+	}
+	
+	/**
+	 * Returns the number of entities with a component.
+	 * 
+	 * @return the number of entities.
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+	
+	synchronized void put(Component component)
+	{
+		int entityId = component.getEntityId();
+		Component[] current = components;
+		
+		if (entityId >= current.length)
+		{
+			current = Arrays.copyOf(current, Math.max(entityId + 1, current.length * 2));
+		}
+		
+		if (current[entityId] == null)
+		{
+			size++;
+		}
+		
+		current[entityId] = component;
+		components = current;
+	}
+	
+	synchronized void remove(Component component)
+	{
+		Integer entityId = component.getEntityId();
+		Component[] current = components;
+		
+		// Only if it is the one mapped, it could have been replaced
+		if (entityId != null && entityId < current.length && current[entityId] == component)
+		{
+			current[entityId] = null;
+			size--;
+		}
+	}
+	
+	/**
+	 * Returns the length of the array of components, that grows with the highest entity id mapped.
+	 * 
+	 * @return the length of the array.
+	 */
+	public int getCapacity()
+	{
+		return components.length;
+	}
+	
+	/**
+	 * Shrinks the array to the highest entity id mapped.
+	 */
+	synchronized void compact()
+	{
+		Component[] current = components;
+		int length = current.length;
+		
+		while (length > 0 && current[length - 1] == null)
+		{
+			length--;
+		}
+		
+		length = Math.max(INITIAL_CAPACITY, length);
+		
+		if (length < current.length)
+		{
+			components = Arrays.copyOf(current, length);
+		}
+	}
+	
+	synchronized void clear()
+	{
+		Arrays.fill(components, null);
+		size = 0;
+	}
+}
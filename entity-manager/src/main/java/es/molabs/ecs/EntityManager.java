@@ -15,33 +15,95 @@
  */
 package es.molabs.ecs;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import es.molabs.ecs.data.DataStore;
+import es.molabs.ecs.data.EntityKey;
+import es.molabs.ecs.index.ComponentIndex;
+import es.molabs.ecs.index.SortedIndex;
+import es.molabs.ecs.jfr.FlightRecorderEvents;
+import es.molabs.ecs.metrics.CompactionReport;
+import es.molabs.ecs.metrics.MemoryFootprint;
+import es.molabs.ecs.metrics.SystemProfiler;
+import es.molabs.ecs.query.Query;
+import es.molabs.ecs.query.SortedQuery;
+import es.molabs.ecs.snapshot.SnapshotPublisher;
+import es.molabs.ecs.snapshot.WorldSnapshot;
 import es.molabs.ecs.util.ComponentMap;
+import es.molabs.ecs.util.DisposalQueue;
+import es.molabs.ecs.util.EntityHierarchy;
+import es.molabs.ecs.util.IdBlockAllocator;
+import es.molabs.ecs.util.IngressQueue;
+import es.molabs.ecs.util.SystemScheduler;
+import es.molabs.ecs.util.TagMap;
 import es.molabs.eventbus.EventBus;
 
 public class EntityManager 
 {
 	private final Logger logger = LoggerFactory.getLogger(getClass());
+	private final FlightRecorderEvents flightRecorderEvents = FlightRecorderEvents.getInstance();
 	
 	private AtomicInteger ENTITY_ID_GENERATOR = null;
 	private AtomicInteger COMPONENT_ID_GENERATOR = null;
 	private AtomicInteger SYSTEM_ID_GENERATOR = null;
 	
+	private IdBlockAllocator entityIdAllocator = null;
+	private IdBlockAllocator componentIdAllocator = null;
+	
 	private Map<Integer, Entity> entityMap = null;
 	private ComponentMap componentMap = null;
 	private Map<Integer, System> systemMap = null;
+	private EntityHierarchy hierarchy = null;
+	private TagMap tagMap = null;
+	private Map<Class<?>, ResourceHandle<?>> resourceMap = null;
+	private SystemScheduler scheduler = null;
+	private TagMap dormantMap = null;
+	private Map<String, ComponentIndex<?, ?>> indexMap = null;
+	private List<SortedQuery<?>> sortedQueryList = null;
+	private Map<String, DataStore> dataStoreMap = null;
+	private Map<Class<?>, ComponentMapper<?>> mapperMap = null;
 	
 	private EventBus eventBus = null;
 	
+	private SnapshotPublisher snapshotPublisher = null;
+	private IngressQueue ingressQueue = null;
+	private SystemProfiler profiler = null;
+	private StorageCompactor compactor = null;
+	private DisposalQueue disposalQueue = null;
+	
 	private boolean initialized;
+	private boolean snapshotEnabled;
+	private boolean threadSafe;
+	private int ingressCapacity;
+	private int ingressDrainBudget = Integer.MAX_VALUE;
+	private volatile boolean profilingEnabled;
+	private volatile long budgetOverrun;
+	private boolean bulkTeardown;
+	private Executor disposalExecutor = null;
+	private boolean deferredDisposal;
+	private long disposalBudget = 1000000L;
+	private boolean incrementalCompaction;
+	private EntityKey compactionKey = null;
+	private int compactionInterval = StorageCompactor.DEFAULT_INTERVAL;
+	private double compactionThreshold = StorageCompactor.DEFAULT_THRESHOLD;
+	private int footprintInterval = 60;
+	private int footprintCountdown;
+	private volatile MemoryFootprint lastFootprint = null;
 	
 	public EntityManager()
 	{
@@ -55,12 +117,52 @@ public class EntityManager
 			COMPONENT_ID_GENERATOR = new AtomicInteger(1);
 			SYSTEM_ID_GENERATOR = new AtomicInteger(1);
 			
-			entityMap = new HashMap<Integer, Entity>();
-			componentMap = new ComponentMap();
-			systemMap = new HashMap<Integer, System>();
+			if (threadSafe)
+			{
+				entityIdAllocator = new IdBlockAllocator(ENTITY_ID_GENERATOR);
+				componentIdAllocator = new IdBlockAllocator(COMPONENT_ID_GENERATOR);
+				
+				entityMap = new ConcurrentHashMap<Integer, Entity>();
+				componentMap = new ComponentMap(true);
+				systemMap = new ConcurrentHashMap<Integer, System>();
+				resourceMap = new ConcurrentHashMap<Class<?>, ResourceHandle<?>>();
+				indexMap = new ConcurrentHashMap<String, ComponentIndex<?, ?>>();
+				sortedQueryList = new CopyOnWriteArrayList<SortedQuery<?>>();
+				dataStoreMap = new ConcurrentHashMap<String, DataStore>();
+				mapperMap = new ConcurrentHashMap<Class<?>, ComponentMapper<?>>();
+			}
+			else
+			{
+				entityMap = new HashMap<Integer, Entity>();
+				componentMap = new ComponentMap();
+				systemMap = new HashMap<Integer, System>();
+				resourceMap = new HashMap<Class<?>, ResourceHandle<?>>();
+				indexMap = new HashMap<String, ComponentIndex<?, ?>>();
+				sortedQueryList = new ArrayList<SortedQuery<?>>();
+				dataStoreMap = new HashMap<String, DataStore>();
+				mapperMap = new HashMap<Class<?>, ComponentMapper<?>>();
+			}
 			
+			hierarchy = new EntityHierarchy();
+			tagMap = new TagMap(threadSafe);
+			scheduler = new SystemScheduler();
+			dormantMap = new TagMap(threadSafe);
 			eventBus = new EventBus();
 			
+			snapshotPublisher = (snapshotEnabled ? new SnapshotPublisher() : null);
+			ingressQueue = (ingressCapacity > 0 ? new IngressQueue(ingressCapacity) : null);
+			profiler = new SystemProfiler();
+			
+			compactor = new StorageCompactor(componentMap, mapperMap, dataStoreMap);
+			compactor.setKey(compactionKey);
+			compactor.setInterval(compactionInterval);
+			compactor.setThreshold(compactionThreshold);
+			
+			disposalQueue = (deferredDisposal ? new DisposalQueue(disposalExecutor) : null);
+			
+			// The memory footprint is sampled at the end of the first update
+			footprintCountdown = 0;
+			
 			// Sets the manager as initialized
 			initialized = true;
 			
@@ -76,16 +178,82 @@ public class EntityManager
 	{
 		if (initialized)
 		{
+			Object event = flightRecorderEvents.beginStructuralChange();
+			int entityCount = entityMap.size();
+			int componentCount = componentMap.size();
+			
 			// Sets the manager as not initialized
 			initialized = false;
 			
-			destroyEntityMap();
-			destroyComponentMap();
+			if (bulkTeardown)
+			{
+				clearWorld();
+				
+				entityMap = null;
+				componentMap = null;
+			}
+			else
+			{
+				destroyEntityMap();
+				destroyComponentMap();
+			}
+			
 			destroySystemMap();			
 			
+			scheduler.clear();
+			scheduler = null;
+			
+			hierarchy.clear();
+			hierarchy = null;
+			
+			tagMap.clear();
+			tagMap = null;
+			
+			dormantMap.clear();
+			dormantMap = null;
+			
+			destroyIndexMap();
+			destroySortedQueryList();
+			destroyDataStoreMap();
+			compactor.clear();
+			compactor = null;
+			
+			destroyMapperMap();
+			
+			destroyResourceMap();
+			
 			eventBus.clear();
 			eventBus = null;
 			
+			if (snapshotPublisher != null)
+			{
+				snapshotPublisher.clear();
+				snapshotPublisher = null;
+			}
+			
+			if (ingressQueue != null)
+			{
+				ingressQueue.clear();
+				ingressQueue = null;
+			}
+			
+			profiler.clear();
+			profiler = null;
+			
+			lastFootprint = null;
+			
+			// Disposes what is still waiting if the queue is drained by this thread
+			if (disposalQueue != null)
+			{
+				disposalQueue.drainAll();
+				disposalQueue = null;
+			}
+			
+			flightRecorderEvents.commitStructuralChange(event, "destroy", entityCount, componentCount);
+			
+			entityIdAllocator = null;
+			componentIdAllocator = null;
+			
 			ENTITY_ID_GENERATOR = null;
 			COMPONENT_ID_GENERATOR = null;
 			SYSTEM_ID_GENERATOR = null;
@@ -98,6 +266,26 @@ public class EntityManager
 		}
 	}
 	
+	/**
+	 * Removes all the entities and components keeping the systems, the resources and the capacity 
+	 * reserved by the manager, so the world can be filled again without initializing it.
+	 * <p>
+	 * Systems that implement {@link WorldClearListener} are notified once, the rest are notified of 
+	 * the removal of each component. Entities and components are disposed by the disposal executor if there is one.
+	 */
+	public void clear()
+	{
+		checkInitialized();
+		
+		Object event = flightRecorderEvents.beginStructuralChange();
+		int entityCount = entityMap.size();
+		int componentCount = componentMap.size();
+		
+		clearWorld();
+		
+		flightRecorderEvents.commitStructuralChange(event, "clear", entityCount, componentCount);
+	}
+	
 	public EventBus getEventBus()
 	{
 		return eventBus;
@@ -108,6 +296,229 @@ public class EntityManager
 		return initialized;
 	}	
 	
+	public boolean isBulkTeardown()
+	{
+		return bulkTeardown;
+	}
+	
+	/**
+	 * Sets if {@link #destroy()} removes the entities and components in one pass like {@link #clear()} 
+	 * instead of unregistering them one by one.
+	 * 
+	 * @param bulkTeardown if the entities and components are removed in one pass.
+	 */
+	public void setBulkTeardown(boolean bulkTeardown)
+	{
+		this.bulkTeardown = bulkTeardown;
+	}
+	
+	public Executor getDisposalExecutor()
+	{
+		return disposalExecutor;
+	}
+	
+	/**
+	 * Sets the executor that disposes the entities and components removed by a clear or a bulk teardown, 
+	 * or all the removed ones if the disposal is deferred, so heavy resources can be released out of 
+	 * the thread that updates the manager.
+	 * 
+	 * @param disposalExecutor that disposes the entities and components, or null to dispose them in the calling thread.
+	 */
+	public void setDisposalExecutor(Executor disposalExecutor)
+	{
+		this.disposalExecutor = disposalExecutor;
+	}
+	
+	public boolean isDeferredDisposal()
+	{
+		return deferredDisposal;
+	}
+	
+	/**
+	 * Sets if the entities and components are disposed after being removed from the world instead of at once. 
+	 * They are disposed by the disposal executor if there is one, or at the end of each update within the 
+	 * disposal budget otherwise. The components of an entity are always disposed before the entity, and an 
+	 * entity or component registered again before its disposal runs is not disposed.
+	 * <p>
+	 * Must be set before {@link #init()}.
+	 * 
+	 * @param deferredDisposal if the entities and components are disposed later.
+	 */
+	public void setDeferredDisposal(boolean deferredDisposal)
+	{
+		this.deferredDisposal = deferredDisposal;
+	}
+	
+	public long getDisposalBudget()
+	{
+		return disposalBudget;
+	}
+	
+	/**
+	 * Sets the time spent disposing the queued entities and components at the end of each update 
+	 * when the disposal is deferred and there is no disposal executor.
+	 * 
+	 * @param disposalBudget time in nanoseconds, or 0 to only dispose them with {@link #drainDisposals(long)}.
+	 */
+	public void setDisposalBudget(long disposalBudget)
+	{
+		if (disposalBudget < 0) throw new IllegalArgumentException("Disposal budget must not be negative.");
+		
+		this.disposalBudget = disposalBudget;
+	}
+	
+	/**
+	 * Disposes queued entities and components in the calling thread, for example in the idle time of a frame.
+	 * Does nothing if the disposal is not deferred or there is a disposal executor.
+	 * 
+	 * @param budgetNanos maximum time to spend.
+	 * 
+	 * @return the number of entities and components disposed.
+	 */
+	public int drainDisposals(long budgetNanos)
+	{
+		checkInitialized();
+		
+		return (disposalQueue != null ? disposalQueue.drain(budgetNanos) : 0);
+	}
+	
+	/**
+	 * Returns the number of removed entities and components that are waiting to be disposed.
+	 * 
+	 * @return the number of pending disposals.
+	 */
+	public int getPendingDisposalCount()
+	{
+		checkInitialized();
+		
+		return (disposalQueue != null ? disposalQueue.getPendingCount() : 0);
+	}
+	
+	public boolean isSnapshotEnabled()
+	{
+		return snapshotEnabled;
+	}
+	
+	/**
+	 * Sets if the manager publishes a {@link WorldSnapshot} at the end of each update. 
+	 * Takes effect the next time the manager is initialized.
+	 * 
+	 * @param snapshotEnabled if the manager publishes a snapshot at the end of each update.
+	 */
+	public void setSnapshotEnabled(boolean snapshotEnabled)
+	{
+		this.snapshotEnabled = snapshotEnabled;
+	}
+	
+	public boolean isThreadSafe()
+	{
+		return threadSafe;
+	}
+	
+	/**
+	 * Sets if entities, components and systems can be registered and unregistered from many threads at the same time. 
+	 * Systems are notified of added and removed components on the registering thread so they must be thread safe too. 
+	 * {@link #update(float)}, {@link #init()} and {@link #destroy()} must still be called from a single thread.
+	 * Takes effect the next time the manager is initialized.
+	 * 
+	 * @param threadSafe if the manager can be modified from many threads at the same time.
+	 */
+	public void setThreadSafe(boolean threadSafe)
+	{
+		this.threadSafe = threadSafe;
+	}
+	
+	public int getIngressCapacity()
+	{
+		return ingressCapacity;
+	}
+	
+	/**
+	 * Sets the capacity of the {@link IngressQueue} used to request changes from other threads. 
+	 * A capacity of 0 disables the queue. Takes effect the next time the manager is initialized.
+	 * 
+	 * @param ingressCapacity of the queue, rounded up to the next power of two.
+	 */
+	public void setIngressCapacity(int ingressCapacity)
+	{
+		this.ingressCapacity = ingressCapacity;
+	}
+	
+	public int getIngressDrainBudget()
+	{
+		return ingressDrainBudget;
+	}
+	
+	/**
+	 * Sets the maximum number of queued requests applied at the start of each update. 
+	 * The remaining requests stay in the queue for the next update.
+	 * 
+	 * @param ingressDrainBudget maximum number of queued requests applied at the start of each update.
+	 */
+	public void setIngressDrainBudget(int ingressDrainBudget)
+	{
+		if (ingressDrainBudget < 1) throw new IllegalArgumentException("Drain budget must be greater than 0.");
+		
+		this.ingressDrainBudget = ingressDrainBudget;
+	}
+	
+	/**
+	 * Returns the queue used to request changes from other threads.
+	 * 
+	 * @return the queue used to request changes from other threads or null if it is not enabled.
+	 */
+	public IngressQueue getIngressQueue()
+	{
+		return ingressQueue;
+	}
+	
+	public boolean isProfilingEnabled()
+	{
+		return profilingEnabled;
+	}
+	
+	/**
+	 * Sets if the time spent by each system is recorded in the {@link SystemProfiler}. Can be called from any thread.
+	 * 
+	 * @param profilingEnabled if the time spent by each system is recorded.
+	 */
+	public void setProfilingEnabled(boolean profilingEnabled)
+	{
+		this.profilingEnabled = profilingEnabled;
+	}
+	
+	/**
+	 * Returns the profiler with the time spent by each system.
+	 * 
+	 * @return the profiler with the time spent by each system or null if the manager is not initialized.
+	 */
+	public SystemProfiler getProfiler()
+	{
+		return profiler;
+	}
+	
+	/**
+	 * Returns the total time in nanoseconds that the budgeted systems exceeded their budgets in the last update.
+	 * 
+	 * @return the total time in nanoseconds that the budgeted systems exceeded their budgets in the last update.
+	 */
+	public long getBudgetOverrun()
+	{
+		return budgetOverrun;
+	}
+	
+	/**
+	 * Returns the last published snapshot of the world. Can be called from any thread.
+	 * 
+	 * @return the last published snapshot of the world or null if snapshots are not enabled.
+	 */
+	public WorldSnapshot getSnapshot()
+	{
+		SnapshotPublisher publisher = snapshotPublisher;
+		
+		return (publisher != null ? publisher.getSnapshot() : null);
+	}
+	
 	public Entity getEntity(int id)
 	{
 		return entityMap.get(id);
@@ -143,11 +554,195 @@ public class EntityManager
 		return componentMap.hasComponent(entityId, clazz);
 	}
 	
+	/**
+	 * Returns the mapper of the components of a class, creating it the first time with the components already registered.
+	 * In thread safe mode the components registered or removed from other threads while it is created are kept up to date.
+	 * 
+	 * @param clazz class of the components.
+	 * 
+	 * @return the mapper of the components.
+	 */
+	@SuppressWarnings("unchecked")
+	public<C extends Component> ComponentMapper<C> getMapper(Class<C> clazz)
+	{
+		checkInitialized();
+		
+		synchronized (mapperMap)
+		{
+			ComponentMapper<C> mapper = (ComponentMapper<C>) mapperMap.get(clazz);
+			
+			// If it does not exist
+			if (mapper == null)
+			{
+				mapper = new ComponentMapper<C>(clazz);
+				
+				BitSet entities = componentMap.getEntitiesByClass(clazz);
+				for (int entityId=entities.nextSetBit(0); entityId>=0; entityId=entities.nextSetBit(entityId+1))
+				{
+					C component = componentMap.getByClass(entityId, clazz);
+					
+					// Could have been removed from other thread after taking the entities
+					if (component != null)
+					{
+						mapper.put(component);
+					}
+				}
+				
+				mapperMap.put(clazz, mapper);
+			}
+			
+			return mapper;
+		}
+	}
+	
 	public int getComponentCount()
 	{
 		return componentMap.size();
 	}
 	
+	/**
+	 * Returns the estimated memory used by the entities, components and systems of this manager.
+	 * Must be called from the thread that updates the manager, other threads use {@link #getLastMemoryFootprint()}.
+	 * 
+	 * @return the estimated memory used by the entities, components and systems of this manager.
+	 */
+	public MemoryFootprint getMemoryFootprint()
+	{
+		checkInitialized();
+		
+		return MemoryFootprint.sample(entityMap.size(), componentMap, systemMap.values());
+	}
+	
+	/**
+	 * Returns the memory footprint sampled at the end of an update. Can be called from any thread.
+	 * 
+	 * @return the last sampled memory footprint or null if none has been sampled yet.
+	 */
+	public MemoryFootprint getLastMemoryFootprint()
+	{
+		return lastFootprint;
+	}
+	
+	public int getFootprintInterval()
+	{
+		return footprintInterval;
+	}
+	
+	/**
+	 * Sets the number of updates between the samples of the memory footprint returned by {@link #getLastMemoryFootprint()}.
+	 * 
+	 * @param footprintInterval number of updates, or 0 to stop sampling.
+	 */
+	public void setFootprintInterval(int footprintInterval)
+	{
+		if (footprintInterval < 0) throw new IllegalArgumentException("Interval must not be negative.");
+		
+		this.footprintInterval = footprintInterval;
+	}
+	
+	/**
+	 * Compacts all the storages of the manager: the maps of components are rebuilt for their size, the mappers 
+	 * shrink to the highest entity id and the data stores are reordered by the compaction key and shrink. 
+	 * Must be called between updates from the thread that updates the manager.
+	 * 
+	 * @return the occupancy and iteration time of each storage before and after.
+	 */
+	public CompactionReport compact()
+	{
+		checkInitialized();
+		
+		return compactor.compact();
+	}
+	
+	/**
+	 * Sets if the storages are compacted incrementally at the end of each update. Every compaction interval the 
+	 * storages below the compaction threshold that have changed since they were compacted are selected, and then 
+	 * a bounded amount of them is compacted each update. The iteration time is not measured.
+	 * 
+	 * @param incrementalCompaction if the storages are compacted incrementally.
+	 */
+	public void setIncrementalCompaction(boolean incrementalCompaction)
+	{
+		this.incrementalCompaction = incrementalCompaction;
+	}
+	
+	public boolean isIncrementalCompaction()
+	{
+		return incrementalCompaction;
+	}
+	
+	public int getCompactionInterval()
+	{
+		return compactionInterval;
+	}
+	
+	/**
+	 * Sets the number of updates between the checks for storages to compact incrementally.
+	 * 
+	 * @param compactionInterval number of updates.
+	 */
+	public void setCompactionInterval(int compactionInterval)
+	{
+		if (compactionInterval < 1) throw new IllegalArgumentException("Interval must be greater than 0.");
+		
+		this.compactionInterval = compactionInterval;
+		
+		if (compactor != null)
+		{
+			compactor.setInterval(compactionInterval);
+		}
+	}
+	
+	public double getCompactionThreshold()
+	{
+		return compactionThreshold;
+	}
+	
+	/**
+	 * Sets the occupancy below which a storage is compacted incrementally, the used elements divided by the 
+	 * reserved ones, or by the most held since the last compaction for the components.
+	 * 
+	 * @param compactionThreshold fraction between 0 and 1.
+	 */
+	public void setCompactionThreshold(double compactionThreshold)
+	{
+		if (compactionThreshold < 0 || compactionThreshold > 1) throw new IllegalArgumentException("Threshold must be between 0 and 1.");
+		
+		this.compactionThreshold = compactionThreshold;
+		
+		if (compactor != null)
+		{
+			compactor.setThreshold(compactionThreshold);
+		}
+	}
+	
+	/**
+	 * Sets the key the entities of the data stores are ordered by when compacted.
+	 * 
+	 * @param compactionKey of the entities, or null to group them by archetype.
+	 */
+	public void setCompactionKey(EntityKey compactionKey)
+	{
+		this.compactionKey = compactionKey;
+		
+		if (compactor != null)
+		{
+			compactor.setKey(compactionKey);
+		}
+	}
+	
+	/**
+	 * Returns the report of the last compaction pass that has finished, on demand or incremental.
+	 * 
+	 * @return the report or null if no pass has finished.
+	 */
+	public CompactionReport getLastCompactionReport()
+	{
+		checkInitialized();
+		
+		return compactor.getLastReport();
+	}
+	
 	public System getSystem(int id)
 	{
 		return systemMap.get(id);
@@ -181,19 +776,35 @@ public class EntityManager
 	
 	public Entity registerEntity(Assemblage assemblage)
 	{
-		return assemblage.createEntity(this);
+		Object event = flightRecorderEvents.beginStructuralChange();
+		
+		Entity entity = assemblage.createEntity(this);
+		
+		if (event != null)
+		{
+			Collection<Component> componentCollection = componentMap.getByEntityId(entity.getId());
+			
+			flightRecorderEvents.commitStructuralChange(event, "registerEntity", 1, (componentCollection != null ? componentCollection.size() : 0));
+		}
+		
+		return entity;
 	}
 	
 	public Entity registerEntity(Entity entity)
 	{
 		checkInitialized();
 		
-		int entityId = ENTITY_ID_GENERATOR.getAndIncrement();
+		int entityId = (entityIdAllocator != null ? entityIdAllocator.next() : ENTITY_ID_GENERATOR.getAndIncrement());
 		
 		entityMap.put(entityId, entity);
 		
 		entity.create(entityId, this);
 		
+		if (snapshotPublisher != null)
+		{
+			snapshotPublisher.entityChanged(entityId);
+		}
+		
 		return entity;
 	}
 	
@@ -201,13 +812,17 @@ public class EntityManager
 	{
 		checkInitialized();
 				
+		Object event = flightRecorderEvents.beginStructuralChange();
+		
 		// Removes the entity from the map
 		Entity entity = entityMap.remove(entityId);
 		
 		// If exists
 		if (entity != null)
 		{
-			unregisterEntity(entity);
+			int componentCount = unregisterEntity(entity);
+			
+			flightRecorderEvents.commitStructuralChange(event, "unregisterEntity", 1, componentCount);
 		}
 		else
 		{
@@ -215,91 +830,881 @@ public class EntityManager
 		}
 	}
 	
-	private void unregisterEntity(Entity entity)
+	/**
+	 * Removes an entity and its components from the world like {@link #unregisterEntity(int)} but without disposing them, 
+	 * so they can be registered again, for example in another manager. The systems are informed that the components 
+	 * have been removed. Its rows in the data stores are removed too, so they must be copied before if they are needed.
+	 * 
+	 * @param entityId id of the entity.
+	 * 
+	 * @return the entity or null if it does not exist.
+	 */
+	public Entity detachEntity(int entityId)
 	{
-		// Removes the components associated to this entity
-		Collection<Component> componentCollection = componentMap.removeByEntityId(entity.getId());
+		checkInitialized();
 		
-		// If there was any
-		if (componentCollection != null && !componentCollection.isEmpty())
+		Object event = flightRecorderEvents.beginStructuralChange();
+		
+		// Removes the entity from the map
+		Entity entity = entityMap.remove(entityId);
+		
+		// If exists
+		if (entity != null)
 		{
-			Iterator<Component> iterator = componentCollection.iterator();
-			while (iterator.hasNext())
-			{
-				Component component = iterator.next();
-				
-				unregisterComponent(component);
-			}
+			int componentCount = unregisterEntity(entity, false);
+			
+			flightRecorderEvents.commitStructuralChange(event, "detachEntity", 1, componentCount);
+		}
+		else
+		{
+			logger.warn("Entity not found [id={}].", entityId);
 		}
 		
-		// Disposes the entity
-		entity.dispose();		
+		return entity;
 	}
-
-	public void registerComponent(int entityId, Component component)
+	
+	/**
+	 * Registers many entities with their components as one structural change.
+	 * 
+	 * @param entities to register.
+	 * @param components of each entity, in the same order as the entities. Can be null.
+	 * 
+	 * @return the ids of the entities, in the same order.
+	 */
+	public int[] registerEntities(Entity[] entities, Component[][] components)
 	{
-		checkInitialized();		
+		checkInitialized();
 		
-		int componentId = COMPONENT_ID_GENERATOR.getAndIncrement();
+		if (components != null && components.length != entities.length) throw new IllegalArgumentException("There must be one array of components for each entity.");
 		
-		component.create(componentId, entityId, this);
+		Object event = flightRecorderEvents.beginStructuralChange();
 		
-		componentMap.put(component);		
+		int[] entityIds = new int[entities.length];
+		int componentCount = 0;
 		
-		// Inform the systems that a new component has been added
-		Iterator<System> iterator = systemMap.values().iterator();
-		while (iterator.hasNext())
+		for (int i=0; i<entities.length; i++)
 		{
-			iterator.next().componentAdded(component);
-		}						
+			entityIds[i] = registerEntity(entities[i]).getId();
+			
+			if (components != null && components[i] != null)
+			{
+				for (int j=0; j<components[i].length; j++)
+				{
+					registerComponent(entityIds[i], components[i][j]);
+				}
+				
+				componentCount += components[i].length;
+			}
+		}
+		
+		flightRecorderEvents.commitStructuralChange(event, "registerEntities", entities.length, componentCount);
+		
+		return entityIds;
 	}
 	
-	public void unregisterComponent(int componentId)
+	/**
+	 * Unregisters many entities as one structural change. Ids of entities that do not exist are ignored.
+	 * 
+	 * @param entityIds ids of the entities.
+	 * 
+	 * @return the number of unregistered entities.
+	 */
+	public int unregisterEntities(int[] entityIds)
 	{
-		checkInitialized();		
+		checkInitialized();
 		
-		// Removes the component from the map
-		Component component = componentMap.removeById(componentId);
-
-		// If exists
-		if (component != null)
+		Object event = flightRecorderEvents.beginStructuralChange();
+		
+		int entityCount = 0;
+		int componentCount = 0;
+		
+		for (int i=0; i<entityIds.length; i++)
+		{
+			Entity entity = entityMap.remove(entityIds[i]);
+			
+			// If exists
+			if (entity != null)
+			{
+				componentCount += unregisterEntity(entity);
+				entityCount++;
+			}
+		}
+		
+		flightRecorderEvents.commitStructuralChange(event, "unregisterEntities", entityCount, componentCount);
+		
+		return entityCount;
+	}
+	
+	/**
+	 * Unregisters an entity and all its descendants in one batch, children before their parents.
+	 * 
+	 * @param entityId id of the root of the subtree.
+	 */
+	public void unregisterEntityTree(int entityId)
+	{
+		checkInitialized();
+		
+		Object event = flightRecorderEvents.beginStructuralChange();
+		
+		if (entityMap.containsKey(entityId))
+		{
+			int[] subtree = hierarchy.getSubtree(entityId);
+			int componentCount = 0;
+			
+			for (int i=subtree.length-1; i>=0; i--)
+			{
+				Entity entity = entityMap.remove(subtree[i]);
+				
+				if (entity != null)
+				{
+					componentCount += unregisterEntity(entity);
+				}
+			}
+			
+			flightRecorderEvents.commitStructuralChange(event, "unregisterEntityTree", subtree.length, componentCount);
+		}
+		else
+		{
+			logger.warn("Entity not found [id={}].", entityId);
+		}
+	}
+	
+	private int unregisterEntity(Entity entity)
+	{
+		return unregisterEntity(entity, true);
+	}
+	
+	private int unregisterEntity(Entity entity, boolean dispose)
+	{
+		hierarchy.remove(entity.getId());
+		tagMap.clearEntity(entity.getId());
+		dormantMap.clear(entity.getId(), Dormant.class);
+		
+		if (snapshotPublisher != null)
+		{
+			snapshotPublisher.entityChanged(entity.getId());
+		}
+		
+		// Removes the plain data of the entity
+		if (!dataStoreMap.isEmpty())
+		{
+			Iterator<DataStore> dataStoreIterator = dataStoreMap.values().iterator();
+			while (dataStoreIterator.hasNext())
+			{
+				dataStoreIterator.next().remove(entity.getId());
+			}
+		}
+		
+		// Removes the components associated to this entity
+		Collection<Component> componentCollection = componentMap.removeByEntityId(entity.getId());
+		
+		// If there was any
+		if (componentCollection != null && !componentCollection.isEmpty())
+		{
+			Iterator<Component> iterator = componentCollection.iterator();
+			while (iterator.hasNext())
+			{
+				Component component = iterator.next();
+				
+				unregisterComponent(component, dispose);
+			}
+		}
+		
+		// Disposes the entity unless it is detached to be registered again
+		if (dispose)
+		{
+			if (disposalQueue != null)
+			{
+				disposalQueue.add(entity);
+			}
+			else
+			{
+				entity.dispose();
+			}
+		}
+		
+		return (componentCollection != null ? componentCollection.size() : 0);
+	}
+
+	/**
+	 * Sets the parent of an entity, replacing the previous one.
+	 * 
+	 * @param entityId id of the child entity.
+	 * @param parentId id of the parent entity.
+	 * 
+	 * @throws IllegalArgumentException if the parent is the entity itself or one of its descendants.
+	 */
+	public void setParent(int entityId, int parentId)
+	{
+		checkInitialized();
+		
+		if (entityMap.containsKey(entityId) && entityMap.containsKey(parentId))
+		{
+			hierarchy.setParent(entityId, parentId);
+		}
+		else
+		{
+			logger.warn("Entity not found [id={}, parentId={}].", entityId, parentId);
+		}
+	}
+	
+	public void removeParent(int entityId)
+	{
+		checkInitialized();
+		
+		hierarchy.removeParent(entityId);
+	}
+	
+	public Integer getParent(int entityId)
+	{
+		return hierarchy.getParent(entityId);
+	}
+	
+	public List<Integer> getChildren(int entityId)
+	{
+		return hierarchy.getChildren(entityId);
+	}
+	
+	public EntityHierarchy getHierarchy()
+	{
+		return hierarchy;
+	}
+
+	/**
+	 * Makes an entity dormant. Dormant entities are excluded from queries and systems 
+	 * that implement {@link ActivityListener} stop processing them until they are woken.
+	 * 
+	 * @param entityId id of the entity.
+	 */
+	public void sleep(int entityId)
+	{
+		checkInitialized();
+		
+		if (entityMap.containsKey(entityId))
+		{
+			if (dormantMap.set(entityId, Dormant.class))
+			{
+				// Inform the systems that listen to activity changes
+				Iterator<System> iterator = systemMap.values().iterator();
+				while (iterator.hasNext())
+				{
+					System system = iterator.next();
+					
+					if (system instanceof ActivityListener)
+					{
+						((ActivityListener) system).entitySlept(entityId);
+					}
+				}
+			}
+		}
+		else
+		{
+			logger.warn("Entity not found [id={}].", entityId);
+		}
+	}
+	
+	/**
+	 * Makes a dormant entity active again. Entities are also woken when one of their 
+	 * components is registered, unregistered or marked as changed.
+	 * 
+	 * @param entityId id of the entity.
+	 */
+	public void wake(int entityId)
+	{
+		checkInitialized();
+		
+		if (dormantMap.clear(entityId, Dormant.class))
+		{
+			// Inform the systems that listen to activity changes
+			Iterator<System> iterator = systemMap.values().iterator();
+			while (iterator.hasNext())
+			{
+				System system = iterator.next();
+				
+				if (system instanceof ActivityListener)
+				{
+					((ActivityListener) system).entityWoken(entityId);
+				}
+			}
+		}
+	}
+	
+	public boolean isDormant(int entityId)
+	{
+		return dormantMap.has(entityId, Dormant.class);
+	}
+	
+	public int getDormantCount()
+	{
+		return dormantMap.getCount(Dormant.class);
+	}
+	
+	/**
+	 * Sets a tag to an entity. Only the listeners of the tag are notified.
+	 * 
+	 * @param entityId id of the entity.
+	 * @param tag to set.
+	 */
+	public void setTag(int entityId, Class<? extends Tag> tag)
+	{
+		checkInitialized();
+		
+		if (entityMap.containsKey(entityId))
+		{
+			tagMap.set(entityId, tag);
+		}
+		else
+		{
+			logger.warn("Entity not found [id={}].", entityId);
+		}
+	}
+	
+	public void clearTag(int entityId, Class<? extends Tag> tag)
+	{
+		checkInitialized();
+		
+		tagMap.clear(entityId, tag);
+	}
+	
+	public boolean hasTag(int entityId, Class<? extends Tag> tag)
+	{
+		return tagMap.has(entityId, tag);
+	}
+	
+	public void addTagListener(Class<? extends Tag> tag, TagListener listener)
+	{
+		checkInitialized();
+		
+		tagMap.addListener(tag, listener);
+	}
+	
+	public void removeTagListener(Class<? extends Tag> tag, TagListener listener)
+	{
+		checkInitialized();
+		
+		tagMap.removeListener(tag, listener);
+	}
+	
+	/**
+	 * Returns the entities that match a query.
+	 * 
+	 * @param query to match.
+	 * 
+	 * @return the ids of the matching entities as a set of bits.
+	 */
+	public BitSet query(Query query)
+	{
+		checkInitialized();
+		
+		List<Class<? extends Component>> includeList = query.getIncludeList();
+		List<Class<? extends Tag>> includeTagList = query.getIncludeTagList();
+		BitSet entities = null;
+		
+		// Starts with the first included set or with all the entities if there is none
+		if (!includeList.isEmpty())
+		{
+			entities = componentMap.getEntitiesByClass(includeList.get(0));
+		}
+		else if (!includeTagList.isEmpty())
+		{
+			entities = tagMap.get(includeTagList.get(0));
+		}
+		else
+		{
+			entities = new BitSet();
+			
+			Iterator<Integer> iterator = entityMap.keySet().iterator();
+			while (iterator.hasNext())
+			{
+				entities.set(iterator.next());
+			}
+		}
+		
+		for (int i=1; i<includeList.size(); i++)
+		{
+			componentMap.and(includeList.get(i), entities);
+		}
+		
+		for (int i=(includeList.isEmpty() ? 1 : 0); i<includeTagList.size(); i++)
+		{
+			tagMap.and(includeTagList.get(i), entities);
+		}
+		
+		List<Class<? extends Component>> excludeList = query.getExcludeList();
+		for (int i=0; i<excludeList.size(); i++)
+		{
+			componentMap.andNot(excludeList.get(i), entities);
+		}
+		
+		List<Class<? extends Tag>> excludeTagList = query.getExcludeTagList();
+		for (int i=0; i<excludeTagList.size(); i++)
+		{
+			tagMap.andNot(excludeTagList.get(i), entities);
+		}
+		
+		if (!query.isIncludeDormant())
+		{
+			dormantMap.andNot(Dormant.class, entities);
+		}
+		
+		return entities;
+	}
+
+	public void registerComponent(int entityId, Component component)
+	{
+		checkInitialized();		
+		
+		int componentId = (componentIdAllocator != null ? componentIdAllocator.next() : COMPONENT_ID_GENERATOR.getAndIncrement());
+		
+		component.create(componentId, entityId, this);
+		
+		wake(entityId);
+		
+		Component replacedComponent = componentMap.put(component);
+		
+		updateIndexes(replacedComponent, component);
+		
+		if (snapshotPublisher != null)
+		{
+			snapshotPublisher.componentChanged(component);
+		}
+		
+		// Inform the systems that a new component has been added
+		Iterator<System> iterator = systemMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			notifyComponentAdded(iterator.next(), component);
+		}						
+	}
+	
+	public void unregisterComponent(int componentId)
+	{
+		checkInitialized();		
+		
+		// Removes the component from the map
+		Component component = componentMap.removeById(componentId);
+
+		// If exists
+		if (component != null)
+		{
+			if (component.getEntityId() != null)
+			{
+				wake(component.getEntityId());
+			}
+			
+			unregisterComponent(component);
+		}
+		else
+		{
+			logger.warn("Component not found [id={}].", componentId);
+		}	
+	}
+	
+	private void unregisterComponent(Component component)
+	{
+		unregisterComponent(component, true);
+	}
+	
+	private void unregisterComponent(Component component, boolean dispose)
+	{
+		if (component != null)
+		{
+			updateIndexes(component, null);
+			
+			if (snapshotPublisher != null && component.getEntityId() != null)
+			{
+				snapshotPublisher.entityChanged(component.getEntityId());
+			}
+			
+			// Inform the systems that a new component has been removed
+			Iterator<System> iterator = systemMap.values().iterator();
+			while (iterator.hasNext())
+			{
+				notifyComponentRemoved(iterator.next(), component);
+			}
+			
+			// Unless it is detached to be registered again
+			if (dispose)
+			{
+				if (disposalQueue != null)
+				{
+					disposalQueue.add(component);
+				}
+				else
+				{
+					component.dispose();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Notifies the manager that the state of a component has changed.
+	 * Systems that implement {@link ComponentChangeListener} are informed and the entity is woken if it was dormant.
+	 * 
+	 * @param component that has changed.
+	 */
+	public void markChanged(Component component)
+	{
+		checkInitialized();
+		
+		if (snapshotPublisher != null)
+		{
+			snapshotPublisher.componentChanged(component);
+		}
+		
+		if (component.getEntityId() != null)
+		{
+			wake(component.getEntityId());
+		}
+		
+		// Keeps the indexes and sorted queries of the class of the component up to date
+		Iterator<ComponentIndex<?, ?>> indexIterator = indexMap.values().iterator();
+		while (indexIterator.hasNext())
+		{
+			indexIterator.next().update(component);
+		}
+		
+		for (int i=0; i<sortedQueryList.size(); i++)
+		{
+			sortedQueryList.get(i).update(component);
+		}
+		
+		// Inform the systems that listen to changes
+		Iterator<System> iterator = systemMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			System system = iterator.next();
+			
+			if (system instanceof ComponentChangeListener)
+			{
+				((ComponentChangeListener) system).componentChanged(component);
+			}
+		}
+	}
+	
+	/**
+	 * Registers a world resource, replacing the previous one of the same type.
+	 * 
+	 * @param type of the resource.
+	 * @param resource to register.
+	 * 
+	 * @return the handle of the resource.
+	 */
+	public<R> ResourceHandle<R> registerResource(Class<R> type, R resource)
+	{
+		return registerResource(type, resource, false);
+	}
+	
+	/**
+	 * Registers a world resource, replacing the previous one of the same type.
+	 * 
+	 * @param type of the resource.
+	 * @param resource to register.
+	 * @param tracked if the resource is included in the snapshots.
+	 * 
+	 * @return the handle of the resource.
+	 */
+	public<R> ResourceHandle<R> registerResource(Class<R> type, R resource, boolean tracked)
+	{
+		checkInitialized();
+		
+		if (resource == null) throw new IllegalArgumentException("Resource cannot be null.");
+		
+		ResourceHandle<R> handle = getResourceHandle(type);
+		boolean wasTracked = handle.isTracked();
+		
+		handle.set(resource, tracked);
+		
+		if (snapshotPublisher != null && (tracked || wasTracked))
+		{
+			snapshotPublisher.resourceChanged(type, (tracked ? resource : null));
+		}
+		
+		return handle;
+	}
+	
+	public void unregisterResource(Class<?> type)
+	{
+		checkInitialized();
+		
+		ResourceHandle<?> handle = resourceMap.get(type);
+		
+		// If exists
+		if (handle != null && handle.isPresent())
+		{
+			if (snapshotPublisher != null && handle.isTracked())
+			{
+				snapshotPublisher.resourceChanged(type, null);
+			}
+			
+			handle.set(null, false);
+		}
+		else
+		{
+			logger.warn("Resource not found [type={}].", type.getName());
+		}
+	}
+	
+	public<R> R getResource(Class<R> type)
+	{
+		ResourceHandle<?> handle = resourceMap.get(type);
+		
+		return (handle != null ? type.cast(handle.get()) : null);
+	}
+	
+	/**
+	 * Returns the handle of a resource, that can be resolved before the resource is registered.
+	 * 
+	 * @param type of the resource.
+	 * 
+	 * @return the handle of the resource.
+	 */
+	@SuppressWarnings("unchecked")
+	public<R> ResourceHandle<R> getResourceHandle(Class<R> type)
+	{
+		checkInitialized();
+		
+		ResourceHandle<R> handle = (ResourceHandle<R>) resourceMap.get(type);
+		
+		// If it does not exist
+		if (handle == null)
+		{
+			handle = new ResourceHandle<R>(type);
+			
+			ResourceHandle<R> previous = (ResourceHandle<R>) resourceMap.putIfAbsent(type, handle);
+			
+			if (previous != null)
+			{
+				handle = previous;
+			}
+		}
+		
+		return handle;
+	}
+	
+	/**
+	 * Notifies the manager that the state of a resource has changed, so its version 
+	 * changes and it is copied again into the next snapshot if it is tracked.
+	 * 
+	 * @param type of the resource.
+	 */
+	public void markResourceChanged(Class<?> type)
+	{
+		ResourceHandle<?> handle = resourceMap.get(type);
+		
+		if (handle != null && handle.isPresent())
+		{
+			handle.changed();
+			
+			if (snapshotPublisher != null && handle.isTracked())
+			{
+				snapshotPublisher.resourceChanged(type, handle.get());
+			}
+		}
+	}
+	
+	/**
+	 * Registers a secondary index on the components of a class, that is filled with the 
+	 * components already registered and kept up to date from then on.
+	 * 
+	 * @param index to register.
+	 */
+	public void registerIndex(ComponentIndex<?, ?> index)
+	{
+		checkInitialized();
+		
+		if (indexMap.containsKey(index.getName()))
+		{
+			throw new IllegalArgumentException("Index already registered [name=" + index.getName() + "].");
+		}
+		
+		index.clear();
+		
+		Iterator<Component> iterator = componentMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			index.add(iterator.next());
+		}
+		
+		indexMap.put(index.getName(), index);
+	}
+	
+	public void unregisterIndex(String name)
+	{
+		checkInitialized();
+		
+		ComponentIndex<?, ?> index = indexMap.remove(name);
+		
+		// If exists
+		if (index != null)
+		{
+			index.clear();
+		}
+		else
+		{
+			logger.warn("Index not found [name={}].", name);
+		}
+	}
+	
+	public ComponentIndex<?, ?> getIndex(String name)
+	{
+		checkInitialized();
+		
+		return indexMap.get(name);
+	}
+	
+	/**
+	 * Returns the entities whose indexed component has a key.
+	 * 
+	 * @param name of the index.
+	 * @param key to find.
+	 * 
+	 * @return the ids of the entities.
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<Integer> findEntities(String name, Object key)
+	{
+		return ((ComponentIndex<?, Object>) getExistingIndex(name)).getEntityIds(key);
+	}
+	
+	/**
+	 * Returns the entities whose indexed component has a key in a range, both limits included. The range is empty 
+	 * if the lowest key is greater than the highest one.
+	 * 
+	 * @param name of a sorted index.
+	 * @param from lowest key of the range, or null for no limit.
+	 * @param to highest key of the range, or null for no limit.
+	 * 
+	 * @return the ids of the entities ordered by key.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public List<Integer> findEntities(String name, Comparable<?> from, Comparable<?> to)
+	{
+		ComponentIndex<?, ?> index = getExistingIndex(name);
+		
+		if (!(index instanceof SortedIndex))
+		{
+			throw new IllegalArgumentException("Index is not sorted [name=" + name + "].");
+		}
+		
+		return ((SortedIndex) index).getEntityIds(from, to);
+	}
+	
+	/**
+	 * Registers a query that keeps the entities with a component ordered, that is filled with the 
+	 * components already registered and kept up to date from then on.
+	 * 
+	 * @param sortedQuery to register.
+	 */
+	public void registerSortedQuery(SortedQuery<?> sortedQuery)
+	{
+		checkInitialized();
+		
+		if (sortedQueryList.contains(sortedQuery))
+		{
+			throw new IllegalArgumentException("Sorted query already registered.");
+		}
+		
+		sortedQuery.clear();
+		
+		Iterator<Component> iterator = componentMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			sortedQuery.add(iterator.next());
+		}
+		
+		sortedQueryList.add(sortedQuery);
+	}
+	
+	public void unregisterSortedQuery(SortedQuery<?> sortedQuery)
+	{
+		checkInitialized();
+		
+		// If exists
+		if (sortedQueryList.remove(sortedQuery))
+		{
+			sortedQuery.clear();
+		}
+		else
+		{
+			logger.warn("Sorted query not found [class={}].", sortedQuery.getComponentClass().getName());
+		}
+	}
+	
+	/**
+	 * Registers the storage of a plain data component. The entities are removed from it when they are unregistered.
+	 * 
+	 * @param dataStore to register.
+	 */
+	public void registerDataStore(DataStore dataStore)
+	{
+		checkInitialized();
+		
+		if (dataStoreMap.containsKey(dataStore.getName()))
+		{
+			throw new IllegalArgumentException("Data store already registered [name=" + dataStore.getName() + "].");
+		}
+		
+		dataStoreMap.put(dataStore.getName(), dataStore);
+	}
+	
+	public void unregisterDataStore(String name)
+	{
+		checkInitialized();
+		
+		DataStore dataStore = dataStoreMap.remove(name);
+		
+		// If exists
+		if (dataStore != null)
 		{
-			unregisterComponent(component);
+			dataStore.clear();
 		}
 		else
 		{
-			logger.warn("Component not found [id={}].", componentId);
-		}	
+			logger.warn("Data store not found [name={}].", name);
+		}
 	}
 	
-	private void unregisterComponent(Component component)
+	public DataStore getDataStore(String name)
 	{
-		if (component != null)
-		{
-			// Inform the systems that a new component has been removed
-			Iterator<System> iterator = systemMap.values().iterator();
-			while (iterator.hasNext())
-			{
-				iterator.next().componentRemoved(component);
-			}
-			
-			component.dispose();
-		}
+		checkInitialized();
+		
+		return dataStoreMap.get(name);
+	}
+	
+	public Collection<DataStore> getDataStoreCollection()
+	{
+		checkInitialized();
+		
+		return Collections.unmodifiableCollection(dataStoreMap.values());
 	}
 	
 	public void registerSystem(System system)
+	{
+		registerSystem(system, Schedule.EVERY_FRAME);
+	}
+	
+	/**
+	 * Registers a system that is updated following a schedule.
+	 * 
+	 * @param system to register.
+	 * @param schedule of the updates of the system.
+	 */
+	public void registerSystem(System system, Schedule schedule)
 	{
 		checkInitialized();
 		
 		system.create(SYSTEM_ID_GENERATOR.getAndIncrement(), this);
 		
+		scheduler.put(system.getId(), schedule);
 		systemMap.put(system.getId(), system);
 		
 		// For each existing component
 		Iterator<Component> iterator = componentMap.values().iterator();
 		while (iterator.hasNext())
 		{
-			system.componentAdded(iterator.next());
+			notifyComponentAdded(system, iterator.next());
 		}
 	}
 	
@@ -321,8 +1726,36 @@ public class EntityManager
 		}
 	}
 	
+	/**
+	 * Changes the schedule of a registered system.
+	 * 
+	 * @param systemId id of the system.
+	 * @param schedule of the updates of the system.
+	 */
+	public void setSchedule(int systemId, Schedule schedule)
+	{
+		checkInitialized();
+		
+		if (systemMap.containsKey(systemId))
+		{
+			scheduler.put(systemId, schedule);
+		}
+		else
+		{
+			logger.warn("System not found [id={}].", systemId);
+		}
+	}
+	
+	public Schedule getSchedule(int systemId)
+	{
+		return scheduler.get(systemId);
+	}
+	
 	private void unregisterSystem(System system)
 	{
+		profiler.remove(system.getId());
+		scheduler.remove(system.getId());
+		
 		system.dispose();
 	}
 	
@@ -330,13 +1763,40 @@ public class EntityManager
 	{
 		checkInitialized();
 		
+		Object event = flightRecorderEvents.beginFrame();
+		boolean profiling = profilingEnabled;
+		long frameStart = (profiling ? java.lang.System.nanoTime() : 0);
+		SystemProfiler frameProfiler = profiler;
+		
+		// Applies the changes requested from other threads
+		if (ingressQueue != null)
+		{
+			ingressQueue.drain(this, ingressDrainBudget);
+		}
+		
+		long overrun = 0;
+		
 		Iterator<System> iterator = systemMap.values().iterator();
 		while (iterator.hasNext())
 		{
 			// Checks that is still initialized since an update from a system could have destroyed the entity manager)
 			if (initialized)
 			{
-				iterator.next().update(delta);
+				System system = iterator.next();
+				
+				// Updates the system as many times as its schedule requires
+				int steps = scheduler.advance(system.getId(), delta);
+				float stepDelta = scheduler.getStepDelta(system.getId(), delta);
+				
+				for (int i=0; i<steps && initialized; i++)
+				{
+					updateSystem(system, stepDelta);
+				}
+				
+				if (steps > 0 && system instanceof BudgetedSystem)
+				{
+					overrun += ((BudgetedSystem) system).getLastOverrun();
+				}
 			}
 			// If it is not initialized
 			else
@@ -344,6 +1804,112 @@ public class EntityManager
 				break;
 			}
 		}
+		
+		budgetOverrun = overrun;
+		
+		if (initialized)
+		{
+			scheduler.endFrame();
+			
+			if (incrementalCompaction)
+			{
+				compactor.step();
+			}
+			
+			if (disposalQueue != null && disposalBudget > 0)
+			{
+				disposalQueue.drain(disposalBudget);
+			}
+			
+			// Samples the footprint here since the maps are only modified by this thread
+			if (footprintInterval > 0 && --footprintCountdown <= 0)
+			{
+				footprintCountdown = footprintInterval;
+				lastFootprint = MemoryFootprint.sample(entityMap.size(), componentMap, systemMap.values());
+			}
+		}
+		
+		// Publishes the state of the world at the end of the update
+		if (initialized && snapshotPublisher != null)
+		{
+			snapshotPublisher.publish(entityMap, componentMap);
+		}
+		
+		if (profiling)
+		{
+			frameProfiler.recordFrame(java.lang.System.nanoTime() - frameStart);
+		}
+		
+		if (event != null)
+		{
+			// The manager could have been destroyed during the update
+			if (initialized)
+			{
+				flightRecorderEvents.commitFrame(event, delta, systemMap.size(), entityMap.size(), componentMap.size());
+			}
+			else
+			{
+				flightRecorderEvents.commitFrame(event, delta, 0, 0, 0);
+			}
+		}
+	}
+	
+	private void updateSystem(System system, float delta)
+	{
+		Object event = flightRecorderEvents.beginSystemUpdate(system);
+		
+		if (profilingEnabled)
+		{
+			long start = java.lang.System.nanoTime();
+			
+			system.update(delta);
+			
+			// Skips the record if the system has destroyed the manager
+			if (initialized)
+			{
+				profiler.recordUpdate(system, java.lang.System.nanoTime() - start);
+			}
+		}
+		else
+		{
+			system.update(delta);
+		}
+		
+		flightRecorderEvents.commitSystemUpdate(event);
+	}
+	
+	private void notifyComponentAdded(System system, Component component)
+	{
+		if (profilingEnabled)
+		{
+			SystemProfiler systemProfiler = profiler;
+			long start = java.lang.System.nanoTime();
+			
+			system.componentAdded(component);
+			
+			systemProfiler.recordComponentAdded(system, java.lang.System.nanoTime() - start);
+		}
+		else
+		{
+			system.componentAdded(component);
+		}
+	}
+	
+	private void notifyComponentRemoved(System system, Component component)
+	{
+		if (profilingEnabled)
+		{
+			SystemProfiler systemProfiler = profiler;
+			long start = java.lang.System.nanoTime();
+			
+			system.componentRemoved(component);
+			
+			systemProfiler.recordComponentRemoved(system, java.lang.System.nanoTime() - start);
+		}
+		else
+		{
+			system.componentRemoved(component);
+		}
 	}
 	
 	private void checkInitialized()
@@ -351,6 +1917,115 @@ public class EntityManager
 		if (!initialized) throw new IllegalStateException("Not initialized.");
 	}
 	
+	private void clearWorld()
+	{
+		Collection<Component> componentCollection = componentMap.values();
+		
+		// Systems that listen to world clears are notified once, the rest once for each component
+		Iterator<System> systemIterator = systemMap.values().iterator();
+		while (systemIterator.hasNext())
+		{
+			System system = systemIterator.next();
+			
+			if (system instanceof WorldClearListener)
+			{
+				((WorldClearListener) system).worldCleared();
+			}
+			else
+			{
+				Iterator<Component> iterator = componentCollection.iterator();
+				while (iterator.hasNext())
+				{
+					notifyComponentRemoved(system, iterator.next());
+				}
+			}
+		}
+		
+		// Takes everything that has to be disposed before clearing the maps
+		final Component[] components = componentCollection.toArray(new Component[componentCollection.size()]);
+		final Entity[] entities = entityMap.values().toArray(new Entity[entityMap.size()]);
+		
+		entityMap.clear();
+		componentMap.clear();
+		hierarchy.clear();
+		tagMap.clearTags();
+		dormantMap.clearTags();
+		
+		Iterator<ComponentIndex<?, ?>> indexIterator = indexMap.values().iterator();
+		while (indexIterator.hasNext())
+		{
+			indexIterator.next().clear();
+		}
+		
+		for (int i=0; i<sortedQueryList.size(); i++)
+		{
+			sortedQueryList.get(i).clear();
+		}
+		
+		Iterator<DataStore> dataStoreIterator = dataStoreMap.values().iterator();
+		while (dataStoreIterator.hasNext())
+		{
+			dataStoreIterator.next().clear();
+		}
+		
+		Iterator<ComponentMapper<?>> mapperIterator = mapperMap.values().iterator();
+		while (mapperIterator.hasNext())
+		{
+			mapperIterator.next().clear();
+		}
+		
+		if (snapshotPublisher != null)
+		{
+			snapshotPublisher.clear();
+		}
+		
+		if (ingressQueue != null)
+		{
+			ingressQueue.clear();
+		}
+		
+		// If the disposal is deferred the components are queued before their entities
+		if (disposalQueue != null)
+		{
+			for (int i=0; i<components.length; i++)
+			{
+				disposalQueue.add(components[i]);
+			}
+			
+			for (int i=0; i<entities.length; i++)
+			{
+				disposalQueue.add(entities[i]);
+			}
+			
+			return;
+		}
+		
+		Runnable disposal = new Runnable()
+		{
+			public void run()
+			{
+				for (int i=0; i<components.length; i++)
+				{
+					components[i].dispose();
+				}
+				
+				for (int i=0; i<entities.length; i++)
+				{
+					entities[i].dispose();
+				}
+			}
+		};
+		
+		if (disposalExecutor != null)
+		{
+			disposalExecutor.execute(disposal);
+		}
+		else
+		{
+			disposal.run();
+		}
+	}
+	
 	private void destroyEntityMap()
 	{
 		Iterator<Entity> iterator = entityMap.values().iterator();
@@ -375,6 +2050,156 @@ public class EntityManager
 		componentMap = null;
 	}
 	
+	private ComponentIndex<?, ?> getExistingIndex(String name)
+	{
+		checkInitialized();
+		
+		ComponentIndex<?, ?> index = indexMap.get(name);
+		
+		if (index == null)
+		{
+			throw new IllegalArgumentException("Index not found [name=" + name + "].");
+		}
+		
+		return index;
+	}
+	
+	private void updateIndexes(Component removedComponent, Component addedComponent)
+	{
+		// Holds the lock that getMapper holds while filling a new mapper so the change is not missed by it
+		if (threadSafe)
+		{
+			synchronized (mapperMap)
+			{
+				updateMappers(removedComponent, addedComponent);
+			}
+		}
+		else
+		{
+			updateMappers(removedComponent, addedComponent);
+		}
+		
+		for (int i=0; i<sortedQueryList.size(); i++)
+		{
+			SortedQuery<?> sortedQuery = sortedQueryList.get(i);
+			
+			if (removedComponent != null)
+			{
+				sortedQuery.remove(removedComponent);
+			}
+			
+			if (addedComponent != null)
+			{
+				sortedQuery.add(addedComponent);
+			}
+		}
+		
+		if (!indexMap.isEmpty())
+		{
+			Iterator<ComponentIndex<?, ?>> iterator = indexMap.values().iterator();
+			while (iterator.hasNext())
+			{
+				ComponentIndex<?, ?> index = iterator.next();
+				
+				if (removedComponent != null)
+				{
+					index.remove(removedComponent);
+				}
+				
+				if (addedComponent != null)
+				{
+					index.add(addedComponent);
+				}
+			}
+		}
+	}
+	
+	private void updateMappers(Component removedComponent, Component addedComponent)
+	{
+		if (!mapperMap.isEmpty())
+		{
+			if (removedComponent != null)
+			{
+				ComponentMapper<?> mapper = mapperMap.get(removedComponent.getClass());
+				
+				if (mapper != null)
+				{
+					mapper.remove(removedComponent);
+				}
+			}
+			
+			if (addedComponent != null)
+			{
+				ComponentMapper<?> mapper = mapperMap.get(addedComponent.getClass());
+				
+				if (mapper != null)
+				{
+					mapper.put(addedComponent);
+				}
+			}
+		}
+	}
+	
+	private void destroyIndexMap()
+	{
+		Iterator<ComponentIndex<?, ?>> iterator = indexMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			iterator.next().clear();
+		}
+		
+		indexMap.clear();
+		indexMap = null;
+	}
+	
+	private void destroySortedQueryList()
+	{
+		for (int i=0; i<sortedQueryList.size(); i++)
+		{
+			sortedQueryList.get(i).clear();
+		}
+		
+		sortedQueryList.clear();
+		sortedQueryList = null;
+	}
+	
+	private void destroyDataStoreMap()
+	{
+		Iterator<DataStore> iterator = dataStoreMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			iterator.next().clear();
+		}
+		
+		dataStoreMap.clear();
+		dataStoreMap = null;
+	}
+	
+	private void destroyMapperMap()
+	{
+		Iterator<ComponentMapper<?>> iterator = mapperMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			iterator.next().clear();
+		}
+		
+		mapperMap.clear();
+		mapperMap = null;
+	}
+	
+	private void destroyResourceMap()
+	{
+		// Empties the handles so they do not retain the resources
+		Iterator<ResourceHandle<?>> iterator = resourceMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			iterator.next().set(null, false);
+		}
+		
+		resourceMap.clear();
+		resourceMap = null;
+	}
+	
 	private void destroySystemMap()
 	{
 		Iterator<System> iterator = systemMap.values().iterator();
@@ -386,4 +2211,11 @@ public class EntityManager
 		systemMap.clear();
 		systemMap = null;
 	}
+	
+	/**
+	 * Tag used to keep the dormant entities.
+	 */
+	private static final class Dormant implements Tag
+	{
+	}
 }
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs;
+
+/**
+ * Stable reference to a world resource registered in an {@link EntityManager}.
+ * <p>
+ * Systems can resolve the handle once and read the resource every frame without any lookup. 
+ * The handle stays valid while the manager is initialized, even if the resource is replaced 
+ * or unregistered, in which case {@link #get()} returns the new value or null.
+ *
+ * @param <R> type of the resource.
+ */
+public final class ResourceHandle<R> 
+{
+	private final Class<R> type;
+	
+	private volatile R resource = null;
+	private volatile boolean tracked;
+	private volatile int version;
+	
+	ResourceHandle(Class<R> type)
+	{
+		this.type = type;
+	}
+	
+	public Class<R> getType()
+	{
+		return type;
+	}
+	
+	public R get()
+	{
+		return resource;
+	}
+	
+	public boolean isPresent()
+	{
+		return resource != null;
+	}
+	
+	/**
+	 * Returns if the resource is included in the snapshots of the manager.
+	 * 
+	 * @return if the resource is included in the snapshots of the manager.
+	 */
+	public boolean isTracked()
+	{
+		return tracked;
+	}
+	
+	/**
+	 * Returns a number that changes each time the resource is replaced or marked as changed, 
+	 * so readers can detect changes by comparing it with the last seen.
+	 * 
+	 * @return the version of the resource.
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+	
+	void set(R resource, boolean tracked)
+	{
+		this.resource = resource;
+		this.tracked = tracked;
+		
+		version++;
+	}
+	
+	void changed()
+	{
+		version++;
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs;
+
+/**
+ * Describes how often a system is updated.
+ * <p>
+ * Low rate systems can be staggered with a phase so they do not all run on the same update. 
+ * If no phase is given the manager assigns one to each system with the same rate.
+ * 
+ * @see EntityManager#registerSystem(System, Schedule)
+ */
+public final class Schedule 
+{
+	public final static Schedule EVERY_FRAME = new Schedule(Type.EVERY_FRAME, 0, 1, 1, 0, false);
+	
+	private final Type type;
+	private final float step;
+	private final int maxSteps;
+	private final int interval;
+	private final float phase;
+	private final boolean autoPhase;
+	
+	private Schedule(Type type, float step, int maxSteps, int interval, float phase, boolean autoPhase)
+	{
+		this.type = type;
+		this.step = step;
+		this.maxSteps = maxSteps;
+		this.interval = interval;
+		this.phase = phase;
+		this.autoPhase = autoPhase;
+	}
+	
+	/**
+	 * Updates the system with a fixed delta, as many times as the accumulated time allows.
+	 * 
+	 * @param step fixed delta of each update.
+	 * @param maxSteps maximum number of updates in one frame, the accumulated time beyond it is discarded.
+	 * 
+	 * @return the schedule.
+	 */
+	public static Schedule fixedStep(float step, int maxSteps)
+	{
+		return fixedStep(step, maxSteps, 0, true);
+	}
+	
+	/**
+	 * Updates the system with a fixed delta, as many times as the accumulated time allows.
+	 * 
+	 * @param step fixed delta of each update.
+	 * @param maxSteps maximum number of updates in one frame, the accumulated time beyond it is discarded.
+	 * @param phase fraction of the step, from 0 to 1, that is initially accumulated.
+	 * 
+	 * @return the schedule.
+	 */
+	public static Schedule fixedStep(float step, int maxSteps, float phase)
+	{
+		return fixedStep(step, maxSteps, phase, false);
+	}
+	
+	/**
+	 * Updates the system once every interval frames with the time elapsed since its last update.
+	 * 
+	 * @param interval number of frames between updates.
+	 * 
+	 * @return the schedule.
+	 */
+	public static Schedule everyNthFrame(int interval)
+	{
+		return everyNthFrame(interval, 0, true);
+	}
+	
+	/**
+	 * Updates the system once every interval frames with the time elapsed since its last update.
+	 * 
+	 * @param interval number of frames between updates.
+	 * @param phase number of frames, from 0 to interval - 1, that the updates are delayed.
+	 * 
+	 * @return the schedule.
+	 */
+	public static Schedule everyNthFrame(int interval, int phase)
+	{
+		return everyNthFrame(interval, phase, false);
+	}
+	
+	public Type getType()
+	{
+		return type;
+	}
+	
+	public float getStep()
+	{
+		return step;
+	}
+	
+	public int getMaxSteps()
+	{
+		return maxSteps;
+	}
+	
+	public int getInterval()
+	{
+		return interval;
+	}
+	
+	public float getPhase()
+	{
+		return phase;
+	}
+	
+	public boolean isAutoPhase()
+	{
+		return autoPhase;
+	}
+	
+	private static Schedule fixedStep(float step, int maxSteps, float phase, boolean autoPhase)
+	{
+		if (step <= 0) throw new IllegalArgumentException("Step must be greater than 0.");
+		if (maxSteps < 1) throw new IllegalArgumentException("Max steps must be greater than 0.");
+		if (phase < 0 || phase >= 1) throw new IllegalArgumentException("Phase must be between 0 and 1.");
+		
+		return new Schedule(Type.FIXED_STEP, step, maxSteps, 1, phase, autoPhase);
+	}
+	
+	private static Schedule everyNthFrame(int interval, int phase, boolean autoPhase)
+	{
+		if (interval < 1) throw new IllegalArgumentException("Interval must be greater than 0.");
+		if (phase < 0 || phase >= interval) throw new IllegalArgumentException("Phase must be between 0 and interval - 1.");
+		
+		return new Schedule(Type.NTH_FRAME, 0, 1, interval, phase, autoPhase);
+	}
+	
+	public enum Type
+	{
+		EVERY_FRAME,
+		FIXED_STEP,
+		NTH_FRAME
+	}
+}
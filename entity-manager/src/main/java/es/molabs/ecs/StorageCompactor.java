@@ -0,0 +1,493 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import es.molabs.ecs.data.DataStore;
+import es.molabs.ecs.data.EntityKey;
+import es.molabs.ecs.metrics.CompactionReport;
+import es.molabs.ecs.metrics.MemoryEstimator;
+import es.molabs.ecs.metrics.StorageOccupancy;
+import es.molabs.ecs.util.ComponentMap;
+
+/**
+ * Compacts the storages of an entity manager, all of them at once or incrementally each time it steps.
+ * <p>
+ * A pass on demand compacts every storage and measures its occupancy and iteration time before and after. 
+ * An incremental pass is only started every interval of steps for the storages whose occupancy is below 
+ * the threshold and have changed since they were last compacted, compacts a bounded amount each step 
+ * and only reports the occupancy.
+ */
+class StorageCompactor 
+{
+	final static String COMPONENTS = "components";
+	final static String MAPPER = "mapper:";
+	final static String DATA_STORE = "store:";
+	
+	final static int DEFAULT_INTERVAL = 60;
+	final static double DEFAULT_THRESHOLD = 0.5;
+	
+	// Entities of the component map compacted each step
+	final static int STEP_ENTITIES = 4096;
+	
+	private final ComponentMap componentMap;
+	private final Map<Class<?>, ComponentMapper<?>> mapperMap;
+	private final Map<String, DataStore> dataStoreMap;
+	
+	private final EntityKey archetypeKey;
+	private EntityKey key = null;
+	private int interval = DEFAULT_INTERVAL;
+	private double threshold = DEFAULT_THRESHOLD;
+	
+	// Steps since the last incremental pass was checked, and the used elements of each storage when it was last compacted
+	private int stepCount;
+	private Map<Object, Integer> compactedSizeMap = new IdentityHashMap<Object, Integer>();
+	
+	// State of the pass in progress
+	private List<Object> targetList = null;
+	private int targetIndex;
+	private List<StorageOccupancy> beforeList = null;
+	private List<StorageOccupancy> afterList = null;
+	private long compactionNanos;
+	private Map<Set<Class<?>>, Integer> archetypeMap = null;
+	
+	private volatile CompactionReport lastReport = null;
+	
+	// Keeps the iterations from being removed by the compiler
+	private long checksum;
+	
+	StorageCompactor(ComponentMap componentMap, Map<Class<?>, ComponentMapper<?>> mapperMap, Map<String, DataStore> dataStoreMap)
+	{
+		this.componentMap = componentMap;
+		this.mapperMap = mapperMap;
+		this.dataStoreMap = dataStoreMap;
+		
+		// Numbers each set of component classes in the order they are found
+		archetypeKey = new EntityKey()
+		{
+			public int getKey(int entityId)
+			{
+				Set<Class<?>> archetype = new HashSet<Class<?>>();
+				
+				Collection<Component> componentCollection = StorageCompactor.this.componentMap.getByEntityId(entityId);
+				if (componentCollection != null)
+				{
+					Iterator<Component> iterator = componentCollection.iterator();
+					while (iterator.hasNext())
+					{
+						archetype.add(iterator.next().getClass());
+					}
+				}
+				
+				Integer archetypeId = archetypeMap.get(archetype);
+				
+				// If it is new
+				if (archetypeId == null)
+				{
+					archetypeId = archetypeMap.size();
+					
+					archetypeMap.put(archetype, archetypeId);
+				}
+				
+				return archetypeId;
+			}
+		};
+	}
+	
+	/**
+	 * Sets the key the data stores are ordered by.
+	 * 
+	 * @param key of the entities, or null to group them by archetype.
+	 */
+	void setKey(EntityKey key)
+	{
+		this.key = key;
+	}
+	
+	/**
+	 * Sets the number of steps between the checks for storages to compact incrementally.
+	 * 
+	 * @param interval number of steps.
+	 */
+	void setInterval(int interval)
+	{
+		if (interval < 1) throw new IllegalArgumentException("Interval must be greater than 0.");
+		
+		this.interval = interval;
+	}
+	
+	/**
+	 * Sets the occupancy below which a storage is compacted incrementally.
+	 * 
+	 * @param threshold fraction of the capacity between 0 and 1.
+	 */
+	void setThreshold(double threshold)
+	{
+		if (threshold < 0 || threshold > 1) throw new IllegalArgumentException("Threshold must be between 0 and 1.");
+		
+		this.threshold = threshold;
+	}
+	
+	CompactionReport getLastReport()
+	{
+		return lastReport;
+	}
+	
+	/**
+	 * Compacts all the storages, discarding the incremental pass in progress if there is one.
+	 * 
+	 * @return the report of the pass.
+	 */
+	CompactionReport compact()
+	{
+		clear();
+		
+		List<Object> allTargetList = getTargetList();
+		List<StorageOccupancy> allBeforeList = new ArrayList<StorageOccupancy>();
+		List<StorageOccupancy> allAfterList = new ArrayList<StorageOccupancy>();
+		long nanos = 0;
+		archetypeMap = new HashMap<Set<Class<?>>, Integer>();
+		
+		for (int i=0; i<allTargetList.size(); i++)
+		{
+			Object target = allTargetList.get(i);
+			
+			allBeforeList.add(measure(target, true));
+			
+			long start = java.lang.System.nanoTime();
+			
+			// Finishes it in one step
+			while (!compactStep(target, Integer.MAX_VALUE));
+			
+			nanos += java.lang.System.nanoTime() - start;
+			
+			allAfterList.add(measure(target, true));
+		}
+		
+		archetypeMap = null;
+		lastReport = new CompactionReport(allBeforeList, allAfterList, nanos);
+		
+		return lastReport;
+	}
+	
+	/**
+	 * Compacts a bounded amount of the next storage of the incremental pass. Every interval of steps, 
+	 * if there is no pass in progress a new one is started with the storages that need it.
+	 * 
+	 * @return if a pass has finished.
+	 */
+	boolean step()
+	{
+		if (targetList == null)
+		{
+			// If it is not time to check the storages yet
+			if (++stepCount < interval)
+			{
+				return false;
+			}
+			
+			stepCount = 0;
+			
+			if (!start())
+			{
+				return false;
+			}
+		}
+		
+		Object target = targetList.get(targetIndex);
+		
+		long start = java.lang.System.nanoTime();
+		boolean targetFinished = compactStep(target, STEP_ENTITIES);
+		compactionNanos += java.lang.System.nanoTime() - start;
+		
+		if (targetFinished)
+		{
+			afterList.add(measure(target, false));
+			targetIndex++;
+		}
+		
+		boolean finished = (targetIndex >= targetList.size());
+		
+		if (finished)
+		{
+			lastReport = new CompactionReport(beforeList, afterList, compactionNanos);
+			
+			targetList = null;
+			beforeList = null;
+			afterList = null;
+			archetypeMap = null;
+		}
+		
+		return finished;
+	}
+	
+	/**
+	 * Discards the incremental pass in progress, the compaction of the component map in progress is finished.
+	 */
+	void clear()
+	{
+		if (componentMap.isCompacting())
+		{
+			componentMap.compact();
+		}
+		
+		targetList = null;
+		beforeList = null;
+		afterList = null;
+		archetypeMap = null;
+		stepCount = 0;
+	}
+	
+	private List<Object> getTargetList()
+	{
+		List<Object> allTargetList = new ArrayList<Object>();
+		allTargetList.add(componentMap);
+		allTargetList.addAll(mapperMap.values());
+		allTargetList.addAll(dataStoreMap.values());
+		
+		return allTargetList;
+	}
+	
+	/**
+	 * Starts an incremental pass with the storages below the threshold that have changed since they were compacted.
+	 * 
+	 * @return if there is any storage to compact.
+	 */
+	private boolean start()
+	{
+		List<Object> allTargetList = getTargetList();
+		
+		targetList = new ArrayList<Object>();
+		beforeList = new ArrayList<StorageOccupancy>();
+		
+		for (int i=0; i<allTargetList.size(); i++)
+		{
+			Object target = allTargetList.get(i);
+			Integer compactedSize = compactedSizeMap.get(target);
+			
+			if (isBelowThreshold(target) && (compactedSize == null || compactedSize.intValue() != getUsed(target)))
+			{
+				targetList.add(target);
+				beforeList.add(measure(target, false));
+			}
+		}
+		
+		// Forgets the storages that have been removed
+		compactedSizeMap.keySet().retainAll(allTargetList);
+		
+		// If there is nothing to compact
+		if (targetList.isEmpty())
+		{
+			targetList = null;
+			beforeList = null;
+			
+			return false;
+		}
+		
+		targetIndex = 0;
+		afterList = new ArrayList<StorageOccupancy>();
+		compactionNanos = 0;
+		archetypeMap = new HashMap<Set<Class<?>>, Integer>();
+		
+		return true;
+	}
+	
+	private boolean compactStep(Object target, int entityBudget)
+	{
+		boolean finished = true;
+		
+		if (target instanceof ComponentMap)
+		{
+			finished = ((ComponentMap) target).compactStep(entityBudget);
+		}
+		else if (target instanceof ComponentMapper)
+		{
+			((ComponentMapper<?>) target).compact();
+		}
+		else
+		{
+			((DataStore) target).compact(key != null ? key : archetypeKey);
+		}
+		
+		if (finished)
+		{
+			compactedSizeMap.put(target, getUsed(target));
+		}
+		
+		return finished;
+	}
+	
+	/**
+	 * Returns if the used elements of a storage are below the threshold of what it reserves, 
+	 * for the component map the most components it has held.
+	 */
+	private boolean isBelowThreshold(Object target)
+	{
+		boolean below = false;
+		
+		if (target instanceof ComponentMap)
+		{
+			below = (((ComponentMap) target).size() < ((ComponentMap) target).getPeakSize() * threshold);
+		}
+		else if (target instanceof ComponentMapper)
+		{
+			below = (((ComponentMapper<?>) target).size() < ((ComponentMapper<?>) target).getCapacity() * threshold);
+		}
+		else
+		{
+			below = (((DataStore) target).size() < ((DataStore) target).getCapacity() * threshold);
+		}
+		
+		return below;
+	}
+	
+	private int getUsed(Object target)
+	{
+		int used = 0;
+		
+		if (target instanceof ComponentMap)
+		{
+			used = ((ComponentMap) target).size();
+		}
+		else if (target instanceof ComponentMapper)
+		{
+			used = ((ComponentMapper<?>) target).size();
+		}
+		else
+		{
+			used = ((DataStore) target).size();
+		}
+		
+		return used;
+	}
+	
+	/**
+	 * Measures the occupancy of a storage, and if iterate is set the time it takes to iterate it.
+	 */
+	private StorageOccupancy measure(Object target, boolean iterate)
+	{
+		StorageOccupancy occupancy = null;
+		long start = java.lang.System.nanoTime();
+		
+		if (target instanceof ComponentMap)
+		{
+			ComponentMap map = (ComponentMap) target;
+			
+			if (iterate)
+			{
+				Iterator<Component> iterator = map.values().iterator();
+				while (iterator.hasNext())
+				{
+					checksum += iterator.next().hashCode();
+				}
+			}
+			
+			occupancy = new StorageOccupancy(COMPONENTS, map.size(), MemoryEstimator.getHashTableCapacity(map.getPeakSize()), getIterationNanos(iterate, start));
+		}
+		else if (target instanceof ComponentMapper)
+		{
+			ComponentMapper<?> mapper = (ComponentMapper<?>) target;
+			
+			int capacity = mapper.getCapacity();
+			
+			if (iterate)
+			{
+				for (int i=0; i<capacity; i++)
+				{
+					if (mapper.has(i))
+					{
+						checksum++;
+					}
+				}
+			}
+			
+			occupancy = new StorageOccupancy(MAPPER + mapper.getComponentClass().getName(), mapper.size(), capacity, getIterationNanos(iterate, start));
+		}
+		else
+		{
+			DataStore store = (DataStore) target;
+			
+			int size = store.size();
+			int fieldCount = (iterate ? store.getSchema().getFieldCount() : 0);
+			
+			for (int field=0; field<fieldCount; field++)
+			{
+				switch (store.getSchema().getFieldType(field))
+				{
+					case LONG:
+					case DOUBLE:
+					{
+						for (int slot=0; slot<size; slot++)
+						{
+							checksum += store.getLong(slot, field);
+						}
+						
+						break;
+					}
+					
+					case INT:
+					case FLOAT:
+					{
+						for (int slot=0; slot<size; slot++)
+						{
+							checksum += store.getInt(slot, field);
+						}
+						
+						break;
+					}
+					
+					case SHORT:
+					{
+						for (int slot=0; slot<size; slot++)
+						{
+							checksum += store.getShort(slot, field);
+						}
+						
+						break;
+					}
+					
+					default:
+					{
+						for (int slot=0; slot<size; slot++)
+						{
+							checksum += store.getByte(slot, field);
+						}
+						
+						break;
+					}
+				}
+			}
+			
+			occupancy = new StorageOccupancy(DATA_STORE + store.getName(), size, store.getCapacity(), getIterationNanos(iterate, start));
+		}
+		
+		return occupancy;
+	}
+	
+	private long getIterationNanos(boolean iterate, long start)
+	{
+		return (iterate ? java.lang.System.nanoTime() - start : 0);
+	}
+}
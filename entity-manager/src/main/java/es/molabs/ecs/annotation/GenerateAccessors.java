@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a component whose accessors and storage are generated at compile time by the processor of the 
+ * entity-manager-processor module, in the same package as the component:
+ * <ul>
+ * <li><code>NamePool</code>: pool of reusable instances.</li>
+ * <li><code>NameMapper</code>: typed {@link es.molabs.ecs.ComponentMapper} that finds the component of each entity by id.</li>
+ * <li><code>NameCopier</code>: copies, resets and clones instances.</li>
+ * <li><code>NameSerializer</code>: writes and reads the fields, if {@link #serializer()} is enabled.</li>
+ * </ul>
+ * Only the fields declared by the component are handled, static, transient and final fields are ignored. 
+ * Private fields are accessed through their getters and setters. The component needs a constructor without arguments.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateAccessors 
+{
+	/**
+	 * Returns if a serializer is generated, that needs all the fields to be primitives, strings or enums.
+	 * 
+	 * @return if a serializer is generated.
+	 */
+	boolean serializer() default true;
+}
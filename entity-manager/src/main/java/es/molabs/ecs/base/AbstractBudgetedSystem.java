@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.base;
+
+import java.util.BitSet;
+
+import es.molabs.ecs.BudgetedSystem;
+import es.molabs.ecs.query.Query;
+
+/**
+ * System that processes the entities matching a query in slices, stopping each update when its 
+ * budget is spent and resuming from the same point on the next one.
+ * <p>
+ * The matching entities are taken at the start of each pass. Each update processes at least 
+ * 1/maxFrames of them, even if the budget is exceeded, so every entity of a pass is processed 
+ * within maxFrames updates. Entities that match after the pass has started wait for the next one.
+ */
+public abstract class AbstractBudgetedSystem extends AbstractSystem implements BudgetedSystem
+{
+	private final static int[] EMPTY = new int[0];
+	
+	private final Query query;
+	private final int maxFrames;
+	private long budget;
+	
+	private int[] pending = null;
+	private int position;
+	private int minSlice;
+	private int passFrames;
+	private int lastPassFrames;
+	private long lastOverrun;
+	
+	/**
+	 * Creates a new budgeted system.
+	 * 
+	 * @param concurrent if this system would run in its own thread or not.
+	 * @param query that selects the entities to process.
+	 * @param budget time in nanoseconds that each update is allowed to spend.
+	 * @param maxFrames maximum number of updates needed to process all the entities of a pass.
+	 */
+	protected AbstractBudgetedSystem(boolean concurrent, Query query, long budget, int maxFrames)
+	{
+		super(concurrent);
+		
+		if (budget < 0) throw new IllegalArgumentException("Budget cannot be negative.");
+		if (maxFrames < 1) throw new IllegalArgumentException("Max frames must be greater than 0.");
+		
+		this.query = query;
+		this.budget = budget;
+		this.maxFrames = maxFrames;
+		
+		pending = EMPTY;
+	}
+	
+	public Query getQuery()
+	{
+		return query;
+	}
+	
+	public int getMaxFrames()
+	{
+		return maxFrames;
+	}
+	
+	public long getBudget()
+	{
+		return budget;
+	}
+	
+	public void setBudget(long budget)
+	{
+		if (budget < 0) throw new IllegalArgumentException("Budget cannot be negative.");
+		
+		this.budget = budget;
+	}
+	
+	public long getLastOverrun()
+	{
+		return lastOverrun;
+	}
+	
+	public int getLag()
+	{
+		return pending.length - position;
+	}
+	
+	/**
+	 * Returns the number of updates that the last completed pass needed.
+	 * 
+	 * @return the number of updates that the last completed pass needed.
+	 */
+	public int getLastPassFrames()
+	{
+		return lastPassFrames;
+	}
+	
+	protected void onUpdate(float delta)
+	{
+		long start = java.lang.System.nanoTime();
+		
+		// Starts a new pass if the last one has finished
+		if (position == pending.length)
+		{
+			startPass();
+		}
+		
+		int processed = 0;
+		long elapsed = 0;
+		
+		while (position < pending.length)
+		{
+			// Stops when the budget is spent, but only after the minimum slice
+			if (processed >= minSlice && (elapsed = java.lang.System.nanoTime() - start) >= budget)
+			{
+				break;
+			}
+			
+			int entityId = pending[position++];
+			
+			// Skips the entities unregistered since the pass started
+			if (getEntityManager().getEntity(entityId) != null)
+			{
+				onProcess(entityId, delta);
+			}
+			
+			processed++;
+		}
+		
+		passFrames++;
+		
+		if (position == pending.length)
+		{
+			lastPassFrames = passFrames;
+		}
+		
+		elapsed = java.lang.System.nanoTime() - start;
+		lastOverrun = Math.max(0, elapsed - budget);
+	}
+	
+	protected void onDispose()
+	{
+		pending = EMPTY;
+		position = 0;
+	}
+	
+	/**
+	 * Processes an entity that matches the query.
+	 * 
+	 * @param entityId id of the entity.
+	 * @param delta time elapsed in the current update.
+	 */
+	protected abstract void onProcess(int entityId, float delta);
+	
+	private void startPass()
+	{
+		BitSet entities = getEntityManager().query(query);
+		
+		pending = new int[entities.cardinality()];
+		position = 0;
+		passFrames = 0;
+		
+		int index = 0;
+		for (int entityId = entities.nextSetBit(0); entityId >= 0; entityId = entities.nextSetBit(entityId + 1))
+		{
+			pending[index++] = entityId;
+		}
+		
+		minSlice = (pending.length + maxFrames - 1) / maxFrames;
+	}
+}
@@ -15,17 +15,25 @@
  */
 package es.molabs.ecs.base;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
+import es.molabs.ecs.ActivityListener;
 import es.molabs.ecs.Component;
 import es.molabs.ecs.EntityManager;
 import es.molabs.ecs.System;
+import es.molabs.ecs.WorldClearListener;
+import es.molabs.ecs.metrics.MemoryAware;
+import es.molabs.ecs.metrics.MemoryEstimator;
 import es.molabs.task.Task;
 import es.molabs.task.TaskExecutor;
 import es.molabs.task.base.SingleThreadTaskExecutor;
 
-public abstract class AbstractTaskSystem implements System
+public abstract class AbstractTaskSystem implements System, ActivityListener, WorldClearListener, MemoryAware
 {
 	private boolean concurrent;
 	
@@ -33,7 +41,11 @@ public abstract class AbstractTaskSystem implements System
 	private EntityManager entityManager = null;
 	
 	private Map<Component, Task> componentMap = null;
+	private Set<Component> dormantSet = null;
 	private TaskExecutor taskExecutor = null;
+	
+	// Shallow size of the tasks of the system, kept up to date as tasks are added and removed
+	private long taskBytes;
 		
 	protected AbstractTaskSystem(boolean concurrent)
 	{
@@ -66,6 +78,7 @@ public abstract class AbstractTaskSystem implements System
 		this.entityManager = entityManager;
 		
 		componentMap = new HashMap<Component, Task>();
+		dormantSet = new HashSet<Component>();
 		
 		taskExecutor = new SingleThreadTaskExecutor();		
 		
@@ -82,6 +95,11 @@ public abstract class AbstractTaskSystem implements System
 		componentMap.clear();
 		componentMap = null;
 		
+		dormantSet.clear();
+		dormantSet = null;
+		
+		taskBytes = 0;
+		
 		entityManager = null;
 		id = null;		
 	}
@@ -93,7 +111,18 @@ public abstract class AbstractTaskSystem implements System
 		if (task != null)
 		{
 			componentMap.put(component, task);
-			taskExecutor.add(task);
+			
+			// The tasks of dormant entities are kept out of the executor until they are woken
+			if (component.getEntityId() != null && entityManager.isDormant(component.getEntityId()))
+			{
+				dormantSet.add(component);
+			}
+			else
+			{
+				taskExecutor.add(task);
+			}
+			
+			taskBytes += MemoryEstimator.getShallowSize(task.getClass());
 		}
 	}
 	
@@ -103,7 +132,12 @@ public abstract class AbstractTaskSystem implements System
 		
 		if (task != null)
 		{		
-			taskExecutor.remove(task);
+			if (!dormantSet.remove(component))
+			{
+				taskExecutor.remove(task);
+			}
+			
+			taskBytes -= MemoryEstimator.getShallowSize(task.getClass());
 		}
 		
 		onComponentRemoved(component);
@@ -114,6 +148,76 @@ public abstract class AbstractTaskSystem implements System
 		taskExecutor.execute(delta);
 	}
 	
+	public void entitySlept(int entityId)
+	{
+		Collection<Component> componentCollection = entityManager.getComponentCollection(entityId);
+		
+		if (componentCollection != null)
+		{
+			Iterator<Component> iterator = componentCollection.iterator();
+			while (iterator.hasNext())
+			{
+				Component component = iterator.next();
+				Task task = componentMap.get(component);
+				
+				if (task != null && dormantSet.add(component))
+				{
+					taskExecutor.remove(task);
+				}
+			}
+		}
+	}
+	
+	public void entityWoken(int entityId)
+	{
+		Collection<Component> componentCollection = entityManager.getComponentCollection(entityId);
+		
+		if (componentCollection != null)
+		{
+			Iterator<Component> iterator = componentCollection.iterator();
+			while (iterator.hasNext())
+			{
+				Component component = iterator.next();
+				
+				if (dormantSet.remove(component))
+				{
+					taskExecutor.add(componentMap.get(component));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes all the tasks at once. {@link #onComponentRemoved(Component)} is not called, 
+	 * {@link #onWorldCleared()} is called instead.
+	 */
+	public void worldCleared()
+	{
+		taskExecutor.clear();
+		componentMap.clear();
+		dormantSet.clear();
+		
+		taskBytes = 0;
+		
+		onWorldCleared();
+	}
+	
+	public long estimateRetainedBytes()
+	{
+		long bytes = 0;
+		
+		if (componentMap != null)
+		{
+			// The map of tasks by component and a reference to each task in the executor
+			bytes = MemoryEstimator.getHashMapSize(componentMap.size()) + (long) componentMap.size() * MemoryEstimator.REFERENCE + taskBytes;
+			
+			// The set of components of dormant entities
+			bytes += MemoryEstimator.getHashMapSize(dormantSet.size());
+		}
+		
+		return bytes;
+	}
+	
 	/**
 	 * Reserves and initializes any resource needed by this system. 
 	 */
@@ -132,5 +236,9 @@ public abstract class AbstractTaskSystem implements System
 	{		
 	}
 	
+	protected void onWorldCleared()
+	{
+	}
+	
 	protected abstract Task onComponentAdded(Component component);
 }
@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.data;
+
+/**
+ * Per-entity math applied by {@link ColumnOperations} to chunks of float columns.
+ * <p>
+ * Kernels should be simple counted loops over the arrays, so the JIT compiler can run them in SIMD lanes.
+ */
+public interface ColumnKernel 
+{
+	/**
+	 * Applies the kernel to a chunk of entities.
+	 * 
+	 * @param columns chunk of each field, in the order they were requested. Only the first one is written back.
+	 * @param length number of entities in the chunk.
+	 */
+	public void apply(float[][] columns, int length);
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.data;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.util.BitSet;
+
+/**
+ * Bulk operations over the float columns of a {@link DataStore}.
+ * <p>
+ * Columns are copied in chunks into arrays, the kernel is applied to the whole chunk and the first column is 
+ * copied back. When all the entities of the store are processed the chunks are copied with bulk buffer transfers, 
+ * when only the entities of a query are processed their values are gathered and scattered by slot.
+ */
+public class ColumnOperations 
+{
+	public final static int CHUNK_SIZE = 1024;
+	
+	private ColumnOperations()
+	{
+	}
+	
+	/**
+	 * Applies a kernel to some fields of the entities of a store.
+	 * 
+	 * @param store of the entities.
+	 * @param entities ids of the entities to process as returned by a query, or null to process all of them.
+	 * @param kernel to apply.
+	 * @param fields positions of the fields passed to the kernel, the first one is the one written.
+	 */
+	public static void apply(DataStore store, BitSet entities, ColumnKernel kernel, int... fields)
+	{
+		if (fields.length == 0)
+		{
+			throw new IllegalArgumentException("At least one field is needed.");
+		}
+		
+		for (int i=0; i<fields.length; i++)
+		{
+			if (store.getSchema().getFieldType(fields[i]) != DataType.FLOAT)
+			{
+				throw new IllegalArgumentException("Field is not a float [name=" + store.getSchema().getFieldName(fields[i]) + "].");
+			}
+		}
+		
+		float[][] chunks = new float[fields.length][CHUNK_SIZE];
+		
+		if (entities == null)
+		{
+			applyContiguous(store, kernel, fields, chunks);
+		}
+		else
+		{
+			applySelected(store, entities, kernel, fields, chunks);
+		}
+	}
+	
+	/**
+	 * Adds a value to a field.
+	 */
+	public static void add(DataStore store, BitSet entities, int field, final float value)
+	{
+		apply(store, entities, new ColumnKernel()
+		{
+			public void apply(float[][] columns, int length)
+			{
+				float[] target = columns[0];
+				
+				for (int i=0; i<length; i++)
+				{
+					target[i] += value;
+				}
+			}
+		}, field);
+	}
+	
+	/**
+	 * Multiplies a field by a factor, as used for decays.
+	 */
+	public static void scale(DataStore store, BitSet entities, int field, final float factor)
+	{
+		apply(store, entities, new ColumnKernel()
+		{
+			public void apply(float[][] columns, int length)
+			{
+				float[] target = columns[0];
+				
+				for (int i=0; i<length; i++)
+				{
+					target[i] *= factor;
+				}
+			}
+		}, field);
+	}
+	
+	/**
+	 * Limits a field to a range.
+	 */
+	public static void clamp(DataStore store, BitSet entities, int field, final float min, final float max)
+	{
+		apply(store, entities, new ColumnKernel()
+		{
+			public void apply(float[][] columns, int length)
+			{
+				float[] target = columns[0];
+				
+				for (int i=0; i<length; i++)
+				{
+					target[i] = Math.min(Math.max(target[i], min), max);
+				}
+			}
+		}, field);
+	}
+	
+	/**
+	 * Adds other field multiplied by a factor to a field, as used to integrate a velocity into a position.
+	 */
+	public static void addScaled(DataStore store, BitSet entities, int targetField, int sourceField, final float factor)
+	{
+		apply(store, entities, new ColumnKernel()
+		{
+			public void apply(float[][] columns, int length)
+			{
+				float[] target = columns[0];
+				float[] source = columns[1];
+				
+				for (int i=0; i<length; i++)
+				{
+					target[i] += source[i] * factor;
+				}
+			}
+		}, targetField, sourceField);
+	}
+	
+	/**
+	 * Adds a value to a field without exceeding the value of other field, as used to regenerate up to a maximum.
+	 */
+	public static void addCapped(DataStore store, BitSet entities, int targetField, int maxField, final float value)
+	{
+		apply(store, entities, new ColumnKernel()
+		{
+			public void apply(float[][] columns, int length)
+			{
+				float[] target = columns[0];
+				float[] max = columns[1];
+				
+				for (int i=0; i<length; i++)
+				{
+					target[i] = Math.min(target[i] + value, max[i]);
+				}
+			}
+		}, targetField, maxField);
+	}
+	
+	private static void applyContiguous(DataStore store, ColumnKernel kernel, int[] fields, float[][] chunks)
+	{
+		FloatBuffer[] columns = new FloatBuffer[fields.length];
+		for (int i=0; i<fields.length; i++)
+		{
+			columns[i] = store.getFloatColumn(fields[i]);
+		}
+		
+		int size = columns[0].remaining();
+		
+		for (int start=0; start<size; start+=CHUNK_SIZE)
+		{
+			int length = Math.min(CHUNK_SIZE, size - start);
+			
+			for (int i=0; i<columns.length; i++)
+			{
+				((Buffer) columns[i]).position(start);
+				columns[i].get(chunks[i], 0, length);
+			}
+			
+			kernel.apply(chunks, length);
+			
+			((Buffer) columns[0]).position(start);
+			columns[0].put(chunks[0], 0, length);
+		}
+	}
+	
+	private static void applySelected(DataStore store, BitSet entities, ColumnKernel kernel, int[] fields, float[][] chunks)
+	{
+		int[] slots = new int[CHUNK_SIZE];
+		int length = 0;
+		
+		for (int entityId=entities.nextSetBit(0); entityId>=0; entityId=entities.nextSetBit(entityId+1))
+		{
+			int slot = store.getSlot(entityId);
+			
+			// If the entity has this data
+			if (slot >= 0)
+			{
+				slots[length++] = slot;
+				
+				if (length == CHUNK_SIZE)
+				{
+					applySlots(store, kernel, fields, chunks, slots, length);
+					
+					length = 0;
+				}
+			}
+		}
+		
+		if (length > 0)
+		{
+			applySlots(store, kernel, fields, chunks, slots, length);
+		}
+	}
+	
+	private static void applySlots(DataStore store, ColumnKernel kernel, int[] fields, float[][] chunks, int[] slots, int length)
+	{
+		for (int i=0; i<fields.length; i++)
+		{
+			float[] chunk = chunks[i];
+			
+			for (int j=0; j<length; j++)
+			{
+				chunk[j] = store.getFloat(slots[j], fields[i]);
+			}
+		}
+		
+		kernel.apply(chunks, length);
+		
+		float[] target = chunks[0];
+		for (int j=0; j<length; j++)
+		{
+			store.setFloat(slots[j], fields[0], target[j]);
+		}
+	}
+}
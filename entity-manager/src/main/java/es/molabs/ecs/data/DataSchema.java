@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declares the fields of a plain data component, stored column by column in a {@link DataStore}.
+ * <p>
+ * Fields are read and written by the position returned by {@link #getField(String)}, that should be 
+ * resolved once and kept by the systems.
+ */
+public class DataSchema 
+{
+	private final String name;
+	private final List<String> fieldNameList;
+	private final List<DataType> fieldTypeList;
+	
+	public DataSchema(String name)
+	{
+		this.name = name;
+		
+		fieldNameList = new ArrayList<String>();
+		fieldTypeList = new ArrayList<DataType>();
+	}
+	
+	/**
+	 * Adds a field to the schema.
+	 * 
+	 * @param fieldName name of the field.
+	 * @param type of the field.
+	 * 
+	 * @return this schema.
+	 */
+	public DataSchema add(String fieldName, DataType type)
+	{
+		if (fieldNameList.contains(fieldName))
+		{
+			throw new IllegalArgumentException("Field already exists [name=" + fieldName + "].");
+		}
+		
+		fieldNameList.add(fieldName);
+		fieldTypeList.add(type);
+		
+		return this;
+	}
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Returns the position of a field.
+	 * 
+	 * @param fieldName name of the field.
+	 * 
+	 * @return the position of the field.
+	 */
+	public int getField(String fieldName)
+	{
+		int field = fieldNameList.indexOf(fieldName);
+		
+		if (field < 0)
+		{
+			throw new IllegalArgumentException("Field not found [name=" + fieldName + "].");
+		}
+		
+		return field;
+	}
+	
+	public int getFieldCount()
+	{
+		return fieldNameList.size();
+	}
+	
+	public String getFieldName(int field)
+	{
+		return fieldNameList.get(field);
+	}
+	
+	public DataType getFieldType(int field)
+	{
+		return fieldTypeList.get(field);
+	}
+	
+	/**
+	 * Returns the size of the fields of one entity.
+	 * 
+	 * @return the size in bytes.
+	 */
+	public int getRowSize()
+	{
+		int size = 0;
+		
+		for (int i=0; i<fieldTypeList.size(); i++)
+		{
+			size += fieldTypeList.get(i).getSize();
+		}
+		
+		return size;
+	}
+}
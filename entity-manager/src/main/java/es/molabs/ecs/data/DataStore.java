@@ -0,0 +1,464 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.data;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Stores the fields of a {@link DataSchema} for many entities, one direct buffer per field.
+ * <p>
+ * Each entity takes a slot, the slots are kept contiguous moving the last one into the place of a removed one, 
+ * so a field of all the entities can be streamed from its column. Values are read and written in place, without 
+ * allocating, by slot and field. Slots can change when entities are removed or the store is compacted, so they should not be kept between frames.
+ * <p>
+ * Slots are added and removed by the thread that owns the world, values can be accessed from any thread 
+ * as long as each slot is written only by one of them.
+ */
+public class DataStore 
+{
+	private final static int DEFAULT_CAPACITY = 64;
+	
+	private final DataSchema schema;
+	private final int[] fieldSizes;
+	
+	private ByteBuffer[] columns;
+	private int[] entityIdBySlot;
+	
+	// Slot of each entity plus one, so zero means none
+	private int[] slotByEntityId;
+	
+	private int capacity;
+	private int size;
+	
+	public DataStore(DataSchema schema)
+	{
+		this(schema, DEFAULT_CAPACITY);
+	}
+	
+	public DataStore(DataSchema schema, int initialCapacity)
+	{
+		if (schema.getFieldCount() == 0)
+		{
+			throw new IllegalArgumentException("Schema without fields [name=" + schema.getName() + "].");
+		}
+		
+		this.schema = schema;
+		
+		fieldSizes = new int[schema.getFieldCount()];
+		for (int i=0; i<fieldSizes.length; i++)
+		{
+			fieldSizes[i] = schema.getFieldType(i).getSize();
+		}
+		
+		columns = new ByteBuffer[fieldSizes.length];
+		entityIdBySlot = new int[0];
+		slotByEntityId = new int[0];
+		
+		grow(Math.max(1, initialCapacity));
+	}
+	
+	public DataSchema getSchema()
+	{
+		return schema;
+	}
+	
+	public String getName()
+	{
+		return schema.getName();
+	}
+	
+	/**
+	 * Adds an entity to the store with all its fields set to zero.
+	 * 
+	 * @param entityId id of the entity.
+	 * 
+	 * @return the slot of the entity.
+	 */
+	public synchronized int add(int entityId)
+	{
+		int slot = getSlot(entityId);
+		
+		// If it does not exist
+		if (slot < 0)
+		{
+			if (size == capacity)
+			{
+				grow(capacity * 2);
+			}
+			
+			slot = size++;
+			
+			for (int i=0; i<columns.length; i++)
+			{
+				int offset = slot * fieldSizes[i];
+				
+				for (int j=0; j<fieldSizes[i]; j++)
+				{
+					columns[i].put(offset + j, (byte) 0);
+				}
+			}
+			
+			if (entityId >= slotByEntityId.length)
+			{
+				int[] newSlotByEntityId = new int[Math.max(entityId + 1, slotByEntityId.length * 2)];
+				System.arraycopy(slotByEntityId, 0, newSlotByEntityId, 0, slotByEntityId.length);
+				slotByEntityId = newSlotByEntityId;
+			}
+			
+			entityIdBySlot[slot] = entityId;
+			slotByEntityId[entityId] = slot + 1;
+		}
+		
+		return slot;
+	}
+	
+	/**
+	 * Removes an entity from the store, moving the entity in the last slot into its place.
+	 * 
+	 * @param entityId id of the entity.
+	 * 
+	 * @return if the entity was in the store.
+	 */
+	public synchronized boolean remove(int entityId)
+	{
+		int slot = getSlot(entityId);
+		
+		// If exists
+		if (slot >= 0)
+		{
+			int lastSlot = --size;
+			
+			if (slot != lastSlot)
+			{
+				for (int i=0; i<columns.length; i++)
+				{
+					copy(columns[i], lastSlot * fieldSizes[i], slot * fieldSizes[i], fieldSizes[i]);
+				}
+				
+				int lastEntityId = entityIdBySlot[lastSlot];
+				entityIdBySlot[slot] = lastEntityId;
+				slotByEntityId[lastEntityId] = slot + 1;
+			}
+			
+			slotByEntityId[entityId] = 0;
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	public synchronized void clear()
+	{
+		for (int i=0; i<size; i++)
+		{
+			slotByEntityId[entityIdBySlot[i]] = 0;
+		}
+		
+		size = 0;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public int getCapacity()
+	{
+		return capacity;
+	}
+	
+	public boolean contains(int entityId)
+	{
+		return getSlot(entityId) >= 0;
+	}
+	
+	/**
+	 * Returns the slot of an entity.
+	 * 
+	 * @param entityId id of the entity.
+	 * 
+	 * @return the slot or -1 if the entity is not in the store.
+	 */
+	public int getSlot(int entityId)
+	{
+		return (entityId >= 0 && entityId < slotByEntityId.length ? slotByEntityId[entityId] - 1 : -1);
+	}
+	
+	public int getEntityId(int slot)
+	{
+		return entityIdBySlot[slot];
+	}
+	
+	public byte getByte(int slot, int field)
+	{
+		return columns[field].get(slot);
+	}
+	
+	public void setByte(int slot, int field, byte value)
+	{
+		columns[field].put(slot, value);
+	}
+	
+	public short getShort(int slot, int field)
+	{
+		return columns[field].getShort(slot << 1);
+	}
+	
+	public void setShort(int slot, int field, short value)
+	{
+		columns[field].putShort(slot << 1, value);
+	}
+	
+	public int getInt(int slot, int field)
+	{
+		return columns[field].getInt(slot << 2);
+	}
+	
+	public void setInt(int slot, int field, int value)
+	{
+		columns[field].putInt(slot << 2, value);
+	}
+	
+	public long getLong(int slot, int field)
+	{
+		return columns[field].getLong(slot << 3);
+	}
+	
+	public void setLong(int slot, int field, long value)
+	{
+		columns[field].putLong(slot << 3, value);
+	}
+	
+	public float getFloat(int slot, int field)
+	{
+		return columns[field].getFloat(slot << 2);
+	}
+	
+	public void setFloat(int slot, int field, float value)
+	{
+		columns[field].putFloat(slot << 2, value);
+	}
+	
+	public double getDouble(int slot, int field)
+	{
+		return columns[field].getDouble(slot << 3);
+	}
+	
+	public void setDouble(int slot, int field, double value)
+	{
+		columns[field].putDouble(slot << 3, value);
+	}
+	
+	/**
+	 * Returns a copy of the fields of a slot, one after the other in the order of the schema.
+	 * 
+	 * @param slot of the entity.
+	 * 
+	 * @return the bytes of the fields.
+	 */
+	public byte[] getRow(int slot)
+	{
+		byte[] row = new byte[schema.getRowSize()];
+		int position = 0;
+		
+		for (int i=0; i<columns.length; i++)
+		{
+			int offset = slot * fieldSizes[i];
+			
+			for (int j=0; j<fieldSizes[i]; j++)
+			{
+				row[position++] = columns[i].get(offset + j);
+			}
+		}
+		
+		return row;
+	}
+	
+	/**
+	 * Sets the fields of a slot from a row returned by {@link #getRow(int)} of a store with the same schema.
+	 * 
+	 * @param slot of the entity.
+	 * @param row with the bytes of the fields.
+	 */
+	public void setRow(int slot, byte[] row)
+	{
+		if (row.length != schema.getRowSize()) throw new IllegalArgumentException("Row size does not match the schema [name=" + schema.getName() + "].");
+		
+		int position = 0;
+		
+		for (int i=0; i<columns.length; i++)
+		{
+			int offset = slot * fieldSizes[i];
+			
+			for (int j=0; j<fieldSizes[i]; j++)
+			{
+				columns[i].put(offset + j, row[position++]);
+			}
+		}
+	}
+	
+	/**
+	 * Returns a view of the used slots of a column, that is valid until the store grows or is compacted.
+	 * 
+	 * @param field position of the field.
+	 * 
+	 * @return the view of the column.
+	 */
+	public ByteBuffer getColumn(int field)
+	{
+		ByteBuffer column = columns[field].duplicate();
+		((Buffer) column).limit(size * fieldSizes[field]);
+		
+		return column.slice().order(ByteOrder.nativeOrder());
+	}
+	
+	/**
+	 * Returns a view of the used slots of a float column, that is valid until the store grows or is compacted.
+	 * 
+	 * @param field position of the field.
+	 * 
+	 * @return the view of the column.
+	 */
+	public FloatBuffer getFloatColumn(int field)
+	{
+		if (schema.getFieldType(field) != DataType.FLOAT)
+		{
+			throw new IllegalArgumentException("Field is not a float [name=" + schema.getFieldName(field) + "].");
+		}
+		
+		return getColumn(field).asFloatBuffer();
+	}
+	
+	/**
+	 * Returns the memory reserved outside of the heap by the columns.
+	 * 
+	 * @return the size in bytes.
+	 */
+	public long getOffHeapSize()
+	{
+		return (long) capacity * schema.getRowSize();
+	}
+	
+	/**
+	 * Reorders the slots by a key and releases the capacity that is no longer used.
+	 * 
+	 * @param key of the entities, the slots with the same key keep their order. If null they are ordered by entity id.
+	 */
+	public synchronized void compact(EntityKey key)
+	{
+		// Key in the high bits and current slot in the low bits, so sorting keeps the order of the same keys
+		long[] order = new long[size];
+		for (int i=0; i<size; i++)
+		{
+			int entityKey = (key != null ? key.getKey(entityIdBySlot[i]) : entityIdBySlot[i]);
+			
+			order[i] = ((long) entityKey << 32) | i;
+		}
+		
+		Arrays.sort(order);
+		
+		// Only shrinks if less than half is used
+		int newCapacity = (capacity > size * 2 ? Math.min(capacity, Math.max(DEFAULT_CAPACITY, size)) : capacity);
+		
+		for (int i=0; i<columns.length; i++)
+		{
+			ByteBuffer column = ByteBuffer.allocateDirect(newCapacity * fieldSizes[i]).order(ByteOrder.nativeOrder());
+			
+			for (int slot=0; slot<size; slot++)
+			{
+				copy(columns[i], (int) order[slot] * fieldSizes[i], column, slot * fieldSizes[i], fieldSizes[i]);
+			}
+			
+			columns[i] = column;
+		}
+		
+		int[] newEntityIdBySlot = new int[newCapacity];
+		int maxEntityId = -1;
+		
+		for (int slot=0; slot<size; slot++)
+		{
+			int entityId = entityIdBySlot[(int) order[slot]];
+			
+			newEntityIdBySlot[slot] = entityId;
+			maxEntityId = Math.max(maxEntityId, entityId);
+		}
+		
+		entityIdBySlot = newEntityIdBySlot;
+		capacity = newCapacity;
+		
+		// Rebuilds the slots of the entities only as long as the highest id
+		slotByEntityId = new int[maxEntityId + 1];
+		for (int slot=0; slot<size; slot++)
+		{
+			slotByEntityId[entityIdBySlot[slot]] = slot + 1;
+		}
+	}
+	
+	private void grow(int newCapacity)
+	{
+		for (int i=0; i<columns.length; i++)
+		{
+			ByteBuffer column = ByteBuffer.allocateDirect(newCapacity * fieldSizes[i]).order(ByteOrder.nativeOrder());
+			
+			if (columns[i] != null)
+			{
+				ByteBuffer oldColumn = columns[i].duplicate();
+				((Buffer) oldColumn).clear().limit(size * fieldSizes[i]);
+				
+				column.put(oldColumn);
+				((Buffer) column).clear();
+			}
+			
+			columns[i] = column;
+		}
+		
+		int[] newEntityIdBySlot = new int[newCapacity];
+		System.arraycopy(entityIdBySlot, 0, newEntityIdBySlot, 0, size);
+		entityIdBySlot = newEntityIdBySlot;
+		
+		capacity = newCapacity;
+	}
+	
+	private void copy(ByteBuffer column, int from, int to, int length)
+	{
+		copy(column, from, column, to, length);
+	}
+	
+	private void copy(ByteBuffer source, int from, ByteBuffer target, int to, int length)
+	{
+		switch (length)
+		{
+			case 8: target.putLong(to, source.getLong(from)); break;
+			case 4: target.putInt(to, source.getInt(from)); break;
+			case 2: target.putShort(to, source.getShort(from)); break;
+			
+			default:
+			{
+				for (int i=0; i<length; i++)
+				{
+					target.put(to + i, source.get(from + i));
+				}
+				
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.data;
+
+/**
+ * Primitive types of the fields of a {@link DataSchema}.
+ */
+public enum DataType 
+{
+	BYTE(1),
+	SHORT(2),
+	INT(4),
+	LONG(8),
+	FLOAT(4),
+	DOUBLE(8);
+	
+	private final int size;
+	
+	private DataType(int size)
+	{
+		this.size = size;
+	}
+	
+	/**
+	 * Returns the size of a value of this type.
+	 * 
+	 * @return the size in bytes.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+}
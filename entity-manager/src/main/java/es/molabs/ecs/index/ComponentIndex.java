@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.index;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import es.molabs.ecs.Component;
+
+/**
+ * Index of the entities by the value of a field of one of their components.
+ * <p>
+ * Indexes registered in an {@link es.molabs.ecs.EntityManager} are updated when components of their 
+ * class are registered, unregistered or marked as changed. Only components of exactly that class are indexed.
+ *
+ * @param <C> type of the component.
+ * @param <K> type of the key.
+ */
+public abstract class ComponentIndex<C extends Component, K>
+{
+	private final String name;
+	private final Class<C> componentClass;
+	private final KeyExtractor<C, K> extractor;
+	
+	// Last key of each component, needed to find it once the component has changed
+	private final Map<Integer, K> keyByComponentId;
+	
+	protected ComponentIndex(String name, Class<C> componentClass, KeyExtractor<C, K> extractor)
+	{
+		this.name = name;
+		this.componentClass = componentClass;
+		this.extractor = extractor;
+		
+		keyByComponentId = new HashMap<Integer, K>();
+	}
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	public Class<C> getComponentClass()
+	{
+		return componentClass;
+	}
+	
+	public synchronized void add(Component component)
+	{
+		if (component.getClass() == componentClass && component.getEntityId() != null)
+		{
+			K key = extractor.getKey(componentClass.cast(component));
+			
+			keyByComponentId.put(component.getId(), key);
+			
+			if (key != null)
+			{
+				addEntry(key, component.getEntityId());
+			}
+		}
+	}
+	
+	public synchronized void remove(Component component)
+	{
+		if (component.getClass() == componentClass && keyByComponentId.containsKey(component.getId()))
+		{
+			K key = keyByComponentId.remove(component.getId());
+			
+			if (key != null)
+			{
+				removeEntry(key, component.getEntityId());
+			}
+		}
+	}
+	
+	public synchronized void update(Component component)
+	{
+		if (component.getClass() == componentClass && keyByComponentId.containsKey(component.getId()))
+		{
+			K oldKey = keyByComponentId.get(component.getId());
+			K newKey = extractor.getKey(componentClass.cast(component));
+			
+			// Only if the key has changed
+			if (oldKey == null ? newKey != null : !oldKey.equals(newKey))
+			{
+				if (oldKey != null)
+				{
+					removeEntry(oldKey, component.getEntityId());
+				}
+				
+				if (newKey != null)
+				{
+					addEntry(newKey, component.getEntityId());
+				}
+				
+				keyByComponentId.put(component.getId(), newKey);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the entities whose component has a key.
+	 * 
+	 * @param key to find.
+	 * 
+	 * @return a copy of the ids of the entities.
+	 */
+	public synchronized Set<Integer> getEntityIds(K key)
+	{
+		Set<Integer> entityIdSet = getEntries(key);
+		
+		return (entityIdSet != null ? Collections.unmodifiableSet(copy(entityIdSet)) : Collections.<Integer>emptySet());
+	}
+	
+	/**
+	 * Returns one of the entities whose component has a key.
+	 * 
+	 * @param key to find.
+	 * 
+	 * @return the id of the entity or null if there is none.
+	 */
+	public synchronized Integer getEntityId(K key)
+	{
+		Set<Integer> entityIdSet = getEntries(key);
+		
+		return (entityIdSet != null && !entityIdSet.isEmpty() ? entityIdSet.iterator().next() : null);
+	}
+	
+	public synchronized int size()
+	{
+		return keyByComponentId.size();
+	}
+	
+	public synchronized void clear()
+	{
+		keyByComponentId.clear();
+		
+		clearEntries();
+	}
+	
+	protected abstract void addEntry(K key, int entityId);
+	
+	protected abstract void removeEntry(K key, int entityId);
+	
+	protected abstract Set<Integer> getEntries(K key);
+	
+	protected abstract void clearEntries();
+	
+	protected abstract Set<Integer> copy(Set<Integer> entityIdSet);
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.index;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import es.molabs.ecs.Component;
+
+/**
+ * Index for equality lookups, backed by a hash map.
+ *
+ * @param <C> type of the component.
+ * @param <K> type of the key.
+ */
+public class HashIndex<C extends Component, K> extends ComponentIndex<C, K>
+{
+	private final Map<K, Set<Integer>> entryMap;
+	
+	public HashIndex(String name, Class<C> componentClass, KeyExtractor<C, K> extractor)
+	{
+		super(name, componentClass, extractor);
+		
+		entryMap = new HashMap<K, Set<Integer>>();
+	}
+	
+	protected void addEntry(K key, int entityId)
+	{
+		Set<Integer> entityIdSet = entryMap.get(key);
+		
+		// If it does not exist
+		if (entityIdSet == null)
+		{
+			entityIdSet = new HashSet<Integer>();
+			
+			entryMap.put(key, entityIdSet);
+		}
+		
+		entityIdSet.add(entityId);
+	}
+	
+	protected void removeEntry(K key, int entityId)
+	{
+		Set<Integer> entityIdSet = entryMap.get(key);
+		
+		if (entityIdSet != null)
+		{
+			entityIdSet.remove(entityId);
+			
+			if (entityIdSet.isEmpty())
+			{
+				entryMap.remove(key);
+			}
+		}
+	}
+	
+	protected Set<Integer> getEntries(K key)
+	{
+		return entryMap.get(key);
+	}
+	
+	protected void clearEntries()
+	{
+		entryMap.clear();
+	}
+	
+	protected Set<Integer> copy(Set<Integer> entityIdSet)
+	{
+		return new HashSet<Integer>(entityIdSet);
+	}
+}
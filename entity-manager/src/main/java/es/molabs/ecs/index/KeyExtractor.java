@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.index;
+
+import es.molabs.ecs.Component;
+
+/**
+ * Reads the value of a component that is used as key by a {@link ComponentIndex}.
+ *
+ * @param <C> type of the component.
+ * @param <K> type of the key.
+ */
+public interface KeyExtractor<C extends Component, K>
+{
+	public K getKey(C component);
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.index;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import es.molabs.ecs.Component;
+
+/**
+ * Index for equality and range lookups, backed by a balanced tree.
+ *
+ * @param <C> type of the component.
+ * @param <K> type of the key.
+ */
+public class SortedIndex<C extends Component, K extends Comparable<? super K>> extends ComponentIndex<C, K>
+{
+	private final NavigableMap<K, Set<Integer>> entryMap;
+	
+	public SortedIndex(String name, Class<C> componentClass, KeyExtractor<C, K> extractor)
+	{
+		super(name, componentClass, extractor);
+		
+		entryMap = new TreeMap<K, Set<Integer>>();
+	}
+	
+	/**
+	 * Returns the entities whose key is in a range, ordered by key. The range is empty if the lowest key is 
+	 * greater than the highest one.
+	 * 
+	 * @param from lowest key of the range, or null for no limit.
+	 * @param fromInclusive if the lowest key is included.
+	 * @param to highest key of the range, or null for no limit.
+	 * @param toInclusive if the highest key is included.
+	 * 
+	 * @return the ids of the entities ordered by key.
+	 */
+	public synchronized List<Integer> getEntityIds(K from, boolean fromInclusive, K to, boolean toInclusive)
+	{
+		List<Integer> entityIdList = new ArrayList<Integer>();
+		
+		// The tree rejects a range whose limits are inverted
+		if (from != null && to != null && from.compareTo(to) > 0)
+		{
+			return entityIdList;
+		}
+		
+		NavigableMap<K, Set<Integer>> rangeMap = entryMap;
+		
+		if (from != null)
+		{
+			rangeMap = rangeMap.tailMap(from, fromInclusive);
+		}
+		
+		if (to != null)
+		{
+			rangeMap = rangeMap.headMap(to, toInclusive);
+		}
+		
+		Iterator<Set<Integer>> iterator = rangeMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			entityIdList.addAll(iterator.next());
+		}
+		
+		return entityIdList;
+	}
+	
+	/**
+	 * Returns the entities whose key is in a range, both limits included, ordered by key. The range is empty if 
+	 * the lowest key is greater than the highest one.
+	 * 
+	 * @param from lowest key of the range, or null for no limit.
+	 * @param to highest key of the range, or null for no limit.
+	 * 
+	 * @return the ids of the entities ordered by key.
+	 */
+	public List<Integer> getEntityIds(K from, K to)
+	{
+		return getEntityIds(from, true, to, true);
+	}
+	
+	public synchronized K getFirstKey()
+	{
+		return (entryMap.isEmpty() ? null : entryMap.firstKey());
+	}
+	
+	public synchronized K getLastKey()
+	{
+		return (entryMap.isEmpty() ? null : entryMap.lastKey());
+	}
+	
+	protected void addEntry(K key, int entityId)
+	{
+		Set<Integer> entityIdSet = entryMap.get(key);
+		
+		// If it does not exist
+		if (entityIdSet == null)
+		{
+			entityIdSet = new LinkedHashSet<Integer>();
+			
+			entryMap.put(key, entityIdSet);
+		}
+		
+		entityIdSet.add(entityId);
+	}
+	
+	protected void removeEntry(K key, int entityId)
+	{
+		Set<Integer> entityIdSet = entryMap.get(key);
+		
+		if (entityIdSet != null)
+		{
+			entityIdSet.remove(entityId);
+			
+			if (entityIdSet.isEmpty())
+			{
+				entryMap.remove(key);
+			}
+		}
+	}
+	
+	protected Set<Integer> getEntries(K key)
+	{
+		return entryMap.get(key);
+	}
+	
+	protected void clearEntries()
+	{
+		entryMap.clear();
+	}
+	
+	protected Set<Integer> copy(Set<Integer> entityIdSet)
+	{
+		return new LinkedHashSet<Integer>(entityIdSet);
+	}
+}
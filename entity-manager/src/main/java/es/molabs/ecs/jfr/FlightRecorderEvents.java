@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.jfr;
+
+import es.molabs.ecs.System;
+
+/**
+ * Emits the Java Flight Recorder events of an entity manager.
+ * <p>
+ * The events are only emitted if the running JVM supports Java Flight Recorder and the entity-manager-jfr library, 
+ * built separately on JDK 11, is in the classpath, otherwise every method does nothing. 
+ * Begin methods return an opaque event that must be passed to the matching commit method, it can be null.
+ */
+public abstract class FlightRecorderEvents 
+{
+	private final static String JFR_EVENT_CLASS = "jdk.jfr.Event";
+	private final static String JFR_EVENTS_CLASS = "es.molabs.ecs.jfr.impl.JfrEvents";
+	
+	private static FlightRecorderEvents instance = null;
+	
+	protected FlightRecorderEvents()
+	{
+	}
+	
+	/**
+	 * Returns the events supported by the running JVM.
+	 * 
+	 * @return the events supported by the running JVM.
+	 */
+	public static synchronized FlightRecorderEvents getInstance()
+	{
+		if (instance == null)
+		{
+			instance = createInstance();
+		}
+		
+		return instance;
+	}
+	
+	public abstract boolean isSupported();
+	
+	public abstract Object beginFrame();
+	
+	public abstract void commitFrame(Object event, float delta, int systemCount, int entityCount, int componentCount);
+	
+	public abstract Object beginSystemUpdate(System system);
+	
+	public abstract void commitSystemUpdate(Object event);
+	
+	public abstract Object beginStructuralChange();
+	
+	/**
+	 * Commits a structural change event.
+	 * 
+	 * @param event returned by {@link #beginStructuralChange()}.
+	 * @param operation that changed the structure of the world.
+	 * @param entityCount number of entities added or removed.
+	 * @param componentCount number of components added or removed.
+	 */
+	public abstract void commitStructuralChange(Object event, String operation, int entityCount, int componentCount);
+	
+	private static FlightRecorderEvents createInstance()
+	{
+		FlightRecorderEvents events = null;
+		
+		try
+		{
+			// Only loads the JFR events if the JVM supports them
+			Class.forName(JFR_EVENT_CLASS);
+			
+			events = (FlightRecorderEvents) Class.forName(JFR_EVENTS_CLASS).getDeclaredConstructor().newInstance();
+		}
+		catch (Throwable t)
+		{
+			events = new NoopEvents();
+		}
+		
+		return events;
+	}
+	
+	private static class NoopEvents extends FlightRecorderEvents
+	{
+		public boolean isSupported()
+		{
+			return false;
+		}
+		
+		public Object beginFrame()
+		{
+			return null;
+		}
+		
+		public void commitFrame(Object event, float delta, int systemCount, int entityCount, int componentCount)
+		{
+		}
+		
+		public Object beginSystemUpdate(System system)
+		{
+			return null;
+		}
+		
+		public void commitSystemUpdate(Object event)
+		{
+		}
+		
+		public Object beginStructuralChange()
+		{
+			return null;
+		}
+		
+		public void commitStructuralChange(Object event, String operation, int entityCount, int componentCount)
+		{
+		}
+	}
+}
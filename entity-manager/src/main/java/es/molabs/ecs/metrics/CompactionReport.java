@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Occupancy of the storages of an entity manager before and after a compaction pass.
+ */
+public class CompactionReport 
+{
+	private final List<StorageOccupancy> before;
+	private final List<StorageOccupancy> after;
+	private final long compactionNanos;
+	
+	/**
+	 * @param before occupancy of each storage before it was compacted.
+	 * @param after occupancy of each storage after it was compacted, in the same order.
+	 * @param compactionNanos time spent compacting, without the measures.
+	 */
+	public CompactionReport(List<StorageOccupancy> before, List<StorageOccupancy> after, long compactionNanos)
+	{
+		this.before = Collections.unmodifiableList(before);
+		this.after = Collections.unmodifiableList(after);
+		this.compactionNanos = compactionNanos;
+	}
+	
+	public List<StorageOccupancy> getBefore()
+	{
+		return before;
+	}
+	
+	public List<StorageOccupancy> getAfter()
+	{
+		return after;
+	}
+	
+	public StorageOccupancy getBefore(String name)
+	{
+		return find(before, name);
+	}
+	
+	public StorageOccupancy getAfter(String name)
+	{
+		return find(after, name);
+	}
+	
+	public long getCompactionNanos()
+	{
+		return compactionNanos;
+	}
+	
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder("CompactionReport[compactionNanos=").append(compactionNanos).append("]");
+		
+		for (int i=0; i<before.size(); i++)
+		{
+			StorageOccupancy storageBefore = before.get(i);
+			StorageOccupancy storageAfter = after.get(i);
+			
+			builder.append(String.format("%n  %s: occupancy %.2f -> %.2f, capacity %d -> %d, throughput %.0f -> %.0f/s", 
+				storageBefore.getName(), storageBefore.getOccupancy(), storageAfter.getOccupancy(), 
+				storageBefore.getCapacity(), storageAfter.getCapacity(), storageBefore.getThroughput(), storageAfter.getThroughput()));
+		}
+		
+		return builder.toString();
+	}
+	
+	private StorageOccupancy find(List<StorageOccupancy> list, String name)
+	{
+		for (int i=0; i<list.size(); i++)
+		{
+			if (list.get(i).getName().equals(name))
+			{
+				return list.get(i);
+			}
+		}
+		
+		return null;
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+/**
+ * Estimated memory used by the components of a class.
+ */
+public class ComponentFootprint 
+{
+	private final String componentClass;
+	private final int count;
+	private final long componentBytes;
+	private final long indexBytes;
+	
+	public ComponentFootprint(String componentClass, int count, long componentBytes, long indexBytes)
+	{
+		this.componentClass = componentClass;
+		this.count = count;
+		this.componentBytes = componentBytes;
+		this.indexBytes = indexBytes;
+	}
+	
+	public String getComponentClass()
+	{
+		return componentClass;
+	}
+	
+	public int getCount()
+	{
+		return count;
+	}
+	
+	/**
+	 * Returns the shallow size of the live components.
+	 * 
+	 * @return the shallow size of the live components.
+	 */
+	public long getComponentBytes()
+	{
+		return componentBytes;
+	}
+	
+	/**
+	 * Returns the size of the entries used to index the live components by id and by entity.
+	 * 
+	 * @return the size of the entries used to index the live components by id and by entity.
+	 */
+	public long getIndexBytes()
+	{
+		return indexBytes;
+	}
+	
+	public long getTotalBytes()
+	{
+		return componentBytes + indexBytes;
+	}
+	
+	public String toString()
+	{
+		return componentClass + "[count=" + count + ", componentBytes=" + componentBytes + ", indexBytes=" + indexBytes + "]";
+	}
+}
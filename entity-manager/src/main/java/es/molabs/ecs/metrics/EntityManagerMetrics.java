@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import es.molabs.ecs.EntityManager;
+
+/**
+ * Exposes the metrics of an entity manager through JMX.
+ */
+public class EntityManagerMetrics implements EntityManagerMetricsMXBean
+{
+	private final EntityManager entityManager;
+	
+	private ObjectName objectName = null;
+	
+	public EntityManagerMetrics(EntityManager entityManager)
+	{
+		this.entityManager = entityManager;
+	}
+	
+	/**
+	 * Registers this bean in the platform MBean server.
+	 * 
+	 * @param name of the bean, for example <code>es.molabs.ecs:type=EntityManager,name=world</code>.
+	 * 
+	 * @throws JMException if the bean could not be registered.
+	 */
+	public void register(String name) throws JMException
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		
+		objectName = server.registerMBean(this, new ObjectName(name)).getObjectName();
+	}
+	
+	/**
+	 * Unregisters this bean from the platform MBean server.
+	 * 
+	 * @throws JMException if the bean could not be unregistered.
+	 */
+	public void unregister() throws JMException
+	{
+		if (objectName != null)
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			
+			objectName = null;
+		}
+	}
+	
+	public boolean isProfilingEnabled()
+	{
+		return entityManager.isProfilingEnabled();
+	}
+	
+	public void setProfilingEnabled(boolean profilingEnabled)
+	{
+		entityManager.setProfilingEnabled(profilingEnabled);
+	}
+	
+	public int getEntityCount()
+	{
+		return (entityManager.isInitialized() ? entityManager.getEntityCount() : 0);
+	}
+	
+	public int getComponentCount()
+	{
+		return (entityManager.isInitialized() ? entityManager.getComponentCount() : 0);
+	}
+	
+	public int getSystemCount()
+	{
+		return (entityManager.isInitialized() ? entityManager.getSystemCount() : 0);
+	}
+	
+	public long getBudgetOverrun()
+	{
+		return entityManager.getBudgetOverrun();
+	}
+	
+	public LatencyStats getFrameStats()
+	{
+		SystemProfiler profiler = entityManager.getProfiler();
+		
+		return (profiler != null ? profiler.getFrameStats() : new LatencyStats(new LatencyHistogram()));
+	}
+	
+	public List<SystemStats> getSystemStats()
+	{
+		SystemProfiler profiler = entityManager.getProfiler();
+		
+		return (profiler != null ? profiler.getSystemStats() : Collections.<SystemStats>emptyList());
+	}
+	
+	public MemoryFootprint getMemoryFootprint()
+	{
+		return entityManager.getLastMemoryFootprint();
+	}
+	
+	public void resetProfiling()
+	{
+		SystemProfiler profiler = entityManager.getProfiler();
+		
+		if (profiler != null)
+		{
+			profiler.reset();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+import java.util.List;
+
+/**
+ * Management interface of the metrics of an entity manager.
+ */
+public interface EntityManagerMetricsMXBean 
+{
+	public boolean isProfilingEnabled();
+	
+	public void setProfilingEnabled(boolean profilingEnabled);
+	
+	public int getEntityCount();
+	
+	public int getComponentCount();
+	
+	public int getSystemCount();
+	
+	/**
+	 * Returns the total time in nanoseconds that the budgeted systems exceeded their budgets in the last update.
+	 * 
+	 * @return the total time in nanoseconds that the budgeted systems exceeded their budgets in the last update.
+	 */
+	public long getBudgetOverrun();
+	
+	public LatencyStats getFrameStats();
+	
+	public List<SystemStats> getSystemStats();
+	
+	/**
+	 * Returns the memory footprint sampled by the entity manager at the end of an update.
+	 * 
+	 * @return the last sampled memory footprint or null if none has been sampled yet.
+	 */
+	public MemoryFootprint getMemoryFootprint();
+	
+	/**
+	 * Discards all the recorded times.
+	 */
+	public void resetProfiling();
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+/**
+ * Histogram of latencies in nanoseconds with logarithmic buckets split in linear sub-buckets, 
+ * so every recorded value keeps an error lower than 3% with a fixed amount of memory.
+ * <p>
+ * Values are recorded without synchronization from a single thread, other threads reading it could see 
+ * a slightly outdated state.
+ */
+public class LatencyHistogram 
+{
+	private final static int SUB_BUCKET_BITS = 6;
+	private final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private final static int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+	
+	// Maximum trackable value, around 18 minutes
+	private final static int MAX_VALUE_BITS = 40;
+	private final static long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+	
+	private final long[] counts;
+	
+	private long count;
+	private long total;
+	private long max;
+	
+	public LatencyHistogram()
+	{
+		counts = new long[getIndex(MAX_VALUE) + 1];
+	}
+	
+	public void record(long value)
+	{
+		long clampedValue = Math.max(0, Math.min(value, MAX_VALUE));
+		
+		counts[getIndex(clampedValue)]++;
+		
+		count++;
+		total += clampedValue;
+		
+		if (clampedValue > max)
+		{
+			max = clampedValue;
+		}
+	}
+	
+	public long getCount()
+	{
+		return count;
+	}
+	
+	public long getTotal()
+	{
+		return total;
+	}
+	
+	public long getMax()
+	{
+		return max;
+	}
+	
+	public double getMean()
+	{
+		return (count > 0 ? (double) total / count : 0);
+	}
+	
+	/**
+	 * Returns the value below which the given percentage of the recorded values fall.
+	 * 
+	 * @param percentile between 0 and 100.
+	 * 
+	 * @return the value below which the given percentage of the recorded values fall, or 0 if there are no values.
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		long value = 0;
+		
+		if (count > 0)
+		{
+			long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+			long accumulated = 0;
+			
+			for (int i=0; i<counts.length; i++)
+			{
+				accumulated += counts[i];
+				
+				if (accumulated >= target)
+				{
+					value = Math.min(getHighestValue(i), max);
+					
+					break;
+				}
+			}
+		}
+		
+		return value;
+	}
+	
+	public void reset()
+	{
+		for (int i=0; i<counts.length; i++)
+		{
+			counts[i] = 0;
+		}
+		
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+	
+	private static int getIndex(long value)
+	{
+		int index = 0;
+		
+		// Small values have their own sub-bucket
+		if (value < SUB_BUCKET_COUNT)
+		{
+			index = (int) value;
+		}
+		else
+		{
+			int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+			
+			index = shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+		}
+		
+		return index;
+	}
+	
+	private static long getHighestValue(int index)
+	{
+		long value = 0;
+		
+		if (index < SUB_BUCKET_COUNT)
+		{
+			value = index;
+		}
+		else
+		{
+			int shift = index / SUB_BUCKET_HALF - 1;
+			long subBucket = index - shift * SUB_BUCKET_HALF;
+			
+			value = (subBucket << shift) + (1L << shift) - 1;
+		}
+		
+		return value;
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+/**
+ * Immutable summary of a {@link LatencyHistogram}, all the times are in nanoseconds.
+ */
+public class LatencyStats 
+{
+	private final long count;
+	private final long total;
+	private final long p50;
+	private final long p99;
+	private final long max;
+	
+	public LatencyStats(LatencyHistogram histogram)
+	{
+		count = histogram.getCount();
+		total = histogram.getTotal();
+		p50 = histogram.getValueAtPercentile(50);
+		p99 = histogram.getValueAtPercentile(99);
+		max = histogram.getMax();
+	}
+	
+	public long getCount()
+	{
+		return count;
+	}
+	
+	public long getTotal()
+	{
+		return total;
+	}
+	
+	public long getP50()
+	{
+		return p50;
+	}
+	
+	public long getP99()
+	{
+		return p99;
+	}
+	
+	public long getMax()
+	{
+		return max;
+	}
+	
+	public String toString()
+	{
+		return "[count=" + count + ", total=" + total + ", p50=" + p50 + ", p99=" + p99 + ", max=" + max + "]";
+	}
+}
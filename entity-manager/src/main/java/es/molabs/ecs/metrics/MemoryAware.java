@@ -0,0 +1,29 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+/**
+ * Implemented by systems that can estimate the memory retained by their own structures.
+ */
+public interface MemoryAware 
+{
+	/**
+	 * Returns the estimated bytes retained by this system. Must be cheap since it is called every time the memory is sampled.
+	 * 
+	 * @return the estimated bytes retained by this system.
+	 */
+	public long estimateRetainedBytes();
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Estimates the memory used by objects assuming a 64 bits JVM with compressed references.
+ * <p>
+ * Shallow sizes are calculated once per class with reflection and cached.
+ */
+public class MemoryEstimator 
+{
+	public final static int OBJECT_HEADER = 12;
+	public final static int ARRAY_HEADER = 16;
+	public final static int REFERENCE = 4;
+	public final static int ALIGNMENT = 8;
+	
+	public final static int INTEGER = 16;
+	public final static int HASH_MAP = 48;
+	public final static int HASH_MAP_NODE = 32;
+	public final static int HASH_MAP_DEFAULT_CAPACITY = 16;
+	
+	private final static ConcurrentMap<Class<?>, Long> SHALLOW_SIZE_CACHE = new ConcurrentHashMap<Class<?>, Long>();
+	
+	private MemoryEstimator()
+	{
+	}
+	
+	/**
+	 * Returns the size of an instance of a class without the objects it references.
+	 * 
+	 * @param clazz of the instance.
+	 * 
+	 * @return the size of an instance of a class without the objects it references.
+	 */
+	public static long getShallowSize(Class<?> clazz)
+	{
+		Long size = SHALLOW_SIZE_CACHE.get(clazz);
+		
+		// If it has not been calculated yet
+		if (size == null)
+		{
+			long fieldSize = 0;
+			
+			// For each class of the hierarchy
+			Class<?> current = clazz;
+			while (current != null)
+			{
+				Field[] fields = current.getDeclaredFields();
+				for (int i=0; i<fields.length; i++)
+				{
+					if (!Modifier.isStatic(fields[i].getModifiers()))
+					{
+						fieldSize += getFieldSize(fields[i].getType());
+					}
+				}
+				
+				current = current.getSuperclass();
+			}
+			
+			size = align(OBJECT_HEADER + fieldSize);
+			
+			SHALLOW_SIZE_CACHE.putIfAbsent(clazz, size);
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Returns the size of a hash map with its table and nodes, without its keys and values.
+	 * 
+	 * @param entries of the map.
+	 * 
+	 * @return the size of a hash map with its table and nodes, without its keys and values.
+	 */
+	public static long getHashMapSize(int entries)
+	{
+		return HASH_MAP + getHashTableSize(entries) + (long) entries * HASH_MAP_NODE;
+	}
+	
+	/**
+	 * Returns the size of the table of a hash map with the default load factor.
+	 * 
+	 * @param entries of the map.
+	 * 
+	 * @return the size of the table of a hash map with the default load factor.
+	 */
+	public static long getHashTableSize(int entries)
+	{
+		return align(ARRAY_HEADER + (long) getHashTableCapacity(entries) * REFERENCE);
+	}
+	
+	/**
+	 * Returns the number of buckets of the table of a hash map with the default load factor.
+	 * 
+	 * @param entries of the map.
+	 * 
+	 * @return the number of buckets of the table of a hash map with the default load factor.
+	 */
+	public static int getHashTableCapacity(int entries)
+	{
+		int capacity = HASH_MAP_DEFAULT_CAPACITY;
+		
+		while (capacity * 3 / 4 < entries)
+		{
+			capacity <<= 1;
+		}
+		
+		return capacity;
+	}
+	
+	public static long align(long size)
+	{
+		return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+	
+	private static int getFieldSize(Class<?> type)
+	{
+		int size = REFERENCE;
+		
+		if (type == long.class || type == double.class)
+		{
+			size = 8;
+		}
+		else if (type == int.class || type == float.class)
+		{
+			size = 4;
+		}
+		else if (type == short.class || type == char.class)
+		{
+			size = 2;
+		}
+		else if (type == byte.class || type == boolean.class)
+		{
+			size = 1;
+		}
+		
+		return size;
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import es.molabs.ecs.System;
+import es.molabs.ecs.util.ComponentMap;
+
+/**
+ * Estimated memory used by the entities, components and systems of an entity manager.
+ * <p>
+ * Sampling only iterates the component classes and the systems, so it can be done often.
+ */
+public class MemoryFootprint 
+{
+	private final int entityCount;
+	private final long entityIndexBytes;
+	private final List<ComponentFootprint> components;
+	private final List<SystemFootprint> systems;
+	
+	public MemoryFootprint(int entityCount, long entityIndexBytes, List<ComponentFootprint> components, List<SystemFootprint> systems)
+	{
+		this.entityCount = entityCount;
+		this.entityIndexBytes = entityIndexBytes;
+		this.components = Collections.unmodifiableList(components);
+		this.systems = Collections.unmodifiableList(systems);
+	}
+	
+	/**
+	 * Samples the memory used by the structures of an entity manager.
+	 * 
+	 * @param entityCount number of registered entities.
+	 * @param componentMap with the registered components.
+	 * @param systemCollection with the registered systems.
+	 * 
+	 * @return the estimated memory used.
+	 */
+	public static MemoryFootprint sample(int entityCount, ComponentMap componentMap, Collection<System> systemCollection)
+	{
+		int componentCount = componentMap.size();
+		int indexedEntityCount = componentMap.getEntityCount();
+		
+		// Map of entities, map of component maps by entity and a small map for each entity
+		long entityIndexBytes = MemoryEstimator.getHashMapSize(entityCount) + MemoryEstimator.getHashMapSize(indexedEntityCount) + 
+			(long) indexedEntityCount * (MemoryEstimator.HASH_MAP + MemoryEstimator.getHashTableSize(0));
+		
+		// The table of components by id is shared between all the classes
+		long idTableBytes = MemoryEstimator.getHashTableSize(componentCount);
+		
+		List<ComponentFootprint> componentList = new ArrayList<ComponentFootprint>();
+		Iterator<Map.Entry<Class<?>, Integer>> componentIterator = componentMap.getCountByClass().entrySet().iterator();
+		while (componentIterator.hasNext())
+		{
+			Map.Entry<Class<?>, Integer> entry = componentIterator.next();
+			int count = entry.getValue();
+			
+			// A node in the map by id and another in the map of its entity
+			long indexBytes = (long) count * MemoryEstimator.HASH_MAP_NODE * 2 + (componentCount > 0 ? idTableBytes * count / componentCount : 0);
+			
+			componentList.add(new ComponentFootprint(entry.getKey().getName(), count, count * MemoryEstimator.getShallowSize(entry.getKey()), indexBytes));
+		}
+		
+		List<SystemFootprint> systemList = new ArrayList<SystemFootprint>();
+		Iterator<System> systemIterator = systemCollection.iterator();
+		while (systemIterator.hasNext())
+		{
+			System system = systemIterator.next();
+			
+			long retainedBytes = MemoryEstimator.getShallowSize(system.getClass());
+			
+			if (system instanceof MemoryAware)
+			{
+				retainedBytes += ((MemoryAware) system).estimateRetainedBytes();
+			}
+			
+			systemList.add(new SystemFootprint(system.getId(), system.getClass().getName(), retainedBytes));
+		}
+		
+		return new MemoryFootprint(entityCount, entityIndexBytes, componentList, systemList);
+	}
+	
+	public int getEntityCount()
+	{
+		return entityCount;
+	}
+	
+	/**
+	 * Returns the size of the maps used to index entities and their components.
+	 * 
+	 * @return the size of the maps used to index entities and their components.
+	 */
+	public long getEntityIndexBytes()
+	{
+		return entityIndexBytes;
+	}
+	
+	public List<ComponentFootprint> getComponents()
+	{
+		return components;
+	}
+	
+	public ComponentFootprint getComponent(Class<?> clazz)
+	{
+		ComponentFootprint footprint = null;
+		
+		for (int i=0; i<components.size() && footprint == null; i++)
+		{
+			if (components.get(i).getComponentClass().equals(clazz.getName()))
+			{
+				footprint = components.get(i);
+			}
+		}
+		
+		return footprint;
+	}
+	
+	public List<SystemFootprint> getSystems()
+	{
+		return systems;
+	}
+	
+	public long getTotalBytes()
+	{
+		long total = entityIndexBytes;
+		
+		for (int i=0; i<components.size(); i++)
+		{
+			total += components.get(i).getTotalBytes();
+		}
+		
+		for (int i=0; i<systems.size(); i++)
+		{
+			total += systems.get(i).getRetainedBytes();
+		}
+		
+		return total;
+	}
+}
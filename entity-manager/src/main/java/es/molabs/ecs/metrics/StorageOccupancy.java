@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+/**
+ * Occupancy of a storage of an entity manager and the time it took to iterate it.
+ */
+public class StorageOccupancy 
+{
+	private final String name;
+	private final int used;
+	private final int capacity;
+	private final long iterationNanos;
+	
+	public StorageOccupancy(String name, int used, int capacity, long iterationNanos)
+	{
+		this.name = name;
+		this.used = used;
+		this.capacity = capacity;
+		this.iterationNanos = iterationNanos;
+	}
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	public int getUsed()
+	{
+		return used;
+	}
+	
+	/**
+	 * Returns the number of elements the storage has reserved, slots, array length or buckets of a table.
+	 * 
+	 * @return the number of elements reserved.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+	
+	/**
+	 * Returns the fraction of the capacity that is used.
+	 * 
+	 * @return the fraction between 0 and 1.
+	 */
+	public double getOccupancy()
+	{
+		return (capacity > 0 ? (double) used / capacity : 0);
+	}
+	
+	public long getIterationNanos()
+	{
+		return iterationNanos;
+	}
+	
+	/**
+	 * Returns the number of used elements iterated per second.
+	 * 
+	 * @return the elements per second, or 0 if it was not measured.
+	 */
+	public double getThroughput()
+	{
+		return (iterationNanos > 0 ? used * 1e9 / iterationNanos : 0);
+	}
+	
+	public String toString()
+	{
+		return name + "[used=" + used + ", capacity=" + capacity + ", iterationNanos=" + iterationNanos + "]";
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+/**
+ * Estimated memory retained by a system.
+ */
+public class SystemFootprint 
+{
+	private final int systemId;
+	private final String systemClass;
+	private final long retainedBytes;
+	
+	public SystemFootprint(int systemId, String systemClass, long retainedBytes)
+	{
+		this.systemId = systemId;
+		this.systemClass = systemClass;
+		this.retainedBytes = retainedBytes;
+	}
+	
+	public int getSystemId()
+	{
+		return systemId;
+	}
+	
+	public String getSystemClass()
+	{
+		return systemClass;
+	}
+	
+	/**
+	 * Returns the bytes retained by the system, only its shallow size if it does not implement {@link MemoryAware}.
+	 * 
+	 * @return the bytes retained by the system.
+	 */
+	public long getRetainedBytes()
+	{
+		return retainedBytes;
+	}
+	
+	public String toString()
+	{
+		return systemClass + "[id=" + systemId + ", retainedBytes=" + retainedBytes + "]";
+	}
+}
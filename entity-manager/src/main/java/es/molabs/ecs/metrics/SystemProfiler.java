@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import es.molabs.ecs.System;
+
+/**
+ * Collects the time spent by each system of an entity manager.
+ * <p>
+ * Times are recorded by the threads that call the systems, stats can be read from any thread.
+ */
+public class SystemProfiler 
+{
+	private ConcurrentMap<Integer, SystemProfile> profileMap = null;
+	private LatencyHistogram frameHistogram = null;
+	
+	public SystemProfiler()
+	{
+		profileMap = new ConcurrentHashMap<Integer, SystemProfile>();
+		frameHistogram = new LatencyHistogram();
+	}
+	
+	public void recordFrame(long nanos)
+	{
+		synchronized (frameHistogram)
+		{
+			frameHistogram.record(nanos);
+		}
+	}
+	
+	public void recordUpdate(System system, long nanos)
+	{
+		getProfile(system).recordUpdate(nanos);
+	}
+	
+	public void recordComponentAdded(System system, long nanos)
+	{
+		getProfile(system).recordComponentAdded(nanos);
+	}
+	
+	public void recordComponentRemoved(System system, long nanos)
+	{
+		getProfile(system).recordComponentRemoved(nanos);
+	}
+	
+	/**
+	 * Discards the times recorded for a system.
+	 * 
+	 * @param systemId of the system.
+	 */
+	public void remove(int systemId)
+	{
+		profileMap.remove(systemId);
+	}
+	
+	public LatencyStats getFrameStats()
+	{
+		synchronized (frameHistogram)
+		{
+			return new LatencyStats(frameHistogram);
+		}
+	}
+	
+	public List<SystemStats> getSystemStats()
+	{
+		List<SystemStats> statsList = new ArrayList<SystemStats>();
+		
+		Iterator<SystemProfile> iterator = profileMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			statsList.add(iterator.next().getStats());
+		}
+		
+		return statsList;
+	}
+	
+	public SystemStats getSystemStats(int systemId)
+	{
+		SystemProfile profile = profileMap.get(systemId);
+		
+		return (profile != null ? profile.getStats() : null);
+	}
+	
+	/**
+	 * Discards all the recorded times.
+	 */
+	public void reset()
+	{
+		synchronized (frameHistogram)
+		{
+			frameHistogram.reset();
+		}
+		
+		Iterator<SystemProfile> iterator = profileMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			iterator.next().reset();
+		}
+	}
+	
+	public void clear()
+	{
+		profileMap.clear();
+		
+		synchronized (frameHistogram)
+		{
+			frameHistogram.reset();
+		}
+	}
+	
+	private SystemProfile getProfile(System system)
+	{
+		SystemProfile profile = profileMap.get(system.getId());
+		
+		// If it does not exist
+		if (profile == null)
+		{
+			profile = new SystemProfile(system.getId(), system.getClass().getName());
+			
+			SystemProfile previous = profileMap.putIfAbsent(system.getId(), profile);
+			
+			if (previous != null)
+			{
+				profile = previous;
+			}
+		}
+		
+		return profile;
+	}
+	
+	private static class SystemProfile
+	{
+		private final int systemId;
+		private final String systemClass;
+		
+		private final LatencyHistogram update;
+		private final LatencyHistogram componentAdded;
+		private final LatencyHistogram componentRemoved;
+		
+		private SystemProfile(int systemId, String systemClass)
+		{
+			this.systemId = systemId;
+			this.systemClass = systemClass;
+			
+			update = new LatencyHistogram();
+			componentAdded = new LatencyHistogram();
+			componentRemoved = new LatencyHistogram();
+		}
+		
+		private synchronized void recordUpdate(long nanos)
+		{
+			update.record(nanos);
+		}
+		
+		private synchronized void recordComponentAdded(long nanos)
+		{
+			componentAdded.record(nanos);
+		}
+		
+		private synchronized void recordComponentRemoved(long nanos)
+		{
+			componentRemoved.record(nanos);
+		}
+		
+		private synchronized SystemStats getStats()
+		{
+			return new SystemStats(systemId, systemClass, new LatencyStats(update), new LatencyStats(componentAdded), new LatencyStats(componentRemoved));
+		}
+		
+		private synchronized void reset()
+		{
+			update.reset();
+			componentAdded.reset();
+			componentRemoved.reset();
+		}
+	}
+}
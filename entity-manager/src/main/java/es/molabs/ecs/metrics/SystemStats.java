@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.metrics;
+
+/**
+ * Immutable summary of the time spent by a system.
+ */
+public class SystemStats 
+{
+	private final int systemId;
+	private final String systemClass;
+	private final LatencyStats update;
+	private final LatencyStats componentAdded;
+	private final LatencyStats componentRemoved;
+	
+	public SystemStats(int systemId, String systemClass, LatencyStats update, LatencyStats componentAdded, LatencyStats componentRemoved)
+	{
+		this.systemId = systemId;
+		this.systemClass = systemClass;
+		this.update = update;
+		this.componentAdded = componentAdded;
+		this.componentRemoved = componentRemoved;
+	}
+	
+	public int getSystemId()
+	{
+		return systemId;
+	}
+	
+	public String getSystemClass()
+	{
+		return systemClass;
+	}
+	
+	/**
+	 * Returns the time spent in {@link es.molabs.ecs.System#update(float)}.
+	 * 
+	 * @return the time spent in {@link es.molabs.ecs.System#update(float)}.
+	 */
+	public LatencyStats getUpdate()
+	{
+		return update;
+	}
+	
+	/**
+	 * Returns the time spent in {@link es.molabs.ecs.System#componentAdded(es.molabs.ecs.Component)}, 
+	 * its count is the number of components processed.
+	 * 
+	 * @return the time spent in {@link es.molabs.ecs.System#componentAdded(es.molabs.ecs.Component)}.
+	 */
+	public LatencyStats getComponentAdded()
+	{
+		return componentAdded;
+	}
+	
+	/**
+	 * Returns the time spent in {@link es.molabs.ecs.System#componentRemoved(es.molabs.ecs.Component)}, 
+	 * its count is the number of components processed.
+	 * 
+	 * @return the time spent in {@link es.molabs.ecs.System#componentRemoved(es.molabs.ecs.Component)}.
+	 */
+	public LatencyStats getComponentRemoved()
+	{
+		return componentRemoved;
+	}
+	
+	public String toString()
+	{
+		return systemClass + "[id=" + systemId + ", update=" + update + ", componentAdded=" + componentAdded + ", componentRemoved=" + componentRemoved + "]";
+	}
+}
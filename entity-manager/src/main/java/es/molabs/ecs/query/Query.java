@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.Tag;
+
+/**
+ * Describes a set of entities by the components and tags they must have or not have.
+ * <p>
+ * Queries are resolved by {@link es.molabs.ecs.EntityManager#query(Query)} intersecting the 
+ * sets of bits of each component class and tag a word at a time.
+ */
+public class Query 
+{
+	private final List<Class<? extends Component>> includeList;
+	private final List<Class<? extends Component>> excludeList;
+	private final List<Class<? extends Tag>> includeTagList;
+	private final List<Class<? extends Tag>> excludeTagList;
+	private boolean includeDormant;
+	
+	public Query()
+	{
+		includeList = new ArrayList<Class<? extends Component>>();
+		excludeList = new ArrayList<Class<? extends Component>>();
+		includeTagList = new ArrayList<Class<? extends Tag>>();
+		excludeTagList = new ArrayList<Class<? extends Tag>>();
+	}
+	
+	/**
+	 * Only matches the entities that own a component of a class.
+	 * 
+	 * @param clazz class of the component.
+	 * 
+	 * @return this query.
+	 */
+	public Query include(Class<? extends Component> clazz)
+	{
+		includeList.add(clazz);
+		
+		return this;
+	}
+	
+	/**
+	 * Only matches the entities that do not own a component of a class.
+	 * 
+	 * @param clazz class of the component.
+	 * 
+	 * @return this query.
+	 */
+	public Query exclude(Class<? extends Component> clazz)
+	{
+		excludeList.add(clazz);
+		
+		return this;
+	}
+	
+	/**
+	 * Only matches the entities with a tag.
+	 * 
+	 * @param tag of the entities.
+	 * 
+	 * @return this query.
+	 */
+	public Query includeTag(Class<? extends Tag> tag)
+	{
+		includeTagList.add(tag);
+		
+		return this;
+	}
+	
+	/**
+	 * Only matches the entities without a tag.
+	 * 
+	 * @param tag of the entities.
+	 * 
+	 * @return this query.
+	 */
+	public Query excludeTag(Class<? extends Tag> tag)
+	{
+		excludeTagList.add(tag);
+		
+		return this;
+	}
+	
+	/**
+	 * Also matches the dormant entities, that are excluded by default.
+	 * 
+	 * @return this query.
+	 */
+	public Query includeDormant()
+	{
+		includeDormant = true;
+		
+		return this;
+	}
+	
+	public boolean isIncludeDormant()
+	{
+		return includeDormant;
+	}
+	
+	public List<Class<? extends Component>> getIncludeList()
+	{
+		return Collections.unmodifiableList(includeList);
+	}
+	
+	public List<Class<? extends Component>> getExcludeList()
+	{
+		return Collections.unmodifiableList(excludeList);
+	}
+	
+	public List<Class<? extends Tag>> getIncludeTagList()
+	{
+		return Collections.unmodifiableList(includeTagList);
+	}
+	
+	public List<Class<? extends Tag>> getExcludeTagList()
+	{
+		return Collections.unmodifiableList(excludeTagList);
+	}
+}
@@ -0,0 +1,430 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import es.molabs.ecs.Component;
+
+/**
+ * Keeps the entities with a component of a class ordered by that component.
+ * <p>
+ * Queries registered in an {@link es.molabs.ecs.EntityManager} are updated incrementally when components 
+ * of their class are registered, unregistered or marked as changed, so the entities never have to be sorted again.
+ * When ordered by a {@link SortKey} the keys are cached and each change is a binary search plus a shift of the 
+ * entries between the old and new positions. When ordered by a comparator the changes are applied the next time 
+ * the query is read with a merge sort, that is linear on an array that is nearly sorted.
+ *
+ * @param <C> type of the component.
+ */
+public class SortedQuery<C extends Component>
+{
+	private final static int INITIAL_CAPACITY = 16;
+	
+	private final Class<C> componentClass;
+	private final SortKey<? super C> sortKey;
+	private final Comparator<? super C> comparator;
+	private final Comparator<Component> componentComparator;
+	
+	private Component[] components;
+	private double[] keys;
+	private int[] componentIds;
+	private int size;
+	
+	// Used when ordered by key
+	private final Map<Integer, Double> keyByComponentId;
+	
+	// Used when ordered by comparator
+	private final Set<Component> memberSet;
+	private final Set<Component> removedSet;
+	private boolean unsorted;
+	
+	/**
+	 * Creates a query ordered by a primitive key, lowest first.
+	 * 
+	 * @param componentClass class of the component.
+	 * @param sortKey key of the components.
+	 */
+	public SortedQuery(Class<C> componentClass, SortKey<? super C> sortKey)
+	{
+		this(componentClass, sortKey, null);
+	}
+	
+	/**
+	 * Creates a query ordered by a comparator.
+	 * 
+	 * @param componentClass class of the component.
+	 * @param comparator of the components.
+	 */
+	public SortedQuery(Class<C> componentClass, Comparator<? super C> comparator)
+	{
+		this(componentClass, null, comparator);
+	}
+	
+	private SortedQuery(Class<C> componentClass, SortKey<? super C> sortKey, Comparator<? super C> comparator)
+	{
+		if (sortKey == null && comparator == null)
+		{
+			throw new IllegalArgumentException("A sort key or a comparator is needed.");
+		}
+		
+		this.componentClass = componentClass;
+		this.sortKey = sortKey;
+		this.comparator = comparator;
+		
+		componentComparator = (comparator != null ? new Comparator<Component>()
+		{
+			public int compare(Component componentA, Component componentB)
+			{
+				return comparator.compare(componentClass.cast(componentA), componentClass.cast(componentB));
+			}
+		} : null);
+		
+		components = new Component[INITIAL_CAPACITY];
+		
+		if (sortKey != null)
+		{
+			keys = new double[INITIAL_CAPACITY];
+			componentIds = new int[INITIAL_CAPACITY];
+			keyByComponentId = new HashMap<Integer, Double>();
+			memberSet = null;
+			removedSet = null;
+		}
+		else
+		{
+			keyByComponentId = null;
+			memberSet = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+			removedSet = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+		}
+	}
+	
+	public Class<C> getComponentClass()
+	{
+		return componentClass;
+	}
+	
+	public synchronized void add(Component component)
+	{
+		if (component.getClass() == componentClass && component.getEntityId() != null)
+		{
+			if (sortKey != null)
+			{
+				// If it is not already added
+				if (!keyByComponentId.containsKey(component.getId()))
+				{
+					double key = sortKey.getKey(componentClass.cast(component));
+					
+					insert(search(key, component.getId()), component, key);
+					
+					keyByComponentId.put(component.getId(), key);
+				}
+			}
+			else if (memberSet.add(component))
+			{
+				// If it was removed but is still in the array
+				if (!removedSet.remove(component))
+				{
+					ensureCapacity(size + 1);
+					
+					components[size++] = component;
+				}
+				
+				unsorted = true;
+			}
+		}
+	}
+	
+	public synchronized void remove(Component component)
+	{
+		if (component.getClass() == componentClass)
+		{
+			if (sortKey != null)
+			{
+				Double key = keyByComponentId.remove(component.getId());
+				
+				// If exists
+				if (key != null)
+				{
+					int index = search(key, component.getId());
+					
+					System.arraycopy(components, index + 1, components, index, size - index - 1);
+					System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+					System.arraycopy(componentIds, index + 1, componentIds, index, size - index - 1);
+					
+					components[--size] = null;
+				}
+			}
+			else if (memberSet.remove(component))
+			{
+				// Removed from the array the next time it is read
+				removedSet.add(component);
+			}
+		}
+	}
+	
+	public synchronized void update(Component component)
+	{
+		if (component.getClass() == componentClass)
+		{
+			if (sortKey != null)
+			{
+				Double oldKey = keyByComponentId.get(component.getId());
+				
+				// If exists
+				if (oldKey != null)
+				{
+					double key = sortKey.getKey(componentClass.cast(component));
+					
+					if (Double.compare(key, oldKey) != 0)
+					{
+						move(search(oldKey, component.getId()), search(key, component.getId()), key);
+						
+						keyByComponentId.put(component.getId(), key);
+					}
+				}
+			}
+			else if (memberSet.contains(component))
+			{
+				unsorted = true;
+			}
+		}
+	}
+	
+	public synchronized int size()
+	{
+		return (sortKey != null ? size : memberSet.size());
+	}
+	
+	/**
+	 * Returns the entity in a position of the order.
+	 * 
+	 * @param index of the position.
+	 * 
+	 * @return the id of the entity.
+	 */
+	public synchronized int getEntityId(int index)
+	{
+		return getComponent(index).getEntityId();
+	}
+	
+	/**
+	 * Returns the component in a position of the order.
+	 * 
+	 * @param index of the position.
+	 * 
+	 * @return the component.
+	 */
+	public synchronized C getComponent(int index)
+	{
+		sort();
+		
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		
+		return componentClass.cast(components[index]);
+	}
+	
+	/**
+	 * Returns the ordered entities.
+	 * 
+	 * @return a copy of the ids of the entities.
+	 */
+	public synchronized int[] getEntityIds()
+	{
+		sort();
+		
+		int[] entityIds = new int[size];
+		
+		for (int i=0; i<size; i++)
+		{
+			entityIds[i] = components[i].getEntityId();
+		}
+		
+		return entityIds;
+	}
+	
+	public synchronized void clear()
+	{
+		for (int i=0; i<size; i++)
+		{
+			components[i] = null;
+		}
+		
+		size = 0;
+		
+		if (sortKey != null)
+		{
+			keyByComponentId.clear();
+		}
+		else
+		{
+			memberSet.clear();
+			removedSet.clear();
+			unsorted = false;
+		}
+	}
+	
+	/**
+	 * Returns the position of a key or where it should be inserted, ordered by key and then by component id.
+	 */
+	private int search(double key, int componentId)
+	{
+		int low = 0;
+		int high = size - 1;
+		
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			int result = Double.compare(keys[middle], key);
+			
+			if (result == 0)
+			{
+				result = (componentIds[middle] < componentId ? -1 : (componentIds[middle] == componentId ? 0 : 1));
+			}
+			
+			if (result < 0)
+			{
+				low = middle + 1;
+			}
+			else if (result > 0)
+			{
+				high = middle - 1;
+			}
+			else
+			{
+				return middle;
+			}
+		}
+		
+		return low;
+	}
+	
+	private void insert(int index, Component component, double key)
+	{
+		ensureCapacity(size + 1);
+		
+		System.arraycopy(components, index, components, index + 1, size - index);
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(componentIds, index, componentIds, index + 1, size - index);
+		
+		components[index] = component;
+		keys[index] = key;
+		componentIds[index] = component.getId();
+		
+		size++;
+	}
+	
+	/**
+	 * Moves an entry to its new position shifting only the entries in between.
+	 * 
+	 * @param from current position of the entry.
+	 * @param to insertion point of the new key, with the entry still in its current position.
+	 * @param key new key of the entry.
+	 */
+	private void move(int from, int to, double key)
+	{
+		Component component = components[from];
+		int componentId = componentIds[from];
+		
+		if (to > from)
+		{
+			to--;
+			
+			System.arraycopy(components, from + 1, components, from, to - from);
+			System.arraycopy(keys, from + 1, keys, from, to - from);
+			System.arraycopy(componentIds, from + 1, componentIds, from, to - from);
+		}
+		else if (to < from)
+		{
+			System.arraycopy(components, to, components, to + 1, from - to);
+			System.arraycopy(keys, to, keys, to + 1, from - to);
+			System.arraycopy(componentIds, to, componentIds, to + 1, from - to);
+		}
+		
+		components[to] = component;
+		keys[to] = key;
+		componentIds[to] = componentId;
+	}
+	
+	/**
+	 * Applies the pending changes of a query ordered by comparator.
+	 */
+	private void sort()
+	{
+		if (sortKey == null)
+		{
+			if (!removedSet.isEmpty())
+			{
+				int count = 0;
+				
+				for (int i=0; i<size; i++)
+				{
+					if (!removedSet.contains(components[i]))
+					{
+						components[count++] = components[i];
+					}
+				}
+				
+				for (int i=count; i<size; i++)
+				{
+					components[i] = null;
+				}
+				
+				size = count;
+				removedSet.clear();
+			}
+			
+			if (unsorted)
+			{
+				// Merge sort, linear when the entries are nearly sorted and n log n otherwise
+				Arrays.sort(components, 0, size, componentComparator);
+				
+				unsorted = false;
+			}
+		}
+	}
+	
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > components.length)
+		{
+			int newCapacity = Math.max(capacity, components.length * 2);
+			
+			Component[] newComponents = new Component[newCapacity];
+			System.arraycopy(components, 0, newComponents, 0, size);
+			components = newComponents;
+			
+			if (sortKey != null)
+			{
+				double[] newKeys = new double[newCapacity];
+				System.arraycopy(keys, 0, newKeys, 0, size);
+				keys = newKeys;
+				
+				int[] newComponentIds = new int[newCapacity];
+				System.arraycopy(componentIds, 0, newComponentIds, 0, size);
+				componentIds = newComponentIds;
+			}
+		}
+	}
+}
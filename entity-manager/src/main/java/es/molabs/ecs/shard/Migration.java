@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.shard;
+
+/**
+ * Result of moving an entity from one shard of a {@link ShardedWorld} to another.
+ * The entity gets a new id in the target shard.
+ */
+public class Migration 
+{
+	private final int source;
+	private final int sourceEntityId;
+	private final int target;
+	private final int targetEntityId;
+	
+	public Migration(int source, int sourceEntityId, int target, int targetEntityId)
+	{
+		this.source = source;
+		this.sourceEntityId = sourceEntityId;
+		this.target = target;
+		this.targetEntityId = targetEntityId;
+	}
+	
+	public int getSource()
+	{
+		return source;
+	}
+	
+	public int getSourceEntityId()
+	{
+		return sourceEntityId;
+	}
+	
+	public int getTarget()
+	{
+		return target;
+	}
+	
+	public int getTargetEntityId()
+	{
+		return targetEntityId;
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.shard;
+
+/**
+ * Message sent between the shards of a {@link ShardedWorld}.
+ */
+public class ShardMessage 
+{
+	private final int source;
+	private final int target;
+	private final Object payload;
+	
+	public ShardMessage(int source, int target, Object payload)
+	{
+		this.source = source;
+		this.target = target;
+		this.payload = payload;
+	}
+	
+	public int getSource()
+	{
+		return source;
+	}
+	
+	public int getTarget()
+	{
+		return target;
+	}
+	
+	public Object getPayload()
+	{
+		return payload;
+	}
+}
@@ -0,0 +1,532 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.Entity;
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.data.DataStore;
+
+/**
+ * World split in many {@link EntityManager} shards that are updated in parallel.
+ * <p>
+ * Each shard is always used from its own thread, so the shards do not need to be thread safe. 
+ * Migrations and messages can be requested from any thread during an update and are applied at 
+ * the end of it, after all the shards have finished, in the order of the shard that requested them.
+ */
+public class ShardedWorld 
+{
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	
+	private final EntityManager[] shards;
+	
+	private ExecutorService[] executors = null;
+	private Queue<MigrationRequest>[] migrationQueues = null;
+	private Queue<ShardMessage>[] outboxes = null;
+	private volatile List<ShardMessage>[] inboxes = null;
+	private List<Migration> lastMigrationList = null;
+	
+	private boolean initialized;
+	
+	/**
+	 * Creates a new sharded world.
+	 * 
+	 * @param shardCount number of shards.
+	 */
+	public ShardedWorld(int shardCount)
+	{
+		if (shardCount < 1) throw new IllegalArgumentException("Shard count must be greater than 0.");
+		
+		shards = new EntityManager[shardCount];
+		for (int i=0; i<shards.length; i++)
+		{
+			shards[i] = new EntityManager();
+		}
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public void init()
+	{
+		if (!initialized)
+		{
+			executors = new ExecutorService[shards.length];
+			migrationQueues = new Queue[shards.length];
+			outboxes = new Queue[shards.length];
+			inboxes = new List[shards.length];
+			lastMigrationList = Collections.emptyList();
+			
+			for (int i=0; i<shards.length; i++)
+			{
+				executors[i] = Executors.newSingleThreadExecutor(new ShardThreadFactory(i));
+				migrationQueues[i] = new ConcurrentLinkedQueue<MigrationRequest>();
+				outboxes[i] = new ConcurrentLinkedQueue<ShardMessage>();
+				inboxes[i] = Collections.emptyList();
+			}
+			
+			// Each shard is initialized from its own thread
+			runAll(new ShardAction()
+			{
+				public void run(int index, EntityManager shard)
+				{
+					shard.init();
+				}
+			});
+			
+			initialized = true;
+			
+			logger.info("Initialized [shards={}].", shards.length);
+		}
+		else
+		{
+			logger.warn("Already initialized.");
+		}
+	}
+	
+	public void destroy()
+	{
+		if (initialized)
+		{
+			initialized = false;
+			
+			runAll(new ShardAction()
+			{
+				public void run(int index, EntityManager shard)
+				{
+					shard.destroy();
+				}
+			});
+			
+			for (int i=0; i<executors.length; i++)
+			{
+				executors[i].shutdown();
+			}
+			
+			executors = null;
+			migrationQueues = null;
+			outboxes = null;
+			inboxes = null;
+			lastMigrationList = null;
+			
+			logger.info("Destroyed.");
+		}
+		else
+		{
+			logger.warn("Already destroyed.");
+		}
+	}
+	
+	public boolean isInitialized()
+	{
+		return initialized;
+	}
+	
+	public int getShardCount()
+	{
+		return shards.length;
+	}
+	
+	/**
+	 * Returns a shard, that can be configured before initializing the world.
+	 * 
+	 * @param index of the shard.
+	 * 
+	 * @return the shard.
+	 */
+	public EntityManager getShard(int index)
+	{
+		return shards[index];
+	}
+	
+	/**
+	 * Returns the index of a shard.
+	 * 
+	 * @param shard to find.
+	 * 
+	 * @return the index of the shard or -1 if it does not belong to this world.
+	 */
+	public int indexOf(EntityManager shard)
+	{
+		int index = -1;
+		
+		for (int i=0; i<shards.length && index < 0; i++)
+		{
+			if (shards[i] == shard)
+			{
+				index = i;
+			}
+		}
+		
+		return index;
+	}
+	
+	/**
+	 * Updates all the shards in parallel and then applies the migrations and delivers the messages requested during the update.
+	 * 
+	 * @param delta time elapsed since the last update.
+	 */
+	public void update(final float delta)
+	{
+		checkInitialized();
+		
+		runAll(new ShardAction()
+		{
+			public void run(int index, EntityManager shard)
+			{
+				shard.update(delta);
+			}
+		});
+		
+		migrate();
+		deliver();
+	}
+	
+	/**
+	 * Requests to move an entity with all its components to another shard at the end of the current update. 
+	 * The entity and its components are detached from the source shard without being disposed and registered again 
+	 * in the target one, where they are created again with their new ids. Its rows in the data stores are copied to 
+	 * the stores with the same name of the target shard, and dropped if it does not have one.
+	 * 
+	 * @param source index of the shard of the entity.
+	 * @param entityId id of the entity in the source shard.
+	 * @param target index of the shard where the entity is moved.
+	 */
+	public void requestMigration(int source, int entityId, int target)
+	{
+		checkInitialized();
+		checkIndex(source);
+		checkIndex(target);
+		
+		migrationQueues[source].offer(new MigrationRequest(entityId, target));
+	}
+	
+	/**
+	 * Returns the migrations applied at the end of the last update.
+	 * 
+	 * @return the migrations applied at the end of the last update.
+	 */
+	public List<Migration> getLastMigrationList()
+	{
+		return lastMigrationList;
+	}
+	
+	/**
+	 * Sends a message to another shard, that receives it in its inbox after the current update.
+	 * 
+	 * @param source index of the shard that sends the message.
+	 * @param target index of the shard that receives the message.
+	 * @param payload of the message.
+	 */
+	public void send(int source, int target, Object payload)
+	{
+		checkInitialized();
+		checkIndex(source);
+		checkIndex(target);
+		
+		outboxes[source].offer(new ShardMessage(source, target, payload));
+	}
+	
+	/**
+	 * Returns the messages delivered to a shard at the end of the last update.
+	 * 
+	 * @param index of the shard.
+	 * 
+	 * @return the messages delivered to the shard.
+	 */
+	public List<ShardMessage> getInbox(int index)
+	{
+		checkInitialized();
+		checkIndex(index);
+		
+		return inboxes[index];
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void migrate()
+	{
+		final List<PendingMigration>[] outgoing = new List[shards.length];
+		final List<PendingMigration>[] incoming = new List[shards.length];
+		
+		// Each source shard detaches its entities from its own thread
+		runAll(new ShardAction()
+		{
+			public void run(int index, EntityManager shard)
+			{
+				outgoing[index] = new ArrayList<PendingMigration>();
+				
+				MigrationRequest request = null;
+				while ((request = migrationQueues[index].poll()) != null)
+				{
+					Entity entity = shard.getEntity(request.entityId);
+					
+					// If it still exists
+					if (entity != null)
+					{
+						Collection<Component> componentCollection = shard.getComponentCollection(request.entityId);
+						List<Component> componentList = (componentCollection != null ? new ArrayList<Component>(componentCollection) : Collections.<Component>emptyList());
+						
+						// Copies the plain data since detaching the entity removes it
+						Map<String, byte[]> rowMap = new LinkedHashMap<String, byte[]>();
+						Iterator<DataStore> iterator = shard.getDataStoreCollection().iterator();
+						while (iterator.hasNext())
+						{
+							DataStore dataStore = iterator.next();
+							int slot = dataStore.getSlot(request.entityId);
+							
+							if (slot >= 0)
+							{
+								rowMap.put(dataStore.getName(), dataStore.getRow(slot));
+							}
+						}
+						
+						shard.detachEntity(request.entityId);
+						
+						outgoing[index].add(new PendingMigration(index, request.entityId, request.target, entity, componentList, rowMap));
+					}
+					else
+					{
+						logger.warn("Entity not found [shard={}, id={}].", index, request.entityId);
+					}
+				}
+			}
+		});
+		
+		// Sorts the entities by target keeping the order of the source shards
+		for (int i=0; i<shards.length; i++)
+		{
+			incoming[i] = new ArrayList<PendingMigration>();
+		}
+		
+		for (int i=0; i<shards.length; i++)
+		{
+			for (int j=0; j<outgoing[i].size(); j++)
+			{
+				incoming[outgoing[i].get(j).target].add(outgoing[i].get(j));
+			}
+		}
+		
+		// Each target shard registers its entities from its own thread
+		runAll(new ShardAction()
+		{
+			public void run(int index, EntityManager shard)
+			{
+				for (int i=0; i<incoming[index].size(); i++)
+				{
+					PendingMigration migration = incoming[index].get(i);
+					
+					migration.targetEntityId = shard.registerEntity(migration.entity).getId();
+					
+					for (int j=0; j<migration.componentList.size(); j++)
+					{
+						shard.registerComponent(migration.targetEntityId, migration.componentList.get(j));
+					}
+					
+					Iterator<Map.Entry<String, byte[]>> iterator = migration.rowMap.entrySet().iterator();
+					while (iterator.hasNext())
+					{
+						Map.Entry<String, byte[]> entry = iterator.next();
+						DataStore dataStore = shard.getDataStore(entry.getKey());
+						
+						if (dataStore != null)
+						{
+							dataStore.setRow(dataStore.add(migration.targetEntityId), entry.getValue());
+						}
+						else
+						{
+							logger.warn("Data store not found [shard={}, name={}].", index, entry.getKey());
+						}
+					}
+				}
+			}
+		});
+		
+		List<Migration> migrationList = new ArrayList<Migration>();
+		for (int i=0; i<shards.length; i++)
+		{
+			for (int j=0; j<outgoing[i].size(); j++)
+			{
+				PendingMigration migration = outgoing[i].get(j);
+				
+				migrationList.add(new Migration(migration.source, migration.sourceEntityId, migration.target, migration.targetEntityId));
+			}
+		}
+		
+		lastMigrationList = Collections.unmodifiableList(migrationList);
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void deliver()
+	{
+		List<ShardMessage>[] newInboxes = new List[shards.length];
+		for (int i=0; i<newInboxes.length; i++)
+		{
+			newInboxes[i] = new ArrayList<ShardMessage>();
+		}
+		
+		// Messages are delivered in the order of the shard that sent them
+		for (int i=0; i<outboxes.length; i++)
+		{
+			ShardMessage message = null;
+			while ((message = outboxes[i].poll()) != null)
+			{
+				newInboxes[message.getTarget()].add(message);
+			}
+		}
+		
+		for (int i=0; i<newInboxes.length; i++)
+		{
+			newInboxes[i] = Collections.unmodifiableList(newInboxes[i]);
+		}
+		
+		inboxes = newInboxes;
+	}
+	
+	private void runAll(final ShardAction action)
+	{
+		List<Future<?>> futureList = new ArrayList<Future<?>>();
+		
+		for (int i=0; i<shards.length; i++)
+		{
+			final int index = i;
+			
+			futureList.add(executors[i].submit(new Callable<Void>()
+			{
+				public Void call()
+				{
+					action.run(index, shards[index]);
+					
+					return null;
+				}
+			}));
+		}
+		
+		// Waits for all the shards, even if one of them fails
+		RuntimeException exception = null;
+		for (int i=0; i<futureList.size(); i++)
+		{
+			try
+			{
+				futureList.get(i).get();
+			}
+			catch (ExecutionException ee)
+			{
+				if (exception == null)
+				{
+					exception = new IllegalStateException("Error running shard [index=" + i + "].", ee.getCause());
+				}
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+				
+				if (exception == null)
+				{
+					exception = new IllegalStateException("Interrupted while waiting for shard [index=" + i + "].", ie);
+				}
+			}
+		}
+		
+		if (exception != null)
+		{
+			throw exception;
+		}
+	}
+	
+	private void checkInitialized()
+	{
+		if (!initialized) throw new IllegalStateException("Not initialized.");
+	}
+	
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= shards.length) throw new IllegalArgumentException("Shard not found [index=" + index + "].");
+	}
+	
+	private interface ShardAction
+	{
+		public void run(int index, EntityManager shard);
+	}
+	
+	private static class MigrationRequest
+	{
+		private final int entityId;
+		private final int target;
+		
+		private MigrationRequest(int entityId, int target)
+		{
+			this.entityId = entityId;
+			this.target = target;
+		}
+	}
+	
+	private static class PendingMigration
+	{
+		private final int source;
+		private final int sourceEntityId;
+		private final int target;
+		private final Entity entity;
+		private final List<Component> componentList;
+		private final Map<String, byte[]> rowMap;
+		
+		private int targetEntityId;
+		
+		private PendingMigration(int source, int sourceEntityId, int target, Entity entity, List<Component> componentList, Map<String, byte[]> rowMap)
+		{
+			this.source = source;
+			this.sourceEntityId = sourceEntityId;
+			this.target = target;
+			this.entity = entity;
+			this.componentList = componentList;
+			this.rowMap = rowMap;
+		}
+	}
+	
+	private static class ShardThreadFactory implements ThreadFactory
+	{
+		private final int index;
+		
+		private ShardThreadFactory(int index)
+		{
+			this.index = index;
+		}
+		
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "shard-" + index);
+			thread.setDaemon(true);
+			
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.snapshot;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.Entity;
+import es.molabs.ecs.snapshot.WorldSnapshot.EntityView;
+import es.molabs.ecs.util.ComponentMap;
+
+/**
+ * Builds and publishes the {@link WorldSnapshot} of an entity manager.
+ * <p>
+ * {@link #publish(Map, ComponentMap)} must be called from the thread that updates the entity manager. 
+ * {@link #getSnapshot()} can be called from any thread without locking.
+ */
+public class SnapshotPublisher 
+{
+	private volatile WorldSnapshot snapshot = null;
+	
+	private Set<Integer> dirtyEntitySet = null;
+	private Set<Integer> changedComponentSet = null;
+	private Map<Class<?>, Object> changedResourceMap = null;
+	
+	public SnapshotPublisher()
+	{
+		snapshot = WorldSnapshot.EMPTY;
+		
+		dirtyEntitySet = new HashSet<Integer>();
+		changedComponentSet = new HashSet<Integer>();
+		changedResourceMap = new HashMap<Class<?>, Object>();
+	}
+	
+	/**
+	 * Returns the last published snapshot.
+	 * 
+	 * @return the last published snapshot.
+	 */
+	public WorldSnapshot getSnapshot()
+	{
+		return snapshot;
+	}
+	
+	/**
+	 * Marks an entity as changed so its view is rebuilt on the next publish.
+	 * 
+	 * @param entityId of the entity that has changed.
+	 */
+	public synchronized void entityChanged(int entityId)
+	{
+		dirtyEntitySet.add(entityId);
+	}
+	
+	/**
+	 * Marks a component as changed so it is copied again on the next publish.
+	 * 
+	 * @param component that has changed.
+	 */
+	public synchronized void componentChanged(Component component)
+	{
+		changedComponentSet.add(component.getId());
+		
+		if (component.getEntityId() != null)
+		{
+			dirtyEntitySet.add(component.getEntityId());
+		}
+	}
+	
+	/**
+	 * Marks a resource as changed so it is copied again on the next publish.
+	 * 
+	 * @param type of the resource.
+	 * @param resource current value of the resource, or null to remove it from the snapshot.
+	 */
+	public synchronized void resourceChanged(Class<?> type, Object resource)
+	{
+		changedResourceMap.put(type, resource);
+	}
+	
+	/**
+	 * Publishes a new snapshot with the current state of the world.
+	 * 
+	 * @param entityMap with the current entities.
+	 * @param componentMap with the current components.
+	 */
+	public void publish(Map<Integer, Entity> entityMap, ComponentMap componentMap)
+	{
+		WorldSnapshot previous = snapshot;
+		EntityView[][] chunks = previous.getChunks();
+		int entityCount = previous.getEntityCount();
+		int componentCount = previous.getComponentCount();
+		Map<Class<?>, Object> resourceMap = previous.getResourceMap();
+		
+		// Takes the pending changes so they can be processed without holding the lock
+		Set<Integer> dirtyEntitySet = null;
+		Set<Integer> changedComponentSet = null;
+		Map<Class<?>, Object> changedResourceMap = null;
+		
+		synchronized (this)
+		{
+			dirtyEntitySet = this.dirtyEntitySet;
+			changedComponentSet = this.changedComponentSet;
+			changedResourceMap = this.changedResourceMap;
+			
+			this.dirtyEntitySet = new HashSet<Integer>();
+			this.changedComponentSet = new HashSet<Integer>();
+			this.changedResourceMap = new HashMap<Class<?>, Object>();
+		}
+		
+		// If any resource has changed since the last publish
+		if (!changedResourceMap.isEmpty())
+		{
+			resourceMap = new HashMap<Class<?>, Object>(resourceMap);
+			
+			Iterator<Map.Entry<Class<?>, Object>> iterator = changedResourceMap.entrySet().iterator();
+			while (iterator.hasNext())
+			{
+				Map.Entry<Class<?>, Object> entry = iterator.next();
+				
+				if (entry.getValue() != null)
+				{
+					resourceMap.put(entry.getKey(), (entry.getValue() instanceof CopyableResource ? ((CopyableResource) entry.getValue()).copy() : entry.getValue()));
+				}
+				else
+				{
+					resourceMap.remove(entry.getKey());
+				}
+			}
+			
+			resourceMap = Collections.unmodifiableMap(resourceMap);
+		}
+		
+		// If something has changed since the last publish
+		if (!dirtyEntitySet.isEmpty())
+		{
+			// Grows the chunk index if needed
+			int length = chunks.length;
+			Iterator<Integer> iterator = dirtyEntitySet.iterator();
+			while (iterator.hasNext())
+			{
+				length = Math.max(length, (iterator.next() >>> WorldSnapshot.CHUNK_SHIFT) + 1);
+			}
+			
+			chunks = Arrays.copyOf(chunks, length);
+			boolean[] copiedChunks = new boolean[length];
+			
+			iterator = dirtyEntitySet.iterator();
+			while (iterator.hasNext())
+			{
+				int entityId = iterator.next();
+				int chunkIndex = entityId >>> WorldSnapshot.CHUNK_SHIFT;
+				
+				// Copies the chunk only the first time it is modified
+				if (!copiedChunks[chunkIndex])
+				{
+					chunks[chunkIndex] = (chunks[chunkIndex] != null ? chunks[chunkIndex].clone() : new EntityView[WorldSnapshot.CHUNK_SIZE]);
+					copiedChunks[chunkIndex] = true;
+				}
+				
+				EntityView oldView = chunks[chunkIndex][entityId & WorldSnapshot.CHUNK_MASK];
+				
+				if (oldView != null)
+				{
+					entityCount -= (oldView.isRegistered() ? 1 : 0);
+					componentCount -= oldView.getComponentMap().size();
+				}
+				
+				EntityView newView = createView(oldView, entityMap.containsKey(entityId), componentMap.getByEntityId(entityId), changedComponentSet);
+				
+				if (newView != null)
+				{
+					entityCount += (newView.isRegistered() ? 1 : 0);
+					componentCount += newView.getComponentMap().size();
+				}
+				
+				chunks[chunkIndex][entityId & WorldSnapshot.CHUNK_MASK] = newView;
+			}
+		}
+		
+		snapshot = new WorldSnapshot(previous.getFrame() + 1, chunks, entityCount, componentCount, resourceMap);
+	}
+	
+	/**
+	 * Discards the pending changes and publishes an empty snapshot.
+	 */
+	public synchronized void clear()
+	{
+		dirtyEntitySet.clear();
+		changedComponentSet.clear();
+		changedResourceMap.clear();
+		
+		snapshot = new WorldSnapshot(snapshot.getFrame() + 1, new EntityView[0][], 0, 0, Collections.<Class<?>, Object>emptyMap());
+	}
+	
+	private EntityView createView(EntityView oldView, boolean registered, Collection<Component> componentCollection, Set<Integer> changedComponentSet)
+	{
+		EntityView view = null;
+		
+		// If the entity still exists
+		if (registered || (componentCollection != null && !componentCollection.isEmpty()))
+		{
+			Map<Class<?>, Component> viewMap = new HashMap<Class<?>, Component>();
+			
+			if (componentCollection != null)
+			{
+				Iterator<Component> iterator = componentCollection.iterator();
+				while (iterator.hasNext())
+				{
+					Component component = iterator.next();
+					
+					viewMap.put(component.getClass(), copy(oldView, component, changedComponentSet));
+				}
+			}
+			
+			view = new EntityView(registered, viewMap);
+		}
+		
+		return view;
+	}
+	
+	private Component copy(EntityView oldView, Component component, Set<Integer> changedComponentSet)
+	{
+		Component copy = component;
+		
+		if (component instanceof CopyableComponent)
+		{
+			Component oldCopy = (oldView != null ? oldView.getComponentMap().get(component.getClass()) : null);
+			
+			// Reuses the previous copy if the component has not changed
+			if (oldCopy != null && !changedComponentSet.contains(component.getId()))
+			{
+				copy = oldCopy;
+			}
+			else
+			{
+				copy = ((CopyableComponent) component).copy();
+			}
+		}
+		
+		return copy;
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.snapshot;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import es.molabs.ecs.Component;
+
+/**
+ * Immutable view of the world published by the {@link es.molabs.ecs.EntityManager} at the end of an update.
+ * <p>
+ * Entities are stored in fixed size chunks indexed by entity id. A new snapshot only copies the chunks 
+ * that contain changed entities and shares the rest with the previous one.
+ */
+public class WorldSnapshot 
+{
+	static final int CHUNK_SHIFT = 6;
+	static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	
+	static final WorldSnapshot EMPTY = new WorldSnapshot(0, new EntityView[0][], 0, 0, Collections.<Class<?>, Object>emptyMap());
+	
+	private final long frame;
+	private final EntityView[][] chunks;
+	private final int entityCount;
+	private final int componentCount;
+	private final Map<Class<?>, Object> resourceMap;
+	
+	WorldSnapshot(long frame, EntityView[][] chunks, int entityCount, int componentCount, Map<Class<?>, Object> resourceMap)
+	{
+		this.frame = frame;
+		this.chunks = chunks;
+		this.entityCount = entityCount;
+		this.componentCount = componentCount;
+		this.resourceMap = resourceMap;
+	}
+	
+	/**
+	 * Returns the number of the update that published this snapshot.
+	 * 
+	 * @return the number of the update that published this snapshot.
+	 */
+	public long getFrame()
+	{
+		return frame;
+	}
+	
+	public int getEntityCount()
+	{
+		return entityCount;
+	}
+	
+	public int getComponentCount()
+	{
+		return componentCount;
+	}
+	
+	public boolean hasEntity(int entityId)
+	{
+		EntityView view = getView(entityId);
+		
+		return view != null && view.isRegistered();
+	}
+	
+	public Collection<Component> getComponentCollection(int entityId)
+	{
+		EntityView view = getView(entityId);
+		
+		return (view != null ? view.getComponentMap().values() : null);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public<C extends Component> C getComponent(int entityId, Class<C> clazz)
+	{
+		C component = null;
+		
+		EntityView view = getView(entityId);
+		
+		if (view != null)
+		{
+			component = (C) view.getComponentMap().get(clazz);
+		}
+		
+		return component;
+	}
+	
+	public<C extends Component> boolean hasComponent(int entityId, Class<C> clazz)
+	{
+		return getComponent(entityId, clazz) != null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public<C extends Component> Collection<C> getComponentCollectionByClass(Class<C> clazz)
+	{
+		Collection<C> collection = new LinkedList<C>();
+		
+		// For each chunk
+		for (int i=0; i<chunks.length; i++)
+		{
+			EntityView[] chunk = chunks[i];
+			
+			if (chunk != null)
+			{
+				// For each entity in the chunk
+				for (int j=0; j<chunk.length; j++)
+				{
+					if (chunk[j] != null)
+					{
+						Component component = chunk[j].getComponentMap().get(clazz);
+						
+						if (component != null)
+						{
+							collection.add((C) component);
+						}
+					}
+				}
+			}
+		}
+		
+		return collection;
+	}
+	
+	/**
+	 * Returns a tracked resource as it was when this snapshot was published.
+	 * 
+	 * @param type of the resource.
+	 * 
+	 * @return the resource or null if it was not registered or not tracked.
+	 */
+	public<R> R getResource(Class<R> type)
+	{
+		return type.cast(resourceMap.get(type));
+	}
+	
+	public Set<Class<?>> getResourceTypes()
+	{
+		return resourceMap.keySet();
+	}
+	
+	EntityView[][] getChunks()
+	{
+		return chunks;
+	}
+	
+	Map<Class<?>, Object> getResourceMap()
+	{
+		return resourceMap;
+	}
+
+	
+	EntityView getView(int entityId)
+	{
+		EntityView view = null;
+		
+		int chunkIndex = entityId >>> CHUNK_SHIFT;
+		
+		if (chunkIndex < chunks.length && chunks[chunkIndex] != null)
+		{
+			view = chunks[chunkIndex][entityId & CHUNK_MASK];
+		}
+		
+		return view;
+	}
+	
+	static class EntityView
+	{
+		private final boolean registered;
+		private final Map<Class<?>, Component> componentMap;
+		
+		EntityView(boolean registered, Map<Class<?>, Component> componentMap)
+		{
+			this.registered = registered;
+			this.componentMap = Collections.unmodifiableMap(componentMap);
+		}
+		
+		boolean isRegistered()
+		{
+			return registered;
+		}
+		
+		Map<Class<?>, Component> getComponentMap()
+		{
+			return componentMap;
+		}
+	}
+}
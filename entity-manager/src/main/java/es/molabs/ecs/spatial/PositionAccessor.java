@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.spatial;
+
+import es.molabs.ecs.Component;
+
+/**
+ * Reads the position of the components indexed by a {@link SpatialIndexSystem}.
+ *
+ * @param <C> type of the position component.
+ */
+public interface PositionAccessor<C extends Component> 
+{
+	public float getX(C component);
+	
+	public float getY(C component);
+	
+	/**
+	 * Returns the z coordinate of the component, ignored by two dimensional indexes.
+	 * 
+	 * @param component with the position.
+	 * 
+	 * @return the z coordinate of the component.
+	 */
+	public float getZ(C component);
+}
@@ -0,0 +1,842 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.ComponentChangeListener;
+import es.molabs.ecs.WorldClearListener;
+import es.molabs.ecs.base.AbstractSystem;
+
+/**
+ * Keeps the entities with a position component in a uniform grid to answer proximity queries without scanning all of them.
+ * <p>
+ * The grid is updated when position components are added, removed or marked as changed with 
+ * {@link es.molabs.ecs.EntityManager#markChanged(Component)}. Components that move without being marked 
+ * can be picked up with {@link #refresh()}. Queries must be done from the thread that updates the manager.
+ *
+ * @param <C> type of the position component.
+ */
+public class SpatialIndexSystem<C extends Component> extends AbstractSystem implements ComponentChangeListener, WorldClearListener
+{
+	private final static int KEY_BITS = 21;
+	private final static int KEY_OFFSET = 1 << (KEY_BITS - 1);
+	private final static long KEY_MASK = (1L << KEY_BITS) - 1;
+	
+	private final Class<C> positionClass;
+	private final PositionAccessor<C> accessor;
+	private final float cellSize;
+	private final boolean threeDimensional;
+	
+	private Map<Integer, Entry> entryMap = null;
+	private Map<Long, Cell> cellMap = null;
+	
+	// Number of cells at each coordinate of each axis, to know the bounds of the occupied cells
+	private TreeMap<Integer, Integer> cellCountByX = null;
+	private TreeMap<Integer, Integer> cellCountByY = null;
+	private TreeMap<Integer, Integer> cellCountByZ = null;
+	
+	/**
+	 * Creates a new spatial index.
+	 * 
+	 * @param positionClass class of the position component.
+	 * @param accessor that reads the position of the components.
+	 * @param cellSize size of the side of each cell, should be close to the usual query radius.
+	 * @param threeDimensional if the z coordinate is indexed.
+	 */
+	public SpatialIndexSystem(Class<C> positionClass, PositionAccessor<C> accessor, float cellSize, boolean threeDimensional)
+	{
+		super(false);
+		
+		if (cellSize <= 0) throw new IllegalArgumentException("Cell size must be greater than 0.");
+		
+		this.positionClass = positionClass;
+		this.accessor = accessor;
+		this.cellSize = cellSize;
+		this.threeDimensional = threeDimensional;
+	}
+	
+	protected void onCreate()
+	{
+		entryMap = new HashMap<Integer, Entry>();
+		cellMap = new HashMap<Long, Cell>();
+		
+		cellCountByX = new TreeMap<Integer, Integer>();
+		cellCountByY = new TreeMap<Integer, Integer>();
+		cellCountByZ = new TreeMap<Integer, Integer>();
+	}
+	
+	protected void onDispose()
+	{
+		entryMap.clear();
+		entryMap = null;
+		
+		cellMap.clear();
+		cellMap = null;
+		
+		cellCountByX = null;
+		cellCountByY = null;
+		cellCountByZ = null;
+	}
+	
+	protected void onComponentAdded(Component component)
+	{
+		if (component.getClass() == positionClass)
+		{
+			Entry entry = entryMap.get(component.getEntityId());
+			
+			// If it does not exist
+			if (entry == null)
+			{
+				entry = new Entry(component.getEntityId());
+				
+				entryMap.put(entry.entityId, entry);
+			}
+			
+			entry.component = component;
+			
+			move(entry);
+		}
+	}
+	
+	protected void onComponentRemoved(Component component)
+	{
+		if (component.getClass() == positionClass)
+		{
+			Entry entry = entryMap.get(component.getEntityId());
+			
+			// Only if it is the indexed component of the entity
+			if (entry != null && entry.component == component)
+			{
+				entryMap.remove(entry.entityId);
+				
+				removeFromCell(entry);
+			}
+		}
+	}
+	
+	public void componentChanged(Component component)
+	{
+		if (component.getClass() == positionClass)
+		{
+			Entry entry = entryMap.get(component.getEntityId());
+			
+			if (entry != null && entry.component == component)
+			{
+				move(entry);
+			}
+		}
+	}
+	
+	public void worldCleared()
+	{
+		entryMap.clear();
+		cellMap.clear();
+		
+		cellCountByX.clear();
+		cellCountByY.clear();
+		cellCountByZ.clear();
+	}
+	
+	/**
+	 * Reads again the position of all the indexed components.
+	 */
+	public void refresh()
+	{
+		Iterator<Entry> iterator = entryMap.values().iterator();
+		while (iterator.hasNext())
+		{
+			move(iterator.next());
+		}
+	}
+	
+	public Class<C> getPositionClass()
+	{
+		return positionClass;
+	}
+	
+	public float getCellSize()
+	{
+		return cellSize;
+	}
+	
+	public int size()
+	{
+		return entryMap.size();
+	}
+	
+	public int getCellCount()
+	{
+		return cellMap.size();
+	}
+	
+	/**
+	 * Returns the entities inside a box.
+	 * 
+	 * @param minX minimum x coordinate of the box.
+	 * @param minY minimum y coordinate of the box.
+	 * @param minZ minimum z coordinate of the box, ignored by two dimensional indexes.
+	 * @param maxX maximum x coordinate of the box.
+	 * @param maxY maximum y coordinate of the box.
+	 * @param maxZ maximum z coordinate of the box, ignored by two dimensional indexes.
+	 * 
+	 * @return the ids of the entities inside the box.
+	 */
+	public List<Integer> queryBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+	{
+		List<Integer> entityIds = new ArrayList<Integer>();
+		
+		List<Cell> cellList = getCells(minX, minY, minZ, maxX, maxY, maxZ);
+		for (int i=0; i<cellList.size(); i++)
+		{
+			Cell cell = cellList.get(i);
+			
+			for (int j=0; j<cell.size; j++)
+			{
+				Entry entry = cell.entries[j];
+				
+				if (entry.x >= minX && entry.x <= maxX && entry.y >= minY && entry.y <= maxY && (!threeDimensional || (entry.z >= minZ && entry.z <= maxZ)))
+				{
+					entityIds.add(entry.entityId);
+				}
+			}
+		}
+		
+		return entityIds;
+	}
+	
+	/**
+	 * Returns the entities within a distance of a point.
+	 * 
+	 * @param x coordinate of the point.
+	 * @param y coordinate of the point.
+	 * @param z coordinate of the point, ignored by two dimensional indexes.
+	 * @param radius maximum distance to the point.
+	 * 
+	 * @return the ids of the entities within the distance.
+	 */
+	public List<Integer> queryRadius(float x, float y, float z, float radius)
+	{
+		List<Integer> entityIds = new ArrayList<Integer>();
+		float radiusSquared = radius * radius;
+		
+		List<Cell> cellList = getCells(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius);
+		for (int i=0; i<cellList.size(); i++)
+		{
+			Cell cell = cellList.get(i);
+			
+			for (int j=0; j<cell.size; j++)
+			{
+				if (getDistanceSquared(cell.entries[j], x, y, z) <= radiusSquared)
+				{
+					entityIds.add(cell.entries[j].entityId);
+				}
+			}
+		}
+		
+		return entityIds;
+	}
+	
+	/**
+	 * Returns the nearest entities to a point, searching the cells in rings around the point until no closer entity can be found.
+	 * Only the cells of each ring inside the bounds of the occupied cells are visited, and once the rings cover more cells 
+	 * than the occupied ones all the entities are checked instead.
+	 * 
+	 * @param x coordinate of the point.
+	 * @param y coordinate of the point.
+	 * @param z coordinate of the point, ignored by two dimensional indexes.
+	 * @param count maximum number of entities to return.
+	 * 
+	 * @return the ids of the nearest entities ordered by distance.
+	 */
+	public List<Integer> queryNearest(final float x, final float y, final float z, int count)
+	{
+		List<Integer> entityIds = new ArrayList<Integer>();
+		
+		if (count > 0 && !entryMap.isEmpty())
+		{
+			// Keeps the best entries found with the farthest on top
+			PriorityQueue<Entry> nearestQueue = new PriorityQueue<Entry>(count, Collections.reverseOrder(new DistanceComparator(x, y, z)));
+			
+			int cellX = getCellCoordinate(x);
+			int cellY = getCellCoordinate(y);
+			int cellZ = (threeDimensional ? getCellCoordinate(z) : 0);
+			int[] bounds = getBounds();
+			int maxRing = getMaxRing(cellX, cellY, cellZ, bounds);
+			
+			boolean finished = false;
+			for (int ring=0; ring<=maxRing && !finished; ring++)
+			{
+				// If the cells searched so far are more than the occupied ones it is cheaper to check all the entries
+				if (getVolume(cellX, cellY, cellZ, ring, bounds) > cellMap.size())
+				{
+					nearestQueue.clear();
+					
+					Iterator<Entry> iterator = entryMap.values().iterator();
+					while (iterator.hasNext())
+					{
+						offer(nearestQueue, iterator.next(), count);
+					}
+					
+					finished = true;
+				}
+				else
+				{
+					offerRing(nearestQueue, count, cellX, cellY, cellZ, ring, bounds);
+					
+					// Entities in the next ring are at least this far
+					float minNextDistance = ring * cellSize;
+					
+					if (nearestQueue.size() == count && getDistanceSquared(nearestQueue.peek(), x, y, z) <= minNextDistance * minNextDistance)
+					{
+						finished = true;
+					}
+				}
+			}
+			
+			Entry[] nearest = nearestQueue.toArray(new Entry[nearestQueue.size()]);
+			Arrays.sort(nearest, new DistanceComparator(x, y, z));
+			
+			for (int i=0; i<nearest.length; i++)
+			{
+				entityIds.add(nearest[i].entityId);
+			}
+		}
+		
+		return entityIds;
+	}
+	
+	/**
+	 * Returns the pairs of entities within a distance of each other.
+	 * 
+	 * @param distance maximum distance between the entities of a pair.
+	 * 
+	 * @return the pairs of entities, use {@link #getFirstEntityId(long)} and {@link #getSecondEntityId(long)} to read them.
+	 */
+	public long[] findPairs(float distance)
+	{
+		Cell[] cells = cellMap.values().toArray(new Cell[cellMap.size()]);
+		
+		return findPairs(cells, 0, cells.length, distance).toArray();
+	}
+	
+	/**
+	 * Returns the pairs of entities within a distance of each other, splitting the cells between many tasks.
+	 * 
+	 * @param distance maximum distance between the entities of a pair.
+	 * @param executor that runs the tasks.
+	 * @param partitions number of tasks.
+	 * 
+	 * @return the pairs of entities, use {@link #getFirstEntityId(long)} and {@link #getSecondEntityId(long)} to read them.
+	 * 
+	 * @throws InterruptedException if the thread is interrupted while waiting for the tasks.
+	 */
+	public long[] findPairs(final float distance, ExecutorService executor, int partitions) throws InterruptedException
+	{
+		final Cell[] cells = cellMap.values().toArray(new Cell[cellMap.size()]);
+		int partitionSize = Math.max(1, (cells.length + partitions - 1) / Math.max(1, partitions));
+		
+		// Each task only reads the grid
+		List<Future<PairBuffer>> futureList = new ArrayList<Future<PairBuffer>>();
+		for (int start=0; start<cells.length; start+=partitionSize)
+		{
+			final int from = start;
+			final int to = Math.min(cells.length, start + partitionSize);
+			
+			futureList.add(executor.submit(new Callable<PairBuffer>()
+			{
+				public PairBuffer call()
+				{
+					return findPairs(cells, from, to, distance);
+				}
+			}));
+		}
+		
+		// Joins the results of the tasks
+		PairBuffer pairs = new PairBuffer();
+		for (int i=0; i<futureList.size(); i++)
+		{
+			try
+			{
+				pairs.addAll(futureList.get(i).get());
+			}
+			catch (ExecutionException ee)
+			{
+				throw new IllegalStateException("Error finding pairs.", ee.getCause());
+			}
+		}
+		
+		return pairs.toArray();
+	}
+	
+	public static int getFirstEntityId(long pair)
+	{
+		return (int) (pair >>> 32);
+	}
+	
+	public static int getSecondEntityId(long pair)
+	{
+		return (int) pair;
+	}
+	
+	private PairBuffer findPairs(Cell[] cells, int from, int to, float distance)
+	{
+		PairBuffer pairs = new PairBuffer();
+		float distanceSquared = distance * distance;
+		int span = Math.max(1, (int) Math.ceil(distance / cellSize));
+		int depth = (threeDimensional ? span : 0);
+		
+		for (int c=from; c<to; c++)
+		{
+			Cell cell = cells[c];
+			
+			// Pairs inside the cell
+			for (int i=0; i<cell.size; i++)
+			{
+				for (int j=i+1; j<cell.size; j++)
+				{
+					if (getDistanceSquared(cell.entries[i], cell.entries[j]) <= distanceSquared)
+					{
+						pairs.add(cell.entries[i].entityId, cell.entries[j].entityId);
+					}
+				}
+			}
+			
+			// Pairs with the neighbour cells, each pair of cells is only visited from the one with the lowest key
+			for (int dx=-span; dx<=span; dx++)
+			{
+				for (int dy=-span; dy<=span; dy++)
+				{
+					for (int dz=-depth; dz<=depth; dz++)
+					{
+						long neighbourKey = getCellKey(cell.x + dx, cell.y + dy, cell.z + dz);
+						
+						if (neighbourKey > cell.key)
+						{
+							Cell neighbour = cellMap.get(neighbourKey);
+							
+							if (neighbour != null)
+							{
+								for (int i=0; i<cell.size; i++)
+								{
+									for (int j=0; j<neighbour.size; j++)
+									{
+										if (getDistanceSquared(cell.entries[i], neighbour.entries[j]) <= distanceSquared)
+										{
+											pairs.add(cell.entries[i].entityId, neighbour.entries[j].entityId);
+										}
+									}
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		
+		return pairs;
+	}
+	
+	private List<Cell> getCells(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+	{
+		List<Cell> cellList = new ArrayList<Cell>();
+		
+		int fromX = getCellCoordinate(minX);
+		int fromY = getCellCoordinate(minY);
+		int fromZ = (threeDimensional ? getCellCoordinate(minZ) : 0);
+		int toX = getCellCoordinate(maxX);
+		int toY = getCellCoordinate(maxY);
+		int toZ = (threeDimensional ? getCellCoordinate(maxZ) : 0);
+		
+		long volume = (long) (toX - fromX + 1) * (toY - fromY + 1) * (toZ - fromZ + 1);
+		
+		// If the box covers more cells than the existing ones it is cheaper to check them all
+		if (volume > cellMap.size())
+		{
+			Iterator<Cell> iterator = cellMap.values().iterator();
+			while (iterator.hasNext())
+			{
+				Cell cell = iterator.next();
+				
+				if (cell.x >= fromX && cell.x <= toX && cell.y >= fromY && cell.y <= toY && cell.z >= fromZ && cell.z <= toZ)
+				{
+					cellList.add(cell);
+				}
+			}
+		}
+		else
+		{
+			for (int x=fromX; x<=toX; x++)
+			{
+				for (int y=fromY; y<=toY; y++)
+				{
+					for (int z=fromZ; z<=toZ; z++)
+					{
+						Cell cell = cellMap.get(getCellKey(x, y, z));
+						
+						if (cell != null)
+						{
+							cellList.add(cell);
+						}
+					}
+				}
+			}
+		}
+		
+		return cellList;
+	}
+	
+	/**
+	 * Returns the bounds of the occupied cells as minimum and maximum x, y and z.
+	 */
+	private int[] getBounds()
+	{
+		return new int[] {cellCountByX.firstKey(), cellCountByX.lastKey(), cellCountByY.firstKey(), cellCountByY.lastKey(), cellCountByZ.firstKey(), cellCountByZ.lastKey()};
+	}
+	
+	private int getMaxRing(int cellX, int cellY, int cellZ, int[] bounds)
+	{
+		int maxX = Math.max(Math.abs(bounds[0] - cellX), Math.abs(bounds[1] - cellX));
+		int maxY = Math.max(Math.abs(bounds[2] - cellY), Math.abs(bounds[3] - cellY));
+		int maxZ = Math.max(Math.abs(bounds[4] - cellZ), Math.abs(bounds[5] - cellZ));
+		
+		return Math.max(maxX, Math.max(maxY, maxZ));
+	}
+	
+	/**
+	 * Returns the number of cells inside the bounds up to a ring, that is the cells visited by the rings until it.
+	 */
+	private long getVolume(int cellX, int cellY, int cellZ, int ring, int[] bounds)
+	{
+		int depth = (threeDimensional ? ring : 0);
+		
+		long width = Math.max(0, Math.min(cellX + ring, bounds[1]) - Math.max(cellX - ring, bounds[0]) + 1);
+		long height = Math.max(0, Math.min(cellY + ring, bounds[3]) - Math.max(cellY - ring, bounds[2]) + 1);
+		long length = Math.max(0, Math.min(cellZ + depth, bounds[5]) - Math.max(cellZ - depth, bounds[4]) + 1);
+		
+		return width * height * length;
+	}
+	
+	/**
+	 * Offers the entries of the cells of a ring that are inside the bounds. In three dimensions the ring is 
+	 * a full square at its top and bottom and the border of a square at the depths between them.
+	 */
+	private void offerRing(PriorityQueue<Entry> queue, int count, int cellX, int cellY, int cellZ, int ring, int[] bounds)
+	{
+		int depth = (threeDimensional ? ring : 0);
+		int fromX = Math.max(cellX - ring, bounds[0]);
+		int toX = Math.min(cellX + ring, bounds[1]);
+		int fromY = Math.max(cellY - ring, bounds[2]);
+		int toY = Math.min(cellY + ring, bounds[3]);
+		int fromZ = Math.max(cellZ - depth, bounds[4]);
+		int toZ = Math.min(cellZ + depth, bounds[5]);
+		
+		for (int z=fromZ; z<=toZ; z++)
+		{
+			if (Math.abs(z - cellZ) == ring)
+			{
+				offerCells(queue, count, fromX, toX, fromY, toY, z);
+			}
+			else
+			{
+				// Top and bottom rows
+				if (cellY - ring >= bounds[2])
+				{
+					offerCells(queue, count, fromX, toX, cellY - ring, cellY - ring, z);
+				}
+				
+				if (cellY + ring <= bounds[3])
+				{
+					offerCells(queue, count, fromX, toX, cellY + ring, cellY + ring, z);
+				}
+				
+				// Left and right columns without the corners
+				int columnFromY = Math.max(cellY - ring + 1, bounds[2]);
+				int columnToY = Math.min(cellY + ring - 1, bounds[3]);
+				
+				if (cellX - ring >= bounds[0])
+				{
+					offerCells(queue, count, cellX - ring, cellX - ring, columnFromY, columnToY, z);
+				}
+				
+				if (cellX + ring <= bounds[1])
+				{
+					offerCells(queue, count, cellX + ring, cellX + ring, columnFromY, columnToY, z);
+				}
+			}
+		}
+	}
+	
+	private void offerCells(PriorityQueue<Entry> queue, int count, int fromX, int toX, int fromY, int toY, int z)
+	{
+		for (int x=fromX; x<=toX; x++)
+		{
+			for (int y=fromY; y<=toY; y++)
+			{
+				Cell cell = cellMap.get(getCellKey(x, y, z));
+				
+				if (cell != null)
+				{
+					for (int i=0; i<cell.size; i++)
+					{
+						offer(queue, cell.entries[i], count);
+					}
+				}
+			}
+		}
+	}
+	
+	private void offer(PriorityQueue<Entry> queue, Entry entry, int count)
+	{
+		queue.offer(entry);
+		
+		if (queue.size() > count)
+		{
+			queue.poll();
+		}
+	}
+	
+	private void move(Entry entry)
+	{
+		C component = positionClass.cast(entry.component);
+		
+		entry.x = accessor.getX(component);
+		entry.y = accessor.getY(component);
+		entry.z = (threeDimensional ? accessor.getZ(component) : 0);
+		
+		int cellX = getCellCoordinate(entry.x);
+		int cellY = getCellCoordinate(entry.y);
+		int cellZ = (threeDimensional ? getCellCoordinate(entry.z) : 0);
+		long key = getCellKey(cellX, cellY, cellZ);
+		
+		// Only moves it if it has changed of cell
+		if (entry.cell == null || entry.cell.key != key)
+		{
+			removeFromCell(entry);
+			
+			Cell cell = cellMap.get(key);
+			
+			// If it does not exist
+			if (cell == null)
+			{
+				cell = new Cell(key, cellX, cellY, cellZ);
+				
+				cellMap.put(key, cell);
+				addCellCount(cell, 1);
+			}
+			
+			cell.add(entry);
+		}
+	}
+	
+	private void removeFromCell(Entry entry)
+	{
+		if (entry.cell != null)
+		{
+			Cell cell = entry.cell;
+			cell.remove(entry);
+			
+			// Discards the empty cells
+			if (cell.size == 0)
+			{
+				cellMap.remove(cell.key);
+				addCellCount(cell, -1);
+			}
+		}
+	}
+	
+	private void addCellCount(Cell cell, int delta)
+	{
+		addCellCount(cellCountByX, cell.x, delta);
+		addCellCount(cellCountByY, cell.y, delta);
+		addCellCount(cellCountByZ, cell.z, delta);
+	}
+	
+	private void addCellCount(TreeMap<Integer, Integer> cellCountMap, int coordinate, int delta)
+	{
+		Integer count = cellCountMap.get(coordinate);
+		int newCount = (count != null ? count.intValue() : 0) + delta;
+		
+		if (newCount > 0)
+		{
+			cellCountMap.put(coordinate, newCount);
+		}
+		else
+		{
+			cellCountMap.remove(coordinate);
+		}
+	}
+	
+	private int getCellCoordinate(float value)
+	{
+		long coordinate = (long) Math.floor(value / cellSize);
+		
+		return (int) Math.max(-KEY_OFFSET, Math.min(KEY_OFFSET - 1, coordinate));
+	}
+	
+	private long getCellKey(int x, int y, int z)
+	{
+		return (((x + KEY_OFFSET) & KEY_MASK) << (KEY_BITS * 2)) | (((y + KEY_OFFSET) & KEY_MASK) << KEY_BITS) | ((z + KEY_OFFSET) & KEY_MASK);
+	}
+	
+	private float getDistanceSquared(Entry entry, float x, float y, float z)
+	{
+		float dx = entry.x - x;
+		float dy = entry.y - y;
+		float dz = (threeDimensional ? entry.z - z : 0);
+		
+		return dx * dx + dy * dy + dz * dz;
+	}
+	
+	private float getDistanceSquared(Entry entryA, Entry entryB)
+	{
+		return getDistanceSquared(entryA, entryB.x, entryB.y, entryB.z);
+	}
+	
+	private static class Entry
+	{
+		private final int entityId;
+		private Component component = null;
+		
+		private float x;
+		private float y;
+		private float z;
+		
+		private Cell cell = null;
+		private int index;
+		
+		private Entry(int entityId)
+		{
+			this.entityId = entityId;
+		}
+	}
+	
+	private static class Cell
+	{
+		private final long key;
+		private final int x;
+		private final int y;
+		private final int z;
+		
+		private Entry[] entries = null;
+		private int size;
+		
+		private Cell(long key, int x, int y, int z)
+		{
+			this.key = key;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			
+			entries = new Entry[4];
+		}
+		
+		private void add(Entry entry)
+		{
+			if (size == entries.length)
+			{
+				entries = Arrays.copyOf(entries, size * 2);
+			}
+			
+			entry.cell = this;
+			entry.index = size;
+			entries[size++] = entry;
+		}
+		
+		private void remove(Entry entry)
+		{
+			// Moves the last entry to the free position
+			Entry last = entries[--size];
+			entries[entry.index] = last;
+			last.index = entry.index;
+			entries[size] = null;
+			
+			entry.cell = null;
+		}
+	}
+	
+	private class DistanceComparator implements Comparator<Entry>
+	{
+		private final float x;
+		private final float y;
+		private final float z;
+		
+		private DistanceComparator(float x, float y, float z)
+		{
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+		
+		public int compare(Entry entryA, Entry entryB)
+		{
+			return Float.compare(getDistanceSquared(entryA, x, y, z), getDistanceSquared(entryB, x, y, z));
+		}
+	}
+	
+	private static class PairBuffer
+	{
+		private long[] pairs = null;
+		private int size;
+		
+		private PairBuffer()
+		{
+			pairs = new long[16];
+		}
+		
+		private void add(int entityIdA, int entityIdB)
+		{
+			if (size == pairs.length)
+			{
+				pairs = Arrays.copyOf(pairs, size * 2);
+			}
+			
+			pairs[size++] = ((long) entityIdA << 32) | (entityIdB & 0xFFFFFFFFL);
+		}
+		
+		private void addAll(PairBuffer buffer)
+		{
+			for (int i=0; i<buffer.size; i++)
+			{
+				if (size == pairs.length)
+				{
+					pairs = Arrays.copyOf(pairs, size * 2);
+				}
+				
+				pairs[size++] = buffer.pairs[i];
+			}
+		}
+		
+		private long[] toArray()
+		{
+			return Arrays.copyOf(pairs, size);
+		}
+	}
+}
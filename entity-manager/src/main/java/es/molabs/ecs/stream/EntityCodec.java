@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.stream;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts entities and their components to and from bytes.
+ * <p>
+ * {@link #read(DataInput)} is called from the loader thread of the {@link RegionStreamer}, 
+ * so it must not access any entity manager.
+ */
+public interface EntityCodec 
+{
+	public void write(EntityRecord record, DataOutput output) throws IOException;
+	
+	public EntityRecord read(DataInput input) throws IOException;
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.stream;
+
+import java.util.Collections;
+import java.util.List;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.Entity;
+
+/**
+ * Entity with its components, detached from any entity manager.
+ */
+public class EntityRecord 
+{
+	private final Entity entity;
+	private final List<Component> componentList;
+	
+	public EntityRecord(Entity entity, List<Component> componentList)
+	{
+		this.entity = entity;
+		this.componentList = Collections.unmodifiableList(componentList);
+	}
+	
+	public Entity getEntity()
+	{
+		return entity;
+	}
+	
+	public List<Component> getComponentList()
+	{
+		return componentList;
+	}
+}
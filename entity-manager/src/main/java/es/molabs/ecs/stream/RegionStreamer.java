@@ -0,0 +1,703 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.stream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.Entity;
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.metrics.MemoryEstimator;
+
+/**
+ * Pages regions of entities in and out of an {@link EntityManager} from files in a directory.
+ * <p>
+ * Regions are read and decoded by a loader thread and activated in one batch by {@link #update()}, 
+ * that must be called from the thread that updates the manager between two updates. Unloaded regions 
+ * are encoded on that thread, unregistered in one batch and written to disk by the loader thread. 
+ * Until its file has been written a region is kept encoded in memory and loaded from there, and the 
+ * writes that fail are retried by {@link #update()}. When the estimated size of the loaded regions 
+ * exceeds the memory budget the least recently used regions are unloaded.
+ */
+public class RegionStreamer 
+{
+	private final static int MAGIC = 0x45435247;
+	private final static int VERSION = 1;
+	private final static String EXTENSION = ".region";
+	private final static long DEFAULT_RETRY_DELAY = 1000;
+	
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	
+	private final EntityManager entityManager;
+	private final File directory;
+	private final EntityCodec codec;
+	private long memoryBudget;
+	private long retryDelay = DEFAULT_RETRY_DELAY;
+	
+	private ExecutorService loader = null;
+	private Queue<LoadResult> readyQueue = null;
+	private Set<String> loadingSet = null;
+	private Set<String> unloadSet = null;
+	private Map<String, Region> regionMap = null;
+	private Map<String, byte[]> pendingMap = null;
+	private Queue<String> failedQueue = null;
+	private Map<String, Long> retryMap = null;
+	private long loadedBytes;
+	
+	private boolean initialized;
+	
+	/**
+	 * Creates a new region streamer.
+	 * 
+	 * @param entityManager where the regions are loaded.
+	 * @param directory with the region files.
+	 * @param codec that converts the entities to and from bytes.
+	 * @param memoryBudget estimated size in bytes of the loaded regions that triggers the eviction.
+	 */
+	public RegionStreamer(EntityManager entityManager, File directory, EntityCodec codec, long memoryBudget)
+	{
+		this.entityManager = entityManager;
+		this.directory = directory;
+		this.codec = codec;
+		this.memoryBudget = memoryBudget;
+	}
+	
+	public void init()
+	{
+		if (!initialized)
+		{
+			if (!directory.isDirectory() && !directory.mkdirs()) throw new IllegalStateException("Cannot create directory [path=" + directory.getPath() + "].");
+			
+			loader = Executors.newSingleThreadExecutor(new LoaderThreadFactory());
+			readyQueue = new ConcurrentLinkedQueue<LoadResult>();
+			loadingSet = new HashSet<String>();
+			unloadSet = new LinkedHashSet<String>();
+			
+			// Ordered by access so the first region is the least recently used
+			regionMap = new LinkedHashMap<String, Region>(16, 0.75f, true);
+			pendingMap = new ConcurrentHashMap<String, byte[]>();
+			failedQueue = new ConcurrentLinkedQueue<String>();
+			retryMap = new LinkedHashMap<String, Long>();
+			loadedBytes = 0;
+			
+			initialized = true;
+			
+			logger.info("Initialized [path={}].", directory.getPath());
+		}
+		else
+		{
+			logger.warn("Already initialized.");
+		}
+	}
+	
+	/**
+	 * Stops the loader thread after writing the pending regions, retrying once the ones that failed. 
+	 * Loaded regions are not unloaded.
+	 */
+	public void destroy()
+	{
+		if (initialized)
+		{
+			initialized = false;
+			
+			loader.shutdown();
+			
+			try
+			{
+				if (!loader.awaitTermination(1, TimeUnit.MINUTES))
+				{
+					logger.warn("Timeout waiting for the loader thread.");
+				}
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+			
+			// Retries the writes that have failed in this thread
+			Iterator<Map.Entry<String, byte[]>> iterator = pendingMap.entrySet().iterator();
+			while (iterator.hasNext())
+			{
+				Map.Entry<String, byte[]> entry = iterator.next();
+				
+				if (write(getFile(entry.getKey()), entry.getValue()))
+				{
+					iterator.remove();
+				}
+				else
+				{
+					logger.error("Region lost [name={}].", entry.getKey());
+				}
+			}
+			
+			loader = null;
+			readyQueue = null;
+			loadingSet = null;
+			unloadSet = null;
+			regionMap = null;
+			pendingMap = null;
+			failedQueue = null;
+			retryMap = null;
+			
+			logger.info("Destroyed.");
+		}
+		else
+		{
+			logger.warn("Already destroyed.");
+		}
+	}
+	
+	public boolean isInitialized()
+	{
+		return initialized;
+	}
+	
+	public long getMemoryBudget()
+	{
+		return memoryBudget;
+	}
+	
+	public void setMemoryBudget(long memoryBudget)
+	{
+		this.memoryBudget = memoryBudget;
+	}
+	
+	public long getRetryDelay()
+	{
+		return retryDelay;
+	}
+	
+	/**
+	 * Sets the time to wait before retrying the write of a region that has failed.
+	 * 
+	 * @param retryDelay time in milliseconds.
+	 */
+	public void setRetryDelay(long retryDelay)
+	{
+		if (retryDelay < 0) throw new IllegalArgumentException("Retry delay must not be negative.");
+		
+		this.retryDelay = retryDelay;
+	}
+	
+	/**
+	 * Returns the number of unloaded regions whose file has not been written yet.
+	 * 
+	 * @return the number of unloaded regions whose file has not been written yet.
+	 */
+	public int getPendingWriteCount()
+	{
+		return pendingMap.size();
+	}
+	
+	/**
+	 * Returns the estimated size in bytes of the entities and components of the loaded regions.
+	 * 
+	 * @return the estimated size in bytes of the loaded regions.
+	 */
+	public long getLoadedBytes()
+	{
+		return loadedBytes;
+	}
+	
+	public boolean isLoaded(String name)
+	{
+		return regionMap.containsKey(name);
+	}
+	
+	public boolean isLoading(String name)
+	{
+		return loadingSet.contains(name);
+	}
+	
+	public Set<Integer> getEntityIds(String name)
+	{
+		Region region = regionMap.get(name);
+		
+		return (region != null ? Collections.unmodifiableSet(region.entityIdSet) : Collections.<Integer>emptySet());
+	}
+	
+	/**
+	 * Requests to load a region in the background. A region without file is loaded empty.
+	 * 
+	 * @param name of the region.
+	 */
+	public void requestLoad(final String name)
+	{
+		checkInitialized();
+		checkName(name);
+		
+		unloadSet.remove(name);
+		
+		if (!regionMap.containsKey(name) && loadingSet.add(name))
+		{
+			loader.submit(new Runnable()
+			{
+				public void run()
+				{
+					readyQueue.offer(load(name));
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Requests to unload a region on the next call to {@link #update()}.
+	 * 
+	 * @param name of the region.
+	 */
+	public void requestUnload(String name)
+	{
+		checkInitialized();
+		
+		if (regionMap.containsKey(name))
+		{
+			unloadSet.add(name);
+		}
+	}
+	
+	/**
+	 * Marks a region as used so it is the last candidate to be evicted.
+	 * 
+	 * @param name of the region.
+	 */
+	public void touch(String name)
+	{
+		regionMap.get(name);
+	}
+	
+	/**
+	 * Adds an entity registered at runtime to a loaded region, so it is saved with it.
+	 * 
+	 * @param name of the region.
+	 * @param entityId id of the entity.
+	 */
+	public void assign(String name, int entityId)
+	{
+		checkInitialized();
+		
+		Region region = regionMap.get(name);
+		
+		if (region == null) throw new IllegalStateException("Region not loaded [name=" + name + "].");
+		
+		if (region.entityIdSet.add(entityId))
+		{
+			long bytes = estimateBytes(entityManager.getEntity(entityId), entityManager.getComponentCollection(entityId));
+			
+			region.bytes += bytes;
+			loadedBytes += bytes;
+		}
+	}
+	
+	/**
+	 * Activates the regions loaded since the last call, unloads the requested ones, evicts the 
+	 * least recently used regions if the memory budget is exceeded and retries the failed writes.
+	 */
+	public void update()
+	{
+		checkInitialized();
+		
+		Set<String> activatedSet = new HashSet<String>();
+		
+		// Activates the loaded regions
+		LoadResult result = null;
+		while ((result = readyQueue.poll()) != null)
+		{
+			loadingSet.remove(result.name);
+			
+			if (result.error == null)
+			{
+				activate(result);
+				
+				activatedSet.add(result.name);
+			}
+			else
+			{
+				logger.error("Error loading region [name={}].", result.name, result.error);
+			}
+		}
+		
+		// Unloads the requested regions
+		Iterator<String> iterator = unloadSet.iterator();
+		while (iterator.hasNext())
+		{
+			unload(iterator.next());
+		}
+		unloadSet.clear();
+		
+		// Evicts the least recently used regions, but not the ones just activated
+		iterator = new ArrayList<String>(regionMap.keySet()).iterator();
+		while (loadedBytes > memoryBudget && iterator.hasNext())
+		{
+			String name = iterator.next();
+			
+			if (!activatedSet.contains(name))
+			{
+				unload(name);
+			}
+		}
+		
+		if (loadedBytes > memoryBudget)
+		{
+			logger.warn("Memory budget exceeded [loadedBytes={}, memoryBudget={}].", loadedBytes, memoryBudget);
+		}
+		
+		retryWrites();
+	}
+	
+	private void retryWrites()
+	{
+		long now = System.currentTimeMillis();
+		
+		String name = null;
+		while ((name = failedQueue.poll()) != null)
+		{
+			retryMap.put(name, now + retryDelay);
+		}
+		
+		Iterator<Map.Entry<String, Long>> iterator = retryMap.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<String, Long> entry = iterator.next();
+			
+			if (entry.getValue() <= now)
+			{
+				iterator.remove();
+				
+				byte[] data = pendingMap.get(entry.getKey());
+				
+				// It could have been written by a later unload of the region
+				if (data != null)
+				{
+					submitWrite(entry.getKey(), data);
+				}
+			}
+		}
+	}
+	
+	private void activate(LoadResult result)
+	{
+		Entity[] entities = new Entity[result.recordList.size()];
+		Component[][] components = new Component[entities.length][];
+		long bytes = 0;
+		
+		for (int i=0; i<entities.length; i++)
+		{
+			EntityRecord record = result.recordList.get(i);
+			
+			entities[i] = record.getEntity();
+			components[i] = record.getComponentList().toArray(new Component[record.getComponentList().size()]);
+			
+			bytes += estimateBytes(record.getEntity(), record.getComponentList());
+		}
+		
+		int[] entityIds = entityManager.registerEntities(entities, components);
+		
+		Region region = new Region();
+		for (int i=0; i<entityIds.length; i++)
+		{
+			region.entityIdSet.add(entityIds[i]);
+		}
+		region.bytes = bytes;
+		
+		regionMap.put(result.name, region);
+		loadedBytes += bytes;
+	}
+	
+	private void unload(String name)
+	{
+		Region region = regionMap.remove(name);
+		
+		if (region != null)
+		{
+			loadedBytes -= region.bytes;
+			
+			// Encodes the region on this thread since its components are still being updated
+			final byte[] data;
+			int[] entityIds = new int[region.entityIdSet.size()];
+			
+			try
+			{
+				ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+				DataOutputStream output = new DataOutputStream(byteStream);
+				
+				List<EntityRecord> recordList = new ArrayList<EntityRecord>();
+				int count = 0;
+				
+				Iterator<Integer> iterator = region.entityIdSet.iterator();
+				while (iterator.hasNext())
+				{
+					int entityId = iterator.next();
+					Entity entity = entityManager.getEntity(entityId);
+					
+					// Skips the entities already unregistered
+					if (entity != null)
+					{
+						Collection<Component> componentCollection = entityManager.getComponentCollection(entityId);
+						
+						recordList.add(new EntityRecord(entity, (componentCollection != null ? new ArrayList<Component>(componentCollection) : new ArrayList<Component>())));
+						entityIds[count++] = entityId;
+					}
+				}
+				
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeInt(recordList.size());
+				
+				for (int i=0; i<recordList.size(); i++)
+				{
+					codec.write(recordList.get(i), output);
+				}
+				
+				output.flush();
+				data = byteStream.toByteArray();
+				entityIds = Arrays.copyOf(entityIds, count);
+			}
+			catch (IOException ioe)
+			{
+				// The entities are kept loaded if they cannot be saved
+				regionMap.put(name, region);
+				loadedBytes += region.bytes;
+				
+				logger.error("Error encoding region [name={}].", name, ioe);
+				
+				return;
+			}
+			
+			// Keeps the data until it is written so the region can be loaded again
+			pendingMap.put(name, data);
+			retryMap.remove(name);
+			
+			entityManager.unregisterEntities(entityIds);
+			
+			submitWrite(name, data);
+		}
+	}
+	
+	private void submitWrite(final String name, final byte[] data)
+	{
+		loader.submit(new Runnable()
+		{
+			public void run()
+			{
+				// Skips the write if the region has been unloaded again since
+				if (pendingMap.get(name) == data)
+				{
+					if (write(getFile(name), data))
+					{
+						pendingMap.remove(name, data);
+					}
+					else
+					{
+						failedQueue.offer(name);
+					}
+				}
+			}
+		});
+	}
+	
+	private LoadResult load(String name)
+	{
+		LoadResult result = new LoadResult(name);
+		File file = getFile(name);
+		byte[] data = pendingMap.get(name);
+		
+		if (data != null || file.exists())
+		{
+			DataInputStream input = null;
+			
+			try
+			{
+				// Reads the data waiting to be written instead of the outdated file
+				if (data != null)
+				{
+					input = new DataInputStream(new ByteArrayInputStream(data));
+				}
+				else
+				{
+					input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				}
+				
+				if (input.readInt() != MAGIC || input.readInt() != VERSION) throw new IOException("Invalid region file [path=" + file.getPath() + "].");
+				
+				int count = input.readInt();
+				for (int i=0; i<count; i++)
+				{
+					result.recordList.add(codec.read(input));
+				}
+			}
+			catch (IOException ioe)
+			{
+				result.error = ioe;
+			}
+			catch (RuntimeException re)
+			{
+				result.error = re;
+			}
+			finally
+			{
+				close(input);
+			}
+		}
+		
+		return result;
+	}
+	
+	private boolean write(File file, byte[] data)
+	{
+		File tempFile = new File(file.getPath() + ".tmp");
+		OutputStream output = null;
+		
+		try
+		{
+			output = new FileOutputStream(tempFile);
+			output.write(data);
+			output.close();
+			output = null;
+			
+			// Replaces the previous file only once the new one is complete
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			
+			return true;
+		}
+		catch (IOException ioe)
+		{
+			logger.error("Error writing region [path={}].", file.getPath(), ioe);
+			
+			return false;
+		}
+		finally
+		{
+			close(output);
+		}
+	}
+	
+	private long estimateBytes(Entity entity, Collection<Component> componentCollection)
+	{
+		long bytes = 0;
+		
+		if (entity != null)
+		{
+			// The entity and its entry in the map of entities
+			bytes += MemoryEstimator.getShallowSize(entity.getClass()) + MemoryEstimator.HASH_MAP_NODE + MemoryEstimator.INTEGER;
+			
+			if (componentCollection != null)
+			{
+				bytes += MemoryEstimator.getHashMapSize(componentCollection.size());
+				
+				// Each component and its entries in the maps by id and by entity
+				Iterator<Component> iterator = componentCollection.iterator();
+				while (iterator.hasNext())
+				{
+					bytes += MemoryEstimator.getShallowSize(iterator.next().getClass()) + 2 * MemoryEstimator.HASH_MAP_NODE + MemoryEstimator.INTEGER;
+				}
+			}
+		}
+		
+		return bytes;
+	}
+	
+	private File getFile(String name)
+	{
+		return new File(directory, name + EXTENSION);
+	}
+	
+	private void close(Closeable closeable)
+	{
+		if (closeable != null)
+		{
+			try
+			{
+				closeable.close();
+			}
+			catch (IOException ioe)
+			{
+				logger.warn("Error closing stream.", ioe);
+			}
+		}
+	}
+	
+	private void checkInitialized()
+	{
+		if (!initialized) throw new IllegalStateException("Not initialized.");
+	}
+	
+	private void checkName(String name)
+	{
+		if (name == null || name.isEmpty() || name.contains("/") || name.contains("\\") || name.contains("..")) throw new IllegalArgumentException("Invalid region name [name=" + name + "].");
+	}
+	
+	private static class Region
+	{
+		private final Set<Integer> entityIdSet = new LinkedHashSet<Integer>();
+		private long bytes;
+	}
+	
+	private static class LoadResult
+	{
+		private final String name;
+		private final List<EntityRecord> recordList = new ArrayList<EntityRecord>();
+		private Exception error = null;
+		
+		private LoadResult(String name)
+		{
+			this.name = name;
+		}
+	}
+	
+	private static class LoaderThreadFactory implements ThreadFactory
+	{
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "region-loader");
+			thread.setDaemon(true);
+			
+			return thread;
+		}
+	}
+}
@@ -15,34 +15,99 @@
  */
 package es.molabs.ecs.util;
 
+import java.util.AbstractCollection;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import es.molabs.ecs.Component;
 
 public class ComponentMap 
 {
+	private final static int LOCK_STRIPES = 64;
+	
 	private Map<Integer, Component> mapById = null;
 	private Map<Integer, Map<Class<?>, Component>> mapByEntityId = null;
+	private Map<Class<?>, AtomicInteger> countByClass = null;
+	private Map<Class<?>, BitSet> entitiesByClass = null;
+	
+	private boolean concurrent;
+	private Object[] locks = null;
+	
+	// Most components held since the last compaction, the tables of the maps do not shrink below it
+	private int peakSize;
+	
+	// Maps being emptied into new ones while a compaction is in progress, with the entities already moved by a change
+	private Map<Integer, Component> oldMapById = null;
+	private Map<Integer, Map<Class<?>, Component>> oldMapByEntityId = null;
+	private Set<Integer> movedEntityIds = null;
+	private Iterator<Map.Entry<Integer, Map<Class<?>, Component>>> compactionIterator = null;
 	
 	public ComponentMap()
 	{
-		mapById = new HashMap<Integer, Component>();
-		mapByEntityId = new HashMap<Integer, Map<Class<?>, Component>>();
+		this(false);
+	}
+	
+	/**
+	 * Creates a new component map.
+	 * 
+	 * @param concurrent if the map can be modified from many threads. Reads never lock, 
+	 * modifications lock a stripe selected by the entity id of the component.
+	 */
+	public ComponentMap(boolean concurrent)
+	{
+		this.concurrent = concurrent;
+		
+		if (concurrent)
+		{
+			mapById = new ConcurrentHashMap<Integer, Component>();
+			mapByEntityId = new ConcurrentHashMap<Integer, Map<Class<?>, Component>>();
+			countByClass = new ConcurrentHashMap<Class<?>, AtomicInteger>();
+			entitiesByClass = new ConcurrentHashMap<Class<?>, BitSet>();
+			
+			locks = new Object[LOCK_STRIPES];
+			for (int i=0; i<locks.length; i++)
+			{
+				locks[i] = new Object();
+			}
+		}
+		else
+		{
+			mapById = new HashMap<Integer, Component>();
+			mapByEntityId = new HashMap<Integer, Map<Class<?>, Component>>();
+			countByClass = new HashMap<Class<?>, AtomicInteger>();
+			entitiesByClass = new HashMap<Class<?>, BitSet>();
+		}
+	}
+	
+	public boolean isConcurrent()
+	{
+		return concurrent;
 	}
 	
 	public Component getById(Integer id)
 	{
-		return mapById.get(id);
+		Component component = mapById.get(id);
+		
+		// If it has not been moved yet by the compaction in progress
+		if (component == null && oldMapById != null)
+		{
+			component = oldMapById.get(id);
+		}
+		
+		return component;
 	}
 	
 	public Collection<Component> getByEntityId(Integer entityId)
 	{		
-		Map<Class<?>, Component> map = mapByEntityId.get(entityId);
+		Map<Class<?>, Component> map = getEntityMap(entityId);
 		
 		return (map != null ? map.values() : null);
 	}
@@ -53,7 +118,7 @@ public class ComponentMap
 		C component = null;
 		
 		// Gets the map for this entity
-		Map<Class<?>, Component> map = mapByEntityId.get(entityId);
+		Map<Class<?>, Component> map = getEntityMap(entityId);
 		
 		if (map != null)
 		{
@@ -67,7 +132,7 @@ public class ComponentMap
 	public<C extends Component> Collection<C> getCollectionByClass(Class<C> clazz)
 	{		
 		Collection<C> collection = new LinkedList<C>();
-		Collection<Component> allComponents = mapById.values();
+		Collection<Component> allComponents = values();
 		
 		Iterator<Component> iterator = allComponents.iterator();
 		while (iterator.hasNext())
@@ -88,7 +153,7 @@ public class ComponentMap
 		Component component = null;
 		
 		// Gets the map for this entity
-		Map<Class<?>, Component> map = mapByEntityId.get(entityId);
+		Map<Class<?>, Component> map = getEntityMap(entityId);
 		
 		if (map != null)
 		{
@@ -107,24 +172,55 @@ public class ComponentMap
 	 */
 	public Component put(Component component)
 	{
+		Component removedComponent = null;
+		
+		if (concurrent)
+		{
+			synchronized (getLock(component.getEntityId()))
+			{
+				removedComponent = putComponent(component);
+			}
+		}
+		else
+		{
+			removedComponent = putComponent(component);
+		}
+		
+		return removedComponent;
+	}
+	
+	private Component putComponent(Component component)
+	{
+		moveEntity(component.getEntityId());
+		
 		// Removes any component that could exists with the same class
-		Component removedComponent = removeByClass(component.getEntityId(), component.getClass());
+		Component removedComponent = removeComponentByClass(component.getEntityId(), component.getClass());
 		
 		// If there was another component with the same class
 		if (removedComponent != null)
 		{
 			// Deletes it from the map
 			mapById.remove(removedComponent.getId());
+			
+			addCount(removedComponent.getClass(), -1);
 		}
 		
 		mapById.put(component.getId(), component);		
 		
+		if (size() > peakSize)
+		{
+			peakSize = size();
+		}
+		
+		addCount(component.getClass(), 1);
+		setEntity(component.getClass(), component.getEntityId(), true);
+		
 		// Gets the map for the entity of the component
 		Map<Class<?>, Component> map = mapByEntityId.get(component.getEntityId());		
 		// If it does not exist
 		if (map == null)
 		{
-			map = new HashMap<Class<?>, Component>();
+			map = (concurrent ? new ConcurrentHashMap<Class<?>, Component>() : new HashMap<Class<?>, Component>());
 			
 			mapByEntityId.put(component.getEntityId(), map);
 		}
@@ -137,23 +233,83 @@ public class ComponentMap
 	
 	public Component removeById(Integer id)
 	{
+		Component component = null;
+		
+		if (concurrent)
+		{
+			component = getById(id);
+			
+			if (component != null)
+			{
+				synchronized (getLock(component.getEntityId()))
+				{
+					component = removeComponentById(id);
+				}
+			}
+		}
+		else
+		{
+			component = removeComponentById(id);
+		}
+		
+		return component;
+	}
+	
+	private Component removeComponentById(Integer id)
+	{
+		Component existing = getById(id);
+		
+		if (existing != null)
+		{
+			moveEntity(existing.getEntityId());
+		}
+		
 		// Remove the component from the map
 		Component component = mapById.remove(id);
 		
 		// If exists
 		if (component != null)
 		{
+			addCount(component.getClass(), -1);
+			setEntity(component.getClass(), component.getEntityId(), false);
+			
 			// Removes from the map of components by entity
-			mapByEntityId.get(component.getEntityId()).remove(component.getClass());
+			Map<Class<?>, Component> map = mapByEntityId.get(component.getEntityId());
+			
+			if (map != null)
+			{
+				map.remove(component.getClass());
+			}
 		}
 		
 		return component;
 	}
 	
 	public Collection<Component> removeByEntityId(Integer entityId)
+	{
+		Collection<Component> removedComponents = null;
+		
+		if (concurrent)
+		{
+			synchronized (getLock(entityId))
+			{
+				removedComponents = removeComponentsByEntityId(entityId);
+			}
+		}
+		else
+		{
+			removedComponents = removeComponentsByEntityId(entityId);
+		}
+		
+		return removedComponents;
+	}
+	
+	private Collection<Component> removeComponentsByEntityId(Integer entityId)
 	{
 		Collection<Component> removedComponents = new HashSet<Component>();
 		
+		moveEntity(entityId);
+		
 		// Removes the map for this entity id
 		Map<Class<?>, Component> map = mapByEntityId.remove(entityId);
 		
@@ -164,18 +320,44 @@ public class ComponentMap
 			Iterator<Component> iterator = map.values().iterator();
 			while (iterator.hasNext())
 			{
-				removedComponents.add(mapById.remove(iterator.next().getId()));
+				Component component = iterator.next();
+				
+				removedComponents.add(mapById.remove(component.getId()));
+				
+				addCount(component.getClass(), -1);
+				setEntity(component.getClass(), entityId, false);
 			}
 		}
 		
 		return removedComponents;
 	}
 	
-	@SuppressWarnings("unchecked")
 	public<C extends Component> C removeByClass(Integer entityId, Class<C> clazz)
 	{
 		C component = null;
 		
+		if (concurrent)
+		{
+			synchronized (getLock(entityId))
+			{
+				component = removeComponentByClass(entityId, clazz);
+			}
+		}
+		else
+		{
+			component = removeComponentByClass(entityId, clazz);
+		}
+		
+		return component;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private<C extends Component> C removeComponentByClass(Integer entityId, Class<C> clazz)
+	{
+		C component = null;
+		
+		moveEntity(entityId);
+		
 		// Gets the map for this entity
 		Map<Class<?>, Component> map = mapByEntityId.get(entityId);
 		
@@ -189,17 +371,460 @@ public class ComponentMap
 	
 	public int size()
 	{
-		return mapById.keySet().size();
+		return mapById.keySet().size() + (oldMapById != null ? oldMapById.size() : 0);
+	}
+	
+	/**
+	 * Returns the number of entities that own at least one component.
+	 * 
+	 * @return the number of entities that own at least one component.
+	 */
+	public int getEntityCount()
+	{
+		return mapByEntityId.size() + (oldMapByEntityId != null ? oldMapByEntityId.size() - movedEntityIds.size() : 0);
+	}
+	
+	/**
+	 * Returns the number of components of each class, kept up to date on every change.
+	 * 
+	 * @return a copy of the number of components of each class.
+	 */
+	public Map<Class<?>, Integer> getCountByClass()
+	{
+		Map<Class<?>, Integer> countMap = new HashMap<Class<?>, Integer>();
+		
+		Iterator<Map.Entry<Class<?>, AtomicInteger>> iterator = countByClass.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Class<?>, AtomicInteger> entry = iterator.next();
+			
+			if (entry.getValue().get() > 0)
+			{
+				countMap.put(entry.getKey(), entry.getValue().get());
+			}
+		}
+		
+		return countMap;
+	}
+	
+	/**
+	 * Returns the ids of the entities that own a component of a class.
+	 * 
+	 * @param clazz class of the components.
+	 * 
+	 * @return a copy of the ids of the entities as a set of bits.
+	 */
+	public BitSet getEntitiesByClass(Class<?> clazz)
+	{
+		BitSet entities = new BitSet();
+		
+		or(clazz, entities);
+		
+		return entities;
+	}
+	
+	/**
+	 * Keeps in a set of bits only the entities that own a component of a class.
+	 * 
+	 * @param clazz class of the components.
+	 * @param entities ids of the entities to filter.
+	 */
+	public void and(Class<?> clazz, BitSet entities)
+	{
+		BitSet bits = entitiesByClass.get(clazz);
+		
+		if (bits != null)
+		{
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					entities.and(bits);
+				}
+			}
+			else
+			{
+				entities.and(bits);
+			}
+		}
+		else
+		{
+			entities.clear();
+		}
+	}
+	
+	/**
+	 * Removes from a set of bits the entities that own a component of a class.
+	 * 
+	 * @param clazz class of the components.
+	 * @param entities ids of the entities to filter.
+	 */
+	public void andNot(Class<?> clazz, BitSet entities)
+	{
+		BitSet bits = entitiesByClass.get(clazz);
+		
+		if (bits != null)
+		{
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					entities.andNot(bits);
+				}
+			}
+			else
+			{
+				entities.andNot(bits);
+			}
+		}
 	}
 	
 	public Collection<Component> values()
 	{
+		// While a compaction is in progress the components are split between the new and the old map
+		if (oldMapById != null)
+		{
+			return new CompactingValues(mapById, oldMapById);
+		}
+		
 		return mapById.values();
 	}
 	
+	/**
+	 * Returns the most components held since the map was created or compacted, that is the size the 
+	 * tables of the maps are reserved for.
+	 * 
+	 * @return the most components held.
+	 */
+	public int getPeakSize()
+	{
+		return peakSize;
+	}
+	
+	/**
+	 * Releases the capacity that is no longer used. The maps of the entities without components are removed, 
+	 * and if the map is not concurrent the maps are rebuilt for their current size and the sets of bits are trimmed.
+	 * Finishes the compaction in progress if there is one. It must not be called while the map is being iterated.
+	 */
+	public void compact()
+	{
+		while (!compactStep(Integer.MAX_VALUE));
+	}
+	
+	/**
+	 * Compacts the maps of a limited number of entities, starting a new compaction if there is none in progress.
+	 * While it is in progress the map is rebuilt by moving the entities from the old maps to the new ones, 
+	 * so it can be read and changed between steps. It must not be called while the map is being iterated.
+	 * 
+	 * @param entityBudget maximum number of entities compacted.
+	 * 
+	 * @return if the compaction has finished.
+	 */
+	public boolean compactStep(int entityBudget)
+	{
+		if (compactionIterator == null)
+		{
+			if (concurrent)
+			{
+				compactionIterator = mapByEntityId.entrySet().iterator();
+			}
+			else
+			{
+				oldMapById = mapById;
+				oldMapByEntityId = mapByEntityId;
+				movedEntityIds = new HashSet<Integer>();
+				
+				mapById = new HashMap<Integer, Component>(getMapCapacity(oldMapById.size()));
+				mapByEntityId = new HashMap<Integer, Map<Class<?>, Component>>(getMapCapacity(oldMapByEntityId.size()));
+				
+				compactionIterator = oldMapByEntityId.entrySet().iterator();
+			}
+		}
+		
+		int count = 0;
+		while (count < entityBudget && compactionIterator.hasNext())
+		{
+			Map.Entry<Integer, Map<Class<?>, Component>> entry = compactionIterator.next();
+			
+			if (concurrent)
+			{
+				synchronized (getLock(entry.getKey()))
+				{
+					if (entry.getValue().isEmpty())
+					{
+						mapByEntityId.remove(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+			else
+			{
+				compactionIterator.remove();
+				
+				// If it has been moved by a change it is only removed if it has no components left
+				if (movedEntityIds.remove(entry.getKey()))
+				{
+					if (entry.getValue().isEmpty())
+					{
+						mapByEntityId.remove(entry.getKey(), entry.getValue());
+					}
+				}
+				else if (!entry.getValue().isEmpty())
+				{
+					moveComponents(entry.getKey(), entry.getValue());
+				}
+			}
+			
+			count++;
+		}
+		
+		boolean finished = !compactionIterator.hasNext();
+		
+		if (finished)
+		{
+			compactionIterator = null;
+			
+			if (!concurrent)
+			{
+				oldMapById = null;
+				oldMapByEntityId = null;
+				movedEntityIds = null;
+				
+				Iterator<Map.Entry<Class<?>, BitSet>> bitsIterator = entitiesByClass.entrySet().iterator();
+				while (bitsIterator.hasNext())
+				{
+					Map.Entry<Class<?>, BitSet> entry = bitsIterator.next();
+					
+					// A copy only keeps the words in use
+					entry.setValue((BitSet) entry.getValue().clone());
+				}
+				
+				peakSize = mapById.size();
+			}
+		}
+		
+		return finished;
+	}
+	
+	/**
+	 * Returns if a compaction started by {@link #compactStep(int)} has not finished yet.
+	 * 
+	 * @return if a compaction is in progress.
+	 */
+	public boolean isCompacting()
+	{
+		return compactionIterator != null;
+	}
+	
+	/**
+	 * Removes all the components, keeping the capacity reserved by the maps and the sets of bits.
+	 */
 	public void clear()
 	{
 		mapById.clear();
 		mapByEntityId.clear();
+		
+		// Discards the compaction in progress, the new maps already have the capacity for the old ones
+		oldMapById = null;
+		oldMapByEntityId = null;
+		movedEntityIds = null;
+		compactionIterator = null;
+		
+		Iterator<AtomicInteger> countIterator = countByClass.values().iterator();
+		while (countIterator.hasNext())
+		{
+			countIterator.next().set(0);
+		}
+		
+		Iterator<BitSet> bitsIterator = entitiesByClass.values().iterator();
+		while (bitsIterator.hasNext())
+		{
+			BitSet bits = bitsIterator.next();
+			
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					bits.clear();
+				}
+			}
+			else
+			{
+				bits.clear();
+			}
+		}
+	}
+	
+	private void addCount(Class<?> clazz, int delta)
+	{
+		AtomicInteger count = countByClass.get(clazz);
+		
+		// If it does not exist
+		if (count == null)
+		{
+			count = new AtomicInteger(0);
+			
+			AtomicInteger previous = countByClass.putIfAbsent(clazz, count);
+			
+			if (previous != null)
+			{
+				count = previous;
+			}
+		}
+		
+		count.addAndGet(delta);
+	}
+	
+	private void or(Class<?> clazz, BitSet entities)
+	{
+		BitSet bits = entitiesByClass.get(clazz);
+		
+		if (bits != null)
+		{
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					entities.or(bits);
+				}
+			}
+			else
+			{
+				entities.or(bits);
+			}
+		}
+	}
+	
+	private void setEntity(Class<?> clazz, Integer entityId, boolean value)
+	{
+		if (entityId != null)
+		{
+			BitSet bits = entitiesByClass.get(clazz);
+			
+			// If it does not exist
+			if (bits == null)
+			{
+				bits = new BitSet();
+				
+				BitSet previous = entitiesByClass.putIfAbsent(clazz, bits);
+				
+				if (previous != null)
+				{
+					bits = previous;
+				}
+			}
+			
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					bits.set(entityId, value);
+				}
+			}
+			else
+			{
+				bits.set(entityId, value);
+			}
+		}
+	}
+	
+	private Map<Class<?>, Component> getEntityMap(Integer entityId)
+	{
+		Map<Class<?>, Component> map = mapByEntityId.get(entityId);
+		
+		// If it has not been moved yet by the compaction in progress
+		if (map == null && oldMapByEntityId != null && !movedEntityIds.contains(entityId))
+		{
+			map = oldMapByEntityId.get(entityId);
+		}
+		
+		return map;
+	}
+	
+	/**
+	 * Moves an entity to the new maps before it is changed while a compaction is in progress. 
+	 * It stays in the old map until the compaction reaches it, so the iteration is not broken.
+	 */
+	private void moveEntity(Integer entityId)
+	{
+		if (oldMapByEntityId != null && !movedEntityIds.contains(entityId))
+		{
+			Map<Class<?>, Component> map = oldMapByEntityId.get(entityId);
+			
+			// If exists
+			if (map != null)
+			{
+				movedEntityIds.add(entityId);
+				
+				moveComponents(entityId, map);
+			}
+		}
+	}
+	
+	private void moveComponents(Integer entityId, Map<Class<?>, Component> map)
+	{
+		Iterator<Component> iterator = map.values().iterator();
+		while (iterator.hasNext())
+		{
+			Component component = iterator.next();
+			
+			oldMapById.remove(component.getId());
+			mapById.put(component.getId(), component);
+		}
+		
+		mapByEntityId.put(entityId, map);
+	}
+	
+	private int getMapCapacity(int entries)
+	{
+		return (int) (entries / 0.75f) + 1;
+	}
+	
+	private Object getLock(Integer entityId)
+	{
+		return locks[(entityId != null ? entityId.hashCode() & (LOCK_STRIPES - 1) : 0)];
+	}
+	
+	/**
+	 * View of the components split between the new and the old map while a compaction is in progress.
+	 */
+	private static class CompactingValues extends AbstractCollection<Component>
+	{
+		private final Map<Integer, Component> mapById;
+		private final Map<Integer, Component> oldMapById;
+		
+		public CompactingValues(Map<Integer, Component> mapById, Map<Integer, Component> oldMapById)
+		{
+			this.mapById = mapById;
+			this.oldMapById = oldMapById;
+		}
+		
+		public Iterator<Component> iterator()
+		{
+			final Iterator<Component> iterator = mapById.values().iterator();
+			final Iterator<Component> oldIterator = oldMapById.values().iterator();
+			
+			return new Iterator<Component>()
+			{
+				public boolean hasNext()
+				{
+					return iterator.hasNext() || oldIterator.hasNext();
+				}
+				
+				public Component next()
+				{
+					return (iterator.hasNext() ? iterator.next() : oldIterator.next());
+				}
+				
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+		
+		public int size()
+		{
+			return mapById.size() + oldMapById.size();
+		}
 	}
 }
@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.Entity;
+
+/**
+ * Queue of entities and components that have been removed from the world and are waiting to be disposed.
+ * <p>
+ * The disposals are split in strands by entity id. Each strand disposes its elements one at a time and in the 
+ * order they were added, so the components of an entity are always disposed before the entity and in the order 
+ * they were removed. With an executor each strand runs as a task of it, without one the queue is drained by 
+ * the caller in time slices.
+ * <p>
+ * The ids of each element are recorded when it is added. If the element is registered again before its disposal 
+ * runs, for example when it is pooled or moved to another manager, its ids change and the disposal is skipped 
+ * so the live element is not disposed.
+ */
+public class DisposalQueue 
+{
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	
+	private final Executor executor;
+	private final Strand[] strands;
+	private final AtomicInteger pendingCount;
+	
+	/**
+	 * Creates a new queue with one strand for each available processor if there is an executor, or one otherwise.
+	 * 
+	 * @param executor that runs the disposals, or null to drain them with {@link #drain(long)}.
+	 */
+	public DisposalQueue(Executor executor)
+	{
+		this(executor, (executor != null ? Runtime.getRuntime().availableProcessors() : 1));
+	}
+	
+	/**
+	 * Creates a new queue.
+	 * 
+	 * @param executor that runs the disposals, or null to drain them with {@link #drain(long)}.
+	 * @param strandCount number of strands that can dispose in parallel.
+	 */
+	public DisposalQueue(Executor executor, int strandCount)
+	{
+		if (strandCount < 1) throw new IllegalArgumentException("Strand count must be greater than 0.");
+		
+		this.executor = executor;
+		
+		strands = new Strand[strandCount];
+		for (int i=0; i<strands.length; i++)
+		{
+			strands[i] = new Strand();
+		}
+		
+		pendingCount = new AtomicInteger(0);
+	}
+	
+	public void add(Component component)
+	{
+		add(new Disposal(component, component.getId(), component.getEntityId()));
+	}
+	
+	public void add(Entity entity)
+	{
+		add(new Disposal(entity, entity.getId(), entity.getId()));
+	}
+	
+	private void add(Disposal disposal)
+	{
+		int entityId = (disposal.entityId != null ? disposal.entityId.intValue() : 0);
+		Strand strand = strands[(entityId & Integer.MAX_VALUE) % strands.length];
+		
+		pendingCount.incrementAndGet();
+		strand.queue.offer(disposal);
+		
+		// If there is an executor and the strand is not already running
+		if (executor != null && strand.scheduled.compareAndSet(false, true))
+		{
+			executor.execute(strand);
+		}
+	}
+	
+	/**
+	 * Disposes the queued elements in the calling thread until the queue is empty or the budget is spent.
+	 * Does nothing if the queue has an executor.
+	 * 
+	 * @param budgetNanos maximum time to spend, checked after each disposal.
+	 * 
+	 * @return the number of elements disposed.
+	 */
+	public synchronized int drain(long budgetNanos)
+	{
+		int count = 0;
+		
+		if (executor == null)
+		{
+			long start = System.nanoTime();
+			
+			for (int i=0; i<strands.length; i++)
+			{
+				Disposal disposal;
+				while ((disposal = strands[i].queue.poll()) != null)
+				{
+					dispose(disposal);
+					count++;
+					
+					if (System.nanoTime() - start >= budgetNanos) return count;
+				}
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Disposes all the queued elements in the calling thread. Does nothing if the queue has an executor.
+	 * 
+	 * @return the number of elements disposed.
+	 */
+	public int drainAll()
+	{
+		return drain(Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Returns the number of elements that have been added and not disposed yet.
+	 * 
+	 * @return the number of pending disposals.
+	 */
+	public int getPendingCount()
+	{
+		return pendingCount.get();
+	}
+	
+	public int getStrandCount()
+	{
+		return strands.length;
+	}
+	
+	public Executor getExecutor()
+	{
+		return executor;
+	}
+	
+	private void dispose(Disposal disposal)
+	{
+		try
+		{
+			if (disposal.element instanceof Component)
+			{
+				Component component = (Component) disposal.element;
+				
+				// If it has not been registered again
+				if (isSame(disposal.id, component.getId()) && isSame(disposal.entityId, component.getEntityId()))
+				{
+					component.dispose();
+				}
+			}
+			else
+			{
+				Entity entity = (Entity) disposal.element;
+				
+				// If it has not been registered again
+				if (isSame(disposal.id, entity.getId()))
+				{
+					entity.dispose();
+				}
+			}
+		}
+		catch (RuntimeException re)
+		{
+			logger.warn("Error disposing [element={}].", disposal.element, re);
+		}
+		finally
+		{
+			pendingCount.decrementAndGet();
+		}
+	}
+	
+	private boolean isSame(Integer recorded, Integer current)
+	{
+		return (recorded == null ? current == null : recorded.equals(current));
+	}
+	
+	private static class Disposal
+	{
+		private final Object element;
+		private final Integer id;
+		private final Integer entityId;
+		
+		public Disposal(Object element, Integer id, Integer entityId)
+		{
+			this.element = element;
+			this.id = id;
+			this.entityId = entityId;
+		}
+	}
+	
+	private class Strand implements Runnable
+	{
+		private final Queue<Disposal> queue = new ConcurrentLinkedQueue<Disposal>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		
+		public void run()
+		{
+			do
+			{
+				Disposal disposal;
+				while ((disposal = queue.poll()) != null)
+				{
+					dispose(disposal);
+				}
+				
+				scheduled.set(false);
+			}
+			// If something was added after the last poll and no other task has taken it
+			while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+		}
+	}
+}
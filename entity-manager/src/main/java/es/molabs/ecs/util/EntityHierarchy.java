@@ -0,0 +1,324 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parent and child relations between entities.
+ * <p>
+ * The entities with relations are also kept in depth-first order, where each entity is followed by all 
+ * its descendants, so hierarchical passes like transform propagation can walk arrays from start to end 
+ * knowing that the parent of an entity has always been visited before it. The order is rebuilt lazily 
+ * the first time it is needed after a change.
+ */
+public class EntityHierarchy 
+{
+	private final static int[] EMPTY = new int[0];
+	
+	private final Map<Integer, Integer> parentMap;
+	private final Map<Integer, List<Integer>> childrenMap;
+	
+	private int[] order = null;
+	private int[] parentIndices = null;
+	private int[] subtreeEnds = null;
+	private Map<Integer, Integer> indexMap = null;
+	private boolean dirty;
+	
+	public EntityHierarchy()
+	{
+		parentMap = new HashMap<Integer, Integer>();
+		childrenMap = new HashMap<Integer, List<Integer>>();
+		
+		order = EMPTY;
+		parentIndices = EMPTY;
+		subtreeEnds = EMPTY;
+		indexMap = new HashMap<Integer, Integer>();
+	}
+	
+	/**
+	 * Sets the parent of an entity, replacing the previous one.
+	 * 
+	 * @param entityId id of the child entity.
+	 * @param parentId id of the parent entity.
+	 * 
+	 * @throws IllegalArgumentException if the parent is the entity itself or one of its descendants.
+	 */
+	public synchronized void setParent(int entityId, int parentId)
+	{
+		if (isAncestor(entityId, parentId)) throw new IllegalArgumentException("Entity cannot be parent of an ancestor [id=" + entityId + ", parentId=" + parentId + "].");
+		
+		removeParentInternal(entityId);
+		
+		parentMap.put(entityId, parentId);
+		
+		List<Integer> childList = childrenMap.get(parentId);
+		
+		// If it has no children yet
+		if (childList == null)
+		{
+			childList = new ArrayList<Integer>();
+			
+			childrenMap.put(parentId, childList);
+		}
+		
+		childList.add(entityId);
+		
+		dirty = true;
+	}
+	
+	/**
+	 * Removes the parent of an entity, that becomes a root.
+	 * 
+	 * @param entityId id of the child entity.
+	 * 
+	 * @return if the entity had a parent.
+	 */
+	public synchronized boolean removeParent(int entityId)
+	{
+		return removeParentInternal(entityId);
+	}
+	
+	public synchronized Integer getParent(int entityId)
+	{
+		return parentMap.get(entityId);
+	}
+	
+	public synchronized List<Integer> getChildren(int entityId)
+	{
+		List<Integer> childList = childrenMap.get(entityId);
+		
+		return (childList != null ? Collections.unmodifiableList(new ArrayList<Integer>(childList)) : Collections.<Integer>emptyList());
+	}
+	
+	/**
+	 * Removes all the relations of an entity, its children become roots.
+	 * 
+	 * @param entityId id of the entity.
+	 */
+	public synchronized void remove(int entityId)
+	{
+		boolean changed = removeParentInternal(entityId);
+		
+		List<Integer> childList = childrenMap.remove(entityId);
+		
+		// If it had children
+		if (childList != null)
+		{
+			for (int i=0; i<childList.size(); i++)
+			{
+				parentMap.remove(childList.get(i));
+			}
+			
+			changed = true;
+		}
+		
+		dirty |= changed;
+	}
+	
+	/**
+	 * Returns the ids of an entity and all its descendants in depth-first order.
+	 * 
+	 * @param entityId id of the root of the subtree.
+	 * 
+	 * @return the ids of the subtree, starting with the root.
+	 */
+	public synchronized int[] getSubtree(int entityId)
+	{
+		rebuild();
+		
+		Integer index = indexMap.get(entityId);
+		
+		return (index != null ? Arrays.copyOfRange(order, index, subtreeEnds[index]) : new int[] {entityId});
+	}
+	
+	/**
+	 * Returns the ids of the entities with relations in depth-first order. 
+	 * The array is replaced, never modified, when the hierarchy changes so it must not be modified.
+	 * 
+	 * @return the ids of the entities in depth-first order.
+	 */
+	public synchronized int[] getTraversalOrder()
+	{
+		rebuild();
+		
+		return order;
+	}
+	
+	/**
+	 * Returns for each position of the traversal order the position of the parent, or -1 for the roots.
+	 * The array is replaced, never modified, when the hierarchy changes so it must not be modified.
+	 * 
+	 * @return the positions of the parents.
+	 */
+	public synchronized int[] getParentIndices()
+	{
+		rebuild();
+		
+		return parentIndices;
+	}
+	
+	/**
+	 * Returns for each position of the traversal order the position after the last of its descendants.
+	 * The array is replaced, never modified, when the hierarchy changes so it must not be modified.
+	 * 
+	 * @return the end of the subtree of each position.
+	 */
+	public synchronized int[] getSubtreeEnds()
+	{
+		rebuild();
+		
+		return subtreeEnds;
+	}
+	
+	public synchronized int size()
+	{
+		rebuild();
+		
+		return order.length;
+	}
+	
+	public synchronized void clear()
+	{
+		parentMap.clear();
+		childrenMap.clear();
+		
+		order = EMPTY;
+		parentIndices = EMPTY;
+		subtreeEnds = EMPTY;
+		indexMap.clear();
+		dirty = false;
+	}
+	
+	private boolean removeParentInternal(int entityId)
+	{
+		Integer parentId = parentMap.remove(entityId);
+		
+		// If it had parent
+		if (parentId != null)
+		{
+			List<Integer> childList = childrenMap.get(parentId);
+			childList.remove(Integer.valueOf(entityId));
+			
+			if (childList.isEmpty())
+			{
+				childrenMap.remove(parentId);
+			}
+			
+			dirty = true;
+		}
+		
+		return (parentId != null);
+	}
+	
+	private boolean isAncestor(int ancestorId, int entityId)
+	{
+		Integer currentId = entityId;
+		
+		while (currentId != null)
+		{
+			if (currentId == ancestorId) return true;
+			
+			currentId = parentMap.get(currentId);
+		}
+		
+		return false;
+	}
+	
+	private void rebuild()
+	{
+		if (dirty)
+		{
+			// Roots are the entities with children but without parent, sorted so the order is stable
+			int rootCount = 0;
+			int[] roots = new int[childrenMap.size()];
+			Iterator<Integer> iterator = childrenMap.keySet().iterator();
+			while (iterator.hasNext())
+			{
+				int entityId = iterator.next();
+				
+				if (!parentMap.containsKey(entityId))
+				{
+					roots[rootCount++] = entityId;
+				}
+			}
+			Arrays.sort(roots, 0, rootCount);
+			
+			int size = rootCount + parentMap.size();
+			int[] newOrder = new int[size];
+			int[] newParentIndices = new int[size];
+			int[] newSubtreeEnds = new int[size];
+			Map<Integer, Integer> newIndexMap = new HashMap<Integer, Integer>(size * 2);
+			
+			// Stack of pending entities and the position of their parent
+			int[] stack = new int[size];
+			int[] stackParents = new int[size];
+			int top = 0;
+			int position = 0;
+			
+			for (int i=rootCount-1; i>=0; i--)
+			{
+				stack[top] = roots[i];
+				stackParents[top++] = -1;
+			}
+			
+			while (top > 0)
+			{
+				int entityId = stack[--top];
+				
+				newOrder[position] = entityId;
+				newParentIndices[position] = stackParents[top];
+				newIndexMap.put(entityId, position);
+				
+				// Pushes the children in reverse so the first one is visited first
+				List<Integer> childList = childrenMap.get(entityId);
+				if (childList != null)
+				{
+					for (int i=childList.size()-1; i>=0; i--)
+					{
+						stack[top] = childList.get(i);
+						stackParents[top++] = position;
+					}
+				}
+				
+				position++;
+			}
+			
+			// The size of each subtree is accumulated from the last position to the first
+			for (int i=size-1; i>=0; i--)
+			{
+				newSubtreeEnds[i] += i + 1;
+				
+				if (newParentIndices[i] >= 0)
+				{
+					newSubtreeEnds[newParentIndices[i]] += newSubtreeEnds[i] - i;
+				}
+			}
+			
+			order = newOrder;
+			parentIndices = newParentIndices;
+			subtreeEnds = newSubtreeEnds;
+			indexMap = newIndexMap;
+			dirty = false;
+		}
+	}
+}
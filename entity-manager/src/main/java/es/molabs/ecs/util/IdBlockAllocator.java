@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out ids reserved in blocks from a shared generator so each thread only touches 
+ * the generator once per block instead of once per id.
+ */
+public class IdBlockAllocator 
+{
+	public final static int DEFAULT_BLOCK_SIZE = 256;
+	
+	private final AtomicInteger generator;
+	private final int blockSize;
+	private final ThreadLocal<int[]> block;
+	
+	public IdBlockAllocator(AtomicInteger generator)
+	{
+		this(generator, DEFAULT_BLOCK_SIZE);
+	}
+	
+	public IdBlockAllocator(AtomicInteger generator, int blockSize)
+	{
+		if (blockSize < 1) throw new IllegalArgumentException("Block size must be greater than 0.");
+		
+		this.generator = generator;
+		this.blockSize = blockSize;
+		
+		// Each thread holds the next id and the end of its current block
+		block = new ThreadLocal<int[]>()
+		{
+			protected int[] initialValue()
+			{
+				return new int[2];
+			}
+		};
+	}
+	
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+	
+	/**
+	 * Returns the next id of the block of the calling thread, reserving a new block if it is exhausted.
+	 * 
+	 * @return the next id of the block of the calling thread.
+	 */
+	public int next()
+	{
+		int[] current = block.get();
+		
+		// If the block is exhausted reserves a new one
+		if (current[0] == current[1])
+		{
+			current[0] = generator.getAndAdd(blockSize);
+			current[1] = current[0] + blockSize;
+		}
+		
+		return current[0]++;
+	}
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import es.molabs.ecs.Assemblage;
+import es.molabs.ecs.Component;
+import es.molabs.ecs.Entity;
+import es.molabs.ecs.EntityManager;
+
+/**
+ * Queue of world changes requested from other threads that the entity manager applies at the start of each update.
+ * <p>
+ * The offer methods can be called from any thread and return false when the queue is full so the producer can 
+ * retry later or drop the request. Requests are applied in the same order they were offered.
+ */
+public class IngressQueue 
+{
+	private static final Logger logger = LoggerFactory.getLogger(IngressQueue.class);
+	
+	private final MpscQueue<Request> queue;
+	private final AtomicLong rejectedCount;
+	
+	public IngressQueue(int capacity)
+	{
+		queue = new MpscQueue<Request>(capacity);
+		rejectedCount = new AtomicLong(0);
+	}
+	
+	public boolean offerSpawn(Entity entity)
+	{
+		return offer(new SpawnEntityRequest(entity));
+	}
+	
+	public boolean offerSpawn(Assemblage assemblage)
+	{
+		return offer(new SpawnAssemblageRequest(assemblage));
+	}
+	
+	public boolean offerDespawn(int entityId)
+	{
+		return offer(new DespawnRequest(entityId));
+	}
+	
+	/**
+	 * Requests to add a component to a registered entity. The request is dropped if the entity is not 
+	 * registered when it is applied, for example when a despawn of it was offered before.
+	 * 
+	 * @param entityId of the entity that will own the component.
+	 * @param component to add.
+	 * 
+	 * @return false if the queue is full.
+	 */
+	public boolean offerComponent(int entityId, Component component)
+	{
+		return offer(new AddComponentRequest(null, entityId, component));
+	}
+	
+	/**
+	 * Requests to add a component to an entity that could still be waiting in the queue to be spawned.
+	 * The request is dropped if the entity is not registered when it is applied.
+	 * 
+	 * @param entity that will own the component.
+	 * @param component to add.
+	 * 
+	 * @return false if the queue is full.
+	 */
+	public boolean offerComponent(Entity entity, Component component)
+	{
+		return offer(new AddComponentRequest(entity, 0, component));
+	}
+	
+	public int getCapacity()
+	{
+		return queue.getCapacity();
+	}
+	
+	public int size()
+	{
+		return queue.size();
+	}
+	
+	public int remainingCapacity()
+	{
+		return queue.remainingCapacity();
+	}
+	
+	/**
+	 * Returns the number of requests rejected because the queue was full.
+	 * 
+	 * @return the number of requests rejected because the queue was full.
+	 */
+	public long getRejectedCount()
+	{
+		return rejectedCount.get();
+	}
+	
+	/**
+	 * Applies the pending requests to the entity manager. Must be called from the thread that updates the manager.
+	 * 
+	 * @param entityManager where the requests are applied.
+	 * @param budget maximum number of requests to apply.
+	 * 
+	 * @return the number of requests applied.
+	 */
+	public int drain(EntityManager entityManager, int budget)
+	{
+		int count = 0;
+		Request request = null;
+		
+		while (count < budget && (request = queue.poll()) != null)
+		{
+			request.apply(entityManager);
+			
+			count++;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Discards the pending requests. Must be called from the thread that updates the manager.
+	 */
+	public void clear()
+	{
+		queue.clear();
+	}
+	
+	private boolean offer(Request request)
+	{
+		boolean added = queue.offer(request);
+		
+		if (!added)
+		{
+			rejectedCount.incrementAndGet();
+		}
+		
+		return added;
+	}
+	
+	private interface Request
+	{
+		public void apply(EntityManager entityManager);
+	}
+	
+	private static class SpawnEntityRequest implements Request
+	{
+		private final Entity entity;
+		
+		private SpawnEntityRequest(Entity entity)
+		{
+			this.entity = entity;
+		}
+		
+		public void apply(EntityManager entityManager)
+		{
+			entityManager.registerEntity(entity);
+		}
+	}
+	
+	private static class SpawnAssemblageRequest implements Request
+	{
+		private final Assemblage assemblage;
+		
+		private SpawnAssemblageRequest(Assemblage assemblage)
+		{
+			this.assemblage = assemblage;
+		}
+		
+		public void apply(EntityManager entityManager)
+		{
+			entityManager.registerEntity(assemblage);
+		}
+	}
+	
+	private static class DespawnRequest implements Request
+	{
+		private final int entityId;
+		
+		private DespawnRequest(int entityId)
+		{
+			this.entityId = entityId;
+		}
+		
+		public void apply(EntityManager entityManager)
+		{
+			entityManager.unregisterEntity(entityId);
+		}
+	}
+	
+	private static class AddComponentRequest implements Request
+	{
+		private final Entity entity;
+		private final int entityId;
+		private final Component component;
+		
+		private AddComponentRequest(Entity entity, int entityId, Component component)
+		{
+			this.entity = entity;
+			this.entityId = entityId;
+			this.component = component;
+		}
+		
+		public void apply(EntityManager entityManager)
+		{
+			Integer id = (entity != null ? entity.getId() : Integer.valueOf(entityId));
+			Entity registered = (id != null ? entityManager.getEntity(id) : null);
+			
+			// Ignores the request if the entity has not been spawned or has already been despawned
+			if (registered != null && (entity == null || registered == entity))
+			{
+				entityManager.registerComponent(id, component);
+			}
+			else
+			{
+				logger.warn("Entity not found [id={}].", id);
+			}
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producer threads and a single consumer thread.
+ * <p>
+ * Each slot has a sequence number that tells producers when the slot is free and the consumer when it is full, 
+ * so producers only compete on the tail counter and the consumer never uses atomic read-modify-write operations.
+ *
+ * @param <E> type of the elements of the queue.
+ */
+public class MpscQueue<E> 
+{
+	private final int capacity;
+	private final int mask;
+	
+	private final AtomicReferenceArray<E> buffer;
+	private final AtomicLongArray sequences;
+	
+	private final AtomicLong tail;
+	private volatile long head;
+	
+	/**
+	 * Creates a new queue.
+	 * 
+	 * @param capacity of the queue, rounded up to the next power of two.
+	 */
+	public MpscQueue(int capacity)
+	{
+		if (capacity < 1 || capacity > (1 << 30)) throw new IllegalArgumentException("Capacity must be between 1 and 2^30.");
+		
+		this.capacity = (capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+		mask = this.capacity - 1;
+		
+		buffer = new AtomicReferenceArray<E>(this.capacity);
+		sequences = new AtomicLongArray(this.capacity);
+		
+		for (int i=0; i<this.capacity; i++)
+		{
+			sequences.set(i, i);
+		}
+		
+		tail = new AtomicLong(0);
+		head = 0;
+	}
+	
+	public int getCapacity()
+	{
+		return capacity;
+	}
+	
+	/**
+	 * Adds an element to the queue. Can be called from any thread.
+	 * 
+	 * @param element to add.
+	 * 
+	 * @return false if the queue is full.
+	 */
+	public boolean offer(E element)
+	{
+		if (element == null) throw new NullPointerException("Element cannot be null.");
+		
+		boolean added = false;
+		boolean full = false;
+		
+		while (!added && !full)
+		{
+			long position = tail.get();
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+			
+			// If the slot is free tries to claim it
+			if (difference == 0)
+			{
+				if (tail.compareAndSet(position, position + 1))
+				{
+					buffer.lazySet(index, element);
+					
+					// Publishes the element to the consumer
+					sequences.set(index, position + 1);
+					
+					added = true;
+				}
+			}
+			// If the slot has not been consumed yet the queue is full
+			else if (difference < 0)
+			{
+				full = true;
+			}
+		}
+		
+		return added;
+	}
+	
+	/**
+	 * Removes the first element of the queue. Must only be called from the consumer thread.
+	 * 
+	 * @return the first element of the queue or null if it is empty.
+	 */
+	public E poll()
+	{
+		E element = null;
+		
+		long position = head;
+		int index = (int) (position & mask);
+		
+		// If the slot has been published
+		if (sequences.get(index) == position + 1)
+		{
+			element = buffer.get(index);
+			buffer.lazySet(index, null);
+			
+			// Frees the slot for the producers of the next lap
+			sequences.set(index, position + capacity);
+			
+			head = position + 1;
+		}
+		
+		return element;
+	}
+	
+	/**
+	 * Returns an estimation of the number of elements in the queue.
+	 * 
+	 * @return an estimation of the number of elements in the queue.
+	 */
+	public int size()
+	{
+		long size = tail.get() - head;
+		
+		return (int) Math.max(0, Math.min(capacity, size));
+	}
+	
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+	
+	public int remainingCapacity()
+	{
+		return capacity - size();
+	}
+	
+	/**
+	 * Removes all the elements of the queue. Must only be called from the consumer thread.
+	 */
+	public void clear()
+	{
+		while (poll() != null);
+	}
+}
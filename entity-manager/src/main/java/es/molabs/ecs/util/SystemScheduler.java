@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import es.molabs.ecs.Schedule;
+
+/**
+ * Keeps the state of the schedule of each system and decides how many times it is updated on each frame.
+ * <p>
+ * Systems without a schedule are updated once per frame.
+ */
+public class SystemScheduler 
+{
+	// Fraction of the golden ratio used to spread the phases of fixed step systems
+	private final static float PHASE_SPREAD = 0.618034f;
+	
+	private final Map<Integer, State> stateMap;
+	private final Map<String, Integer> autoPhaseCountMap;
+	
+	private long frame;
+	
+	public SystemScheduler()
+	{
+		stateMap = new ConcurrentHashMap<Integer, State>();
+		autoPhaseCountMap = new HashMap<String, Integer>();
+		
+		frame = 0;
+	}
+	
+	/**
+	 * Sets the schedule of a system.
+	 * 
+	 * @param systemId id of the system.
+	 * @param schedule of the system.
+	 */
+	public synchronized void put(int systemId, Schedule schedule)
+	{
+		if (schedule.getType() != Schedule.Type.EVERY_FRAME)
+		{
+			State state = new State(schedule);
+			
+			if (schedule.getType() == Schedule.Type.FIXED_STEP)
+			{
+				float phase = (schedule.isAutoPhase() ? (nextAutoPhase("step:" + schedule.getStep()) * PHASE_SPREAD) % 1 : schedule.getPhase());
+				
+				state.accumulator = schedule.getStep() * phase;
+			}
+			else
+			{
+				state.phase = (schedule.isAutoPhase() ? nextAutoPhase("interval:" + schedule.getInterval()) % schedule.getInterval() : (int) schedule.getPhase());
+			}
+			
+			stateMap.put(systemId, state);
+		}
+		else
+		{
+			stateMap.remove(systemId);
+		}
+	}
+	
+	public Schedule get(int systemId)
+	{
+		State state = stateMap.get(systemId);
+		
+		return (state != null ? state.schedule : Schedule.EVERY_FRAME);
+	}
+	
+	public void remove(int systemId)
+	{
+		stateMap.remove(systemId);
+	}
+	
+	/**
+	 * Ends the current frame.
+	 */
+	public void endFrame()
+	{
+		frame++;
+	}
+	
+	/**
+	 * Advances the schedule of a system by the time of the current frame.
+	 * 
+	 * @param systemId id of the system.
+	 * @param delta time elapsed in the current frame.
+	 * 
+	 * @return the number of times the system must be updated in this frame.
+	 */
+	public int advance(int systemId, float delta)
+	{
+		State state = stateMap.get(systemId);
+		
+		int steps = 1;
+		
+		if (state != null)
+		{
+			Schedule schedule = state.schedule;
+			
+			if (schedule.getType() == Schedule.Type.FIXED_STEP)
+			{
+				state.accumulator += delta;
+				
+				steps = (int) Math.min(schedule.getMaxSteps(), Math.floor(state.accumulator / schedule.getStep()));
+				state.accumulator -= steps * schedule.getStep();
+				
+				// Discards the time that could not be caught up
+				if (state.accumulator >= schedule.getStep())
+				{
+					state.accumulator %= schedule.getStep();
+				}
+				
+				state.stepDelta = schedule.getStep();
+			}
+			else
+			{
+				state.elapsed += delta;
+				
+				steps = ((frame - state.phase) % schedule.getInterval() == 0 ? 1 : 0);
+				
+				if (steps > 0)
+				{
+					state.stepDelta = state.elapsed;
+					state.elapsed = 0;
+				}
+			}
+		}
+		
+		return steps;
+	}
+	
+	/**
+	 * Returns the delta of each update of a system in the current frame.
+	 * 
+	 * @param systemId id of the system.
+	 * @param delta time elapsed in the current frame.
+	 * 
+	 * @return the delta of each update of the system.
+	 */
+	public float getStepDelta(int systemId, float delta)
+	{
+		State state = stateMap.get(systemId);
+		
+		return (state != null ? state.stepDelta : delta);
+	}
+	
+	public synchronized void clear()
+	{
+		stateMap.clear();
+		autoPhaseCountMap.clear();
+	}
+	
+	private int nextAutoPhase(String key)
+	{
+		Integer count = autoPhaseCountMap.get(key);
+		
+		count = (count != null ? count + 1 : 0);
+		
+		autoPhaseCountMap.put(key, count);
+		
+		return count;
+	}
+	
+	private static class State
+	{
+		private final Schedule schedule;
+		
+		private float accumulator;
+		private float elapsed;
+		private float stepDelta;
+		private int phase;
+		
+		private State(Schedule schedule)
+		{
+			this.schedule = schedule;
+		}
+	}
+}
@@ -0,0 +1,370 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.util;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import es.molabs.ecs.Tag;
+import es.molabs.ecs.TagListener;
+
+/**
+ * Keeps the tags of the entities as one set of bits per tag indexed by entity id.
+ */
+public class TagMap 
+{
+	private Map<Class<? extends Tag>, BitSet> bitsByTag = null;
+	private Map<Class<? extends Tag>, List<TagListener>> listenersByTag = null;
+	
+	private boolean concurrent;
+	
+	public TagMap()
+	{
+		this(false);
+	}
+	
+	/**
+	 * Creates a new tag map.
+	 * 
+	 * @param concurrent if the map can be modified from many threads. Each set of bits is locked while it is used.
+	 */
+	public TagMap(boolean concurrent)
+	{
+		this.concurrent = concurrent;
+		
+		if (concurrent)
+		{
+			bitsByTag = new ConcurrentHashMap<Class<? extends Tag>, BitSet>();
+			listenersByTag = new ConcurrentHashMap<Class<? extends Tag>, List<TagListener>>();
+		}
+		else
+		{
+			bitsByTag = new HashMap<Class<? extends Tag>, BitSet>();
+			listenersByTag = new HashMap<Class<? extends Tag>, List<TagListener>>();
+		}
+	}
+	
+	public boolean isConcurrent()
+	{
+		return concurrent;
+	}
+	
+	/**
+	 * Sets a tag to an entity.
+	 * 
+	 * @param entityId id of the entity.
+	 * @param tag to set.
+	 * 
+	 * @return if the entity did not have the tag.
+	 */
+	public boolean set(int entityId, Class<? extends Tag> tag)
+	{
+		boolean changed = change(getBits(tag, true), entityId, true);
+		
+		if (changed)
+		{
+			List<TagListener> listenerList = listenersByTag.get(tag);
+			
+			// Only if any listener is subscribed
+			if (listenerList != null)
+			{
+				for (int i=0; i<listenerList.size(); i++)
+				{
+					listenerList.get(i).tagSet(entityId, tag);
+				}
+			}
+		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Clears a tag of an entity.
+	 * 
+	 * @param entityId id of the entity.
+	 * @param tag to clear.
+	 * 
+	 * @return if the entity had the tag.
+	 */
+	public boolean clear(int entityId, Class<? extends Tag> tag)
+	{
+		BitSet bits = getBits(tag, false);
+		
+		boolean changed = (bits != null && change(bits, entityId, false));
+		
+		if (changed)
+		{
+			List<TagListener> listenerList = listenersByTag.get(tag);
+			
+			// Only if any listener is subscribed
+			if (listenerList != null)
+			{
+				for (int i=0; i<listenerList.size(); i++)
+				{
+					listenerList.get(i).tagCleared(entityId, tag);
+				}
+			}
+		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Clears all the tags of an entity.
+	 * 
+	 * @param entityId id of the entity.
+	 */
+	public void clearEntity(int entityId)
+	{
+		Iterator<Class<? extends Tag>> iterator = bitsByTag.keySet().iterator();
+		while (iterator.hasNext())
+		{
+			clear(entityId, iterator.next());
+		}
+	}
+	
+	public boolean has(int entityId, Class<? extends Tag> tag)
+	{
+		BitSet bits = getBits(tag, false);
+		
+		boolean result = false;
+		
+		if (bits != null)
+		{
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					result = bits.get(entityId);
+				}
+			}
+			else
+			{
+				result = bits.get(entityId);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the ids of the entities with a tag.
+	 * 
+	 * @param tag of the entities.
+	 * 
+	 * @return a copy of the ids of the entities as a set of bits.
+	 */
+	public BitSet get(Class<? extends Tag> tag)
+	{
+		BitSet entities = new BitSet();
+		BitSet bits = getBits(tag, false);
+		
+		if (bits != null)
+		{
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					entities.or(bits);
+				}
+			}
+			else
+			{
+				entities.or(bits);
+			}
+		}
+		
+		return entities;
+	}
+	
+	public int getCount(Class<? extends Tag> tag)
+	{
+		return get(tag).cardinality();
+	}
+	
+	/**
+	 * Keeps in a set of bits only the entities with a tag.
+	 * 
+	 * @param tag of the entities.
+	 * @param entities ids of the entities to filter.
+	 */
+	public void and(Class<? extends Tag> tag, BitSet entities)
+	{
+		BitSet bits = getBits(tag, false);
+		
+		if (bits != null)
+		{
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					entities.and(bits);
+				}
+			}
+			else
+			{
+				entities.and(bits);
+			}
+		}
+		else
+		{
+			entities.clear();
+		}
+	}
+	
+	/**
+	 * Removes from a set of bits the entities with a tag.
+	 * 
+	 * @param tag of the entities.
+	 * @param entities ids of the entities to filter.
+	 */
+	public void andNot(Class<? extends Tag> tag, BitSet entities)
+	{
+		BitSet bits = getBits(tag, false);
+		
+		if (bits != null)
+		{
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					entities.andNot(bits);
+				}
+			}
+			else
+			{
+				entities.andNot(bits);
+			}
+		}
+	}
+	
+	/**
+	 * Subscribes a listener to the changes of a tag. Tags without listeners do not notify anything.
+	 * 
+	 * @param tag to listen.
+	 * @param listener to notify.
+	 */
+	public void addListener(Class<? extends Tag> tag, TagListener listener)
+	{
+		List<TagListener> listenerList = listenersByTag.get(tag);
+		
+		// If it does not exist
+		if (listenerList == null)
+		{
+			listenerList = new CopyOnWriteArrayList<TagListener>();
+			
+			List<TagListener> previous = listenersByTag.putIfAbsent(tag, listenerList);
+			
+			if (previous != null)
+			{
+				listenerList = previous;
+			}
+		}
+		
+		listenerList.add(listener);
+	}
+	
+	public void removeListener(Class<? extends Tag> tag, TagListener listener)
+	{
+		List<TagListener> listenerList = listenersByTag.get(tag);
+		
+		if (listenerList != null)
+		{
+			listenerList.remove(listener);
+			
+			if (listenerList.isEmpty())
+			{
+				listenersByTag.remove(tag);
+			}
+		}
+	}
+	
+	/**
+	 * Clears all the tags of all the entities without notifying the listeners, that are kept.
+	 */
+	public void clearTags()
+	{
+		Iterator<BitSet> iterator = bitsByTag.values().iterator();
+		while (iterator.hasNext())
+		{
+			BitSet bits = iterator.next();
+			
+			if (concurrent)
+			{
+				synchronized (bits)
+				{
+					bits.clear();
+				}
+			}
+			else
+			{
+				bits.clear();
+			}
+		}
+	}
+	
+	public void clear()
+	{
+		bitsByTag.clear();
+		listenersByTag.clear();
+	}
+	
+	private BitSet getBits(Class<? extends Tag> tag, boolean create)
+	{
+		BitSet bits = bitsByTag.get(tag);
+		
+		// If it does not exist
+		if (bits == null && create)
+		{
+			bits = new BitSet();
+			
+			BitSet previous = bitsByTag.putIfAbsent(tag, bits);
+			
+			if (previous != null)
+			{
+				bits = previous;
+			}
+		}
+		
+		return bits;
+	}
+	
+	private boolean change(BitSet bits, int entityId, boolean value)
+	{
+		boolean changed = false;
+		
+		if (concurrent)
+		{
+			synchronized (bits)
+			{
+				changed = (bits.get(entityId) != value);
+				bits.set(entityId, value);
+			}
+		}
+		else
+		{
+			changed = (bits.get(entityId) != value);
+			bits.set(entityId, value);
+		}
+		
+		return changed;
+	}
+}
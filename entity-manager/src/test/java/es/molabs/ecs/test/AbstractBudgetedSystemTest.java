@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.base.AbstractBudgetedSystem;
+import es.molabs.ecs.query.Query;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AbstractBudgetedSystemTest 
+{
+	private final static float DELTA = 0.16f;
+	
+	@Test
+	public void testSlices() throws Throwable
+	{
+		int ENTITIES = 100;
+		int MAX_FRAMES = 4;
+		
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// Registers entities, only half of them match the query
+		for (int i=0; i<ENTITIES; i++)
+		{
+			int entityId = entityManager.registerEntity(new TestEntity()).getId();
+			
+			if (i % 2 == 0)
+			{
+				entityManager.registerComponent(entityId, new TestComponent(1, 5));
+			}
+		}
+		
+		// With a budget of 0 each update only processes the minimum slice
+		CountingSystem system = new CountingSystem(0, MAX_FRAMES);
+		entityManager.registerSystem(system);
+		
+		entityManager.update(DELTA);
+		Assert.assertEquals(ENTITIES / 2 / MAX_FRAMES + 1, system.countMap.size());
+		Assert.assertEquals(ENTITIES / 2 - system.countMap.size(), system.getLag());
+		Assert.assertTrue(entityManager.getBudgetOverrun() >= system.getLastOverrun());
+		
+		// Checks that all the entities are processed once within the max frames
+		for (int i=1; i<MAX_FRAMES; i++)
+		{
+			entityManager.update(DELTA);
+		}
+		
+		Assert.assertEquals(ENTITIES / 2, system.countMap.size());
+		Assert.assertEquals(0, system.getLag());
+		Assert.assertEquals(MAX_FRAMES, system.getLastPassFrames());
+		
+		for (Integer count : system.countMap.values())
+		{
+			Assert.assertEquals(1, (int) count);
+		}
+		
+		// With a big budget the next pass processes all the entities in one update
+		system.setBudget(Long.MAX_VALUE);
+		entityManager.update(DELTA);
+		Assert.assertEquals(1, system.getLastPassFrames());
+		Assert.assertEquals(0, system.getLastOverrun());
+		
+		for (Integer count : system.countMap.values())
+		{
+			Assert.assertEquals(2, (int) count);
+		}
+		
+		entityManager.destroy();
+	}
+	
+	private static class CountingSystem extends AbstractBudgetedSystem
+	{
+		private final Map<Integer, Integer> countMap = new HashMap<Integer, Integer>();
+		
+		private CountingSystem(long budget, int maxFrames)
+		{
+			super(false, new Query().include(TestComponent.class), budget, maxFrames);
+		}
+		
+		protected void onProcess(int entityId, float delta)
+		{
+			Integer count = countMap.get(entityId);
+			
+			countMap.put(entityId, (count != null ? count + 1 : 1));
+		}
+	}
+}
@@ -15,6 +15,7 @@
  */
 package es.molabs.ecs.test;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
@@ -22,6 +23,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import es.molabs.ecs.Component;
 import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.query.Query;
 import es.molabs.ecs.test.entity.TestComponent;
 import es.molabs.ecs.test.entity.TestEntity;
 import es.molabs.ecs.test.entity.TestTaskSystem;
@@ -76,6 +78,49 @@ public class AbstractTaskSystemTest
 		Mockito.verify(system, Mockito.times(1)).onDispose();
 	}
 	
+	@Test
+	public void testDormant() throws Throwable
+	{
+		float DELTA = 0.16f;
+		
+		// Creates the manager with a task system
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		TestTask task = Mockito.spy(new TestTask());
+		TestAbstractSystem system = new TestAbstractSystem(false, task);
+		entityManager.registerSystem(system);
+		
+		// Registers an entity with a component
+		int entityId = entityManager.registerEntity(new TestEntity()).getId();
+		TestComponent component = new TestComponent(1, 5);
+		entityManager.registerComponent(entityId, component);
+		
+		// Makes the entity dormant and checks that its task is not executed
+		entityManager.sleep(entityId);
+		Assert.assertTrue(entityManager.isDormant(entityId));
+		Assert.assertEquals(1, entityManager.getDormantCount());
+		Assert.assertTrue(entityManager.query(new Query().include(TestComponent.class)).isEmpty());
+		Assert.assertFalse(entityManager.query(new Query().include(TestComponent.class).includeDormant()).isEmpty());
+		
+		entityManager.update(DELTA);
+		Mockito.verify(task, Mockito.never()).execute(Mockito.anyFloat());
+		
+		// Wakes it by marking the component as changed and checks that the task is executed again
+		entityManager.markChanged(component);
+		Assert.assertFalse(entityManager.isDormant(entityId));
+		
+		entityManager.update(DELTA);
+		Mockito.verify(task, Mockito.times(1)).execute(Mockito.anyFloat());
+		
+		// Makes it dormant again and unregisters it
+		entityManager.sleep(entityId);
+		entityManager.unregisterEntity(entityId);
+		Assert.assertEquals(0, entityManager.getDormantCount());
+		
+		entityManager.destroy();
+	}
+	
 	private class TestAbstractSystem extends TestTaskSystem
 	{
 		private Task task = null;
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.data.ColumnKernel;
+import es.molabs.ecs.data.ColumnOperations;
+import es.molabs.ecs.data.DataSchema;
+import es.molabs.ecs.data.DataStore;
+import es.molabs.ecs.data.DataType;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ColumnOperationsTest 
+{
+	private final static float DELTA = 0.0001f;
+	
+	// More than a chunk so the last one is partial
+	private final static int SIZE = ColumnOperations.CHUNK_SIZE * 2 + 10;
+	
+	@Test
+	public void testAllEntities() throws Throwable
+	{
+		DataSchema schema = new DataSchema("body").add("x", DataType.FLOAT).add("vx", DataType.FLOAT).add("max", DataType.FLOAT);
+		int x = schema.getField("x");
+		int vx = schema.getField("vx");
+		int max = schema.getField("max");
+		
+		DataStore store = createStore(schema, x, vx, max);
+		
+		// Integrates the velocity
+		ColumnOperations.addScaled(store, null, x, vx, 0.5f);
+		Assert.assertEquals(0f, store.getFloat(0, x), DELTA);
+		Assert.assertEquals(1.5f * (SIZE - 1), store.getFloat(SIZE - 1, x), DELTA);
+		Assert.assertEquals(SIZE - 1, store.getFloat(SIZE - 1, vx), DELTA);
+		
+		// Scales, adds and clamps
+		ColumnOperations.scale(store, null, x, 2);
+		ColumnOperations.add(store, null, x, 1);
+		ColumnOperations.clamp(store, null, x, 0, 100);
+		Assert.assertEquals(1f, store.getFloat(0, x), DELTA);
+		Assert.assertEquals(100f, store.getFloat(SIZE - 1, x), DELTA);
+		
+		// Adds up to the maximum of each entity
+		ColumnOperations.addCapped(store, null, x, max, 10);
+		Assert.assertEquals(0f, store.getFloat(0, x), DELTA);
+		Assert.assertEquals(110f, store.getFloat(SIZE - 1, x), DELTA);
+		Assert.assertEquals(Math.min(7f + 10f, 10f * 2), store.getFloat(2, x), DELTA);
+	}
+	
+	@Test
+	public void testQueryEntities() throws Throwable
+	{
+		DataSchema schema = new DataSchema("body").add("x", DataType.FLOAT).add("vx", DataType.FLOAT).add("max", DataType.FLOAT);
+		int x = schema.getField("x");
+		int vx = schema.getField("vx");
+		int max = schema.getField("max");
+		
+		DataStore store = createStore(schema, x, vx, max);
+		
+		// Selects the even entities and one that is not in the store
+		BitSet entities = new BitSet();
+		for (int i=0; i<SIZE; i+=2)
+		{
+			entities.set(i + 1);
+		}
+		entities.set(SIZE * 2);
+		
+		ColumnOperations.apply(store, entities, new ColumnKernel()
+		{
+			public void apply(float[][] columns, int length)
+			{
+				for (int i=0; i<length; i++)
+				{
+					columns[0][i] = columns[1][i] + columns[2][i];
+				}
+			}
+		}, x, vx, max);
+		
+		Assert.assertEquals(0f, store.getFloat(0, x), DELTA);
+		Assert.assertEquals(1f, store.getFloat(1, x), DELTA);
+		Assert.assertEquals(2f + 20f, store.getFloat(store.getSlot(3), x), DELTA);
+		Assert.assertEquals(SIZE - 1, store.getFloat(SIZE - 1, vx), DELTA);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testNotFloat() throws Throwable
+	{
+		DataStore store = new DataStore(new DataSchema("body").add("health", DataType.INT));
+		
+		ColumnOperations.add(store, null, 0, 1);
+	}
+	
+	private DataStore createStore(DataSchema schema, int x, int vx, int max)
+	{
+		DataStore store = new DataStore(schema);
+		
+		for (int i=0; i<SIZE; i++)
+		{
+			int slot = store.add(i + 1);
+			
+			store.setFloat(slot, x, i);
+			store.setFloat(slot, vx, i);
+			store.setFloat(slot, max, i * 10);
+		}
+		
+		return store;
+	}
+}
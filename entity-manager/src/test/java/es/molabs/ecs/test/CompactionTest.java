@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.ComponentMapper;
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.data.DataSchema;
+import es.molabs.ecs.data.DataStore;
+import es.molabs.ecs.data.DataType;
+import es.molabs.ecs.data.EntityKey;
+import es.molabs.ecs.metrics.CompactionReport;
+import es.molabs.ecs.metrics.StorageOccupancy;
+import es.molabs.ecs.test.entity.OtherTestComponent;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CompactionTest 
+{
+	private final static int ENTITIES = 1000;
+	
+	@Test
+	public void testCompact() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		ComponentMapper<TestComponent> mapper = entityManager.getMapper(TestComponent.class);
+		DataStore store = new DataStore(new DataSchema("value").add("value", DataType.INT));
+		entityManager.registerDataStore(store);
+		
+		// Spawns many entities, with two archetypes
+		int[] entityIds = new int[ENTITIES];
+		for (int i=0; i<ENTITIES; i++)
+		{
+			entityIds[i] = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityIds[i], new TestComponent(i, ENTITIES));
+			
+			if (i % 2 == 0)
+			{
+				entityManager.registerComponent(entityIds[i], new OtherTestComponent(i));
+			}
+			
+			store.setInt(store.add(entityIds[i]), 0, entityIds[i]);
+		}
+		
+		// Despawns all of them but the first ten in reverse order, so the slots are shuffled
+		for (int i=ENTITIES-1; i>=10; i--)
+		{
+			entityManager.unregisterEntity(entityIds[i]);
+		}
+		
+		CompactionReport report = entityManager.compact();
+		Assert.assertSame(report, entityManager.getLastCompactionReport());
+		
+		// Checks that the capacity was released
+		StorageOccupancy before = report.getBefore("store:value");
+		StorageOccupancy after = report.getAfter("store:value");
+		Assert.assertEquals(10, before.getUsed());
+		Assert.assertEquals(10, after.getUsed());
+		Assert.assertTrue(after.getCapacity() < before.getCapacity());
+		Assert.assertTrue(after.getOccupancy() > before.getOccupancy());
+		
+		Assert.assertTrue(report.getAfter("components").getCapacity() < report.getBefore("components").getCapacity());
+		Assert.assertTrue(report.getAfter("mapper:" + TestComponent.class.getName()).getCapacity() < report.getBefore("mapper:" + TestComponent.class.getName()).getCapacity());
+		Assert.assertEquals(report.getBefore().size(), report.getAfter().size());
+		Assert.assertNotNull(report.toString());
+		
+		// Checks that the entities are grouped by archetype and their data moved with them
+		for (int slot=0; slot<10; slot++)
+		{
+			int entityId = store.getEntityId(slot);
+			
+			Assert.assertEquals(slot, store.getSlot(entityId));
+			Assert.assertEquals(entityId, store.getInt(slot, 0));
+			Assert.assertEquals(slot < 5, entityManager.hasComponent(entityId, OtherTestComponent.class));
+		}
+		
+		// Checks that the storages still work
+		Assert.assertEquals(3, mapper.get(entityIds[3]).getCurrentValue());
+		Assert.assertEquals(4, entityManager.getComponent(entityIds[4], OtherTestComponent.class).getData());
+		
+		entityManager.unregisterEntity(entityIds[0]);
+		Assert.assertFalse(store.contains(entityIds[0]));
+		Assert.assertEquals(9 + 4, entityManager.getComponentCount());
+		
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testIncremental() throws Throwable
+	{
+		float DELTA = 0.16f;
+		int ENTITIES = 20000;
+		
+		EntityManager entityManager = new EntityManager();
+		entityManager.setIncrementalCompaction(true);
+		entityManager.setCompactionInterval(2);
+		entityManager.init();
+		
+		// Orders the data by descending id
+		entityManager.setCompactionKey(new EntityKey()
+		{
+			public int getKey(int entityId)
+			{
+				return -entityId;
+			}
+		});
+		
+		entityManager.getMapper(TestComponent.class);
+		DataStore store = new DataStore(new DataSchema("value").add("value", DataType.INT));
+		entityManager.registerDataStore(store);
+		
+		int[] entityIds = new int[ENTITIES];
+		for (int i=0; i<ENTITIES; i++)
+		{
+			entityIds[i] = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityIds[i], new TestComponent(i, ENTITIES));
+			store.add(entityIds[i]);
+		}
+		
+		// Checks that nothing is compacted while the storages are full
+		for (int i=0; i<10; i++)
+		{
+			entityManager.update(DELTA);
+		}
+		
+		Assert.assertNull(entityManager.getLastCompactionReport());
+		
+		// Despawns most of the entities and checks that nothing is compacted until the interval is reached
+		for (int i=ENTITIES/4; i<ENTITIES; i++)
+		{
+			entityManager.unregisterEntity(entityIds[i]);
+		}
+		
+		int updates = 0;
+		while (entityManager.getLastCompactionReport() == null)
+		{
+			entityManager.update(DELTA);
+			updates++;
+			
+			// Checks that the world can be read and changed between the steps
+			Assert.assertEquals(ENTITIES / 4, entityManager.getComponentCount());
+			Assert.assertNotNull(entityManager.getComponent(entityIds[0], TestComponent.class));
+			
+			entityManager.registerComponent(entityIds[1], new TestComponent(1, ENTITIES));
+		}
+		
+		// Interval, two steps for the components, mapper and store
+		Assert.assertEquals(1 + 2 + 1 + 1, updates);
+		
+		CompactionReport report = entityManager.getLastCompactionReport();
+		Assert.assertEquals(3, report.getAfter().size());
+		Assert.assertEquals(0, report.getBefore("components").getIterationNanos());
+		Assert.assertEquals(0, report.getAfter("components").getIterationNanos());
+		Assert.assertTrue(report.getAfter("store:value").getCapacity() < report.getBefore("store:value").getCapacity());
+		Assert.assertEquals(entityIds[ENTITIES / 4 - 1], store.getEntityId(0));
+		Assert.assertEquals(entityIds[0], store.getEntityId(ENTITIES / 4 - 1));
+		
+		// Checks that no new pass is started while nothing changes
+		for (int i=0; i<10; i++)
+		{
+			entityManager.update(DELTA);
+		}
+		
+		Assert.assertSame(report, entityManager.getLastCompactionReport());
+		
+		entityManager.destroy();
+	}
+}
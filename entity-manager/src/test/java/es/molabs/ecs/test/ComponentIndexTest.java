@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.index.HashIndex;
+import es.molabs.ecs.index.KeyExtractor;
+import es.molabs.ecs.index.SortedIndex;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ComponentIndexTest 
+{
+	private final static KeyExtractor<TestComponent, Integer> CURRENT_VALUE = new KeyExtractor<TestComponent, Integer>()
+	{
+		public Integer getKey(TestComponent component)
+		{
+			return component.getCurrentValue();
+		}
+	};
+	
+	@Test
+	public void testHashIndex() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// Registers an entity before the index and checks that it is indexed
+		int entityId1 = entityManager.registerEntity(new TestEntity()).getId();
+		TestComponent component1 = new TestComponent(1, 5);
+		entityManager.registerComponent(entityId1, component1);
+		
+		HashIndex<TestComponent, Integer> index = new HashIndex<TestComponent, Integer>("value", TestComponent.class, CURRENT_VALUE);
+		entityManager.registerIndex(index);
+		Assert.assertEquals(Collections.singleton(entityId1), entityManager.findEntities("value", 1));
+		
+		// Registers other entity with the same value
+		int entityId2 = entityManager.registerEntity(new TestEntity()).getId();
+		TestComponent component2 = new TestComponent(1, 5);
+		entityManager.registerComponent(entityId2, component2);
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(entityId1, entityId2)), entityManager.findEntities("value", 1));
+		
+		// Changes the value of a component
+		component2.setCurrentValue(2);
+		entityManager.markChanged(component2);
+		Assert.assertEquals(Collections.singleton(entityId1), entityManager.findEntities("value", 1));
+		Assert.assertEquals(Integer.valueOf(entityId2), index.getEntityId(2));
+		
+		// Replaces a component and checks that the previous one is not indexed
+		entityManager.registerComponent(entityId2, new TestComponent(3, 5));
+		Assert.assertTrue(entityManager.findEntities("value", 2).isEmpty());
+		Assert.assertEquals(Collections.singleton(entityId2), entityManager.findEntities("value", 3));
+		
+		// Unregisters an entity
+		entityManager.unregisterEntity(entityId1);
+		Assert.assertTrue(entityManager.findEntities("value", 1).isEmpty());
+		Assert.assertEquals(1, index.size());
+		
+		// Clears the world
+		entityManager.clear();
+		Assert.assertEquals(0, index.size());
+		
+		entityManager.unregisterIndex("value");
+		Assert.assertNull(entityManager.getIndex("value"));
+		
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testSortedIndex() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		SortedIndex<TestComponent, Integer> index = new SortedIndex<TestComponent, Integer>("value", TestComponent.class, CURRENT_VALUE);
+		entityManager.registerIndex(index);
+		
+		int[] entityIds = new int[5];
+		TestComponent[] components = new TestComponent[entityIds.length];
+		for (int i=0; i<entityIds.length; i++)
+		{
+			entityIds[i] = entityManager.registerEntity(new TestEntity()).getId();
+			components[i] = new TestComponent(10 * (entityIds.length - i), 100);
+			entityManager.registerComponent(entityIds[i], components[i]);
+		}
+		
+		// Checks a range ordered by key
+		Assert.assertEquals(Arrays.asList(entityIds[3], entityIds[2], entityIds[1]), entityManager.findEntities("value", 20, 40));
+		Assert.assertEquals(Arrays.asList(entityIds[4], entityIds[3]), index.getEntityIds(null, 25));
+		Assert.assertEquals(Arrays.asList(entityIds[1]), index.getEntityIds(30, false, 50, false));
+		
+		// Checks that inverted or empty ranges return no entities
+		Assert.assertEquals(Collections.emptyList(), index.getEntityIds(40, 20));
+		Assert.assertEquals(Collections.emptyList(), entityManager.findEntities("value", 40, 20));
+		Assert.assertEquals(Collections.emptyList(), index.getEntityIds(30, false, 30, false));
+		Assert.assertEquals(Arrays.asList(entityIds[2]), index.getEntityIds(30, 30));
+		Assert.assertEquals(Integer.valueOf(10), index.getFirstKey());
+		Assert.assertEquals(Integer.valueOf(50), index.getLastKey());
+		
+		// Moves an entity into other position
+		components[0].setCurrentValue(15);
+		entityManager.markChanged(components[0]);
+		Assert.assertEquals(Arrays.asList(entityIds[4], entityIds[0], entityIds[3]), index.getEntityIds(null, 20));
+		Assert.assertEquals(Integer.valueOf(40), index.getLastKey());
+		
+		// Unregisters a component
+		entityManager.unregisterComponent(components[4].getId());
+		Assert.assertEquals(Integer.valueOf(15), index.getFirstKey());
+		
+		entityManager.destroy();
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testRangeOnHashIndex() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		entityManager.registerIndex(new HashIndex<TestComponent, Integer>("value", TestComponent.class, CURRENT_VALUE));
+		
+		entityManager.findEntities("value", 1, 2);
+	}
+}
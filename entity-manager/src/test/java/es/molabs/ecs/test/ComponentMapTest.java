@@ -237,4 +237,56 @@ public class ComponentMapTest
 		// Clears the ComponentMap
 		componentMap.clear();
 	}
+	
+	@Test
+	public void testCompactStep() throws Throwable
+	{
+		// Creates the ComponentMap with one component for each of ten entities
+		ComponentMap componentMap = new ComponentMap();
+		
+		TestComponent[] components = new TestComponent[10];
+		for (int i=0; i<components.length; i++)
+		{
+			components[i] = new TestComponent(i, 10);
+			components[i].create(i + 1, i + 1, null);
+			
+			componentMap.put(components[i]);
+		}
+		
+		// Compacts the first entities and checks that everything can still be found
+		Assert.assertFalse(componentMap.compactStep(3));
+		Assert.assertTrue(componentMap.isCompacting());
+		Assert.assertEquals(10, componentMap.size());
+		Assert.assertEquals(10, componentMap.getEntityCount());
+		Assert.assertEquals(10, componentMap.values().size());
+		
+		for (int i=0; i<components.length; i++)
+		{
+			Assert.assertEquals(components[i], componentMap.getById(components[i].getId()));
+			Assert.assertEquals(components[i], componentMap.getByClass(components[i].getEntityId(), TestComponent.class));
+		}
+		
+		// Changes the map while the compaction is in progress
+		componentMap.removeByEntityId(components[9].getEntityId());
+		componentMap.removeById(components[8].getId());
+		
+		OtherTestComponent otherComponent = new OtherTestComponent(7);
+		otherComponent.create(11, components[7].getEntityId(), null);
+		componentMap.put(otherComponent);
+		
+		// Finishes the compaction and checks the result
+		Assert.assertFalse(componentMap.compactStep(3));
+		Assert.assertTrue(componentMap.compactStep(10));
+		Assert.assertFalse(componentMap.isCompacting());
+		
+		Assert.assertEquals(9, componentMap.size());
+		Assert.assertEquals(8, componentMap.getEntityCount());
+		Assert.assertEquals(9, componentMap.getPeakSize());
+		Assert.assertNull(componentMap.getById(components[9].getId()));
+		Assert.assertNull(componentMap.getByEntityId(components[9].getEntityId()));
+		Assert.assertNull(componentMap.getById(components[8].getId()));
+		Assert.assertEquals(2, componentMap.getByEntityId(components[7].getEntityId()).size());
+		Assert.assertEquals(otherComponent, componentMap.getById(otherComponent.getId()));
+		Assert.assertEquals(8, componentMap.getCollectionByClass(TestComponent.class).size());
+	}
 }
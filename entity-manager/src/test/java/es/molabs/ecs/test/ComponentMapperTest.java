@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.ComponentMapper;
+import es.molabs.ecs.Entity;
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.test.entity.OtherTestComponent;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ComponentMapperTest 
+{
+	@Test
+	public void testComponentMapper() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// Registers a component before obtaining the mapper
+		int entityId1 = entityManager.registerEntity(new TestEntity()).getId();
+		TestComponent component1 = new TestComponent(1, 5);
+		entityManager.registerComponent(entityId1, component1);
+		
+		ComponentMapper<TestComponent> mapper = entityManager.getMapper(TestComponent.class);
+		Assert.assertSame(mapper, entityManager.getMapper(TestComponent.class));
+		Assert.assertSame(component1, mapper.get(entityId1));
+		
+		// Registers other entity with many components, more than the initial capacity
+		int entityId2 = 0;
+		for (int i=0; i<100; i++)
+		{
+			entityId2 = entityManager.registerEntity(new TestEntity()).getId();
+		}
+		
+		TestComponent component2 = new TestComponent(2, 5);
+		entityManager.registerComponent(entityId2, component2);
+		entityManager.registerComponent(entityId2, new OtherTestComponent(1));
+		Assert.assertSame(component2, mapper.get(entityId2));
+		Assert.assertEquals(2, mapper.size());
+		
+		// Replaces a component
+		TestComponent component3 = new TestComponent(3, 5);
+		entityManager.registerComponent(entityId2, component3);
+		Assert.assertSame(component3, mapper.get(entityId2));
+		Assert.assertEquals(2, mapper.size());
+		
+		// Unregisters a component and an entity
+		entityManager.unregisterComponent(component3.getId());
+		Assert.assertFalse(mapper.has(entityId2));
+		
+		entityManager.unregisterEntity(entityId1);
+		Assert.assertNull(mapper.get(entityId1));
+		Assert.assertNull(mapper.get(-1));
+		Assert.assertNull(mapper.get(Integer.MAX_VALUE));
+		Assert.assertEquals(0, mapper.size());
+		
+		// Clears the world
+		entityManager.registerComponent(entityId2, new TestComponent(4, 5));
+		entityManager.clear();
+		Assert.assertFalse(mapper.has(entityId2));
+		
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testThreadSafe() throws Throwable
+	{
+		final int THREADS = 4;
+		final int ENTITIES = 20000;
+		
+		// Creates the manager in thread safe mode with many components
+		final EntityManager entityManager = new EntityManager();
+		entityManager.setThreadSafe(true);
+		entityManager.init();
+		
+		for (int i=0; i<ENTITIES; i++)
+		{
+			int entityId = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityId, new TestComponent(1, 5));
+		}
+		
+		// Registers and unregisters components from other threads
+		Thread[] threads = new Thread[THREADS];
+		for (int i=0; i<THREADS; i++)
+		{
+			threads[i] = new Thread()
+			{
+				public void run()
+				{
+					for (int j=0; j<ENTITIES / THREADS; j++)
+					{
+						Entity entity = entityManager.registerEntity(new TestEntity());
+						entityManager.registerComponent(entity.getId(), new TestComponent(1, 5));
+						
+						// Unregisters one of each two entities
+						if (j % 2 == 0)
+						{
+							entityManager.unregisterEntity(entity.getId());
+						}
+					}
+				}
+			};
+			
+			threads[i].start();
+		}
+		
+		// Creates the mapper while the other threads are writing
+		ComponentMapper<TestComponent> mapper = entityManager.getMapper(TestComponent.class);
+		
+		for (int i=0; i<THREADS; i++)
+		{
+			threads[i].join();
+		}
+		
+		// Checks that the mapper has every registered component and nothing else
+		Assert.assertEquals(ENTITIES + ENTITIES / 2, entityManager.getComponentCollectionByClass(TestComponent.class).size());
+		Assert.assertEquals(ENTITIES + ENTITIES / 2, mapper.size());
+		
+		for (TestComponent component : entityManager.getComponentCollectionByClass(TestComponent.class))
+		{
+			Assert.assertSame(component, mapper.get(component.getEntityId()));
+		}
+		
+		entityManager.destroy();
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.nio.FloatBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.data.DataSchema;
+import es.molabs.ecs.data.DataStore;
+import es.molabs.ecs.data.DataType;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DataStoreTest 
+{
+	private final static float DELTA = 0.0001f;
+	
+	@Test
+	public void testDataStore() throws Throwable
+	{
+		DataSchema schema = new DataSchema("body").add("x", DataType.FLOAT).add("health", DataType.INT).add("mass", DataType.DOUBLE);
+		int x = schema.getField("x");
+		int health = schema.getField("health");
+		int mass = schema.getField("mass");
+		Assert.assertEquals(16, schema.getRowSize());
+		
+		// Creates a small store so it has to grow
+		DataStore store = new DataStore(schema, 2);
+		
+		for (int i=0; i<10; i++)
+		{
+			int slot = store.add(i + 1);
+			
+			store.setFloat(slot, x, i);
+			store.setInt(slot, health, i * 10);
+			store.setDouble(slot, mass, i * 0.5);
+		}
+		
+		Assert.assertEquals(10, store.size());
+		Assert.assertEquals(16, store.getCapacity());
+		Assert.assertEquals(16 * 16, store.getOffHeapSize());
+		Assert.assertEquals(5, store.add(6));
+		
+		// Removes an entity and checks that the last one takes its slot
+		Assert.assertTrue(store.remove(3));
+		Assert.assertFalse(store.remove(3));
+		Assert.assertFalse(store.contains(3));
+		Assert.assertEquals(2, store.getSlot(10));
+		Assert.assertEquals(10, store.getEntityId(2));
+		Assert.assertEquals(9f, store.getFloat(2, x), DELTA);
+		Assert.assertEquals(90, store.getInt(2, health));
+		Assert.assertEquals(4.5, store.getDouble(2, mass), DELTA);
+		
+		// Checks that a new entity starts with zeros
+		int slot = store.add(20);
+		Assert.assertEquals(0f, store.getFloat(slot, x), DELTA);
+		Assert.assertEquals(0, store.getInt(slot, health));
+		
+		// Streams the column
+		FloatBuffer column = store.getFloatColumn(x);
+		Assert.assertEquals(10, column.remaining());
+		Assert.assertEquals(9f, column.get(2), DELTA);
+		
+		store.clear();
+		Assert.assertEquals(0, store.size());
+		Assert.assertEquals(-1, store.getSlot(1));
+	}
+	
+	@Test
+	public void testEntityManager() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		DataSchema schema = new DataSchema("position").add("x", DataType.FLOAT).add("y", DataType.FLOAT);
+		entityManager.registerDataStore(new DataStore(schema));
+		DataStore store = entityManager.getDataStore("position");
+		
+		int entityId1 = entityManager.registerEntity(new TestEntity()).getId();
+		int entityId2 = entityManager.registerEntity(new TestEntity()).getId();
+		store.add(entityId1);
+		store.add(entityId2);
+		
+		// Checks that unregistered entities are removed from the store
+		entityManager.unregisterEntity(entityId1);
+		Assert.assertFalse(store.contains(entityId1));
+		Assert.assertTrue(store.contains(entityId2));
+		
+		// Checks that clearing the world empties the store
+		entityManager.clear();
+		Assert.assertEquals(0, store.size());
+		
+		entityManager.unregisterDataStore("position");
+		Assert.assertNull(entityManager.getDataStore("position"));
+		
+		entityManager.destroy();
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+import es.molabs.ecs.util.EntityHierarchy;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EntityHierarchyTest 
+{
+	@Test
+	public void testTraversalOrder() throws Throwable
+	{
+		EntityHierarchy hierarchy = new EntityHierarchy();
+		
+		// 1 -> (2 -> (4, 5), 3), 6 -> 7
+		hierarchy.setParent(2, 1);
+		hierarchy.setParent(3, 1);
+		hierarchy.setParent(4, 2);
+		hierarchy.setParent(5, 2);
+		hierarchy.setParent(7, 6);
+		
+		// Checks that each entity is followed by its descendants
+		Assert.assertArrayEquals(new int[] {1, 2, 4, 5, 3, 6, 7}, hierarchy.getTraversalOrder());
+		Assert.assertArrayEquals(new int[] {-1, 0, 1, 1, 0, -1, 5}, hierarchy.getParentIndices());
+		Assert.assertArrayEquals(new int[] {5, 4, 3, 4, 5, 7, 7}, hierarchy.getSubtreeEnds());
+		Assert.assertArrayEquals(new int[] {2, 4, 5}, hierarchy.getSubtree(2));
+		
+		// Checks that cycles are not allowed
+		try
+		{
+			hierarchy.setParent(1, 5);
+			
+			Assert.fail();
+		}
+		catch (IllegalArgumentException iae)
+		{
+		}
+		
+		// Moves a subtree and checks the new order
+		hierarchy.setParent(2, 7);
+		Assert.assertArrayEquals(new int[] {1, 3, 6, 7, 2, 4, 5}, hierarchy.getTraversalOrder());
+		Assert.assertEquals(Integer.valueOf(7), hierarchy.getParent(2));
+		Assert.assertEquals(Arrays.asList(3), hierarchy.getChildren(1));
+		
+		// Removes an entity and checks that its children become roots
+		hierarchy.remove(7);
+		Assert.assertNull(hierarchy.getParent(2));
+		Assert.assertArrayEquals(new int[] {1, 3, 2, 4, 5}, hierarchy.getTraversalOrder());
+	}
+	
+	@Test
+	public void testUnregisterEntityTree() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// Creates a ship with two turrets and a third one attached to the first
+		int shipId = entityManager.registerEntity(new TestEntity()).getId();
+		int turretId = entityManager.registerEntity(new TestEntity()).getId();
+		int otherTurretId = entityManager.registerEntity(new TestEntity()).getId();
+		int subTurretId = entityManager.registerEntity(new TestEntity()).getId();
+		int otherId = entityManager.registerEntity(new TestEntity()).getId();
+		
+		entityManager.setParent(turretId, shipId);
+		entityManager.setParent(otherTurretId, shipId);
+		entityManager.setParent(subTurretId, turretId);
+		entityManager.registerComponent(subTurretId, new TestComponent(1, 5));
+		
+		Assert.assertEquals(Integer.valueOf(shipId), entityManager.getParent(turretId));
+		Assert.assertEquals(Arrays.asList(turretId, otherTurretId), entityManager.getChildren(shipId));
+		
+		// Unregisters the first turret and checks that its child is also unregistered
+		entityManager.unregisterEntityTree(turretId);
+		Assert.assertNull(entityManager.getEntity(turretId));
+		Assert.assertNull(entityManager.getEntity(subTurretId));
+		Assert.assertEquals(0, entityManager.getComponentCount());
+		Assert.assertEquals(Arrays.asList(otherTurretId), entityManager.getChildren(shipId));
+		
+		// Unregisters the ship and checks that only the unrelated entity is left
+		entityManager.unregisterEntityTree(shipId);
+		Assert.assertEquals(1, entityManager.getEntityCount());
+		Assert.assertNotNull(entityManager.getEntity(otherId));
+		Assert.assertEquals(0, entityManager.getHierarchy().size());
+		
+		entityManager.destroy();
+	}
+}
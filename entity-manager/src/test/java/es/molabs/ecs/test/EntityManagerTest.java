@@ -15,9 +15,14 @@
  */
 package es.molabs.ecs.test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -393,4 +398,277 @@ public class EntityManagerTest
 		// Destroys the manager
 		entityManager.destroy();
 	}
+	
+	@Test
+	public void testThreadSafe() throws Throwable
+	{
+		final int THREADS = 8;
+		final int ENTITIES = 500;
+		
+		// Creates the manager in thread safe mode
+		final EntityManager entityManager = new EntityManager();
+		entityManager.setThreadSafe(true);
+		entityManager.init();
+		
+		// Registers entities and components from many threads at the same time
+		Thread[] threads = new Thread[THREADS];
+		for (int i=0; i<THREADS; i++)
+		{
+			threads[i] = new Thread()
+			{
+				public void run()
+				{
+					for (int j=0; j<ENTITIES; j++)
+					{
+						Entity entity = entityManager.registerEntity(new TestEntity());
+						entityManager.registerComponent(entity.getId(), new TestComponent(1, 5));
+						entityManager.registerComponent(entity.getId(), new OtherTestComponent(17));
+						
+						// Unregisters one of each two entities
+						if (j % 2 == 0)
+						{
+							entityManager.unregisterEntity(entity.getId());
+						}
+					}
+				}
+			};
+			
+			threads[i].start();
+		}
+		
+		for (int i=0; i<THREADS; i++)
+		{
+			threads[i].join();
+		}
+		
+		// Checks that no registration has been lost
+		Assert.assertEquals(THREADS * ENTITIES / 2, entityManager.getEntityCount());
+		Assert.assertEquals(THREADS * ENTITIES, entityManager.getComponentCount());
+		Assert.assertEquals(THREADS * ENTITIES / 2, entityManager.getComponentCollectionByClass(TestComponent.class).size());
+		
+		// Destroys the manager
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testClear() throws Throwable
+	{
+		float DELTA = 0.16f;
+		
+		// Creates the manager with a task system and a plain system
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		TestTaskSystem taskSystem = Mockito.spy(new TestTaskSystem(false));
+		TestSystem system = Mockito.spy(new TestSystem(false));
+		entityManager.registerSystem(taskSystem);
+		entityManager.registerSystem(system);
+		
+		long emptySystemBytes = taskSystem.estimateRetainedBytes();
+		
+		// Registers entities with components
+		TestComponent component = Mockito.spy(new TestComponent(1, 5));
+		int entityId = entityManager.registerEntity(new TestEntity()).getId();
+		entityManager.registerComponent(entityId, component);
+		entityManager.registerComponent(entityManager.registerEntity(new TestEntity()).getId(), new TestComponent(1, 5));
+		
+		// Clears the world
+		entityManager.clear();
+		
+		// Checks that everything has been removed but the systems
+		Assert.assertEquals(0, entityManager.getEntityCount());
+		Assert.assertEquals(0, entityManager.getComponentCount());
+		Assert.assertEquals(2, entityManager.getSystemCount());
+		Mockito.verify(component, Mockito.times(1)).dispose();
+		
+		// Checks that the task system has been notified once and the other one once per component
+		Mockito.verify(taskSystem, Mockito.times(1)).worldCleared();
+		Mockito.verify(taskSystem, Mockito.never()).componentRemoved(Mockito.any(Component.class));
+		Mockito.verify(system, Mockito.times(2)).componentRemoved(Mockito.any(Component.class));
+		Assert.assertEquals(emptySystemBytes, taskSystem.estimateRetainedBytes());
+		
+		// Checks that the world can be used again
+		entityId = entityManager.registerEntity(new TestEntity()).getId();
+		entityManager.registerComponent(entityId, new TestComponent(1, 5));
+		entityManager.update(DELTA);
+		Assert.assertEquals(1, entityManager.getComponentCount());
+		
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testBulkTeardown() throws Throwable
+	{
+		// Creates the manager with bulk teardown and a disposal executor
+		EntityManager entityManager = new EntityManager();
+		entityManager.setBulkTeardown(true);
+		
+		final List<Runnable> disposalList = new ArrayList<Runnable>();
+		entityManager.setDisposalExecutor(new Executor()
+		{
+			public void execute(Runnable command)
+			{
+				disposalList.add(command);
+			}
+		});
+		
+		entityManager.init();
+		
+		TestTaskSystem taskSystem = Mockito.spy(new TestTaskSystem(false));
+		entityManager.registerSystem(taskSystem);
+		
+		TestComponent component = Mockito.spy(new TestComponent(1, 5));
+		entityManager.registerComponent(entityManager.registerEntity(new TestEntity()).getId(), component);
+		
+		// Destroys the manager and checks that the disposal has been handed to the executor
+		entityManager.destroy();
+		Mockito.verify(taskSystem, Mockito.times(1)).worldCleared();
+		Mockito.verify(taskSystem, Mockito.times(1)).dispose();
+		Mockito.verify(component, Mockito.never()).dispose();
+		Assert.assertEquals(1, disposalList.size());
+		
+		disposalList.get(0).run();
+		Mockito.verify(component, Mockito.times(1)).dispose();
+	}
+	
+	@Test
+	public void testDeferredDisposal() throws Throwable
+	{
+		float DELTA = 0.16f;
+		
+		// Creates the manager with deferred disposal drained only on demand
+		EntityManager entityManager = new EntityManager();
+		entityManager.setDeferredDisposal(true);
+		entityManager.setDisposalBudget(0);
+		entityManager.init();
+		
+		TestSystem system = Mockito.spy(new TestSystem(false));
+		entityManager.registerSystem(system);
+		
+		TestEntity entity = Mockito.spy(new TestEntity());
+		int entityId = entityManager.registerEntity(entity).getId();
+		TestComponent component = Mockito.spy(new TestComponent(1, 5));
+		OtherTestComponent otherComponent = Mockito.spy(new OtherTestComponent(1));
+		entityManager.registerComponent(entityId, component);
+		entityManager.registerComponent(entityId, otherComponent);
+		
+		// Unregisters the entity and checks that it is detached but not disposed
+		entityManager.unregisterEntity(entityId);
+		entityManager.update(DELTA);
+		Assert.assertEquals(0, entityManager.getEntityCount());
+		Assert.assertEquals(0, entityManager.getComponentCount());
+		Mockito.verify(system, Mockito.times(2)).componentRemoved(Mockito.any(Component.class));
+		Mockito.verify(component, Mockito.never()).dispose();
+		Mockito.verify(entity, Mockito.never()).dispose();
+		Assert.assertEquals(3, entityManager.getPendingDisposalCount());
+		
+		// Drains the queue and checks that the components are disposed before the entity
+		Assert.assertEquals(3, entityManager.drainDisposals(Long.MAX_VALUE));
+		Assert.assertEquals(0, entityManager.getPendingDisposalCount());
+		
+		InOrder inOrder = Mockito.inOrder(component, entity);
+		inOrder.verify(component, Mockito.times(1)).dispose();
+		inOrder.verify(entity, Mockito.times(1)).dispose();
+		
+		InOrder otherInOrder = Mockito.inOrder(otherComponent, entity);
+		otherInOrder.verify(otherComponent, Mockito.times(1)).dispose();
+		otherInOrder.verify(entity, Mockito.times(1)).dispose();
+		
+		// Checks that the update drains the queue within its budget
+		entityManager.setDisposalBudget(1000000000L);
+		TestComponent lastComponent = Mockito.spy(new TestComponent(1, 5));
+		entityManager.registerComponent(entityManager.registerEntity(new TestEntity()).getId(), lastComponent);
+		entityManager.unregisterComponent(lastComponent.getId());
+		Assert.assertEquals(1, entityManager.getPendingDisposalCount());
+		entityManager.update(DELTA);
+		Mockito.verify(lastComponent, Mockito.times(1)).dispose();
+		
+		// Checks that the destroy disposes what is still queued
+		TestEntity lastEntity = Mockito.spy(new TestEntity());
+		entityManager.registerEntity(lastEntity);
+		entityManager.destroy();
+		Mockito.verify(lastEntity, Mockito.times(1)).dispose();
+	}
+	
+	@Test
+	public void testDeferredDisposalExecutor() throws Throwable
+	{
+		// Creates the manager with deferred disposal run by an executor
+		EntityManager entityManager = new EntityManager();
+		entityManager.setDeferredDisposal(true);
+		
+		final List<Runnable> disposalList = new ArrayList<Runnable>();
+		entityManager.setDisposalExecutor(new Executor()
+		{
+			public void execute(Runnable command)
+			{
+				disposalList.add(command);
+			}
+		});
+		
+		entityManager.init();
+		
+		TestEntity entity = Mockito.spy(new TestEntity());
+		int entityId = entityManager.registerEntity(entity).getId();
+		TestComponent component = Mockito.spy(new TestComponent(1, 5));
+		entityManager.registerComponent(entityId, component);
+		
+		// Unregisters the entity and checks that the disposal is handed to the executor
+		entityManager.unregisterEntity(entityId);
+		Mockito.verify(component, Mockito.never()).dispose();
+		Assert.assertEquals(1, disposalList.size());
+		Assert.assertEquals(0, entityManager.drainDisposals(Long.MAX_VALUE));
+		
+		// Runs it and checks that the component is disposed before the entity
+		disposalList.get(0).run();
+		Assert.assertEquals(0, entityManager.getPendingDisposalCount());
+		
+		InOrder inOrder = Mockito.inOrder(component, entity);
+		inOrder.verify(component, Mockito.times(1)).dispose();
+		inOrder.verify(entity, Mockito.times(1)).dispose();
+		
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testDeferredDisposalRegisteredAgain() throws Throwable
+	{
+		float DELTA = 0.16f;
+		
+		// Creates the manager with deferred disposal drained only on demand
+		EntityManager entityManager = new EntityManager();
+		entityManager.setDeferredDisposal(true);
+		entityManager.setDisposalBudget(0);
+		entityManager.init();
+		
+		TestEntity entity = Mockito.spy(new TestEntity());
+		int entityId = entityManager.registerEntity(entity).getId();
+		TestComponent component = Mockito.spy(new TestComponent(1, 5));
+		entityManager.registerComponent(entityId, component);
+		
+		// Unregisters the entity and registers the same instances again while their disposals are pending
+		entityManager.unregisterEntity(entityId);
+		Assert.assertEquals(2, entityManager.getPendingDisposalCount());
+		
+		int newEntityId = entityManager.registerEntity(entity).getId();
+		entityManager.registerComponent(newEntityId, component);
+		
+		// Drains the queue and checks that the live instances are not disposed
+		entityManager.drainDisposals(Long.MAX_VALUE);
+		entityManager.update(DELTA);
+		Assert.assertEquals(0, entityManager.getPendingDisposalCount());
+		Mockito.verify(component, Mockito.never()).dispose();
+		Mockito.verify(entity, Mockito.never()).dispose();
+		Assert.assertEquals(Integer.valueOf(newEntityId), entity.getId());
+		Assert.assertEquals(Integer.valueOf(newEntityId), component.getEntityId());
+		Assert.assertNotNull(component.getId());
+		
+		// Checks that they are disposed once when unregistered again
+		entityManager.unregisterEntity(newEntityId);
+		entityManager.drainDisposals(Long.MAX_VALUE);
+		Mockito.verify(component, Mockito.times(1)).dispose();
+		Mockito.verify(entity, Mockito.times(1)).dispose();
+		
+		entityManager.destroy();
+	}
 }
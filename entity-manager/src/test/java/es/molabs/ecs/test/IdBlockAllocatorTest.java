@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.util.IdBlockAllocator;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IdBlockAllocatorTest 
+{
+	@Test
+	public void testNext() throws Throwable
+	{
+		int BLOCK_SIZE = 4;
+		
+		// Creates the allocator
+		AtomicInteger generator = new AtomicInteger(1);
+		IdBlockAllocator allocator = new IdBlockAllocator(generator, BLOCK_SIZE);
+		
+		// Checks that the ids of a block are consecutive
+		for (int i=1; i<=BLOCK_SIZE; i++)
+		{
+			Assert.assertEquals(i, allocator.next());
+		}
+		
+		// Checks that only one block has been reserved from the generator
+		Assert.assertEquals(1 + BLOCK_SIZE, generator.get());
+		
+		// Checks that a new block is reserved when the current one is exhausted
+		Assert.assertEquals(1 + BLOCK_SIZE, allocator.next());
+		Assert.assertEquals(1 + BLOCK_SIZE * 2, generator.get());
+	}
+	
+	@Test
+	public void testThreads() throws Throwable
+	{
+		final int THREADS = 8;
+		final int IDS = 1000;
+		
+		// Creates the allocator
+		final IdBlockAllocator allocator = new IdBlockAllocator(new AtomicInteger(1), 16);
+		final int[][] ids = new int[THREADS][IDS];
+		
+		// Gets ids from many threads at the same time
+		Thread[] threads = new Thread[THREADS];
+		for (int i=0; i<THREADS; i++)
+		{
+			final int index = i;
+			
+			threads[i] = new Thread()
+			{
+				public void run()
+				{
+					for (int j=0; j<IDS; j++)
+					{
+						ids[index][j] = allocator.next();
+					}
+				}
+			};
+			
+			threads[i].start();
+		}
+		
+		for (int i=0; i<THREADS; i++)
+		{
+			threads[i].join();
+		}
+		
+		// Checks that no id has been repeated
+		Set<Integer> idSet = new HashSet<Integer>();
+		for (int i=0; i<THREADS; i++)
+		{
+			for (int j=0; j<IDS; j++)
+			{
+				idSet.add(ids[i][j]);
+			}
+		}
+		
+		Assert.assertEquals(THREADS * IDS, idSet.size());
+	}
+}
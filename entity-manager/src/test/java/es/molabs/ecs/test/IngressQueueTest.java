@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.test.entity.OtherTestComponent;
+import es.molabs.ecs.test.entity.TestAssemblage;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+import es.molabs.ecs.util.IngressQueue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IngressQueueTest 
+{
+	private final static float DELTA = 0.16f;
+	
+	@Test
+	public void testDrain() throws Throwable
+	{
+		// Creates the manager with an ingress queue
+		EntityManager entityManager = new EntityManager();
+		entityManager.setIngressCapacity(16);
+		entityManager.init();
+		
+		IngressQueue queue = entityManager.getIngressQueue();
+		
+		// Requests an entity with two components and an assemblage
+		TestEntity entity = new TestEntity();
+		Assert.assertEquals(true, queue.offerSpawn(entity));
+		Assert.assertEquals(true, queue.offerComponent(entity, new TestComponent(1, 5)));
+		Assert.assertEquals(true, queue.offerComponent(entity, new OtherTestComponent(17)));
+		Assert.assertEquals(true, queue.offerSpawn(new TestAssemblage(1, 5)));
+		
+		// Checks that nothing is applied before the update
+		Assert.assertEquals(0, entityManager.getEntityCount());
+		
+		// Calls update once
+		entityManager.update(DELTA);
+		
+		// Checks that the requests have been applied
+		Assert.assertEquals(0, queue.size());
+		Assert.assertEquals(2, entityManager.getEntityCount());
+		Assert.assertEquals(3, entityManager.getComponentCount());
+		
+		// Requests to despawn the entity
+		queue.offerDespawn(entity.getId());
+		entityManager.update(DELTA);
+		
+		// Checks that the entity has been removed
+		Assert.assertEquals(1, entityManager.getEntityCount());
+		Assert.assertEquals(1, entityManager.getComponentCount());
+		
+		// Destroys the manager
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testBudgetAndBackpressure() throws Throwable
+	{
+		// Creates the manager with a small ingress queue and drain budget
+		EntityManager entityManager = new EntityManager();
+		entityManager.setIngressCapacity(4);
+		entityManager.setIngressDrainBudget(3);
+		entityManager.init();
+		
+		IngressQueue queue = entityManager.getIngressQueue();
+		
+		// Fills the queue
+		for (int i=0; i<4; i++)
+		{
+			Assert.assertEquals(true, queue.offerSpawn(new TestEntity()));
+		}
+		
+		// Checks that new requests are rejected while the queue is full
+		Assert.assertEquals(false, queue.offerSpawn(new TestEntity()));
+		Assert.assertEquals(1, queue.getRejectedCount());
+		
+		// Checks that only the budget is applied on each update
+		entityManager.update(DELTA);
+		Assert.assertEquals(3, entityManager.getEntityCount());
+		Assert.assertEquals(3, queue.remainingCapacity());
+		
+		entityManager.update(DELTA);
+		Assert.assertEquals(4, entityManager.getEntityCount());
+		
+		// Destroys the manager
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testComponentAfterDespawn() throws Throwable
+	{
+		// Creates the manager with an ingress queue
+		EntityManager entityManager = new EntityManager();
+		entityManager.setIngressCapacity(16);
+		entityManager.init();
+		
+		IngressQueue queue = entityManager.getIngressQueue();
+		
+		// Spawns two entities
+		TestEntity entity = new TestEntity();
+		TestEntity otherEntity = new TestEntity();
+		queue.offerSpawn(entity);
+		queue.offerSpawn(otherEntity);
+		entityManager.update(DELTA);
+		Assert.assertEquals(2, entityManager.getEntityCount());
+		
+		// Requests to despawn the first one and then to add a component to it by id
+		int entityId = entity.getId();
+		queue.offerDespawn(entityId);
+		queue.offerComponent(entityId, new TestComponent(1, 5));
+		entityManager.update(DELTA);
+		
+		// Checks that the component has been dropped
+		Assert.assertEquals(1, entityManager.getEntityCount());
+		Assert.assertEquals(0, entityManager.getComponentCount());
+		
+		// Detaches the second one, which keeps its id, and requests to add a component to it
+		entityManager.detachEntity(otherEntity.getId());
+		queue.offerComponent(otherEntity, new TestComponent(1, 5));
+		entityManager.update(DELTA);
+		
+		// Checks that the component has been dropped
+		Assert.assertEquals(0, entityManager.getEntityCount());
+		Assert.assertEquals(0, entityManager.getComponentCount());
+		
+		// Destroys the manager
+		entityManager.destroy();
+	}
+}
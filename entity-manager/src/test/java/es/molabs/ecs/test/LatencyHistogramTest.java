@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.metrics.LatencyHistogram;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LatencyHistogramTest 
+{
+	@Test
+	public void testPercentiles() throws Throwable
+	{
+		// Creates the histogram
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		// Checks that it is empty
+		Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+		
+		// Records the values from 1 to 10000
+		for (int i=1; i<=10000; i++)
+		{
+			histogram.record(i);
+		}
+		
+		// Checks the counters
+		Assert.assertEquals(10000, histogram.getCount());
+		Assert.assertEquals(10000, histogram.getMax());
+		Assert.assertEquals(50005000, histogram.getTotal());
+		
+		// Checks that the percentiles are within the precision of the histogram
+		assertWithin(5000, histogram.getValueAtPercentile(50));
+		assertWithin(9900, histogram.getValueAtPercentile(99));
+		Assert.assertEquals(10000, histogram.getValueAtPercentile(100));
+		
+		// Checks that small values are exact
+		histogram.reset();
+		histogram.record(7);
+		Assert.assertEquals(7, histogram.getValueAtPercentile(50));
+		Assert.assertEquals(1, histogram.getCount());
+	}
+	
+	private void assertWithin(long expectedValue, long value)
+	{
+		Assert.assertTrue("Value [" + value + "] must be close to [" + expectedValue + "].", Math.abs(value - expectedValue) <= expectedValue * 0.03);
+	}
+}
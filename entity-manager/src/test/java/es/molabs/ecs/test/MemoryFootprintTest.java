@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.metrics.ComponentFootprint;
+import es.molabs.ecs.metrics.MemoryEstimator;
+import es.molabs.ecs.metrics.MemoryFootprint;
+import es.molabs.ecs.test.entity.OtherTestComponent;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+import es.molabs.ecs.test.entity.TestTaskSystem;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MemoryFootprintTest 
+{
+	@Test
+	public void testShallowSize() throws Throwable
+	{
+		// Header, three references from AbstractComponent and two ints, aligned to 8 bytes
+		Assert.assertEquals(32, MemoryEstimator.getShallowSize(TestComponent.class));
+		
+		// Header and an int
+		Assert.assertEquals(16, MemoryEstimator.getShallowSize(Integer.class));
+	}
+	
+	@Test
+	public void testFootprint() throws Throwable
+	{
+		int ENTITIES = 100;
+		
+		// Creates the manager with a task system
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		TestTaskSystem system = new TestTaskSystem(false);
+		entityManager.registerSystem(system);
+		
+		long emptySystemBytes = system.estimateRetainedBytes();
+		
+		// Registers entities with components, only half of them with OtherTestComponent
+		int[] entityIds = new int[ENTITIES];
+		for (int i=0; i<ENTITIES; i++)
+		{
+			entityIds[i] = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityIds[i], new TestComponent(1, 5));
+			
+			if (i % 2 == 0)
+			{
+				entityManager.registerComponent(entityIds[i], new OtherTestComponent(17));
+			}
+		}
+		
+		// Checks the counts by class
+		MemoryFootprint footprint = entityManager.getMemoryFootprint();
+		ComponentFootprint testFootprint = footprint.getComponent(TestComponent.class);
+		Assert.assertEquals(ENTITIES, footprint.getEntityCount());
+		Assert.assertEquals(ENTITIES, testFootprint.getCount());
+		Assert.assertEquals(ENTITIES / 2, footprint.getComponent(OtherTestComponent.class).getCount());
+		
+		// Checks the estimated sizes
+		Assert.assertEquals(ENTITIES * MemoryEstimator.getShallowSize(TestComponent.class), testFootprint.getComponentBytes());
+		Assert.assertTrue(testFootprint.getIndexBytes() > 0);
+		Assert.assertTrue(footprint.getEntityIndexBytes() > 0);
+		
+		// Checks that the tasks of the system are accounted
+		Assert.assertEquals(1, footprint.getSystems().size());
+		Assert.assertTrue(system.estimateRetainedBytes() > emptySystemBytes);
+		Assert.assertTrue(footprint.getTotalBytes() > testFootprint.getTotalBytes());
+		
+		// Unregisters all the entities
+		for (int i=0; i<ENTITIES; i++)
+		{
+			entityManager.unregisterEntity(entityIds[i]);
+		}
+		
+		// Checks that the footprint is back to empty
+		footprint = entityManager.getMemoryFootprint();
+		Assert.assertEquals(0, footprint.getComponents().size());
+		Assert.assertEquals(emptySystemBytes, system.estimateRetainedBytes());
+		
+		// Destroys the manager
+		entityManager.destroy();
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.util.MpscQueue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MpscQueueTest 
+{
+	@Test
+	public void testOfferPoll() throws Throwable
+	{
+		// Creates a queue, its capacity is rounded up to a power of two
+		MpscQueue<Integer> queue = new MpscQueue<Integer>(3);
+		Assert.assertEquals(4, queue.getCapacity());
+		
+		// Fills the queue
+		for (int i=0; i<4; i++)
+		{
+			Assert.assertEquals(true, queue.offer(i));
+		}
+		
+		// Checks that the queue rejects elements when full
+		Assert.assertEquals(false, queue.offer(4));
+		Assert.assertEquals(0, queue.remainingCapacity());
+		
+		// Checks that the elements are returned in order
+		for (int i=0; i<4; i++)
+		{
+			Assert.assertEquals(Integer.valueOf(i), queue.poll());
+		}
+		
+		// Checks that the queue is empty
+		Assert.assertEquals(null, queue.poll());
+		Assert.assertEquals(true, queue.isEmpty());
+		
+		// Checks that the slots can be reused
+		Assert.assertEquals(true, queue.offer(5));
+		Assert.assertEquals(Integer.valueOf(5), queue.poll());
+	}
+	
+	@Test
+	public void testProducers() throws Throwable
+	{
+		final int PRODUCERS = 4;
+		final int ELEMENTS = 10000;
+		
+		final MpscQueue<Integer> queue = new MpscQueue<Integer>(64);
+		
+		// Starts the producers, each one retries while the queue is full
+		Thread[] threads = new Thread[PRODUCERS];
+		for (int i=0; i<PRODUCERS; i++)
+		{
+			final int producer = i;
+			
+			threads[i] = new Thread()
+			{
+				public void run()
+				{
+					for (int j=0; j<ELEMENTS; j++)
+					{
+						while (!queue.offer(producer * ELEMENTS + j))
+						{
+							Thread.yield();
+						}
+					}
+				}
+			};
+			
+			threads[i].start();
+		}
+		
+		// Consumes all the elements checking that the order of each producer is kept
+		int[] last = new int[PRODUCERS];
+		Arrays.fill(last, -1);
+		
+		int count = 0;
+		while (count < PRODUCERS * ELEMENTS)
+		{
+			Integer element = queue.poll();
+			
+			if (element != null)
+			{
+				int producer = element / ELEMENTS;
+				
+				Assert.assertEquals(last[producer] + 1, element % ELEMENTS);
+				last[producer] = element % ELEMENTS;
+				
+				count++;
+			}
+		}
+		
+		for (int i=0; i<PRODUCERS; i++)
+		{
+			threads[i].join();
+		}
+		
+		Assert.assertEquals(true, queue.isEmpty());
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.TagListener;
+import es.molabs.ecs.query.Query;
+import es.molabs.ecs.test.entity.OtherTestComponent;
+import es.molabs.ecs.test.entity.OtherTestTag;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+import es.molabs.ecs.test.entity.TestTag;
+
+@RunWith(MockitoJUnitRunner.class)
+public class QueryTest 
+{
+	@Test
+	public void testTags() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		TagListener listener = Mockito.mock(TagListener.class);
+		entityManager.addTagListener(TestTag.class, listener);
+		
+		int entityId = entityManager.registerEntity(new TestEntity()).getId();
+		
+		// Sets the tags and checks that only the listener of the tag is notified once
+		entityManager.setTag(entityId, TestTag.class);
+		entityManager.setTag(entityId, TestTag.class);
+		entityManager.setTag(entityId, OtherTestTag.class);
+		Assert.assertTrue(entityManager.hasTag(entityId, TestTag.class));
+		Assert.assertTrue(entityManager.hasTag(entityId, OtherTestTag.class));
+		Mockito.verify(listener, Mockito.times(1)).tagSet(entityId, TestTag.class);
+		Mockito.verify(listener, Mockito.never()).tagSet(entityId, OtherTestTag.class);
+		
+		// Clears a tag
+		entityManager.clearTag(entityId, TestTag.class);
+		Assert.assertFalse(entityManager.hasTag(entityId, TestTag.class));
+		Mockito.verify(listener, Mockito.times(1)).tagCleared(entityId, TestTag.class);
+		
+		// Unregisters the entity and checks that its tags are cleared
+		entityManager.unregisterEntity(entityId);
+		Assert.assertFalse(entityManager.hasTag(entityId, OtherTestTag.class));
+		
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testQuery() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// Registers entities with different components and tags
+		int[] entityIds = new int[8];
+		for (int i=0; i<entityIds.length; i++)
+		{
+			entityIds[i] = entityManager.registerEntity(new TestEntity()).getId();
+			
+			if (i % 2 == 0) entityManager.registerComponent(entityIds[i], new TestComponent(1, 5));
+			if (i % 4 == 0) entityManager.registerComponent(entityIds[i], new OtherTestComponent(17));
+			if (i < 4) entityManager.setTag(entityIds[i], TestTag.class);
+		}
+		
+		// Checks the queries
+		Assert.assertEquals(bits(entityIds[0], entityIds[2], entityIds[4], entityIds[6]), entityManager.query(new Query().include(TestComponent.class)));
+		Assert.assertEquals(bits(entityIds[2], entityIds[6]), entityManager.query(new Query().include(TestComponent.class).exclude(OtherTestComponent.class)));
+		Assert.assertEquals(bits(entityIds[0], entityIds[2]), entityManager.query(new Query().include(TestComponent.class).includeTag(TestTag.class)));
+		Assert.assertEquals(bits(entityIds[1], entityIds[3]), entityManager.query(new Query().includeTag(TestTag.class).exclude(TestComponent.class)));
+		Assert.assertEquals(bits(entityIds[5], entityIds[7]), entityManager.query(new Query().exclude(TestComponent.class).excludeTag(TestTag.class)));
+		Assert.assertTrue(entityManager.query(new Query().include(TestComponent.class).includeTag(OtherTestTag.class)).isEmpty());
+		
+		// Removes a component and checks that the entity is not matched anymore
+		entityManager.unregisterComponent(entityManager.getComponent(entityIds[0], TestComponent.class).getId());
+		Assert.assertEquals(bits(entityIds[2], entityIds[4], entityIds[6]), entityManager.query(new Query().include(TestComponent.class)));
+		
+		entityManager.destroy();
+	}
+	
+	private BitSet bits(int...values)
+	{
+		BitSet bits = new BitSet();
+		
+		for (int i=0; i<values.length; i++)
+		{
+			bits.set(values[i]);
+		}
+		
+		return bits;
+	}
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.stream.EntityCodec;
+import es.molabs.ecs.stream.EntityRecord;
+import es.molabs.ecs.stream.RegionStreamer;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RegionStreamerTest 
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testStreaming() throws Throwable
+	{
+		int ENTITIES = 10;
+		
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		RegionStreamer streamer = new RegionStreamer(entityManager, folder.getRoot(), new TestCodec(), Long.MAX_VALUE);
+		streamer.init();
+		
+		// Loads a region without file and adds entities to it
+		streamer.requestLoad("a");
+		waitLoaded(streamer, "a");
+		
+		for (int i=0; i<ENTITIES; i++)
+		{
+			int entityId = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityId, new TestComponent(i, 100));
+			
+			streamer.assign("a", entityId);
+		}
+		
+		Assert.assertTrue(streamer.getLoadedBytes() > 0);
+		
+		// Unloads the region and checks that the entities are gone
+		streamer.requestUnload("a");
+		streamer.update();
+		Assert.assertFalse(streamer.isLoaded("a"));
+		Assert.assertEquals(0, entityManager.getEntityCount());
+		Assert.assertEquals(0, streamer.getLoadedBytes());
+		
+		// Loads it again and checks that the entities are back with their state
+		streamer.requestLoad("a");
+		waitLoaded(streamer, "a");
+		Assert.assertEquals(ENTITIES, entityManager.getEntityCount());
+		Assert.assertEquals(ENTITIES, entityManager.getComponentCollectionByClass(TestComponent.class).size());
+		
+		int sum = 0;
+		for (TestComponent component : entityManager.getComponentCollectionByClass(TestComponent.class))
+		{
+			sum += component.getCurrentValue();
+		}
+		Assert.assertEquals(ENTITIES * (ENTITIES - 1) / 2, sum);
+		Assert.assertTrue(new File(folder.getRoot(), "a.region").exists());
+		
+		streamer.destroy();
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testEviction() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		RegionStreamer streamer = new RegionStreamer(entityManager, folder.getRoot(), new TestCodec(), Long.MAX_VALUE);
+		streamer.init();
+		
+		// Loads two regions with one entity each
+		String[] names = {"a", "b"};
+		for (int i=0; i<names.length; i++)
+		{
+			streamer.requestLoad(names[i]);
+			waitLoaded(streamer, names[i]);
+			
+			int entityId = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityId, new TestComponent(i, 100));
+			streamer.assign(names[i], entityId);
+		}
+		
+		// Uses the first one and lowers the budget so only one region fits
+		streamer.touch("a");
+		streamer.setMemoryBudget(streamer.getLoadedBytes() / 2);
+		streamer.update();
+		
+		// Checks that the least recently used region has been evicted
+		Assert.assertTrue(streamer.isLoaded("a"));
+		Assert.assertFalse(streamer.isLoaded("b"));
+		Assert.assertEquals(1, entityManager.getEntityCount());
+		
+		streamer.destroy();
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testWriteFailure() throws Throwable
+	{
+		int ENTITIES = 10;
+		
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		RegionStreamer streamer = new RegionStreamer(entityManager, folder.getRoot(), new TestCodec(), Long.MAX_VALUE);
+		streamer.setRetryDelay(0);
+		streamer.init();
+		
+		// Blocks the temporary file of the region with a directory
+		File file = new File(folder.getRoot(), "a.region");
+		File tempFile = new File(folder.getRoot(), "a.region.tmp");
+		Assert.assertTrue(tempFile.mkdirs());
+		
+		// Loads the region, adds entities to it and unloads it
+		streamer.requestLoad("a");
+		waitLoaded(streamer, "a");
+		
+		for (int i=0; i<ENTITIES; i++)
+		{
+			int entityId = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityId, new TestComponent(i, 100));
+			
+			streamer.assign("a", entityId);
+		}
+		
+		streamer.requestUnload("a");
+		streamer.update();
+		Assert.assertEquals(0, entityManager.getEntityCount());
+		
+		// Checks that the region is kept in memory while it cannot be written
+		Thread.sleep(100);
+		streamer.update();
+		Assert.assertEquals(1, streamer.getPendingWriteCount());
+		
+		// Loads it again and checks that the entities are back from memory
+		streamer.requestLoad("a");
+		waitLoaded(streamer, "a");
+		Assert.assertEquals(ENTITIES, entityManager.getComponentCollectionByClass(TestComponent.class).size());
+		
+		// Unblocks the file and checks that the retry writes it
+		Assert.assertFalse(file.exists());
+		Assert.assertTrue(tempFile.delete());
+		
+		long end = System.currentTimeMillis() + 5000;
+		while (streamer.getPendingWriteCount() > 0 && System.currentTimeMillis() < end)
+		{
+			streamer.update();
+			
+			Thread.sleep(1);
+		}
+		
+		Assert.assertEquals(0, streamer.getPendingWriteCount());
+		Assert.assertTrue(file.isFile());
+		
+		streamer.destroy();
+		entityManager.destroy();
+	}
+	
+	private void waitLoaded(RegionStreamer streamer, String name) throws InterruptedException
+	{
+		long end = System.currentTimeMillis() + 5000;
+		
+		while (!streamer.isLoaded(name) && System.currentTimeMillis() < end)
+		{
+			streamer.update();
+			
+			Thread.sleep(1);
+		}
+		
+		Assert.assertTrue(streamer.isLoaded(name));
+	}
+	
+	private static class TestCodec implements EntityCodec
+	{
+		public void write(EntityRecord record, DataOutput output) throws IOException
+		{
+			List<Component> componentList = record.getComponentList();
+			
+			output.writeInt(componentList.size());
+			
+			for (int i=0; i<componentList.size(); i++)
+			{
+				TestComponent component = (TestComponent) componentList.get(i);
+				
+				output.writeInt(component.getCurrentValue());
+				output.writeInt(component.getMaxValue());
+			}
+		}
+		
+		public EntityRecord read(DataInput input) throws IOException
+		{
+			List<Component> componentList = new ArrayList<Component>();
+			
+			int count = input.readInt();
+			for (int i=0; i<count; i++)
+			{
+				componentList.add(new TestComponent(input.readInt(), input.readInt()));
+			}
+			
+			return new EntityRecord(new TestEntity(), componentList);
+		}
+	}
+}
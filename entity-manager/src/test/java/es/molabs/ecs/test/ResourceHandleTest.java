@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.ResourceHandle;
+import es.molabs.ecs.snapshot.WorldSnapshot;
+import es.molabs.ecs.test.entity.TestResource;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResourceHandleTest 
+{
+	private final static float DELTA = 0.16f;
+	
+	@Test
+	public void testHandle() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// Resolves the handle before registering the resource
+		ResourceHandle<TestResource> handle = entityManager.getResourceHandle(TestResource.class);
+		Assert.assertFalse(handle.isPresent());
+		
+		// Registers the resource and checks that the handle sees it
+		TestResource resource = new TestResource(1);
+		Assert.assertSame(handle, entityManager.registerResource(TestResource.class, resource));
+		Assert.assertSame(resource, handle.get());
+		Assert.assertSame(resource, entityManager.getResource(TestResource.class));
+		
+		// Replaces the resource and checks that the same handle sees the new one
+		int version = handle.getVersion();
+		TestResource otherResource = new TestResource(2);
+		entityManager.registerResource(TestResource.class, otherResource);
+		Assert.assertSame(otherResource, handle.get());
+		Assert.assertNotEquals(version, handle.getVersion());
+		
+		// Marks it as changed and checks the version
+		version = handle.getVersion();
+		entityManager.markResourceChanged(TestResource.class);
+		Assert.assertNotEquals(version, handle.getVersion());
+		
+		// Unregisters the resource
+		entityManager.unregisterResource(TestResource.class);
+		Assert.assertNull(handle.get());
+		
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testSnapshot() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.setSnapshotEnabled(true);
+		entityManager.init();
+		
+		// Registers a tracked resource and publishes it
+		TestResource resource = new TestResource(1);
+		entityManager.registerResource(TestResource.class, resource, true);
+		entityManager.update(DELTA);
+		
+		WorldSnapshot snapshot = entityManager.getSnapshot();
+		Assert.assertEquals(1, snapshot.getResource(TestResource.class).getTime(), 0);
+		Assert.assertNotSame(resource, snapshot.getResource(TestResource.class));
+		
+		// Changes the resource and checks that the snapshot is not modified until it is published
+		resource.setTime(2);
+		entityManager.markResourceChanged(TestResource.class);
+		Assert.assertEquals(1, snapshot.getResource(TestResource.class).getTime(), 0);
+		
+		entityManager.update(DELTA);
+		Assert.assertEquals(2, entityManager.getSnapshot().getResource(TestResource.class).getTime(), 0);
+		
+		// Registers it again without tracking and checks that it is removed from the snapshot
+		entityManager.registerResource(TestResource.class, resource);
+		entityManager.update(DELTA);
+		Assert.assertNull(entityManager.getSnapshot().getResource(TestResource.class));
+		
+		entityManager.destroy();
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.Schedule;
+import es.molabs.ecs.base.AbstractSystem;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ScheduleTest 
+{
+	private final static float DELTA = 1 / 60f;
+	
+	@Test
+	public void testFixedStep() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// A 10Hz system in a 60Hz loop
+		RecordingSystem system = new RecordingSystem();
+		entityManager.registerSystem(system, Schedule.fixedStep(0.1f, 3, 0));
+		
+		for (int i=0; i<60; i++)
+		{
+			entityManager.update(DELTA);
+		}
+		
+		// Checks that it has been updated about ten times with the fixed delta
+		Assert.assertTrue(system.deltaList.size() >= 9 && system.deltaList.size() <= 10);
+		Assert.assertEquals(0.1f, system.deltaList.get(0), 0);
+		
+		// Checks that a long frame only catches up the max steps
+		system.deltaList.clear();
+		entityManager.update(1);
+		Assert.assertEquals(3, system.deltaList.size());
+		
+		entityManager.update(DELTA);
+		Assert.assertTrue(system.deltaList.size() <= 4);
+		
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testEveryNthFrame() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// Registers three systems that run every 3 frames with automatic phases
+		RecordingSystem[] systems = new RecordingSystem[3];
+		for (int i=0; i<systems.length; i++)
+		{
+			systems[i] = new RecordingSystem();
+			entityManager.registerSystem(systems[i], Schedule.everyNthFrame(3));
+		}
+		
+		RecordingSystem everyFrameSystem = new RecordingSystem();
+		entityManager.registerSystem(everyFrameSystem);
+		
+		// Checks that on each frame only one of them runs
+		for (int i=0; i<9; i++)
+		{
+			int before = systems[0].deltaList.size() + systems[1].deltaList.size() + systems[2].deltaList.size();
+			
+			entityManager.update(DELTA);
+			
+			Assert.assertEquals(before + 1, systems[0].deltaList.size() + systems[1].deltaList.size() + systems[2].deltaList.size());
+		}
+		
+		Assert.assertEquals(9, everyFrameSystem.deltaList.size());
+		
+		// Checks that each one receives the time elapsed since its last update
+		for (int i=0; i<systems.length; i++)
+		{
+			Assert.assertEquals(3, systems[i].deltaList.size());
+			Assert.assertEquals(3 * DELTA, systems[i].deltaList.get(1), 0.0001f);
+		}
+		
+		// Changes the schedule of one of them to run every frame
+		entityManager.setSchedule(systems[0].getId(), Schedule.EVERY_FRAME);
+		entityManager.update(DELTA);
+		Assert.assertEquals(4, systems[0].deltaList.size());
+		Assert.assertEquals(Schedule.EVERY_FRAME, entityManager.getSchedule(systems[0].getId()));
+		
+		entityManager.destroy();
+	}
+	
+	private static class RecordingSystem extends AbstractSystem
+	{
+		private final List<Float> deltaList = new ArrayList<Float>();
+		
+		private RecordingSystem()
+		{
+			super(false);
+		}
+		
+		protected void onUpdate(float delta)
+		{
+			deltaList.add(delta);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.base.AbstractSystem;
+import es.molabs.ecs.data.DataSchema;
+import es.molabs.ecs.data.DataStore;
+import es.molabs.ecs.data.DataType;
+import es.molabs.ecs.shard.Migration;
+import es.molabs.ecs.shard.ShardMessage;
+import es.molabs.ecs.shard.ShardedWorld;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ShardedWorldTest 
+{
+	private final static float DELTA = 0.16f;
+	
+	@Test
+	public void testUpdate() throws Throwable
+	{
+		ShardedWorld world = new ShardedWorld(4);
+		world.init();
+		
+		// Registers a system in each shard that records its thread
+		ThreadSystem[] systems = new ThreadSystem[world.getShardCount()];
+		for (int i=0; i<systems.length; i++)
+		{
+			systems[i] = new ThreadSystem();
+			world.getShard(i).registerSystem(systems[i]);
+		}
+		
+		world.update(DELTA);
+		
+		// Checks that each shard has been updated from its own thread
+		for (int i=0; i<systems.length; i++)
+		{
+			Assert.assertEquals("shard-" + i, systems[i].threadName);
+			Assert.assertEquals(i, world.indexOf(world.getShard(i)));
+		}
+		
+		world.destroy();
+		Assert.assertFalse(world.getShard(0).isInitialized());
+	}
+	
+	@Test
+	public void testMigration() throws Throwable
+	{
+		ShardedWorld world = new ShardedWorld(2);
+		world.init();
+		
+		// Registers an entity with a component in the first shard
+		EntityManager source = world.getShard(0);
+		EntityManager target = world.getShard(1);
+		int entityId = source.registerEntity(new TestEntity()).getId();
+		TestComponent component = new TestComponent(3, 5);
+		source.registerComponent(entityId, component);
+		
+		// Requests the migration and checks that nothing happens until the end of the update
+		world.requestMigration(0, entityId, 1);
+		Assert.assertNotNull(source.getEntity(entityId));
+		
+		world.update(DELTA);
+		
+		// Checks that the entity has been moved with its component
+		List<Migration> migrationList = world.getLastMigrationList();
+		Assert.assertEquals(1, migrationList.size());
+		Assert.assertEquals(entityId, migrationList.get(0).getSourceEntityId());
+		
+		int targetEntityId = migrationList.get(0).getTargetEntityId();
+		Assert.assertNull(source.getEntity(entityId));
+		Assert.assertEquals(0, source.getComponentCount());
+		Assert.assertNotNull(target.getEntity(targetEntityId));
+		Assert.assertSame(component, target.getComponent(targetEntityId, TestComponent.class));
+		Assert.assertEquals(3, component.getCurrentValue());
+		
+		world.destroy();
+	}
+	
+	@Test
+	public void testMigrationWithData() throws Throwable
+	{
+		ShardedWorld world = new ShardedWorld(2);
+		world.init();
+		
+		// Registers a data store with the same schema in both shards
+		DataSchema schema = new DataSchema("body").add("x", DataType.FLOAT).add("health", DataType.INT).add("mass", DataType.DOUBLE);
+		EntityManager source = world.getShard(0);
+		EntityManager target = world.getShard(1);
+		source.registerDataStore(new DataStore(schema));
+		target.registerDataStore(new DataStore(schema));
+		
+		// Registers an entity with plain data in the first shard
+		int entityId = source.registerEntity(new TestEntity()).getId();
+		DataStore sourceStore = source.getDataStore("body");
+		int slot = sourceStore.add(entityId);
+		sourceStore.setFloat(slot, 0, 1.5f);
+		sourceStore.setInt(slot, 1, 100);
+		sourceStore.setDouble(slot, 2, 70.25);
+		
+		// Migrates the entity
+		world.requestMigration(0, entityId, 1);
+		world.update(DELTA);
+		
+		// Checks that its data has been moved with it
+		int targetEntityId = world.getLastMigrationList().get(0).getTargetEntityId();
+		DataStore targetStore = target.getDataStore("body");
+		int targetSlot = targetStore.getSlot(targetEntityId);
+		Assert.assertEquals(0, sourceStore.size());
+		Assert.assertTrue(targetSlot >= 0);
+		Assert.assertEquals(1.5f, targetStore.getFloat(targetSlot, 0), 0);
+		Assert.assertEquals(100, targetStore.getInt(targetSlot, 1));
+		Assert.assertEquals(70.25, targetStore.getDouble(targetSlot, 2), 0);
+		
+		world.destroy();
+	}
+	
+	@Test
+	public void testMigrationWithoutDisposal() throws Throwable
+	{
+		// Creates the world with deferred disposal in the first shard
+		ShardedWorld world = new ShardedWorld(2);
+		world.getShard(0).setDeferredDisposal(true);
+		world.init();
+		
+		EntityManager source = world.getShard(0);
+		EntityManager target = world.getShard(1);
+		TestEntity entity = Mockito.spy(new TestEntity());
+		int entityId = source.registerEntity(entity).getId();
+		TestComponent component = Mockito.spy(new TestComponent(3, 5));
+		source.registerComponent(entityId, component);
+		
+		// Migrates the entity and updates again
+		world.requestMigration(0, entityId, 1);
+		world.update(DELTA);
+		world.update(DELTA);
+		
+		// Checks that the entity and its component have been moved without being disposed
+		int targetEntityId = entity.getId();
+		Mockito.verify(entity, Mockito.never()).dispose();
+		Mockito.verify(component, Mockito.never()).dispose();
+		Assert.assertEquals(0, source.getPendingDisposalCount());
+		Assert.assertEquals(Integer.valueOf(targetEntityId), component.getEntityId());
+		Assert.assertNotNull(component.getId());
+		Assert.assertSame(entity, target.getEntity(targetEntityId));
+		Assert.assertSame(component, target.getComponent(component.getId()));
+		
+		// Checks that they are disposed once by the target shard
+		world.destroy();
+		Mockito.verify(entity, Mockito.times(1)).dispose();
+		Mockito.verify(component, Mockito.times(1)).dispose();
+	}
+	
+	@Test
+	public void testMessages() throws Throwable
+	{
+		ShardedWorld world = new ShardedWorld(3);
+		world.init();
+		
+		// Sends messages to the last shard
+		world.send(1, 2, "b");
+		world.send(0, 2, "a");
+		world.send(1, 2, "c");
+		Assert.assertTrue(world.getInbox(2).isEmpty());
+		
+		world.update(DELTA);
+		
+		// Checks that they are delivered in the order of the shard that sent them
+		List<ShardMessage> inbox = world.getInbox(2);
+		Assert.assertEquals(3, inbox.size());
+		Assert.assertEquals("a", inbox.get(0).getPayload());
+		Assert.assertEquals("b", inbox.get(1).getPayload());
+		Assert.assertEquals("c", inbox.get(2).getPayload());
+		Assert.assertEquals(1, inbox.get(2).getSource());
+		Assert.assertTrue(world.getInbox(0).isEmpty());
+		
+		// Checks that the inbox is replaced on the next update
+		world.update(DELTA);
+		Assert.assertTrue(world.getInbox(2).isEmpty());
+		
+		world.destroy();
+	}
+	
+	private static class ThreadSystem extends AbstractSystem
+	{
+		private volatile String threadName = null;
+		
+		private ThreadSystem()
+		{
+			super(false);
+		}
+		
+		protected void onUpdate(float delta)
+		{
+			threadName = Thread.currentThread().getName();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.Comparator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.query.SortKey;
+import es.molabs.ecs.query.SortedQuery;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SortedQueryTest 
+{
+	@Test
+	public void testSortKey() throws Throwable
+	{
+		testSortedQuery(new SortedQuery<TestComponent>(TestComponent.class, new SortKey<TestComponent>()
+		{
+			public double getKey(TestComponent component)
+			{
+				return component.getCurrentValue();
+			}
+		}));
+	}
+	
+	@Test
+	public void testComparator() throws Throwable
+	{
+		testSortedQuery(new SortedQuery<TestComponent>(TestComponent.class, new Comparator<TestComponent>()
+		{
+			public int compare(TestComponent component1, TestComponent component2)
+			{
+				return Integer.compare(component1.getCurrentValue(), component2.getCurrentValue());
+			}
+		}));
+	}
+	
+	private void testSortedQuery(SortedQuery<TestComponent> sortedQuery)
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// Registers some entities before and after the query
+		int[] entityIds = new int[5];
+		TestComponent[] components = new TestComponent[entityIds.length];
+		for (int i=0; i<entityIds.length; i++)
+		{
+			if (i == 2)
+			{
+				entityManager.registerSortedQuery(sortedQuery);
+			}
+			
+			entityIds[i] = entityManager.registerEntity(new TestEntity()).getId();
+			components[i] = new TestComponent(10 * (entityIds.length - i), 100);
+			entityManager.registerComponent(entityIds[i], components[i]);
+		}
+		
+		Assert.assertArrayEquals(new int[] {entityIds[4], entityIds[3], entityIds[2], entityIds[1], entityIds[0]}, sortedQuery.getEntityIds());
+		
+		// Moves the first entity to the end and the last one to the middle
+		components[4].setCurrentValue(100);
+		entityManager.markChanged(components[4]);
+		components[0].setCurrentValue(25);
+		entityManager.markChanged(components[0]);
+		Assert.assertArrayEquals(new int[] {entityIds[3], entityIds[0], entityIds[2], entityIds[1], entityIds[4]}, sortedQuery.getEntityIds());
+		Assert.assertEquals(entityIds[0], sortedQuery.getEntityId(1));
+		Assert.assertSame(components[4], sortedQuery.getComponent(4));
+		
+		// Unregisters an entity and a component
+		entityManager.unregisterEntity(entityIds[2]);
+		entityManager.unregisterComponent(components[3].getId());
+		Assert.assertEquals(3, sortedQuery.size());
+		Assert.assertArrayEquals(new int[] {entityIds[0], entityIds[1], entityIds[4]}, sortedQuery.getEntityIds());
+		
+		// Clears the world
+		entityManager.clear();
+		Assert.assertEquals(0, sortedQuery.size());
+		
+		entityManager.unregisterSortedQuery(sortedQuery);
+		
+		entityManager.destroy();
+	}
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.spatial.SpatialIndexSystem;
+import es.molabs.ecs.test.entity.PositionTestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SpatialIndexSystemTest 
+{
+	@Test
+	public void testQueries() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		SpatialIndexSystem<PositionTestComponent> system = new SpatialIndexSystem<PositionTestComponent>(PositionTestComponent.class, PositionTestComponent.ACCESSOR, 10, false);
+		entityManager.registerSystem(system);
+		
+		// Registers entities in a line, one every 5 units
+		int[] entityIds = new int[10];
+		PositionTestComponent[] components = new PositionTestComponent[10];
+		for (int i=0; i<entityIds.length; i++)
+		{
+			entityIds[i] = entityManager.registerEntity(new TestEntity()).getId();
+			components[i] = new PositionTestComponent(i * 5, 0, 0);
+			entityManager.registerComponent(entityIds[i], components[i]);
+		}
+		
+		Assert.assertEquals(10, system.size());
+		
+		// Checks the radius and box queries
+		Assert.assertEquals(set(entityIds[1], entityIds[2], entityIds[3]), new HashSet<Integer>(system.queryRadius(10, 0, 0, 5)));
+		Assert.assertEquals(set(entityIds[0], entityIds[1]), new HashSet<Integer>(system.queryBox(-100, -1, 0, 5, 1, 0)));
+		
+		// Checks the nearest query, ordered by distance
+		Assert.assertEquals(Arrays.asList(entityIds[9], entityIds[8]), system.queryNearest(100, 0, 0, 2));
+		Assert.assertEquals(10, system.queryNearest(0, 0, 0, 20).size());
+		
+		// Moves an entity and checks that the index follows it
+		components[0].setPosition(46, 0, 0);
+		entityManager.markChanged(components[0]);
+		Assert.assertEquals(entityIds[0], (int) system.queryNearest(47, 0, 0, 1).get(0));
+		Assert.assertFalse(system.queryRadius(0, 0, 0, 1).contains(entityIds[0]));
+		
+		// Removes an entity and checks that it is not found
+		entityManager.unregisterEntity(entityIds[5]);
+		Assert.assertEquals(9, system.size());
+		Assert.assertTrue(system.queryRadius(25, 0, 0, 1).isEmpty());
+		
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testPairs() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		SpatialIndexSystem<PositionTestComponent> system = new SpatialIndexSystem<PositionTestComponent>(PositionTestComponent.class, PositionTestComponent.ACCESSOR, 4, true);
+		entityManager.registerSystem(system);
+		
+		// Registers entities in a 3D grid, one every 3 units
+		int SIDE = 6;
+		float[][] positions = new float[SIDE * SIDE * SIDE][];
+		int[] entityIds = new int[positions.length];
+		for (int i=0; i<positions.length; i++)
+		{
+			positions[i] = new float[] {(i % SIDE) * 3, ((i / SIDE) % SIDE) * 3, (i / (SIDE * SIDE)) * 3};
+			entityIds[i] = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityIds[i], new PositionTestComponent(positions[i][0], positions[i][1], positions[i][2]));
+		}
+		
+		// Finds the expected pairs checking all of them
+		float DISTANCE = 4.5f;
+		Set<Long> expected = new HashSet<Long>();
+		for (int i=0; i<positions.length; i++)
+		{
+			for (int j=i+1; j<positions.length; j++)
+			{
+				float dx = positions[i][0] - positions[j][0];
+				float dy = positions[i][1] - positions[j][1];
+				float dz = positions[i][2] - positions[j][2];
+				
+				if (dx * dx + dy * dy + dz * dz <= DISTANCE * DISTANCE)
+				{
+					expected.add(pair(entityIds[i], entityIds[j]));
+				}
+			}
+		}
+		
+		// Checks the pairs found by the index
+		Assert.assertEquals(expected, pairs(system.findPairs(DISTANCE)));
+		
+		// Checks the pairs found in parallel
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			Assert.assertEquals(expected, pairs(system.findPairs(DISTANCE, executor, 4)));
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		
+		entityManager.destroy();
+	}
+	
+	@Test(timeout=10000)
+	public void testNearestSparse() throws Throwable
+	{
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		SpatialIndexSystem<PositionTestComponent> system = new SpatialIndexSystem<PositionTestComponent>(PositionTestComponent.class, PositionTestComponent.ACCESSOR, 1, true);
+		entityManager.registerSystem(system);
+		
+		// Registers two entities thousands of cells apart
+		int nearId = entityManager.registerEntity(new TestEntity()).getId();
+		entityManager.registerComponent(nearId, new PositionTestComponent(0, 0, 0));
+		int farId = entityManager.registerEntity(new TestEntity()).getId();
+		entityManager.registerComponent(farId, new PositionTestComponent(20000, 15000, -10000));
+		
+		// Checks that the nearest query ends quickly from both of them and from the middle
+		Assert.assertEquals(Arrays.asList(nearId, farId), system.queryNearest(0, 0, 0, 2));
+		Assert.assertEquals(Arrays.asList(farId, nearId), system.queryNearest(20000, 15000, -10000, 2));
+		Assert.assertEquals(Arrays.asList(nearId, farId), system.queryNearest(9000, 7000, -4000, 2));
+		
+		// Adds random entities spread over a large space and checks the results against checking all of them
+		Random random = new Random(1);
+		int COUNT = 200;
+		float[][] positions = new float[COUNT][];
+		int[] entityIds = new int[COUNT];
+		for (int i=0; i<COUNT; i++)
+		{
+			positions[i] = new float[] {random.nextFloat() * 5000, random.nextFloat() * 5000, random.nextFloat() * 50};
+			entityIds[i] = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityIds[i], new PositionTestComponent(positions[i][0], positions[i][1], positions[i][2]));
+		}
+		
+		entityManager.unregisterEntity(farId);
+		entityManager.unregisterEntity(nearId);
+		
+		for (int query=0; query<20; query++)
+		{
+			final float x = random.nextFloat() * 6000 - 500;
+			final float y = random.nextFloat() * 6000 - 500;
+			final float z = random.nextFloat() * 100 - 25;
+			
+			Integer[] expected = new Integer[COUNT];
+			final float[] distances = new float[COUNT];
+			for (int i=0; i<COUNT; i++)
+			{
+				float dx = positions[i][0] - x;
+				float dy = positions[i][1] - y;
+				float dz = positions[i][2] - z;
+				
+				expected[i] = i;
+				distances[i] = dx * dx + dy * dy + dz * dz;
+			}
+			
+			Arrays.sort(expected, new Comparator<Integer>()
+			{
+				public int compare(Integer a, Integer b)
+				{
+					return Float.compare(distances[a], distances[b]);
+				}
+			});
+			
+			List<Integer> nearest = system.queryNearest(x, y, z, 3);
+			Assert.assertEquals(3, nearest.size());
+			
+			for (int i=0; i<nearest.size(); i++)
+			{
+				Assert.assertEquals(entityIds[expected[i]], (int) nearest.get(i));
+			}
+		}
+		
+		entityManager.destroy();
+	}
+	
+	private Set<Integer> set(Integer...values)
+	{
+		return new HashSet<Integer>(Arrays.asList(values));
+	}
+	
+	private Set<Long> pairs(long[] values)
+	{
+		Set<Long> pairSet = new HashSet<Long>();
+		
+		for (int i=0; i<values.length; i++)
+		{
+			int first = SpatialIndexSystem.getFirstEntityId(values[i]);
+			int second = SpatialIndexSystem.getSecondEntityId(values[i]);
+			
+			// Each pair must appear only once
+			Assert.assertTrue(pairSet.add(pair(first, second)));
+		}
+		
+		return pairSet;
+	}
+	
+	private long pair(int entityIdA, int entityIdB)
+	{
+		return ((long) Math.min(entityIdA, entityIdB) << 32) | Math.max(entityIdA, entityIdB);
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.Attribute;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.metrics.EntityManagerMetrics;
+import es.molabs.ecs.metrics.SystemStats;
+import es.molabs.ecs.test.entity.OtherTestComponent;
+import es.molabs.ecs.test.entity.TestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+import es.molabs.ecs.test.entity.TestSystem;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SystemProfilerTest 
+{
+	private final static float DELTA = 0.16f;
+	
+	@Test
+	public void testProfiling() throws Throwable
+	{
+		// Creates the manager
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		
+		// Registers a system
+		TestSystem system = new TestSystem(false);
+		entityManager.registerSystem(system);
+		
+		// Calls update with profiling disabled
+		entityManager.update(DELTA);
+		
+		// Checks that nothing has been recorded
+		Assert.assertEquals(null, entityManager.getProfiler().getSystemStats(system.getId()));
+		Assert.assertEquals(0, entityManager.getProfiler().getFrameStats().getCount());
+		
+		// Enables profiling
+		entityManager.setProfilingEnabled(true);
+		
+		// Registers a component and calls update twice
+		int entityId = entityManager.registerEntity(new TestEntity()).getId();
+		entityManager.registerComponent(entityId, new TestComponent(1, 5));
+		entityManager.update(DELTA);
+		entityManager.update(DELTA);
+		entityManager.unregisterEntity(entityId);
+		
+		// Checks the recorded calls
+		SystemStats stats = entityManager.getProfiler().getSystemStats(system.getId());
+		Assert.assertEquals(TestSystem.class.getName(), stats.getSystemClass());
+		Assert.assertEquals(2, stats.getUpdate().getCount());
+		Assert.assertEquals(1, stats.getComponentAdded().getCount());
+		Assert.assertEquals(1, stats.getComponentRemoved().getCount());
+		Assert.assertEquals(2, entityManager.getProfiler().getFrameStats().getCount());
+		
+		// Unregisters the system
+		entityManager.unregisterSystem(system.getId());
+		
+		// Checks that its stats have been discarded
+		Assert.assertEquals(0, entityManager.getProfiler().getSystemStats().size());
+		
+		// Destroys the manager
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testMBean() throws Throwable
+	{
+		String NAME = "es.molabs.ecs:type=EntityManager,name=test";
+		
+		// Creates the manager
+		EntityManager entityManager = new EntityManager();
+		entityManager.init();
+		entityManager.registerSystem(new TestSystem(false));
+		
+		// Registers the bean
+		EntityManagerMetrics metrics = new EntityManagerMetrics(entityManager);
+		metrics.register(NAME);
+		
+		// Enables profiling through JMX
+		ObjectName objectName = new ObjectName(NAME);
+		ManagementFactory.getPlatformMBeanServer().setAttribute(objectName, new Attribute("ProfilingEnabled", true));
+		Assert.assertEquals(true, entityManager.isProfilingEnabled());
+		
+		// Calls update once
+		entityManager.update(DELTA);
+		
+		// Checks the stats read through JMX
+		CompositeData[] systemStats = (CompositeData[]) ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "SystemStats");
+		Assert.assertEquals(1, systemStats.length);
+		Assert.assertEquals(1L, ((CompositeData) systemStats[0].get("update")).get("count"));
+		Assert.assertEquals(1, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "SystemCount"));
+		
+		// Unregisters the bean
+		metrics.unregister();
+		Assert.assertEquals(false, ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+		
+		// Destroys the manager
+		entityManager.destroy();
+	}
+	
+	@Test
+	public void testMBeanFootprintWhileUpdating() throws Throwable
+	{
+		String NAME = "es.molabs.ecs:type=EntityManager,name=footprint";
+		int UPDATES = 20000;
+		
+		// Creates the manager sampling the footprint every update
+		EntityManager entityManager = new EntityManager();
+		entityManager.setFootprintInterval(1);
+		entityManager.init();
+		entityManager.registerSystem(new TestSystem(false));
+		
+		// Registers the bean
+		EntityManagerMetrics metrics = new EntityManagerMetrics(entityManager);
+		metrics.register(NAME);
+		
+		final ObjectName objectName = new ObjectName(NAME);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		
+		// Reads the footprint through JMX while the world is updated
+		Thread reader = new Thread()
+		{
+			public void run()
+			{
+				try
+				{
+					while (running.get())
+					{
+						ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "MemoryFootprint");
+					}
+				}
+				catch (Throwable t)
+				{
+					error.set(t);
+				}
+			}
+		};
+		reader.start();
+		
+		// Adds and removes systems and entities with different classes of components
+		for (int i=0; i<UPDATES; i++)
+		{
+			TestSystem system = new TestSystem(false);
+			entityManager.registerSystem(system);
+			
+
+			int entityId = entityManager.registerEntity(new TestEntity()).getId();
+			entityManager.registerComponent(entityId, new TestComponent(1, 5));
+			
+			if (i % 2 == 0)
+			{
+				entityManager.registerComponent(entityId, new OtherTestComponent(17));
+			}
+			
+			if (i % 3 == 0)
+			{
+				entityManager.unregisterEntity(entityId);
+			}
+			
+			entityManager.update(DELTA);
+			entityManager.unregisterSystem(system.getId());
+		}
+		
+		running.set(false);
+		reader.join();
+		
+		// Checks that no read failed
+		Assert.assertNull(error.get());
+		
+		// Checks that the last sample matches the world
+		CompositeData footprint = (CompositeData) ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "MemoryFootprint");
+		Assert.assertEquals(entityManager.getEntityCount(), footprint.get("entityCount"));
+		
+		// Unregisters the bean
+		metrics.unregister();
+		
+		// Destroys the manager
+		entityManager.destroy();
+		Assert.assertNull(entityManager.getLastMemoryFootprint());
+	}
+}
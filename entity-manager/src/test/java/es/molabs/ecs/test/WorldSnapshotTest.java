@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import es.molabs.ecs.EntityManager;
+import es.molabs.ecs.snapshot.WorldSnapshot;
+import es.molabs.ecs.test.entity.CopyableTestComponent;
+import es.molabs.ecs.test.entity.OtherTestComponent;
+import es.molabs.ecs.test.entity.TestEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class WorldSnapshotTest 
+{
+	private final static float DELTA = 0.16f;
+	
+	@Test
+	public void testPublish() throws Throwable
+	{
+		// Creates the manager with snapshots enabled
+		EntityManager entityManager = new EntityManager();
+		entityManager.setSnapshotEnabled(true);
+		entityManager.init();
+		
+		// Registers an entity with a component
+		int entityId = entityManager.registerEntity(new TestEntity()).getId();
+		OtherTestComponent component = new OtherTestComponent(17);
+		entityManager.registerComponent(entityId, component);
+		
+		// Checks that nothing has been published before the update
+		WorldSnapshot snapshot = entityManager.getSnapshot();
+		Assert.assertEquals(false, snapshot.hasEntity(entityId));
+		Assert.assertEquals(0, snapshot.getComponentCount());
+		
+		// Calls update once
+		entityManager.update(DELTA);
+		
+		// Checks that the entity and its component have been published
+		snapshot = entityManager.getSnapshot();
+		Assert.assertEquals(true, snapshot.hasEntity(entityId));
+		Assert.assertEquals(1, snapshot.getEntityCount());
+		Assert.assertEquals(1, snapshot.getComponentCount());
+		Assert.assertEquals(component, snapshot.getComponent(entityId, OtherTestComponent.class));
+		Assert.assertEquals(1, snapshot.getComponentCollectionByClass(OtherTestComponent.class).size());
+		
+		// Unregisters the entity
+		entityManager.unregisterEntity(entityId);
+		
+		// Checks that the published snapshot has not changed
+		Assert.assertEquals(true, snapshot.hasEntity(entityId));
+		
+		// Calls update again
+		entityManager.update(DELTA);
+		
+		// Checks that the entity has been removed from the new snapshot
+		Assert.assertEquals(false, entityManager.getSnapshot().hasEntity(entityId));
+		Assert.assertEquals(0, entityManager.getSnapshot().getEntityCount());
+		Assert.assertEquals(0, entityManager.getSnapshot().getComponentCount());
+		
+		// Destroys the manager
+		entityManager.destroy();
+		
+		// Checks that there is no snapshot after destroying the manager
+		Assert.assertEquals(null, entityManager.getSnapshot());
+	}
+	
+	@Test
+	public void testCopyOnWrite() throws Throwable
+	{
+		// Creates the manager with snapshots enabled
+		EntityManager entityManager = new EntityManager();
+		entityManager.setSnapshotEnabled(true);
+		entityManager.init();
+		
+		// Registers two entities with a copyable component
+		int entityId = entityManager.registerEntity(new TestEntity()).getId();
+		CopyableTestComponent component = new CopyableTestComponent(1, 5);
+		entityManager.registerComponent(entityId, component);
+		
+		int otherEntityId = entityManager.registerEntity(new TestEntity()).getId();
+		entityManager.registerComponent(otherEntityId, new CopyableTestComponent(1, 5));
+		
+		// Calls update once
+		entityManager.update(DELTA);
+		
+		// Checks that the snapshot holds a copy of the component
+		WorldSnapshot snapshot = entityManager.getSnapshot();
+		CopyableTestComponent copy = snapshot.getComponent(entityId, CopyableTestComponent.class);
+		CopyableTestComponent otherCopy = snapshot.getComponent(otherEntityId, CopyableTestComponent.class);
+		Assert.assertNotSame(component, copy);
+		Assert.assertEquals(1, copy.getCurrentValue());
+		
+		// Modifies the component without marking it as changed
+		component.setCurrentValue(2);
+		entityManager.update(DELTA);
+		
+		// Checks that the previous copy is still used
+		Assert.assertSame(copy, entityManager.getSnapshot().getComponent(entityId, CopyableTestComponent.class));
+		
+		// Marks the component as changed
+		entityManager.markChanged(component);
+		entityManager.update(DELTA);
+		
+		// Checks that only the changed component has been copied again
+		Assert.assertEquals(2, entityManager.getSnapshot().getComponent(entityId, CopyableTestComponent.class).getCurrentValue());
+		Assert.assertSame(otherCopy, entityManager.getSnapshot().getComponent(otherEntityId, CopyableTestComponent.class));
+		
+		// Checks that the old snapshot has not changed
+		Assert.assertEquals(1, snapshot.getComponent(entityId, CopyableTestComponent.class).getCurrentValue());
+		
+		// Destroys the manager
+		entityManager.destroy();
+	}
+}
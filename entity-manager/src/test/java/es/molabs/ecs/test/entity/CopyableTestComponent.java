@@ -0,0 +1,32 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test.entity;
+
+import es.molabs.ecs.Component;
+import es.molabs.ecs.snapshot.CopyableComponent;
+
+public class CopyableTestComponent extends TestComponent implements CopyableComponent
+{
+	public CopyableTestComponent(int currentValue, int maxValue)
+	{
+		super(currentValue, maxValue);
+	}
+
+	public Component copy() 
+	{
+		return new CopyableTestComponent(getCurrentValue(), getMaxValue());
+	}
+}
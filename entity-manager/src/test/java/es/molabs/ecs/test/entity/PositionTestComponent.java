@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2016 Luis Moral Guerrero <luis.moral@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.molabs.ecs.test.entity;
+
+import es.molabs.ecs.base.AbstractComponent;
+import es.molabs.ecs.spatial.PositionAccessor;
+
+public class PositionTestComponent extends AbstractComponent
+{
+	public final static PositionAccessor<PositionTestComponent> ACCESSOR = new PositionAccessor<PositionTestComponent>()
+	{
+		public float getX(PositionTestComponent component)
+		{
+			return component.getX();
+		}
+		
+		public float getY(PositionTestComponent component)
+		{
+			return component.getY();
+		}
+		
+		public float getZ(PositionTestComponent component)
+		{
+			return component.getZ();
+		}
+	};
+	
+	private float x;
+	private float y;
+	private float z;
+	
+	public PositionTestComponent(float x, float y, float z)
+	{
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+	
+	public void setPosition(float x, float y, float z)
+	{
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public float getX() 
+	{
+		return x;
+	}
+
+	public float getY() 
+	{
+		return y;
+	}
+
+	public float getZ() 
+	{
+		return z;
+	}
+}